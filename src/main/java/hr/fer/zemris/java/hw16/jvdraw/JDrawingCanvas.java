@@ -1,19 +1,33 @@
 package hr.fer.zemris.java.hw16.jvdraw;
 
 import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
+import java.awt.Rectangle;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
 
-import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.LevelOfDetail;
 import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
 import hr.fer.zemris.java.hw16.jvdraw.model.DrawingModel;
 import hr.fer.zemris.java.hw16.jvdraw.model.DrawingModelListener;
+import hr.fer.zemris.java.hw16.jvdraw.render.BackgroundRenderer;
+import hr.fer.zemris.java.hw16.jvdraw.render.LatencyHistogram;
+import hr.fer.zemris.java.hw16.jvdraw.render.PaintStatistics;
+import hr.fer.zemris.java.hw16.jvdraw.render.TileRasterizer;
+
+import static hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter.DEFAULT_STROKE;
 
 /**
  * The class that represents a drawing canvas allowing the user to draw lines,
@@ -22,6 +36,31 @@ import hr.fer.zemris.java.hw16.jvdraw.model.DrawingModelListener;
  * a new object is added to the collection. As a result, newly added object is
  * to be drawn on the canvas.
  * 
+ * Only the area actually affected by a change is repainted, i.e. the union of
+ * the bounding boxes the changed objects had before and after the change,
+ * widened by the stroke. The canvas receives the changes batched once per tick
+ * of the event dispatch thread, so a burst of changes costs a single frame.
+ * The canvas keeps no bounding boxes of its own: it keeps the snapshot it last
+ * requested a frame for, and the snapshot of the next frame tells the area
+ * whose drawing differs from it by comparing their spatial indexes.
+ * 
+ * The committed objects are rendered on a background thread by a
+ * BackgroundRenderer, into cached tiles that are only redrawn where model
+ * events have damaged them. Whenever the model changes, the renderer is given
+ * an immutable snapshot of the document together with the damage, and the
+ * area of the canvas the renderer reports as changed is repainted once it
+ * publishes a complete frame. Painting
+ * the canvas on the event dispatch thread thus amounts to copying the latest
+ * frame and drawing the preview of the current tool on top of it, so input
+ * stays responsive however long a redraw takes. Frames are rendered at the
+ * scale of the screen the canvas is shown on, so they stay sharp on HiDPI
+ * screens.
+ * 
+ * The paints, the rendered frames and the requests to redraw the canvas are
+ * recorded in PaintStatistics, which are exposed as an MBean and can be shown
+ * in an overlay over the canvas. Recording costs a single volatile read per
+ * event while it is disabled.
+ * 
  * @author Damjan Vučina
  */
 public class JDrawingCanvas extends JComponent implements DrawingModelListener {
@@ -29,6 +68,15 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 	/** The color of the canvas' background */
 	public static final Color CANVAS_COLOR = Color.WHITE;
 
+	/** The font of the statistics overlay. */
+	private static final Font OVERLAY_FONT = new Font(Font.MONOSPACED, Font.PLAIN, 11);
+
+	/** The background color of the statistics overlay. */
+	private static final Color OVERLAY_BACKGROUND = new Color(0, 0, 0, 160);
+
+	/** The margin around the text of the statistics overlay, in pixels. */
+	private static final int OVERLAY_MARGIN = 4;
+
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 1L;
 
@@ -47,6 +95,24 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 	/** The reference to the main frame of the program. */
 	private JVDraw info;
 
+	/** The snapshot of the document the last frame was requested for. */
+	private DocumentSnapshot requestedSnapshot;
+
+	/** The renderer of the committed objects. */
+	private BackgroundRenderer renderer;
+
+	/** Whether requesting a frame from the renderer has been scheduled. */
+	private AtomicBoolean frameScheduled;
+
+	/** The size of the view the last frame was requested for. */
+	private Dimension requestedSize;
+
+	/** The scale of the screen the last frame was requested for. */
+	private double requestedScale;
+
+	/** The statistics of painting the canvas. */
+	private PaintStatistics statistics;
+
 	/**
 	 * Gets the object responsible for drawing each object on the drawing canvas.
 	 *
@@ -70,6 +136,9 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 		this.info = info;
 		this.documentModel = documentModel;
 		goPainter = new GeometricalObjectPainter();
+		statistics = new PaintStatistics();
+		renderer = new BackgroundRenderer(new TileRasterizer(CANVAS_COLOR), this::repaint, statistics);
+		frameScheduled = new AtomicBoolean();
 
 		documentModel.addDrawingModelListener(this);
 		addMouseListener(new MouseAdapter() {
@@ -100,6 +169,137 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 		return info;
 	}
 
+	/**
+	 * Gets the renderer of the committed objects.
+	 *
+	 * @return the renderer
+	 */
+	public BackgroundRenderer getRenderer() {
+		return renderer;
+	}
+
+	/**
+	 * Notifies the canvas that it no longer has a parent, e.g. because its
+	 * window has been disposed. The renderer is disposed, which stops its
+	 * thread and releases its frames and tiles.
+	 */
+	@Override
+	public void removeNotify() {
+		super.removeNotify();
+		renderer.dispose();
+	}
+
+	/**
+	 * Notifies the canvas that it has a parent again. If it has been removed
+	 * before, a new renderer with the rasterizer and the time budget of the
+	 * disposed one takes over, and renders the whole canvas.
+	 */
+	@Override
+	public void addNotify() {
+		super.addNotify();
+		if (renderer.isDisposed()) {
+			long timeBudget = renderer.getTimeBudget();
+			renderer = new BackgroundRenderer(renderer.getRasterizer(), this::repaint, statistics);
+			renderer.setTimeBudget(timeBudget);
+
+			requestedSnapshot = null;
+			requestedSize = null;
+			scheduleFrame();
+		}
+	}
+
+	/**
+	 * Gets the time budget of a single slice of rendering the committed objects.
+	 *
+	 * @return the time budget, in milliseconds, or 0 if it is unbounded
+	 */
+	public long getTimeBudget() {
+		return renderer.getTimeBudget();
+	}
+
+	/**
+	 * Sets the time budget of a single slice of rendering the committed objects.
+	 * Newer changes are taken over by the renderer only between the slices.
+	 *
+	 * @param timeBudget
+	 *            the time budget, in milliseconds, or 0 for an unbounded one
+	 */
+	public void setTimeBudget(long timeBudget) {
+		renderer.setTimeBudget(timeBudget);
+	}
+
+	/**
+	 * Gets the statistics of painting the canvas.
+	 *
+	 * @return the statistics
+	 */
+	public PaintStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Gets the histogram of the times it took to paint the canvas, recorded
+	 * while the statistics are enabled.
+	 *
+	 * @return the histogram of the frame times
+	 */
+	public LatencyHistogram getFrameTimes() {
+		return statistics.getPaintTimes();
+	}
+
+	/**
+	 * Sets whether the paint statistics are shown over the canvas. Showing them
+	 * enables recording them.
+	 *
+	 * @param visible
+	 *            whether the overlay is visible
+	 */
+	public void setOverlayVisible(boolean visible) {
+		statistics.setOverlayVisible(visible);
+		repaint();
+	}
+
+	/**
+	 * Gets the level-of-detail settings the committed objects are drawn with.
+	 *
+	 * @return the settings, or null if the level-of-detail mode is off
+	 */
+	public LevelOfDetail getLevelOfDetail() {
+		return renderer.getRasterizer().getLevelOfDetail();
+	}
+
+	/**
+	 * Sets the level-of-detail settings the committed objects are drawn with and
+	 * redraws the whole canvas. The mode is off by default.
+	 *
+	 * @param levelOfDetail
+	 *            the settings, or null to turn the level-of-detail mode off
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		renderer.getRasterizer().setLevelOfDetail(levelOfDetail);
+		renderer.invalidateAll();
+		scheduleFrame();
+	}
+
+	/**
+	 * Gets the number of objects painted so far.
+	 *
+	 * @return the number of painted objects
+	 */
+	public long getDrawnCount() {
+		return renderer.getDrawnCount();
+	}
+
+	/**
+	 * Gets the number of objects that were not painted so far, since they lay
+	 * outside the area being repainted.
+	 *
+	 * @return the number of culled objects
+	 */
+	public long getCulledCount() {
+		return renderer.getCulledCount();
+	}
+
 	/**
 	 * Method invoked whenever some geometrical objects have been added to the
 	 * DocumentModel's collection of geometrical objects.
@@ -114,7 +314,7 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 	 */
 	@Override
 	public void objectsAdded(DrawingModel source, int index0, int index1) {
-		repaint();
+		scheduleFrame();
 	}
 
 	/**
@@ -131,7 +331,7 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 	 */
 	@Override
 	public void objectsRemoved(DrawingModel source, int index0, int index1) {
-		repaint();
+		scheduleFrame();
 	}
 
 	/**
@@ -148,7 +348,78 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 	 */
 	@Override
 	public void objectsChanged(DrawingModel source, int index0, int index1) {
-		repaint();
+		scheduleFrame();
+	}
+
+	/**
+	 * Method invoked whenever the colors of the palette the geometrical
+	 * objects are drawn in have been changed. Since no stored state changes,
+	 * comparing snapshots finds no damage, so the whole canvas is rendered
+	 * again.
+	 *
+	 * @param source
+	 *            reference to the source object that acts as a Subject in the
+	 *            Observer pattern
+	 */
+	@Override
+	public void paletteChanged(DrawingModel source) {
+		renderer.invalidateAll();
+		scheduleFrame();
+	}
+
+	/**
+	 * Schedules requesting a new frame from the renderer on the event dispatch
+	 * thread, unless it has already been scheduled. The snapshot is thereby
+	 * taken after the change being reported has completed, and a series of
+	 * changes results in a single request.
+	 */
+	private void scheduleFrame() {
+		statistics.recordRepaintRequest();
+		if (frameScheduled.compareAndSet(false, true)) {
+			SwingUtilities.invokeLater(this::requestFrame);
+		}
+	}
+
+	/**
+	 * Requests a frame showing the current objects in the current size of the
+	 * canvas, at the scale of the current screen, from the renderer. The area
+	 * whose drawing differs from the snapshot of the previous request is
+	 * reported to the renderer as damaged, widened by the stroke so that the
+	 * edges of the objects are rendered again as well.
+	 */
+	private void requestFrame() {
+		frameScheduled.set(false);
+
+		DocumentSnapshot snapshot = documentModel.snapshot();
+		Rectangle damage = snapshot.differenceFrom(requestedSnapshot, new Rectangle(0, 0, getWidth(), getHeight()));
+		if (damage != null) {
+			damage.grow(DEFAULT_STROKE, DEFAULT_STROKE);
+			damage.width++;
+			damage.height++;
+			renderer.invalidate(damage);
+		}
+
+		requestedSnapshot = snapshot;
+		requestedSize = getSize();
+		requestedScale = getScreenScale();
+		renderer.request(snapshot, requestedSize, requestedScale);
+	}
+
+	/**
+	 * Gets the scale of the default transform of the screen the canvas is
+	 * shown on, e.g. 2 on a HiDPI screen.
+	 *
+	 * @return the number of device pixels per unit of canvas coordinates, or 1
+	 *         if the canvas is not shown yet
+	 */
+	private double getScreenScale() {
+		GraphicsConfiguration configuration = getGraphicsConfiguration();
+		if (configuration == null) {
+			return 1;
+		}
+
+		double scale = configuration.getDefaultTransform().getScaleX();
+		return scale > 0 ? scale : 1;
 	}
 
 	/**
@@ -156,19 +427,71 @@ public class JDrawingCanvas extends JComponent implements DrawingModelListener {
 	 * delegate is non-null. The result of the invocation of this method is updating
 	 * the canvas to its up to date state. Delegates to GeometricalObjectPainter
 	 * class for printing the objects.
+	 * 
+	 * The latest frame published by the renderer is copied, and the preview of
+	 * the current tool is drawn over it. If the size of the canvas or the scale
+	 * of its screen has changed since the last frame was requested, a new one
+	 * is requested. The paint is
+	 * timed only while the statistics are enabled.
 	 */
 	@Override
 	protected void paintComponent(Graphics g) {
+		boolean instrumented = statistics.isEnabled();
+		long start = instrumented ? System.nanoTime() : 0;
 		Graphics2D g2d = (Graphics2D) g;
 
-		g2d.setColor(CANVAS_COLOR);
-		g2d.fillRect(0, 0, getWidth(), getHeight());
-
-		goPainter.setG2d(g2d);
-		for (GeometricalObject object : documentModel.getObjects()) {
-			object.accept(goPainter);
+		Rectangle clip = g2d.getClipBounds();
+		if (clip == null) {
+			clip = new Rectangle(0, 0, getWidth(), getHeight());
 		}
+		if (!getSize().equals(requestedSize) || getScreenScale() != requestedScale) {
+			scheduleFrame();
+		}
+		renderer.paintFrame(g2d, clip);
 
 		info.getCurrentTool().paint(g2d);
+		if (statistics.isOverlayVisible()) {
+			paintOverlay(g2d);
+		}
+
+		if (instrumented) {
+			statistics.recordPaint(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Paints the overlay showing the paint statistics in the top left corner.
+	 *
+	 * @param g2d
+	 *            the graphics
+	 */
+	private void paintOverlay(Graphics2D g2d) {
+		//@formatter:off
+		String[] lines = {
+			String.format("paint   p50 %6.2f ms  p99 %6.2f ms  max %7.2f ms",
+						  statistics.getPaintTimeP50(), statistics.getPaintTimeP99(), statistics.getPaintTimeMax()),
+			String.format("frame   mean %6.2f ms  p99 %6.2f ms  count %d",
+						  statistics.getFrameTimeMean(), statistics.getFrameTimeP99(), statistics.getFrameCount()),
+			String.format("shapes  visited %d  drawn %d  culled %d",
+						  statistics.getLastFrameShapesVisited(),
+						  statistics.getLastFrameShapesDrawn(),
+						  statistics.getLastFrameShapesCulled()),
+			String.format("repaint requests %.1f/s", statistics.getRepaintRequestRate())
+		};
+		//@formatter:on
+
+		g2d.setFont(OVERLAY_FONT);
+		FontMetrics metrics = g2d.getFontMetrics();
+		int width = 0;
+		for (String line : lines) {
+			width = Math.max(width, metrics.stringWidth(line));
+		}
+
+		g2d.setColor(OVERLAY_BACKGROUND);
+		g2d.fillRect(0, 0, width + 2 * OVERLAY_MARGIN, lines.length * metrics.getHeight() + 2 * OVERLAY_MARGIN);
+		g2d.setColor(Color.WHITE);
+		for (int i = 0; i < lines.length; i++) {
+			g2d.drawString(lines[i], OVERLAY_MARGIN, OVERLAY_MARGIN + i * metrics.getHeight() + metrics.getAscent());
+		}
 	}
 }
@@ -36,8 +36,11 @@ import javax.swing.SwingUtilities;
 import hr.fer.zemris.java.hw16.jvdraw.actions.ExitAction;
 import hr.fer.zemris.java.hw16.jvdraw.actions.ExportAction;
 import hr.fer.zemris.java.hw16.jvdraw.actions.OpenAction;
+import hr.fer.zemris.java.hw16.jvdraw.actions.RecolorAction;
+import hr.fer.zemris.java.hw16.jvdraw.actions.RedoAction;
 import hr.fer.zemris.java.hw16.jvdraw.actions.SaveAction;
 import hr.fer.zemris.java.hw16.jvdraw.actions.SaveAsAction;
+import hr.fer.zemris.java.hw16.jvdraw.actions.UndoAction;
 import hr.fer.zemris.java.hw16.jvdraw.color.JColorArea;
 import hr.fer.zemris.java.hw16.jvdraw.color.JColorAreaLabel;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
@@ -48,6 +51,7 @@ import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
 import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
 import hr.fer.zemris.java.hw16.jvdraw.model.DrawingObjectListModel;
 import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
+import hr.fer.zemris.java.hw16.jvdraw.render.TileRasterizer;
 
 /**
  * The main window of the program. This class is responsible for setting up the
@@ -71,6 +75,8 @@ import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
  * has focus, the object selected in list is deleted; if user presses ‘+’ (plus)
  * key, the selected object is shifted one place up; if user presses ‘-’ (minus)
  * key, the selected object is shifted one place down changing the overlapping.
+ * ‘Page Up’ brings the selected object to the front, i.e. draws it over all
+ * other objects, while ‘Page Down’ sends it to the back.
  * 
  * Program also features menubar allowing the user for saving the drawn image in
  * JVD format, opening stored images as well as exporting the currently drawn
@@ -83,6 +89,9 @@ public class JVDraw extends JFrame {
 	/** The Constant FILE_MENU. */
 	private static final String FILE_MENU = "File";
 
+	/** The Constant EDIT_MENU. */
+	private static final String EDIT_MENU = "Edit";
+
 	/** The Constant serialVersionUID. */
 	private static final long serialVersionUID = 1L;
 
@@ -215,6 +224,24 @@ public class JVDraw extends JFrame {
 	 */
 	private ExitAction exitAction;
 
+	/**
+	 * The reference to the object responsible for undoing the most recent change
+	 * of the currently drawn image.
+	 */
+	private UndoAction undoAction;
+
+	/**
+	 * The reference to the object responsible for redoing the most recently
+	 * undone change of the currently drawn image.
+	 */
+	private RedoAction redoAction;
+
+	/**
+	 * The reference to the object responsible for recoloring all objects drawn in
+	 * a chosen color.
+	 */
+	private RecolorAction recolorAction;
+
 	/** The path of the currently drawn image. */
 	private Path imagePath;
 
@@ -340,6 +367,13 @@ public class JVDraw extends JFrame {
 		fileMenu.addSeparator();
 		fileMenu.add(exitAction);
 
+		JMenu editMenu = new JMenu(EDIT_MENU);
+		jMenuBar.add(editMenu);
+
+		editMenu.add(undoAction);
+		editMenu.add(redoAction);
+		editMenu.addSeparator();
+		editMenu.add(recolorAction);
 	}
 
 	/**
@@ -380,6 +414,24 @@ public class JVDraw extends JFrame {
 		exitAction.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("control X"));
 		exitAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_X);
 		exitAction.putValue(Action.SHORT_DESCRIPTION, "Closes current file.");
+
+		undoAction = new UndoAction(this);
+		undoAction.putValue(Action.NAME, "Undo");
+		undoAction.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("control Z"));
+		undoAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_U);
+		undoAction.putValue(Action.SHORT_DESCRIPTION, "Undoes the last change.");
+
+		redoAction = new RedoAction(this);
+		redoAction.putValue(Action.NAME, "Redo");
+		redoAction.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("control Y"));
+		redoAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_R);
+		redoAction.putValue(Action.SHORT_DESCRIPTION, "Redoes the last undone change.");
+
+		recolorAction = new RecolorAction(this);
+		recolorAction.putValue(Action.NAME, "Recolor");
+		recolorAction.putValue(Action.ACCELERATOR_KEY, KeyStroke.getKeyStroke("control R"));
+		recolorAction.putValue(Action.MNEMONIC_KEY, KeyEvent.VK_C);
+		recolorAction.putValue(Action.SHORT_DESCRIPTION, "Replaces a color in the whole image.");
 	}
 
 	/**
@@ -458,7 +510,7 @@ public class JVDraw extends JFrame {
 						//@formatter:off
 								try {
 									editor.checkEditing();
-									editor.acceptEditing();
+									documentModel.commitEdit(clickedObject, editor::acceptEditing);
 									
 								} catch (ObjectModelException exc) {
 									JOptionPane.showMessageDialog(getDrawingCanvas(), exc.getMessage(),"Warning", JOptionPane.WARNING_MESSAGE);
@@ -501,6 +553,16 @@ public class JVDraw extends JFrame {
 						jList.clearSelection();
 						break;
 
+					case KeyEvent.VK_PAGE_UP:
+						getDocumentModel().bringToFront(object);
+						jList.clearSelection();
+						break;
+
+					case KeyEvent.VK_PAGE_DOWN:
+						getDocumentModel().sendToBack(object);
+						jList.clearSelection();
+						break;
+
 					default:
 						break;
 					}
@@ -559,6 +621,7 @@ public class JVDraw extends JFrame {
 	 */
 	private void initializeCanvas() {
 		drawingCanvas = new JDrawingCanvas(this, documentModel);
+		drawingCanvas.getStatistics().register();
 	}
 
 	/**
@@ -664,11 +727,16 @@ public class JVDraw extends JFrame {
 	}
 
 	/**
-	 * The main method.
+	 * The main method. Turns off the subdivision of curves crossing the clip
+	 * before anything is drawn, unless it has been configured on the command
+	 * line, so that rasterized tiles match the sequential rendering.
 	 *
 	 * @param args the arguments
 	 */
 	public static void main(String[] args) {
+		if (System.getProperty(TileRasterizer.CURVE_SUBDIVIDER_PROPERTY) == null) {
+			System.setProperty(TileRasterizer.CURVE_SUBDIVIDER_PROPERTY, "false");
+		}
 		SwingUtilities.invokeLater(() -> new JVDraw().setVisible(true));
 	}
 }
\ No newline at end of file
@@ -3,14 +3,12 @@ package hr.fer.zemris.java.hw16.jvdraw.actions;
 import java.awt.event.ActionEvent;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.util.List;
 import java.util.function.Consumer;
 
 import javax.swing.AbstractAction;
 import javax.swing.JOptionPane;
 
 import hr.fer.zemris.java.hw16.jvdraw.JVDraw;
-import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
 import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
 
 /**
@@ -52,7 +50,9 @@ public class ExitAction extends AbstractAction {
 
 	/**
 	 * Helper method used by both OpenAction and ExitAction. Checks whether the
-	 * currently open image has been edited.
+	 * currently open image has been edited since it was last saved or opened,
+	 * which the document model answers in constant time without reading the
+	 * saved file.
 	 * 
 	 * @param e
 	 *            invoker
@@ -62,7 +62,6 @@ public class ExitAction extends AbstractAction {
 	 *            message to be written out in case of corrupt jvd file
 	 */
 	public void checkIfImageIsEdited(ActionEvent e, Consumer<JVDraw> action, String errorMessage) {
-		List<GeometricalObject> currentlyDrawnObjects = window.getDocumentModel().getObjects();
 		Path savedPath = window.getImagePath();
 
 		boolean isEdited = false;
@@ -71,7 +70,7 @@ public class ExitAction extends AbstractAction {
 				throw new ObjectModelException("File " + String.valueOf(savedPath) + " has been deleted.");
 			}
 
-			isEdited = UtilityProvider.isImageEdited(savedPath, currentlyDrawnObjects);
+			isEdited = window.getDocumentModel().isModified();
 
 		} catch (ObjectModelException exc) {
 			String exitMessage = exc.getMessage() + errorMessage;
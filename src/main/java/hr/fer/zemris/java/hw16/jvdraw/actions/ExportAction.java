@@ -1,6 +1,5 @@
 package hr.fer.zemris.java.hw16.jvdraw.actions;
 
-import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.event.ActionEvent;
 import java.awt.image.BufferedImage;
@@ -10,16 +9,19 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
 
 import javax.imageio.ImageIO;
 import javax.swing.AbstractAction;
 import javax.swing.JFileChooser;
 import javax.swing.JOptionPane;
+import javax.swing.SwingWorker;
 
 import hr.fer.zemris.java.hw16.jvdraw.JVDraw;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectBBCalculator;
-import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter;
+import hr.fer.zemris.java.hw16.jvdraw.render.PaintStatistics;
+import hr.fer.zemris.java.hw16.jvdraw.render.TileRasterizer;
 
 import static hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas.CANVAS_COLOR;
 
@@ -37,12 +39,6 @@ public class ExportAction extends AbstractAction {
 	/** The main window. */
 	private JVDraw window;
 
-	/**
-	 * The object reponsible for calcualting the minimal bounding rectangle that
-	 * covers all the drawn objects.
-	 */
-	private GeometricalObjectBBCalculator bbCalculator;
-
 	/**
 	 * Instantiates a new export action.
 	 *
@@ -51,8 +47,6 @@ public class ExportAction extends AbstractAction {
 	 */
 	public ExportAction(JVDraw window) {
 		this.window = window;
-
-		bbCalculator = new GeometricalObjectBBCalculator();
 	}
 
 	/**
@@ -61,7 +55,7 @@ public class ExportAction extends AbstractAction {
 	 */
 	@Override
 	public void actionPerformed(ActionEvent e) {
-		List<GeometricalObject> objects = window.getDocumentModel().getObjects();
+		List<GeometricalObject> objects = window.getDocumentModel().snapshot();
 		if (objects.isEmpty()) {
 			JOptionPane.showMessageDialog(window, "Cannot export objects from empty canvas.", "Export not available",
 					JOptionPane.INFORMATION_MESSAGE);
@@ -101,28 +95,6 @@ public class ExportAction extends AbstractAction {
 										  JOptionPane.INFORMATION_MESSAGE);
 		}
 
-		for (GeometricalObject object : objects) {
-			object.accept(bbCalculator);
-		}
-		Rectangle boundingBox = bbCalculator.getBoundingBox();
-
-		BufferedImage bufferedImage = new BufferedImage(boundingBox.width,
-														boundingBox.height,
-														BufferedImage.TYPE_3BYTE_BGR);
-		Graphics2D g2d = bufferedImage.createGraphics();
-
-		g2d.translate(-boundingBox.x, -boundingBox.y);
-
-		g2d.setColor(CANVAS_COLOR);
-		g2d.fillRect(boundingBox.x, boundingBox.y, boundingBox.width, boundingBox.height);
-
-		GeometricalObjectPainter goPainter = window.getDrawingCanvas().getGoPainter();
-		goPainter.setG2d(g2d);
-		for (GeometricalObject object : objects) {
-			object.accept(goPainter);
-		}
-		g2d.dispose();
-
 		if (dialogResult == JFileChooser.APPROVE_OPTION) {
 			int overwriteResult = 0;
 			if (Files.exists(savePath)) {
@@ -138,18 +110,76 @@ public class ExportAction extends AbstractAction {
 			}
 		}
 
-		try {
-			ImageIO.write(bufferedImage,
-						  UtilityProvider.acquireExtension(String.valueOf(savePath)),
-						  savePath.toFile());
-			
-		} catch (IOException e1) {
-			JOptionPane.showMessageDialog(window, "Error exporting image.", "Error occurred",
-					JOptionPane.ERROR_MESSAGE);
-			return;
-		}
-		JOptionPane.showMessageDialog(window, "Image successfully exported.", "Image exported",
-				JOptionPane.INFORMATION_MESSAGE);
+		exportInBackground(objects, savePath);
 	}
 
+	/**
+	 * Rasterizes the given snapshot of the drawn objects and writes the image to
+	 * the given path on a background thread, so the user can keep drawing in the
+	 * meantime.
+	 *
+	 * @param objects
+	 *            the snapshot of the drawn objects
+	 * @param savePath
+	 *            the path of the exported image
+	 */
+	private void exportInBackground(List<GeometricalObject> objects, Path savePath) {
+		new SwingWorker<Void, Void>() {
+
+			@Override
+			protected Void doInBackground() throws IOException {
+				ImageIO.write(rasterize(objects, window.getDrawingCanvas().getStatistics()),
+							  UtilityProvider.acquireExtension(String.valueOf(savePath)),
+							  savePath.toFile());
+				return null;
+			}
+
+			@Override
+			protected void done() {
+				try {
+					get();
+				} catch (InterruptedException | ExecutionException e1) {
+					JOptionPane.showMessageDialog(window, "Error exporting image.", "Error occurred",
+							JOptionPane.ERROR_MESSAGE);
+					return;
+				}
+				JOptionPane.showMessageDialog(window, "Image successfully exported.", "Image exported",
+						JOptionPane.INFORMATION_MESSAGE);
+			}
+		}.execute();
+	}
+
+	/**
+	 * Draws the given objects into an image covering their bounding box. The
+	 * image is rasterized in parallel tiles, each with its own painter, so this
+	 * method can be called from any thread. Every export uses a rasterizer of
+	 * its own, so the shapes it records are its own even while other exports
+	 * or the canvas are rasterizing.
+	 *
+	 * @param objects
+	 *            the objects
+	 * @param statistics
+	 *            the statistics the rasterization is recorded in
+	 * @return the image
+	 */
+	static BufferedImage rasterize(List<GeometricalObject> objects, PaintStatistics statistics) {
+		boolean instrumented = statistics.isEnabled();
+		long start = instrumented ? System.nanoTime() : 0;
+		TileRasterizer rasterizer = new TileRasterizer(CANVAS_COLOR);
+
+		GeometricalObjectBBCalculator bbCalculator = new GeometricalObjectBBCalculator();
+		for (GeometricalObject object : objects) {
+			object.accept(bbCalculator);
+		}
+		Rectangle boundingBox = bbCalculator.getBoundingBox();
+
+		BufferedImage image = rasterizer.rasterize(objects, boundingBox, BufferedImage.TYPE_3BYTE_BGR);
+
+		if (instrumented) {
+			long visited = rasterizer.getVisitedCount();
+			long simplified = rasterizer.getSimplifiedCount();
+			statistics.recordExport(System.nanoTime() - start, visited, visited - simplified);
+		}
+		return image;
+	}
 }
@@ -2,6 +2,7 @@ package hr.fer.zemris.java.hw16.jvdraw.actions;
 
 import java.awt.event.ActionEvent;
 import java.io.File;
+import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Arrays;
@@ -16,7 +17,8 @@ import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
 import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
 
 /**
- * The class responsible for opening an existing image stored in jvd format.
+ * The class responsible for opening an existing image stored in jvd or jvdb
+ * format.
  * 
  * @author Damjan Vučina
  */
@@ -60,42 +62,36 @@ public class OpenAction extends AbstractAction {
 
 		//@formatter:off
 		if (!Files.isReadable(filePath) ||
-			UtilityProvider.isInvalidExtension(filePath, Arrays.asList(UtilityProvider.getJvdExtension()))) {
+			UtilityProvider.isInvalidExtension(filePath, Arrays.asList(UtilityProvider.getDocumentExtensions()))) {
 			JOptionPane.showMessageDialog(
 						window,
-						fileName.getAbsolutePath() + " is not readable. Supported extensions: .jvd",
+						fileName.getAbsolutePath() + " is not readable. Supported extensions: .jvd, .jvdb",
 						"File not readable",
 						JOptionPane.ERROR_MESSAGE);
 			return;
 		}
 		
-		List<String> lines = UtilityProvider.loadFile(filePath);
 		List<GeometricalObject> loadedObjects;
 		try {
-			loadedObjects = UtilityProvider.fromFile(lines);
+			loadedObjects = UtilityProvider.loadObjects(filePath);
 		} catch (ObjectModelException exc) {
 			JOptionPane.showMessageDialog(window,
 										  exc.getMessage(),
 										  "Error reading file",
 										  JOptionPane.WARNING_MESSAGE);
 					  					  return;
-		}
-		
-		
-		if(loadedObjects == null) {
+		} catch (IOException exc) {
 			JOptionPane.showMessageDialog(window,
-										  "Requested file name is not valid. Supported file extension: .jvd",
-										  "Invalid file name",
-										  JOptionPane.WARNING_MESSAGE);
+										  "Cannot read " + fileName.getAbsolutePath() + ": " + exc.getMessage(),
+										  "Error reading file",
+										  JOptionPane.ERROR_MESSAGE);
 			return;
 		}
 		//@formatter:on
 
-		window.getDocumentModel().getObjects().clear();
 		window.setImagePath(filePath);
-		for (GeometricalObject object : loadedObjects) {
-			window.getDocumentModel().add(object);
-		}
+		window.getDocumentModel().setObjects(loadedObjects);
+		window.getDocumentModel().markSaved();
 	}
 
 }
@@ -0,0 +1,81 @@
+package hr.fer.zemris.java.hw16.jvdraw.actions;
+
+import java.awt.Color;
+import java.awt.event.ActionEvent;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.swing.AbstractAction;
+import javax.swing.JColorChooser;
+import javax.swing.JOptionPane;
+
+import hr.fer.zemris.java.hw16.jvdraw.JVDraw;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+
+/**
+ * The class responsible for recoloring all objects of the currently drawn
+ * image that are drawn in a chosen color. The user picks one of the colors the
+ * objects of the document are drawn in and the color it should be replaced
+ * with.
+ * 
+ * @author Damjan Vučina
+ */
+public class RecolorAction extends AbstractAction {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The main window. */
+	private JVDraw window;
+
+	/**
+	 * Instantiates a new recolor action.
+	 *
+	 * @param window
+	 *            the window
+	 */
+	public RecolorAction(JVDraw window) {
+		this.window = window;
+	}
+
+	/**
+	 * Method invoked when recolor action occured. Asks the user for the color to
+	 * be replaced and the new color, then recolors the image.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		DocumentModel model = window.getDocumentModel();
+		if (model.getSize() == 0) {
+			JOptionPane.showMessageDialog(window,
+										  "Cannot recolor objects of empty canvas.",
+										  "Recolor not available",
+										  JOptionPane.INFORMATION_MESSAGE);
+			return;
+		}
+
+		Map<String, Color> colors = new LinkedHashMap<>();
+		for (Color color : model.getColors()) {
+			colors.putIfAbsent(String.format("#%02X%02X%02X", color.getRed(), color.getGreen(), color.getBlue()), color);
+		}
+
+		Object selected = JOptionPane.showInputDialog(window,
+													  "Color to be replaced:",
+													  "Recolor",
+													  JOptionPane.QUESTION_MESSAGE,
+													  null,
+													  colors.keySet().toArray(),
+													  null);
+		if (selected == null) {
+			return;
+		}
+
+		Color from = colors.get(selected);
+		Color to = JColorChooser.showDialog(window, "New color", from);
+		if (to == null) {
+			return;
+		}
+
+		model.recolor(from, to);
+	}
+
+}
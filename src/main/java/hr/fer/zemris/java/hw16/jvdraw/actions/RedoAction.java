@@ -0,0 +1,42 @@
+package hr.fer.zemris.java.hw16.jvdraw.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+
+import hr.fer.zemris.java.hw16.jvdraw.JVDraw;
+
+/**
+ * The class responsible for redoing the most recently undone change of the
+ * currently drawn image. Delegates to the history kept by the document model.
+ * 
+ * @author Damjan Vučina
+ */
+public class RedoAction extends AbstractAction {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The main window. */
+	private JVDraw window;
+
+	/**
+	 * Instantiates a new redo action.
+	 *
+	 * @param window
+	 *            the window
+	 */
+	public RedoAction(JVDraw window) {
+		this.window = window;
+	}
+
+	/**
+	 * Method invoked when redo action occured. Redoes the most recently undone
+	 * change, if there is one.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		window.getDocumentModel().getHistory().redo();
+	}
+
+}
@@ -2,6 +2,7 @@ package hr.fer.zemris.java.hw16.jvdraw.actions;
 
 import java.awt.event.ActionEvent;
 import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 import javax.swing.AbstractAction;
@@ -9,12 +10,12 @@ import javax.swing.JOptionPane;
 
 import hr.fer.zemris.java.hw16.jvdraw.JVDraw;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
-import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+import hr.fer.zemris.java.hw16.jvdraw.io.ParallelJvdWriter;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdbSaver;
 
 /**
  * The class responsible for updating the currently drawn image. Delegates the
- * process of saving to the instance of GeometricalObjectSaver class since
- * Visitor design pattern is in use.
+ * process of saving to the instance of ParallelJvdWriter or JvdbSaver class.
  * 
  * @author Damjan Vučina
  */
@@ -27,9 +28,17 @@ public class SaveAction extends AbstractAction {
 	private JVDraw window;
 
 	/**
-	 * Reference to the object in charge of generating JVD representations of images
+	 * Reference to the object in charge of writing JVD representations of
+	 * images, encoding shards of the image concurrently and reusing its buffers
+	 * between saves
 	 */
-	private GeometricalObjectSaver goSaver;
+	private ParallelJvdWriter jvdWriter;
+
+	/**
+	 * Reference to the object in charge of generating JVDB representations of
+	 * images
+	 */
+	private JvdbSaver jvdbSaver;
 
 	/**
 	 * Instantiates a new save action.
@@ -40,7 +49,8 @@ public class SaveAction extends AbstractAction {
 	public SaveAction(JVDraw window) {
 		this.window = window;
 
-		goSaver = new GeometricalObjectSaver();
+		jvdWriter = new ParallelJvdWriter();
+		jvdbSaver = new JvdbSaver();
 	}
 
 	/**
@@ -59,16 +69,24 @@ public class SaveAction extends AbstractAction {
 
 	/**
 	 * Initiates saving JVD representation of image by utilizing instance of
-	 * GeometricalObjectSaver class
+	 * ParallelJvdWriter class, which encodes shards of a snapshot of the image
+	 * concurrently and writes them to the file in order, or JVDB representation
+	 * by utilizing instance of JvdbSaver class if the image path has the jvdb
+	 * extension
 	 */
 	public void performSaving() {
-		List<GeometricalObject> objects = window.getDocumentModel().getObjects();
-		for (GeometricalObject object : objects) {
-			object.accept(goSaver);
-		}
+		Path imagePath = window.getImagePath();
+		List<GeometricalObject> objects = window.getDocumentModel().snapshot();
 
 		try {
-			goSaver.save(window.getImagePath());
+			if (UtilityProvider.isJvdbFile(imagePath)) {
+				for (GeometricalObject object : objects) {
+					object.accept(jvdbSaver);
+				}
+				jvdbSaver.save(imagePath);
+			} else {
+				jvdWriter.save(objects, imagePath);
+			}
 		} catch (IOException exc) {
 			JOptionPane.showMessageDialog(window,
 										  "Error saving file",
@@ -76,6 +94,8 @@ public class SaveAction extends AbstractAction {
 										  JOptionPane.ERROR_MESSAGE);
 			return;
 		}
+
+		window.getDocumentModel().markSaved();
 	}
 
 }
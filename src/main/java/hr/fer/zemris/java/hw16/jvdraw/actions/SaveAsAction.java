@@ -15,8 +15,8 @@ import static hr.fer.zemris.java.hw16.jvdraw.actions.UtilityProvider.JVD_EXTENSI
 
 /**
  * The class responsible for saving the current image as new document in jvd
- * format. Delegates the process of saving to the instance of
- * GeometricalObjectSaver class since Visitor design pattern is in use.
+ * format, or in the binary jvdb format if the chosen name has its extension.
+ * Delegates the process of saving to the save action.
  * 
  * @author Damjan Vučina
  */
@@ -57,9 +57,10 @@ public class SaveAsAction extends AbstractAction {
 		}
 
 		Path savePath = jfc.getSelectedFile().toPath();
-		if (UtilityProvider.isInvalidExtension(savePath, Arrays.asList(UtilityProvider.getJvdExtension()))) {
-			JOptionPane.showMessageDialog(window, "Requested file name is not valid. Supported file extension: .jvd",
-					"Invalid file name", JOptionPane.WARNING_MESSAGE);
+		if (UtilityProvider.isInvalidExtension(savePath, Arrays.asList(UtilityProvider.getDocumentExtensions()))) {
+			JOptionPane.showMessageDialog(window,
+					"Requested file name is not valid. Supported file extensions: .jvd, .jvdb", "Invalid file name",
+					JOptionPane.WARNING_MESSAGE);
 			return;
 		}
 		if (UtilityProvider.extensionNotSet(savePath)) {
@@ -0,0 +1,42 @@
+package hr.fer.zemris.java.hw16.jvdraw.actions;
+
+import java.awt.event.ActionEvent;
+
+import javax.swing.AbstractAction;
+
+import hr.fer.zemris.java.hw16.jvdraw.JVDraw;
+
+/**
+ * The class responsible for undoing the most recent change of the currently
+ * drawn image. Delegates to the history kept by the document model.
+ * 
+ * @author Damjan Vučina
+ */
+public class UndoAction extends AbstractAction {
+
+	/** The Constant serialVersionUID. */
+	private static final long serialVersionUID = 1L;
+
+	/** The main window. */
+	private JVDraw window;
+
+	/**
+	 * Instantiates a new undo action.
+	 *
+	 * @param window
+	 *            the window
+	 */
+	public UndoAction(JVDraw window) {
+		this.window = window;
+	}
+
+	/**
+	 * Method invoked when undo action occured. Undoes the most recent change, if
+	 * there is one.
+	 */
+	@Override
+	public void actionPerformed(ActionEvent e) {
+		window.getDocumentModel().getHistory().undo();
+	}
+
+}
@@ -1,23 +1,17 @@
 package hr.fer.zemris.java.hw16.jvdraw.actions;
 
-import java.awt.Color;
-import java.awt.Point;
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
+import java.io.InputStream;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.Path;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
-import java.util.regex.Pattern;
 
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
-import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
-import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
-import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdLoader;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdTokenizer;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdbReader;
 import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
 
 /**
@@ -50,39 +44,22 @@ public class UtilityProvider {
 	/** The Constant JVD_EXTENSION. */
 	public static final String JVD_EXTENSION = "jvd";
 
-	/** The Constant EXPORT_EXTENSIONS. */
-	public static final String[] EXPORT_EXTENSIONS = new String[] { "jpg", "jpeg", "gif", "png" };
-
-	/** The Constant WHITESPACE. */
-	private static final String WHITESPACE = " ";
+	/** The Constant JVDB_EXTENSION, the extension of binary documents. */
+	public static final String JVDB_EXTENSION = "jvdb";
 
-	/** The regex for validating JVD representation of a line */
-	public static final String LINE_REGEX = "LINE\\s(\\d+\\s){2}(\\d+\\s){2}(\\d+\\s\\d+\\s\\d+)";
+	/** The Constant DOCUMENT_EXTENSIONS. */
+	public static final String[] DOCUMENT_EXTENSIONS = new String[] { JVD_EXTENSION, JVDB_EXTENSION };
 
-	/** The regex for validating JVD representation of a circle */
-	public static final String CIRCLE_REGEX = "CIRCLE\\s(\\d+\\s){2}(\\d+\\s){1}(\\d+\\s\\d+\\s\\d+)";
-
-	/** The regex for validating JVD representation of a filled circle */
-	public static final String FILLED_CIRCLE_REGEX = "FCIRCLE\\s(\\d+\\s){2}(\\d+\\s){1}(\\d+\\s){3}(\\d+\\s\\d+\\s\\d+)";
+	/** The Constant EXPORT_EXTENSIONS. */
+	public static final String[] EXPORT_EXTENSIONS = new String[] { "jpg", "jpeg", "gif", "png" };
 
 	/** The jvd filter. */
-	private static FileNameExtensionFilter jvdFilter = new FileNameExtensionFilter(".jvd", "jvd");
+	private static FileNameExtensionFilter jvdFilter = new FileNameExtensionFilter(".jvd and .jvdb", "jvd", "jvdb");
 
 	/** The export filter. */
 	private static FileNameExtensionFilter exportFilter = new FileNameExtensionFilter("jpg, png and gif files", "jpg",
 			"jpeg", "png", "gif");
 
-	/** The line pattern. */
-	private static Pattern linePattern = Pattern.compile(LINE_REGEX);
-
-	/** The circle pattern. */
-	private static Pattern circlePattern = Pattern.compile(CIRCLE_REGEX);
-
-	/** The filled circle pattern. */
-	private static Pattern filledCirclePattern = Pattern.compile(FILLED_CIRCLE_REGEX);
-
-	private static GeometricalObjectSaver goSaver = new GeometricalObjectSaver();
-
 	/**
 	 * Gets the jvd filter.
 	 *
@@ -111,95 +88,90 @@ public class UtilityProvider {
 	}
 
 	/**
-	 * Gets the export extensions.
+	 * Gets the extensions of the documents, text and binary.
 	 *
-	 * @return the export extensions
+	 * @return the document extensions
 	 */
-	public static String[] getExportExtensions() {
-		return EXPORT_EXTENSIONS;
+	public static String[] getDocumentExtensions() {
+		return DOCUMENT_EXTENSIONS;
 	}
 
 	/**
-	 * Generates a list of geometrical objects by reading and inspecting the JVD
-	 * file.
+	 * Checks whether the document at the given path is stored in the binary
+	 * JVDB format, judging by its extension.
 	 *
-	 * @param jvdLines
-	 *            the jvd lines
-	 * @return the list
+	 * @param path
+	 *            the path
+	 * @return true, if the document is binary
 	 */
-	public static List<GeometricalObject> fromFile(List<String> jvdLines) {
-		List<GeometricalObject> objects = new ArrayList<>();
-
-		for (String jvdLine : jvdLines) {
-			if (linePattern.matcher(jvdLine).matches()) {
-				objects.add(createLine(extractElements(jvdLine)));
-
-			} else if (circlePattern.matcher(jvdLine).matches()) {
-				objects.add(createCircle(extractElements(jvdLine)));
-
-			} else if (filledCirclePattern.matcher(jvdLine).matches()) {
-				objects.add(createFilledCircle(extractElements(jvdLine)));
-
-			} else {
-				throw new ObjectModelException("Unknown geometrical object in JVD file.");
-			}
-		}
-
-		return objects;
+	public static boolean isJvdbFile(Path path) {
+		Path fileName = path.getFileName();
+		return fileName != null && fileName.toString().endsWith("." + JVDB_EXTENSION);
 	}
 
 	/**
-	 * Extracts objects' attributes from jvd file.
+	 * Gets the export extensions.
 	 *
-	 * @param jvdLine
-	 *            the jvd line
-	 * @return the int[]
+	 * @return the export extensions
 	 */
-	//@formatter:off
-	private static int[] extractElements(String jvdLine) {
-		return Arrays.stream(jvdLine.split(WHITESPACE))
-					 .skip(1) //skip LINE/CIRCLE/FCIRCLE identifier
-					 .mapToInt(Integer::parseInt)
-					 .toArray();
+	public static String[] getExportExtensions() {
+		return EXPORT_EXTENSIONS;
 	}
 
 	/**
-	 * Creates a filled circle.
+	 * Reads the geometrical objects stored in the document at the given path,
+	 * in the JVDB format if the path has its extension and in the JVD format
+	 * otherwise. JVD files are memory-mapped and parsed in chunks in parallel.
 	 *
-	 * @param elements the elements
-	 * @return the filled circle
-	 */
-	private static FilledCircle createFilledCircle(int[] elements) {
-		return new FilledCircle(new Point(elements[0], elements[1]),
-				  				new Point(elements[0], elements[1] + elements[2]),
-				  				new Color(elements[3], elements[4], elements[5]),
-				  				new Color(elements[6], elements[7], elements[8]));
+	 * @param filePath
+	 *            the file path
+	 * @return the objects, in drawing order
+	 * @throws IOException
+	 *             if reading the file fails
+	 * @throws ObjectModelException
+	 *             if the file is malformed, with the location of the error
+	 */
+	public static List<GeometricalObject> loadObjects(Path filePath) throws IOException {
+		if (isJvdbFile(filePath)) {
+			return JvdbReader.load(filePath);
+		}
+
+		return new JvdLoader().load(filePath);
 	}
 
 	/**
-	 * Creates a circle.
+	 * Generates a list of geometrical objects by reading the JVD representation
+	 * from the given stream.
 	 *
-	 * @param elements the elements
-	 * @return the circle
+	 * @param stream
+	 *            the stream
+	 * @return the objects, in drawing order
+	 * @throws IOException
+	 *             if reading the stream fails
+	 * @throws ObjectModelException
+	 *             if the input is malformed, with the line and column of the
+	 *             error
 	 */
-	private static Circle createCircle(int[] elements) {
-		return new Circle(new Point(elements[0], elements[1]),
-						  new Point(elements[0], elements[1] + elements[2]),
-						  new Color(elements[3], elements[4], elements[5]));
+	public static List<GeometricalObject> fromStream(InputStream stream) throws IOException {
+		return JvdLoader.readObjects(new JvdTokenizer(stream));
 	}
-	
+
 	/**
-	 * Creates a line.
+	 * Generates a list of geometrical objects by reading the JVD representation
+	 * from the given channel.
 	 *
-	 * @param elements the elements
-	 * @return the line
+	 * @param channel
+	 *            the channel
+	 * @return the objects, in drawing order
+	 * @throws IOException
+	 *             if reading the channel fails
+	 * @throws ObjectModelException
+	 *             if the input is malformed, with the line and column of the
+	 *             error
 	 */
-	private static Line createLine(int[] elements) {
-		return new Line(new Point(elements[0], elements[1]),
-						new Point(elements[2], elements[3]),
-						new Color(elements[4], elements[5], elements[6]));
+	public static List<GeometricalObject> fromChannel(ReadableByteChannel channel) throws IOException {
+		return JvdLoader.readObjects(new JvdTokenizer(channel));
 	}
-	//@formatter:on
 
 	/**
 	 * Checks if the path is invalid, i.e. requested filename contains unsupported
@@ -234,85 +206,6 @@ public class UtilityProvider {
 		return p.substring(p.indexOf(".") + 1);
 	}
 
-	/**
-	 * Checks if is image edited.
-	 *
-	 * @param savedPath
-	 *            the saved path
-	 * @param currentlyDrawnObjects
-	 *            the currently drawn objects
-	 * @return true, if is image edited
-	 */
-	public static boolean isImageEdited(Path savedPath, List<GeometricalObject> currentlyDrawnObjects) {
-		if (currentlyDrawnObjects.isEmpty()) {// canvas is empty
-			return false;
-
-		} else {
-			if (savedPath == null) {// canvas is not empty and not saved
-				return true;
-
-			} else {
-				return areJvdRepresentationsDifferent(savedPath, currentlyDrawnObjects);
-			}
-		}
-	}
-
-	/**
-	 * Checks whether two jvd representations are different.
-	 *
-	 * @param savedPath
-	 *            the saved path
-	 * @param currentlyDrawnObjects
-	 *            the currently drawn objects
-	 * @return true, if successful
-	 */
-	private static boolean areJvdRepresentationsDifferent(Path savedPath,
-			List<GeometricalObject> currentlyDrawnObjects) {
-
-		String currentlyDrawnJvd = generateJVD(currentlyDrawnObjects);
-		List<String> jvdLines = UtilityProvider.loadFile(savedPath);
-
-		List<GeometricalObject> savedObjects = UtilityProvider.fromFile(jvdLines);
-		String savedJvd = generateJVD(savedObjects);
-
-		return !savedJvd.equals(currentlyDrawnJvd);
-	}
-
-	/**
-	 * Initiates generating JVD representation of an image defined by the given
-	 * objects
-	 * 
-	 * @param objects
-	 *            objects defining the image
-	 * @return JVD representation of an image defined by the given objects
-	 */
-	private static String generateJVD(List<GeometricalObject> objects) {
-		for (GeometricalObject object : objects) {
-			object.accept(goSaver);
-		}
-
-		return goSaver.getJVD();
-	}
-
-	/**
-	 * Loads file from the specified path.
-	 *
-	 * @param filePath
-	 *            the file path
-	 * @return the list
-	 */
-	public static List<String> loadFile(Path filePath) {
-		List<String> jvdLines = null;
-
-		try {
-			jvdLines = Files.readAllLines(filePath, StandardCharsets.UTF_8);
-		} catch (IOException e1) {
-			e1.printStackTrace();
-		}
-
-		return jvdLines;
-	}
-
 	/**
 	 * Checks whether the extension is not set.
 	 *
@@ -6,6 +6,7 @@ import java.awt.Point;
 
 import hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas;
 import hr.fer.zemris.java.hw16.jvdraw.color.IColorProvider;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
 import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
 
 /**
@@ -50,6 +51,38 @@ public class Circle extends GeometricalObject {
 		setFgColor(fgColor);
 	}
 
+	/**
+	 * Instantiates a new circle of the color held by the given palette entry,
+	 * which is shared rather than copied.
+	 *
+	 * @param startPoint
+	 *            the start point(i.e. center)
+	 * @param endPoint
+	 *            the end point(i.e. a Point that belongs to the circle)
+	 * @param fgColor
+	 *            the palette entry holding the color of the circle
+	 */
+	public Circle(Point startPoint, Point endPoint, ColorPalette.Entry fgColor) {
+		super(startPoint, endPoint, fgColor);
+	}
+
+	/**
+	 * Instantiates a new circle with the given identifier, e.g. a view of a
+	 * circle stored by a DocumentModel.
+	 *
+	 * @param id
+	 *            the identifier of the circle
+	 * @param startPoint
+	 *            the start point(i.e. center)
+	 * @param endPoint
+	 *            the end point(i.e. a Point that belongs to the circle)
+	 * @param fgColor
+	 *            the palette entry holding the color of the circle
+	 */
+	public Circle(long id, Point startPoint, Point endPoint, ColorPalette.Entry fgColor) {
+		super(id, startPoint, endPoint, fgColor);
+	}
+
 	/**
 	 * Method used by GeometricalObjects allowing them to send references to the
 	 * object in charge of drawing on the canvas. Necessary since Visitor pattern is
@@ -97,6 +130,16 @@ public class Circle extends GeometricalObject {
 		return new Circle(getStartPoint(), getEndPoint(), getFgColorProvider().getCurrentColor());
 	}
 
+	/**
+	 * Creates a detached copy of the circle.
+	 *
+	 * @return the copy
+	 */
+	@Override
+	public GeometricalObject copy() {
+		return new Circle(new Point(getStartPoint()), new Point(getEndPoint()), getFgColor());
+	}
+
 	/**
 	 * Paints the geometrical object on the canvas.
 	 *
@@ -3,9 +3,12 @@ package hr.fer.zemris.java.hw16.jvdraw.geometry;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Point;
+import java.util.Arrays;
+import java.util.Objects;
 
 import hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas;
 import hr.fer.zemris.java.hw16.jvdraw.color.IColorProvider;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
 import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
 
 /**
@@ -21,8 +24,8 @@ public class FilledCircle extends Circle {
 	/** The Constant FILLED_CIRCLE. */
 	private static final String FILLED_CIRCLE = "Filled circle";
 
-	/** The background color. */
-	private Color bgColor;
+	/** The palette entry holding the background color. */
+	private ColorPalette.Entry bgColor;
 
 	/**
 	 * The reference to the object responsible for tracking down the currently
@@ -67,6 +70,38 @@ public class FilledCircle extends Circle {
 
 		setBgColor(bgColor);
 	}
+
+	/**
+	 * Instantiates a new filled circle of the colors held by the given palette
+	 * entries, which are shared rather than copied.
+	 *
+	 * @param startPoint the start point
+	 * @param endPoint the end point
+	 * @param fgColor the palette entry holding the fg color
+	 * @param bgColor the palette entry holding the bg color
+	 */
+	public FilledCircle(Point startPoint, Point endPoint, ColorPalette.Entry fgColor, ColorPalette.Entry bgColor) {
+		super(startPoint, endPoint, fgColor);
+
+		this.bgColor = Objects.requireNonNull(bgColor, "Color cannot be null.");
+	}
+
+	/**
+	 * Instantiates a new filled circle with the given identifier, e.g. a view of
+	 * a filled circle stored by a DocumentModel.
+	 *
+	 * @param id the identifier of the filled circle
+	 * @param startPoint the start point
+	 * @param endPoint the end point
+	 * @param fgColor the palette entry holding the fg color
+	 * @param bgColor the palette entry holding the bg color
+	 */
+	public FilledCircle(long id, Point startPoint, Point endPoint,
+						ColorPalette.Entry fgColor, ColorPalette.Entry bgColor) {
+		super(id, startPoint, endPoint, fgColor);
+
+		this.bgColor = Objects.requireNonNull(bgColor, "Color cannot be null.");
+	}
 	//@formatter:on
 
 	/**
@@ -76,7 +111,7 @@ public class FilledCircle extends Circle {
 	 *            the new bg color
 	 */
 	public void setBgColor(Color bgColor) {
-		this.bgColor = bgColor;
+		this.bgColor = toEntry(bgColor);
 	}
 
 	/**
@@ -85,7 +120,35 @@ public class FilledCircle extends Circle {
 	 * @return the bg color
 	 */
 	public Color getBgColor() {
-		return bgColor != null ? bgColor : bgColorProvider.getCurrentColor();
+		return bgColor != null ? bgColor.getColor() : bgColorProvider.getCurrentColor();
+	}
+
+	/**
+	 * Gets the palette entry holding the background color.
+	 *
+	 * @return the palette entry, or null if the color has not been set
+	 */
+	public ColorPalette.Entry getBgColorEntry() {
+		return bgColor;
+	}
+
+	/**
+	 * Sets the palette of the document this filled circle belongs to, interning
+	 * both its foreground and background color into it.
+	 *
+	 * @param palette
+	 *            the palette
+	 */
+	@Override
+	public void setPalette(ColorPalette palette) {
+		if (palette == getPalette()) {
+			return;
+		}
+		super.setPalette(palette);
+
+		if (bgColor != null && !palette.contains(bgColor)) {
+			bgColor = palette.intern(bgColor.getColor());
+		}
 	}
 
 	/**
@@ -107,6 +170,36 @@ public class FilledCircle extends Circle {
 		this.bgColorProvider = bgColorProvider;
 	}
 
+	/**
+	 * Captures the points, the foreground and the background color of this
+	 * filled circle.
+	 *
+	 * @return the captured state
+	 */
+	@Override
+	public int[] saveState() {
+		int[] state = super.saveState();
+		int[] extended = Arrays.copyOf(state, state.length + 2);
+		extended[state.length] = paletteIndexOf(bgColor);
+		extended[state.length + 1] = getBgColor().getRGB();
+
+		return extended;
+	}
+
+	/**
+	 * Restores the points, the foreground and the background color of this
+	 * filled circle.
+	 *
+	 * @param state
+	 *            the captured state
+	 */
+	@Override
+	public void restoreState(int[] state) {
+		super.restoreState(state);
+
+		bgColor = toEntry(state[state.length - 2], state[state.length - 1]);
+	}
+
 	/**
 	 * Method used by GeometricalObjects allowing them to send references
 	 * to the object in charge of drawing on the canvas. Necessary since Visitor pattern is in use.
@@ -156,6 +249,19 @@ public class FilledCircle extends Circle {
 								getFgColorProvider().getCurrentColor(),
 								getBgColorProvider().getCurrentColor());
 	}
+
+	/**
+	 * Creates a detached copy of the filled circle.
+	 *
+	 * @return the copy
+	 */
+	@Override
+	public GeometricalObject copy() {
+		return new FilledCircle(new Point(getStartPoint()),
+								new Point(getEndPoint()),
+								getFgColor(),
+								getBgColor());
+	}
 	//@formatter:on
 
 	/**
@@ -6,10 +6,12 @@ import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
 
 import hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas;
 import hr.fer.zemris.java.hw16.jvdraw.Tool;
 import hr.fer.zemris.java.hw16.jvdraw.color.IColorProvider;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
 import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
 
 /**
@@ -31,8 +33,14 @@ import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
  */
 public abstract class GeometricalObject implements Tool {
 
-	/** The listeners. */
-	private List<GeometricalObjectListener> listeners = new ArrayList<>();
+	/** The source of unique object identifiers. */
+	private static final AtomicLong ID_GENERATOR = new AtomicLong();
+
+	/** The identifier of this object, unique and stable for its whole lifetime. */
+	private final long id;
+
+	/** The listeners, or null until the first one is added. */
+	private List<GeometricalObjectListener> listeners;
 
 	/** The start point. */
 	private Point startPoint;
@@ -55,8 +63,11 @@ public abstract class GeometricalObject implements Tool {
 	/** The drawing canvas. */
 	private JDrawingCanvas drawingCanvas;
 
-	/** The foreground color. */
-	private Color fgColor;
+	/** The palette entry holding the foreground color. */
+	private ColorPalette.Entry fgColor;
+
+	/** The palette of the document this object belongs to, may be null. */
+	private ColorPalette palette;
 
 	/**
 	 * Instantiates a new geometrical object.
@@ -74,6 +85,7 @@ public abstract class GeometricalObject implements Tool {
 							 IColorProvider fgColorProvider,
 							 JDrawingCanvas drawingCanvas) {
 		
+		this.id = ID_GENERATOR.incrementAndGet();
 		this.documentModel = documentModel;
 		this.fgColorProvider = fgColorProvider;
 		this.drawingCanvas = drawingCanvas;
@@ -84,6 +96,45 @@ public abstract class GeometricalObject implements Tool {
 	 * Instantiates a new geometrical object.
 	 */
 	public GeometricalObject() {
+		id = ID_GENERATOR.incrementAndGet();
+	}
+
+	/**
+	 * Instantiates a new geometrical object with a new identifier. The given
+	 * palette entry is used as it is, so objects created from the same entry
+	 * share it, e.g. the objects of a loaded file that have the same color.
+	 *
+	 * @param startPoint
+	 *            the start point
+	 * @param endPoint
+	 *            the end point
+	 * @param fgColor
+	 *            the palette entry holding the foreground color
+	 */
+	protected GeometricalObject(Point startPoint, Point endPoint, ColorPalette.Entry fgColor) {
+		this(ID_GENERATOR.incrementAndGet(), startPoint, endPoint, fgColor);
+	}
+
+	/**
+	 * Instantiates a new geometrical object with the given identifier, e.g. a
+	 * view of an object stored by a DocumentModel. The given palette entry is
+	 * used as it is, and is kept if the object is later given the palette the
+	 * entry belongs to.
+	 *
+	 * @param id
+	 *            the identifier of the object
+	 * @param startPoint
+	 *            the start point
+	 * @param endPoint
+	 *            the end point
+	 * @param fgColor
+	 *            the palette entry holding the foreground color
+	 */
+	protected GeometricalObject(long id, Point startPoint, Point endPoint, ColorPalette.Entry fgColor) {
+		this.id = id;
+		this.startPoint = startPoint;
+		this.endPoint = endPoint;
+		this.fgColor = Objects.requireNonNull(fgColor, "Color cannot be null.");
 	}
 
 	/**
@@ -108,13 +159,33 @@ public abstract class GeometricalObject implements Tool {
 	 */
 	public abstract GeometricalObject cloneCurrentObject();
 
+	/**
+	 * Creates a detached copy of this object, holding equal points and colors.
+	 * The copy belongs to no document and has no listeners, so changing either
+	 * object afterwards, including recoloring the palette of this object's
+	 * document, leaves the other one unchanged.
+	 *
+	 * @return the copy
+	 */
+	public abstract GeometricalObject copy();
+
+	/**
+	 * Gets the identifier of this object. Identifiers are unique among all
+	 * objects created by this program and never change.
+	 *
+	 * @return the identifier
+	 */
+	public long getId() {
+		return id;
+	}
+
 	/**
 	 * Sets the foreground color.
 	 *
 	 * @param fgColor the new foreground color
 	 */
 	public void setFgColor(Color fgColor) {
-		this.fgColor = fgColor;
+		this.fgColor = toEntry(fgColor);
 	}
 	
 	/**
@@ -132,7 +203,63 @@ public abstract class GeometricalObject implements Tool {
 	 * @return the foreground color
 	 */
 	public Color getFgColor() {
-		return fgColor != null ? fgColor : fgColorProvider.getCurrentColor();
+		return fgColor != null ? fgColor.getColor() : fgColorProvider.getCurrentColor();
+	}
+
+	/**
+	 * Gets the palette entry holding the foreground color.
+	 *
+	 * @return the palette entry, or null if the color has not been set
+	 */
+	public ColorPalette.Entry getFgColorEntry() {
+		return fgColor;
+	}
+
+	/**
+	 * Gets the palette of the document this object belongs to.
+	 *
+	 * @return the palette, or null if the object does not belong to a document
+	 */
+	public ColorPalette getPalette() {
+		return palette;
+	}
+
+	/**
+	 * Sets the palette of the document this object belongs to, interning the
+	 * object's colors into it, unless they are already held by entries of the
+	 * palette. Colors set afterwards are interned as well. Does nothing if the
+	 * object already uses the given palette.
+	 *
+	 * @param palette
+	 *            the palette
+	 */
+	public void setPalette(ColorPalette palette) {
+		Objects.requireNonNull(palette, "Palette cannot be null.");
+		if (palette == this.palette) {
+			return;
+		}
+
+		this.palette = palette;
+		if (fgColor != null && !palette.contains(fgColor)) {
+			fgColor = palette.intern(fgColor.getColor());
+		}
+	}
+
+	/**
+	 * Finds the palette entry holding the given color. The entry belongs to the
+	 * palette of the object's document, or is a detached one if the object does
+	 * not belong to a document.
+	 *
+	 * @param color
+	 *            the color, may be null
+	 * @return the entry, or null if the color is null
+	 */
+	protected ColorPalette.Entry toEntry(Color color) {
+		if (color == null) {
+			return null;
+		}
+
+		return palette != null ? palette.intern(color) : new ColorPalette.Entry(color);
 	}
 
 	/**
@@ -221,6 +348,65 @@ public abstract class GeometricalObject implements Tool {
 		this.endPoint = endPoint;
 	}
 
+	/**
+	 * Captures the editable attributes of this object, i.e. its points and
+	 * colors, in a compact form that can later be passed to restoreState. Colors
+	 * are captured both by the index of their palette entry, if the object
+	 * belongs to a document, and by their value.
+	 *
+	 * @return the captured state
+	 */
+	public int[] saveState() {
+		//@formatter:off
+		return new int[] {
+			startPoint.x, startPoint.y,
+			endPoint.x, endPoint.y,
+			paletteIndexOf(fgColor), getFgColor().getRGB()
+		};
+		//@formatter:on
+	}
+
+	/**
+	 * Restores the editable attributes of this object from a state previously
+	 * captured by saveState. Colors are restored to the very palette entries
+	 * they were captured from. Listeners are not notified.
+	 *
+	 * @param state
+	 *            the captured state
+	 */
+	public void restoreState(int[] state) {
+		Objects.requireNonNull(state, "State cannot be null.");
+
+		setStartPoint(new Point(state[0], state[1]));
+		setEndPoint(new Point(state[2], state[3]));
+		fgColor = toEntry(state[4], state[5]);
+	}
+
+	/**
+	 * Gets the index of the given entry in the palette of this object's
+	 * document.
+	 *
+	 * @param entry
+	 *            the entry, may be null
+	 * @return the index, or -1 if the object does not belong to a document
+	 */
+	protected int paletteIndexOf(ColorPalette.Entry entry) {
+		return palette != null && entry != null ? entry.getIndex() : -1;
+	}
+
+	/**
+	 * Finds the palette entry captured by saveState.
+	 *
+	 * @param index
+	 *            the index of the entry in the palette, or -1 if there is none
+	 * @param rgb
+	 *            the ARGB value of the color
+	 * @return the entry
+	 */
+	protected ColorPalette.Entry toEntry(int index, int rgb) {
+		return index >= 0 && palette != null ? palette.getEntry(index) : toEntry(new Color(rgb, true));
+	}
+
 	/**
 	 * Adds the geometrical object listener.
 	 *
@@ -230,6 +416,9 @@ public abstract class GeometricalObject implements Tool {
 	public void addGeometricalObjectListener(GeometricalObjectListener l) {
 		Objects.requireNonNull(l, "Cannot add null listener.");
 
+		if (listeners == null) {
+			listeners = new ArrayList<>();
+		}
 		listeners.add(l);
 	}
 
@@ -242,18 +431,55 @@ public abstract class GeometricalObject implements Tool {
 	public void removeGeometricalObjectListener(GeometricalObjectListener l) {
 		Objects.requireNonNull(l, "Cannot remove null listener.");
 
-		listeners.remove(l);
+		if (listeners != null) {
+			listeners.remove(l);
+		}
 	}
 
 	/**
 	 * Notifies listeners.
 	 */
 	public void notifyListeners() {
+		if (listeners == null) {
+			return;
+		}
+
 		for (GeometricalObjectListener listener : listeners) {
 			listener.geometricalObjectChanged(this);
 		}
 	}
 
+	/**
+	 * Checks whether the given object is a geometrical object with the same
+	 * identifier, e.g. another view of the same object stored by a
+	 * DocumentModel.
+	 *
+	 * @param obj
+	 *            the object
+	 * @return true, if the identifiers are equal
+	 */
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj) {
+			return true;
+		}
+		if (!(obj instanceof GeometricalObject)) {
+			return false;
+		}
+
+		return id == ((GeometricalObject) obj).id;
+	}
+
+	/**
+	 * Calculates the hash code out of the identifier.
+	 *
+	 * @return the hash code
+	 */
+	@Override
+	public int hashCode() {
+		return Long.hashCode(id);
+	}
+
 	/**
 	 * Mouse has been pressed.
 	 *
@@ -1,13 +1,48 @@
 package hr.fer.zemris.java.hw16.jvdraw.geometry;
 
 import java.awt.BasicStroke;
+import java.awt.Color;
 import java.awt.Graphics2D;
+import java.awt.Rectangle;
 import java.awt.RenderingHints;
+import java.awt.Stroke;
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Ellipse2D;
+import java.awt.geom.Path2D;
+import java.awt.geom.Point2D;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 /**
  * The class representing the object responsible for drawing each object on the
  * drawing canvas.
- * 
+ *
+ * The painter remembers the color, stroke and antialiasing hint it has set on
+ * its drawing object and only changes them when they differ, so the drawing
+ * object must not be modified by others between setG2d and the last visit.
+ *
+ * In batching mode, consecutive objects with the same colors are collected into
+ * shared paths and drawn by a single call, as long as this does not change
+ * which object covers which: an object with an outline only can always join the
+ * batch, since outlines are drawn after fills, while a filled circle joins only
+ * if it does not overlap the outlines already collected. Since the cost of
+ * rasterizing a path grows with the area it spans, objects also join only as
+ * long as the batch stays compact, i.e. its bounding box is not much larger
+ * than the bounding boxes of its objects together. The collected objects
+ * are drawn when an object that cannot join arrives and on flush, which must be
+ * called after the last visit. The result looks the same, but is not
+ * pixel-identical to drawing the objects one by one: antialiased edges of
+ * overlapping objects with the same color are blended once instead of twice,
+ * and the antialiasing of lines drawn as a part of a path differs slightly
+ * from that of single lines.
+ *
+ * In level-of-detail mode, objects too small to be recognized on the device
+ * are simplified into single pixels or skipped, as described by LevelOfDetail.
+ * The pixels are collected and written together before the next object that
+ * is drawn as a shape, so the drawing order is kept.
+ *
  * @author Damjan Vučina
  */
 public class GeometricalObjectPainter implements GeometricalObjectVisitor {
@@ -15,13 +50,83 @@ public class GeometricalObjectPainter implements GeometricalObjectVisitor {
 	/** The Constant DEFAULT_STROKE. */
 	public static final int DEFAULT_STROKE = 2;
 
+	/**
+	 * How many times the bounding box of a batch may be larger than the bounding
+	 * boxes of its objects together.
+	 */
+	private static final int MAX_BATCH_SPREAD = 2;
+
+	/** The stroke all objects are drawn with. */
+	private static final Stroke STROKE = new BasicStroke(DEFAULT_STROKE);
+
 	/** The drawing object. */
 	private Graphics2D g2d;
 
+	/** Whether consecutive objects with the same colors are drawn together. */
+	private final boolean batching;
+
+	/** The color currently set on the drawing object, or null if unknown. */
+	private Color currentColor;
+
+	/** Whether the stroke and the antialiasing hint have been set. */
+	private boolean strokeSet;
+
+	/** The color of the collected outlines, or null if the batch is empty. */
+	private Color batchOutlineColor;
+
+	/** The color of the collected fills, or null if there are none. */
+	private Color batchFillColor;
+
+	/** The collected outlines. */
+	private Path2D.Float batchOutlines;
+
+	/** The collected fills. */
+	private Path2D.Float batchFills;
+
+	/** The bounding box of the collected objects, widened by the stroke. */
+	private Rectangle batchBounds;
+
+	/** The sum of the areas of the collected objects' bounding boxes. */
+	private long batchArea;
+
+	/** The level-of-detail settings, or null if the mode is off. */
+	private LevelOfDetail levelOfDetail;
+
+	/** The transformation from user space to device space of the drawing object. */
+	private AffineTransform deviceTransform;
+
+	/** The factor by which lengths are scaled on the device. */
+	private double deviceScale = 1;
+
+	/** The pixels of the simplified objects not yet written, mapped by their cells. */
+	private Map<Long, Pixel> pendingPixels;
+
+	/** The number of objects simplified in level-of-detail mode. */
+	private long simplifiedCount;
+
+	/** The number of issued drawing calls. */
+	private long drawCallCount;
+
+	/** The number of changes of the drawing object's state. */
+	private long stateChangeCount;
+
 	/**
-	 * Instantiates a new geometrical object painter.
+	 * Instantiates a new geometrical object painter drawing every object on its
+	 * own.
 	 */
 	public GeometricalObjectPainter() {
+		this(false);
+	}
+
+	/**
+	 * Instantiates a new geometrical object painter.
+	 *
+	 * @param batching
+	 *            whether consecutive objects with the same colors are drawn
+	 *            together
+	 */
+	public GeometricalObjectPainter(boolean batching) {
+		this.batching = batching;
 	}
 
 	/**
@@ -34,13 +139,85 @@ public class GeometricalObjectPainter implements GeometricalObjectVisitor {
 	}
 
 	/**
-	 * Sets the drawing object
+	 * Sets the drawing object, drawing the objects collected for the previous
+	 * one first.
 	 *
 	 * @param g2d
 	 *            the new drawing object
 	 */
 	public void setG2d(Graphics2D g2d) {
+		flush();
+
 		this.g2d = g2d;
+		currentColor = null;
+		strokeSet = false;
+
+		deviceTransform = g2d == null ? new AffineTransform() : g2d.getTransform();
+		deviceScale = Math.sqrt(Math.abs(deviceTransform.getDeterminant()));
+	}
+
+	/**
+	 * Checks whether consecutive objects with the same colors are drawn
+	 * together.
+	 *
+	 * @return true, if the painter is in batching mode
+	 */
+	public boolean isBatching() {
+		return batching;
+	}
+
+	/**
+	 * Gets the level-of-detail settings.
+	 *
+	 * @return the settings, or null if the level-of-detail mode is off
+	 */
+	public LevelOfDetail getLevelOfDetail() {
+		return levelOfDetail;
+	}
+
+	/**
+	 * Sets the level-of-detail settings, turning the mode on or off. Pixels of
+	 * already simplified objects are written first.
+	 *
+	 * @param levelOfDetail
+	 *            the settings, or null to turn the level-of-detail mode off
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		flushPixels();
+
+		this.levelOfDetail = levelOfDetail;
+		if (levelOfDetail != null && pendingPixels == null) {
+			pendingPixels = new HashMap<>();
+		}
+	}
+
+	/**
+	 * Gets the number of objects simplified into single pixels, collapsed with
+	 * others or skipped in level-of-detail mode so far.
+	 *
+	 * @return the number of simplified objects
+	 */
+	public long getSimplifiedCount() {
+		return simplifiedCount;
+	}
+
+	/**
+	 * Gets the number of drawing calls issued to the drawing objects so far.
+	 *
+	 * @return the number of drawing calls
+	 */
+	public long getDrawCallCount() {
+		return drawCallCount;
+	}
+
+	/**
+	 * Gets the number of changes of the drawing objects' colors, strokes and
+	 * hints made so far.
+	 *
+	 * @return the number of state changes
+	 */
+	public long getStateChangeCount() {
+		return stateChangeCount;
 	}
 
 	/**
@@ -51,10 +228,28 @@ public class GeometricalObjectPainter implements GeometricalObjectVisitor {
 	 */
 	@Override
 	public void visit(Line line) {
-		setUpStroke(g2d);
+		int x1 = line.getStartPoint().x;
+		int y1 = line.getStartPoint().y;
+		int x2 = line.getEndPoint().x;
+		int y2 = line.getEndPoint().y;
+
+		int size = Math.max(Math.abs(x1 - x2), Math.abs(y1 - y2));
+		if (simplify(line.getFgColor(), size, (x1 + x2) / 2.0, (y1 + y2) / 2.0)) {
+			return;
+		}
 
-		g2d.setColor(line.getFgColor());
-		g2d.drawLine(line.getStartPoint().x, line.getStartPoint().y, line.getEndPoint().x, line.getEndPoint().y);
+		if (batching) {
+			Rectangle bounds = widenedBounds(Math.min(x1, x2), Math.min(y1, y2), Math.abs(x1 - x2), Math.abs(y1 - y2));
+			Path2D.Float outlines = join(line.getFgColor(), null, bounds);
+			outlines.moveTo(x1, y1);
+			outlines.lineTo(x2, y2);
+			return;
+		}
+
+		setUpStroke();
+		setColor(line.getFgColor());
+		g2d.drawLine(x1, y1, x2, y2);
+		drawCallCount++;
 	}
 
 	/**
@@ -65,11 +260,24 @@ public class GeometricalObjectPainter implements GeometricalObjectVisitor {
 	 */
 	@Override
 	public void visit(Circle circle) {
-		setUpStroke(g2d);
 		int radius = circle.calculateRadius();
+		int x = circle.getStartPoint().x - radius;
+		int y = circle.getStartPoint().y - radius;
+
+		if (simplify(circle.getFgColor(), 2 * radius, circle.getStartPoint().x, circle.getStartPoint().y)) {
+			return;
+		}
 
-		g2d.setColor(circle.getFgColor());
-		g2d.drawOval(circle.getStartPoint().x - radius, circle.getStartPoint().y - radius, 2 * radius, 2 * radius);
+		if (batching) {
+			Path2D.Float outlines = join(circle.getFgColor(), null, widenedBounds(x, y, 2 * radius, 2 * radius));
+			outlines.append(new Ellipse2D.Float(x, y, 2 * radius, 2 * radius), false);
+			return;
+		}
+
+		setUpStroke();
+		setColor(circle.getFgColor());
+		g2d.drawOval(x, y, 2 * radius, 2 * radius);
+		drawCallCount++;
 	}
 
 	/**
@@ -80,25 +288,267 @@ public class GeometricalObjectPainter implements GeometricalObjectVisitor {
 	 */
 	@Override
 	public void visit(FilledCircle filledCircle) {
-		setUpStroke(g2d);
 		int radius = filledCircle.calculateRadius();
+		int x = filledCircle.getStartPoint().x - radius;
+		int y = filledCircle.getStartPoint().y - radius;
+
+		//@formatter:off
+		if (simplify(filledCircle.getFgColor(), 2 * radius,
+					 filledCircle.getStartPoint().x, filledCircle.getStartPoint().y)) {
+			return;
+		}
+		//@formatter:on
 
-		g2d.setColor(filledCircle.getBgColor());
-		g2d.fillOval(filledCircle.getStartPoint().x - radius, filledCircle.getStartPoint().y - radius, 2 * radius,
-				2 * radius);
+		if (batching) {
+			Rectangle bounds = widenedBounds(x, y, 2 * radius, 2 * radius);
+			Path2D.Float outlines = join(filledCircle.getFgColor(), filledCircle.getBgColor(), bounds);
 
-		visit((Circle) filledCircle);
+			Ellipse2D.Float ellipse = new Ellipse2D.Float(x, y, 2 * radius, 2 * radius);
+			batchFills.append(ellipse, false);
+			outlines.append(ellipse, false);
+			return;
+		}
+
+		setUpStroke();
+		setColor(filledCircle.getBgColor());
+		g2d.fillOval(x, y, 2 * radius, 2 * radius);
+		drawCallCount++;
+
+		setColor(filledCircle.getFgColor());
+		g2d.drawOval(x, y, 2 * radius, 2 * radius);
+		drawCallCount++;
 	}
 
 	/**
-	 * Sets the up stroke.
+	 * Draws the objects collected in batching mode and writes the pixels of the
+	 * objects simplified in level-of-detail mode. Does nothing if there are
+	 * none.
+	 */
+	public void flush() {
+		flushBatch();
+		flushPixels();
+	}
+
+	/**
+	 * Decides whether the given object is simplified in level-of-detail mode,
+	 * and if so, collects its pixel or skips it. Objects collected so far in
+	 * batching mode are drawn before the pixel is collected, while collected
+	 * pixels are written before an object that is not simplified, so that the
+	 * drawing order is kept.
 	 *
-	 * @param g2d
-	 *            the new up stroke
+	 * @param color
+	 *            the foreground color of the object
+	 * @param size
+	 *            the larger side of the object's bounding box, in user space
+	 * @param x
+	 *            the x coordinate of the object's center, in user space
+	 * @param y
+	 *            the y coordinate of the object's center, in user space
+	 * @return true, if the object has been simplified and must not be drawn
+	 */
+	private boolean simplify(Color color, int size, double x, double y) {
+		if (levelOfDetail == null) {
+			return false;
+		}
+
+		double deviceSize = size * deviceScale;
+		if (deviceSize >= levelOfDetail.getPixelThreshold()) {
+			flushPixels();
+			return false;
+		}
+
+		simplifiedCount++;
+		if (deviceSize < levelOfDetail.getSkipThreshold()) {
+			return true;
+		}
+
+		flushBatch();
+		Point2D center = deviceTransform.transform(new Point2D.Double(x, y), null);
+		int px = (int) Math.floor(center.getX());
+		int py = (int) Math.floor(center.getY());
+
+		int clusterSize = levelOfDetail.getClusterSize();
+		long cell = ((long) Math.floorDiv(px, clusterSize) << 32) | (Math.floorDiv(py, clusterSize) & 0xFFFFFFFFL);
+		pendingPixels.put(cell, new Pixel(px, py, color));
+		return true;
+	}
+
+	/**
+	 * Writes the collected pixels of the simplified objects, directly in device
+	 * space. Since every cell holds a single pixel, the pixels do not overlap
+	 * and are written grouped by their colors.
+	 */
+	private void flushPixels() {
+		if (pendingPixels == null || pendingPixels.isEmpty()) {
+			return;
+		}
+
+		List<Pixel> pixels = new ArrayList<>(pendingPixels.values());
+		pixels.sort((p1, p2) -> Integer.compare(p1.color.getRGB(), p2.color.getRGB()));
+		pendingPixels.clear();
+
+		g2d.setTransform(new AffineTransform());
+		stateChangeCount++;
+		for (Pixel pixel : pixels) {
+			setColor(pixel.color);
+			g2d.fillRect(pixel.x, pixel.y, 1, 1);
+			drawCallCount++;
+		}
+		g2d.setTransform(deviceTransform);
+		stateChangeCount++;
+	}
+
+	/**
+	 * Draws the objects collected in batching mode. Does nothing if there are
+	 * none.
+	 */
+	private void flushBatch() {
+		if (batchOutlineColor == null) {
+			return;
+		}
+
+		setUpStroke();
+		if (batchFillColor != null) {
+			setColor(batchFillColor);
+			g2d.fill(batchFills);
+			drawCallCount++;
+		}
+
+		setColor(batchOutlineColor);
+		g2d.draw(batchOutlines);
+		drawCallCount++;
+
+		batchOutlineColor = null;
+		batchFillColor = null;
+		batchOutlines = null;
+		batchFills = null;
+		batchBounds = null;
+		batchArea = 0;
+	}
+
+	/**
+	 * Adds an object to the batch, drawing the collected objects first if the
+	 * object cannot join them.
+	 *
+	 * @param outlineColor
+	 *            the color of the object's outline
+	 * @param fillColor
+	 *            the color of the object's fill, or null if it has none
+	 * @param bounds
+	 *            the bounding box of the object, widened by the stroke
+	 * @return the path the object's outline is to be added to
+	 */
+	private Path2D.Float join(Color outlineColor, Color fillColor, Rectangle bounds) {
+		long area = (long) bounds.width * bounds.height;
+
+		if (batchOutlineColor != null) {
+			Rectangle union = batchBounds.union(bounds);
+
+			//@formatter:off
+			boolean sameOutline = batchOutlineColor.getRGB() == outlineColor.getRGB();
+			boolean fillFits = fillColor == null ||
+							   (batchFillColor == null || batchFillColor.getRGB() == fillColor.getRGB()) &&
+							   !batchBounds.intersects(bounds);
+			boolean compact = (long) union.width * union.height <= MAX_BATCH_SPREAD * (batchArea + area);
+			//@formatter:on
+
+			if (sameOutline && fillFits && compact) {
+				batchBounds = union;
+				batchArea += area;
+			} else {
+				flush();
+			}
+		}
+
+		if (batchOutlineColor == null) {
+			batchOutlineColor = outlineColor;
+			batchOutlines = new Path2D.Float();
+			batchBounds = bounds;
+			batchArea = area;
+		}
+		if (fillColor != null && batchFillColor == null) {
+			batchFillColor = fillColor;
+			batchFills = new Path2D.Float();
+		}
+
+		return batchOutlines;
+	}
+
+	/**
+	 * Creates the bounding box of an object, widened by the stroke.
+	 *
+	 * @param x
+	 *            the x coordinate of the object's bounding box
+	 * @param y
+	 *            the y coordinate of the object's bounding box
+	 * @param width
+	 *            the width of the object's bounding box
+	 * @param height
+	 *            the height of the object's bounding box
+	 * @return the widened bounding box
+	 */
+	private static Rectangle widenedBounds(int x, int y, int width, int height) {
+		Rectangle bounds = new Rectangle(x, y, width, height);
+		bounds.grow(DEFAULT_STROKE + 1, DEFAULT_STROKE + 1);
+
+		return bounds;
+	}
+
+	/**
+	 * Sets the color of the drawing object, unless it is already set.
+	 *
+	 * @param color
+	 *            the color
+	 */
+	private void setColor(Color color) {
+		if (currentColor == null || currentColor.getRGB() != color.getRGB()) {
+			g2d.setColor(color);
+			currentColor = color;
+			stateChangeCount++;
+		}
+	}
+
+	/**
+	 * Sets up the stroke and the antialiasing hint of the drawing object, unless
+	 * they are already set.
 	 */
-	private void setUpStroke(Graphics2D g2d) {
-		g2d.setStroke(new BasicStroke(DEFAULT_STROKE));
-		g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+	private void setUpStroke() {
+		if (!strokeSet) {
+			g2d.setStroke(STROKE);
+			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			strokeSet = true;
+			stateChangeCount += 2;
+		}
 	}
 
+	/**
+	 * The pixel a simplified object is drawn as.
+	 */
+	private static class Pixel {
+
+		/** The x coordinate, in device space. */
+		private final int x;
+
+		/** The y coordinate, in device space. */
+		private final int y;
+
+		/** The color. */
+		private final Color color;
+
+		/**
+		 * Instantiates a new pixel.
+		 *
+		 * @param x
+		 *            the x coordinate, in device space
+		 * @param y
+		 *            the y coordinate, in device space
+		 * @param color
+		 *            the color
+		 */
+		private Pixel(int x, int y, Color color) {
+			this.x = x;
+			this.y = y;
+			this.color = color;
+		}
+	}
 }
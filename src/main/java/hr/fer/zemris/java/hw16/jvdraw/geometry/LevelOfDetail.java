@@ -0,0 +1,106 @@
+package hr.fer.zemris.java.hw16.jvdraw.geometry;
+
+/**
+ * The class that holds the settings of the level-of-detail mode of
+ * GeometricalObjectPainter. In that mode, objects whose size on the device is
+ * below the pixel threshold are not drawn as shapes, but as a single pixel of
+ * their foreground color, and objects below the skip threshold are not drawn at
+ * all. Objects at or above the pixel threshold are drawn exactly as without the
+ * mode.
+ *
+ * The device is divided into square cells of the cluster size, and tiny objects
+ * falling into the same cell collapse into the single pixel of the topmost one.
+ * With the default cluster size of one pixel, this only saves writing the same
+ * pixel repeatedly.
+ *
+ * Instances are immutable and can be shared between painters.
+ *
+ * @author Damjan Vučina
+ */
+public final class LevelOfDetail {
+
+	/** The default size below which objects are drawn as a single pixel. */
+	public static final double DEFAULT_PIXEL_THRESHOLD = 3;
+
+	/** The default size below which objects are not drawn, i.e. none. */
+	public static final double DEFAULT_SKIP_THRESHOLD = 0;
+
+	/** The default width and height of a cell tiny objects collapse within. */
+	public static final int DEFAULT_CLUSTER_SIZE = 1;
+
+	/** The size below which objects are drawn as a single pixel, in pixels. */
+	private final double pixelThreshold;
+
+	/** The size below which objects are not drawn, in pixels. */
+	private final double skipThreshold;
+
+	/** The width and height of a cell tiny objects collapse within, in pixels. */
+	private final int clusterSize;
+
+	/**
+	 * Instantiates new level-of-detail settings with the default thresholds and
+	 * cluster size.
+	 */
+	public LevelOfDetail() {
+		this(DEFAULT_PIXEL_THRESHOLD, DEFAULT_SKIP_THRESHOLD, DEFAULT_CLUSTER_SIZE);
+	}
+
+	/**
+	 * Instantiates new level-of-detail settings. The size of an object is the
+	 * larger side of its bounding box, without the stroke, measured on the
+	 * device.
+	 *
+	 * @param pixelThreshold
+	 *            the size below which objects are drawn as a single pixel, in
+	 *            pixels
+	 * @param skipThreshold
+	 *            the size below which objects are not drawn, in pixels, at most
+	 *            the pixel threshold
+	 * @param clusterSize
+	 *            the width and height of a cell tiny objects collapse within, in
+	 *            pixels
+	 */
+	public LevelOfDetail(double pixelThreshold, double skipThreshold, int clusterSize) {
+		if (!(pixelThreshold >= 0)) {
+			throw new IllegalArgumentException("Pixel threshold cannot be negative, was: " + pixelThreshold);
+		}
+		if (!(skipThreshold >= 0 && skipThreshold <= pixelThreshold)) {
+			throw new IllegalArgumentException(
+					"Skip threshold must be from 0 to " + pixelThreshold + ", was: " + skipThreshold);
+		}
+		if (clusterSize <= 0) {
+			throw new IllegalArgumentException("Cluster size must be positive, was: " + clusterSize);
+		}
+
+		this.pixelThreshold = pixelThreshold;
+		this.skipThreshold = skipThreshold;
+		this.clusterSize = clusterSize;
+	}
+
+	/**
+	 * Gets the size below which objects are drawn as a single pixel.
+	 *
+	 * @return the pixel threshold, in pixels
+	 */
+	public double getPixelThreshold() {
+		return pixelThreshold;
+	}
+
+	/**
+	 * Gets the size below which objects are not drawn.
+	 *
+	 * @return the skip threshold, in pixels
+	 */
+	public double getSkipThreshold() {
+		return skipThreshold;
+	}
+
+	/**
+	 * Gets the width and height of a cell tiny objects collapse within.
+	 *
+	 * @return the cluster size, in pixels
+	 */
+	public int getClusterSize() {
+		return clusterSize;
+	}
+}
@@ -5,6 +5,7 @@ import java.awt.Graphics2D;
 import java.awt.Point;
 import hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas;
 import hr.fer.zemris.java.hw16.jvdraw.color.IColorProvider;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
 import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
 
 /**
@@ -50,6 +51,38 @@ public class Line extends GeometricalObject {
 		setFgColor(fgColor);
 	}
 
+	/**
+	 * Instantiates a new line of the color held by the given palette entry,
+	 * which is shared rather than copied.
+	 *
+	 * @param startPoint
+	 *            the start point
+	 * @param endPoint
+	 *            the end point
+	 * @param fgColor
+	 *            the palette entry holding the color of the line
+	 */
+	public Line(Point startPoint, Point endPoint, ColorPalette.Entry fgColor) {
+		super(startPoint, endPoint, fgColor);
+	}
+
+	/**
+	 * Instantiates a new line with the given identifier, e.g. a view of a line
+	 * stored by a DocumentModel.
+	 *
+	 * @param id
+	 *            the identifier of the line
+	 * @param startPoint
+	 *            the start point
+	 * @param endPoint
+	 *            the end point
+	 * @param fgColor
+	 *            the palette entry holding the color of the line
+	 */
+	public Line(long id, Point startPoint, Point endPoint, ColorPalette.Entry fgColor) {
+		super(id, startPoint, endPoint, fgColor);
+	}
+
 	/**
 	 * Method used by GeometricalObjects allowing them to send references
 	 * to the object in charge of drawing on the canvas. Necessary since Visitor pattern is in use.
@@ -81,6 +114,16 @@ public class Line extends GeometricalObject {
 		return new Line(getStartPoint(), getEndPoint(), getFgColorProvider().getCurrentColor());
 	}
 
+	/**
+	 * Creates a detached copy of the line.
+	 *
+	 * @return the copy
+	 */
+	@Override
+	public GeometricalObject copy() {
+		return new Line(new Point(getStartPoint()), new Point(getEndPoint()), getFgColor());
+	}
+
 	/**
 	 * Paints the geometrical object on the canvas.
 	 *
@@ -0,0 +1,453 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
+import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
+
+/**
+ * The class that loads JVD files in parallel. The file is split into chunks of
+ * roughly the configured size, each ending right after a line break, and every
+ * chunk is memory-mapped and scanned by its own JvdTokenizer on a fork-join
+ * pool. The objects of the chunks are then joined in the order of the chunks,
+ * so the drawing order of the file is preserved.
+ *
+ * Errors are reported as they would be by a single tokenizer reading the whole
+ * file: if several chunks are malformed, the first one's error is thrown, with
+ * the line number counted from the start of the file.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdLoader {
+
+	/** The default size of the chunks, in bytes. */
+	public static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+
+	/** The size of the buffer used for finding the line breaks ending chunks. */
+	private static final int SEARCH_BUFFER_SIZE = 256;
+
+	/** The base 2 logarithm of the number of slots of the cache of colors. */
+	private static final int COLOR_CACHE_BITS = 10;
+
+	/** The pool the chunks are parsed on. */
+	private final ForkJoinPool pool;
+
+	/** The size of the chunks, in bytes. */
+	private final int chunkSize;
+
+	/**
+	 * Instantiates a new loader parsing chunks of the default size on the
+	 * common fork-join pool.
+	 */
+	public JvdLoader() {
+		this(ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+	}
+
+	/**
+	 * Instantiates a new loader.
+	 *
+	 * @param pool
+	 *            the pool the chunks are parsed on
+	 * @param chunkSize
+	 *            the size of the chunks, in bytes; chunks are extended to the
+	 *            end of the line they would end in
+	 */
+	public JvdLoader(ForkJoinPool pool, int chunkSize) {
+		this.pool = Objects.requireNonNull(pool, "Pool cannot be null.");
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive, was: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Gets the pool the chunks are parsed on.
+	 *
+	 * @return the pool
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gets the size of the chunks.
+	 *
+	 * @return the size of the chunks, in bytes
+	 */
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Loads the geometrical objects stored in the JVD file at the given path.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the objects, in drawing order
+	 * @throws IOException
+	 *             if reading the file fails
+	 * @throws ObjectModelException
+	 *             if the file is malformed, with the line and column of the error
+	 */
+	public List<GeometricalObject> load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] bounds = split(channel);
+			int chunks = bounds.length - 1;
+
+			List<List<GeometricalObject>> parts = new ArrayList<>(Collections.nCopies(chunks, null));
+			ObjectModelException[] errors = new ObjectModelException[chunks];
+			if (chunks > 0) {
+				try {
+					pool.invoke(new LoadTask(channel, bounds, parts, errors, 0, chunks));
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				}
+			}
+
+			int size = 0;
+			for (int i = 0; i < chunks; i++) {
+				if (errors[i] != null) {
+					throw locate(channel, bounds, i, errors[i]);
+				}
+				size += parts.get(i).size();
+			}
+
+			List<GeometricalObject> objects = new ArrayList<>(size);
+			for (List<GeometricalObject> part : parts) {
+				objects.addAll(part);
+			}
+
+			return objects;
+		}
+	}
+
+	/**
+	 * Creates geometrical objects from the records of the given tokenizer. The
+	 * colors are looked up in a small cache of the recently created ones, each
+	 * slot holding the last color hashed to it, so objects of the same color
+	 * share a single palette entry and Color instance in documents of a
+	 * moderate number of colors. Unlike a complete map of colors, the cache
+	 * neither grows nor misses the processor's caches when the colors are
+	 * mostly distinct.
+	 *
+	 * @param tokenizer
+	 *            the tokenizer
+	 * @return the objects, in drawing order
+	 * @throws IOException
+	 *             if reading the input fails
+	 * @throws ObjectModelException
+	 *             if the input is malformed, with the line and column of the
+	 *             error
+	 */
+	public static List<GeometricalObject> readObjects(JvdTokenizer tokenizer) throws IOException {
+		List<GeometricalObject> objects = new ArrayList<>();
+		ColorPalette.Entry[] colors = new ColorPalette.Entry[1 << COLOR_CACHE_BITS];
+		int[] elements = tokenizer.getValues();
+
+		JvdTokenizer.Type type;
+		while ((type = tokenizer.next()) != null) {
+			switch (type) {
+			case LINE:
+				objects.add(createLine(elements, colors));
+				break;
+
+			case CIRCLE:
+				objects.add(createCircle(elements, colors));
+				break;
+
+			default:
+				objects.add(createFilledCircle(elements, colors));
+			}
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Splits the file read by the given channel into chunks.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @return the offsets the chunks start at, followed by the size of the file
+	 * @throws IOException
+	 *             if reading the file fails
+	 */
+	private long[] split(FileChannel channel) throws IOException {
+		long size = channel.size();
+		List<Long> bounds = new ArrayList<>();
+		ByteBuffer search = ByteBuffer.allocate(SEARCH_BUFFER_SIZE);
+
+		long start = 0;
+		bounds.add(start);
+		while (start < size) {
+			long end = size - start <= chunkSize ? size : lineEnd(channel, start + chunkSize, search);
+			bounds.add(end);
+			start = end;
+		}
+
+		return bounds.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * Finds the end of the line holding the byte before the given offset.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param offset
+	 *            the offset
+	 * @param search
+	 *            the buffer the file is read into
+	 * @return the offset after the line's line break, or the size of the file if
+	 *         the line is the last one
+	 * @throws IOException
+	 *             if reading the file fails
+	 */
+	private static long lineEnd(FileChannel channel, long offset, ByteBuffer search) throws IOException {
+		long position = offset - 1;
+		while (true) {
+			search.clear();
+			int read = channel.read(search, position);
+			if (read < 0) {
+				return channel.size();
+			}
+
+			for (int i = 0; i < read; i++) {
+				if (search.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += read;
+		}
+	}
+
+	/**
+	 * Maps the given chunk of the file.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param bounds
+	 *            the bounds of the chunks
+	 * @param chunk
+	 *            the index of the chunk
+	 * @return the mapped chunk
+	 * @throws IOException
+	 *             if mapping the file fails
+	 */
+	private static ByteBuffer map(FileChannel channel, long[] bounds, int chunk) throws IOException {
+		return channel.map(FileChannel.MapMode.READ_ONLY, bounds[chunk], bounds[chunk + 1] - bounds[chunk]);
+	}
+
+	/**
+	 * Creates the error of the given chunk, with the line number counted from
+	 * the start of the file. The lines of the preceding chunks are counted and
+	 * the chunk is scanned again.
+	 *
+	 * @param channel
+	 *            the channel
+	 * @param bounds
+	 *            the bounds of the chunks
+	 * @param chunk
+	 *            the index of the malformed chunk
+	 * @param error
+	 *            the error with the line number counted from the start of the
+	 *            chunk
+	 * @return the error
+	 * @throws IOException
+	 *             if reading the file fails
+	 */
+	private static ObjectModelException locate(FileChannel channel, long[] bounds, int chunk,
+			ObjectModelException error) throws IOException {
+		long lines = 0;
+		for (int i = 0; i < chunk; i++) {
+			lines += countLines(map(channel, bounds, i));
+		}
+
+		try {
+			readObjects(new JvdTokenizer(map(channel, bounds, chunk), lines + 1));
+		} catch (ObjectModelException e) {
+			return e;
+		}
+
+		return error;
+	}
+
+	/**
+	 * Counts the line breaks in the given buffer, which ends with a whole line.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @return the number of line breaks
+	 */
+	private static long countLines(ByteBuffer buffer) {
+		long lines = 0;
+		for (int i = buffer.position(), limit = buffer.limit(); i < limit; i++) {
+			byte b = buffer.get(i);
+			if (b == '\n' || b == '\r' && (i + 1 == limit || buffer.get(i + 1) != '\n')) {
+				lines++;
+			}
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Gets the palette entry of the opaque color with the given components from
+	 * the given cache, creating it if the slot the color hashes to holds another
+	 * one.
+	 *
+	 * @param elements
+	 *            the elements
+	 * @param index
+	 *            the index of the red component, followed by green and blue
+	 * @param colors
+	 *            the cache
+	 * @return the entry
+	 */
+	private static ColorPalette.Entry color(int[] elements, int index, ColorPalette.Entry[] colors) {
+		int rgb = 0xFF000000 | elements[index] << 16 | elements[index + 1] << 8 | elements[index + 2];
+		int slot = rgb * 0x9E3779B9 >>> Integer.SIZE - COLOR_CACHE_BITS;
+
+		ColorPalette.Entry entry = colors[slot];
+		if (entry == null || entry.getColor().getRGB() != rgb) {
+			entry = new ColorPalette.Entry(new Color(rgb));
+			colors[slot] = entry;
+		}
+		return entry;
+	}
+
+	//@formatter:off
+	/**
+	 * Creates a filled circle.
+	 *
+	 * @param elements the elements
+	 * @param colors the cache of colors
+	 * @return the filled circle
+	 */
+	private static FilledCircle createFilledCircle(int[] elements, ColorPalette.Entry[] colors) {
+		return new FilledCircle(new Point(elements[0], elements[1]),
+								new Point(elements[0], elements[1] + elements[2]),
+								color(elements, 3, colors),
+								color(elements, 6, colors));
+	}
+
+	/**
+	 * Creates a circle.
+	 *
+	 * @param elements the elements
+	 * @param colors the cache of colors
+	 * @return the circle
+	 */
+	private static Circle createCircle(int[] elements, ColorPalette.Entry[] colors) {
+		return new Circle(new Point(elements[0], elements[1]),
+						  new Point(elements[0], elements[1] + elements[2]),
+						  color(elements, 3, colors));
+	}
+
+	/**
+	 * Creates a line.
+	 *
+	 * @param elements the elements
+	 * @param colors the cache of colors
+	 * @return the line
+	 */
+	private static Line createLine(int[] elements, ColorPalette.Entry[] colors) {
+		return new Line(new Point(elements[0], elements[1]),
+						new Point(elements[2], elements[3]),
+						color(elements, 4, colors));
+	}
+	//@formatter:on
+
+	/**
+	 * The task parsing a range of chunks, splitting it in halves until a single
+	 * chunk is left.
+	 */
+	private static class LoadTask extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The channel reading the file. */
+		private final FileChannel channel;
+
+		/** The bounds of the chunks. */
+		private final long[] bounds;
+
+		/** The objects of the chunks, filled in by the tasks. */
+		private final List<List<GeometricalObject>> parts;
+
+		/** The errors of the malformed chunks, filled in by the tasks. */
+		private final ObjectModelException[] errors;
+
+		/** The first chunk of the range. */
+		private final int from;
+
+		/** The end of the range, exclusive. */
+		private final int to;
+
+		/**
+		 * Instantiates a new task.
+		 *
+		 * @param channel
+		 *            the channel reading the file
+		 * @param bounds
+		 *            the bounds of the chunks
+		 * @param parts
+		 *            the objects of the chunks
+		 * @param errors
+		 *            the errors of the malformed chunks
+		 * @param from
+		 *            the first chunk of the range
+		 * @param to
+		 *            the end of the range, exclusive
+		 */
+		private LoadTask(FileChannel channel, long[] bounds, List<List<GeometricalObject>> parts,
+				ObjectModelException[] errors, int from, int to) {
+			this.channel = channel;
+			this.bounds = bounds;
+			this.parts = parts;
+			this.errors = errors;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Parses the range.
+		 */
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				try {
+					parts.set(from, readObjects(new JvdTokenizer(map(channel, bounds, from), 1)));
+				} catch (ObjectModelException e) {
+					errors[from] = e;
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			//@formatter:off
+			invokeAll(new LoadTask(channel, bounds, parts, errors, from, middle),
+					  new LoadTask(channel, bounds, parts, errors, middle, to));
+			//@formatter:on
+		}
+	}
+}
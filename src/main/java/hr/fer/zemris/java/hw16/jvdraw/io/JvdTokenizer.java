@@ -0,0 +1,515 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Objects;
+
+import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
+
+/**
+ * The class that splits the JVD representation of a document into records,
+ * one per line, each holding the type of a geometrical object and its integer
+ * attributes. The bytes are read into a reusable array and scanned in place,
+ * and the numbers are accumulated digit by digit into a reusable array, so no
+ * objects are allocated per record.
+ *
+ * A record is the keyword LINE, CIRCLE or FCIRCLE followed by 7, 6 or 9
+ * decimal numbers, each preceded by a single space or tab, and
+ * ending with a line break or the end of the input. Lines may be broken by
+ * "\n", "\r\n" or "\r". This is the format GeometricalObjectSaver writes.
+ * Coordinates may be negative, radii are not, and color components must be
+ * from 0 to 255. Any deviation is reported as an
+ * ObjectModelException with the line and column it was found at.
+ *
+ * The tokenizer either reads from a channel or from a given buffer holding a
+ * part of the input, such as a chunk of a mapped file. Either way the input is
+ * copied into the array in blocks as it goes, since scanning an array is
+ * considerably faster than reading a buffer byte by byte. Numbers are read
+ * eight bytes at a time: the digits are found and converted with a few
+ * arithmetic operations on a long, without a branch per digit.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdTokenizer {
+
+	/** The default capacity of the array the input is read into. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The largest number of attributes of a record. */
+	private static final int MAX_VALUES = 9;
+
+	/** The largest magnitude of a number, that of Integer.MIN_VALUE. */
+	private static final long MAX_MAGNITUDE = -(long) Integer.MIN_VALUE;
+
+	/** The view of a byte array as little-endian longs, reading eight bytes at once. */
+	private static final VarHandle WORDS = MethodHandles.byteArrayViewVarHandle(long[].class,
+			ByteOrder.LITTLE_ENDIAN);
+
+	/** The word holding the byte '0' eight times. */
+	private static final long ZEROS = 0x3030303030303030L;
+
+	/** The mask of the high nibbles of the bytes of a word. */
+	private static final long HIGH_NIBBLES = 0xF0F0F0F0F0F0F0F0L;
+
+	/**
+	 * The type of a geometrical object, determining the number of its
+	 * attributes.
+	 */
+	public enum Type {
+
+		/** A line: start x and y, end x and y, and the color. */
+		LINE("LINE", 7, 4, 3),
+
+		/** A circle: center x and y, radius, and the color. */
+		CIRCLE("CIRCLE", 6, 2, 3),
+
+		/** A filled circle: center x and y, radius, the outline and fill colors. */
+		FILLED_CIRCLE("FCIRCLE", 9, 2, 6);
+
+		/** The keyword the records of this type start with. */
+		private final byte[] keyword;
+
+		/** The keyword's bytes in a little-endian word, the first one in the lowest byte. */
+		private final long keywordWord;
+
+		/** The mask of the bytes of keywordWord holding the keyword. */
+		private final long keywordMask;
+
+		/** The number of attributes. */
+		private final int valueCount;
+
+		/** The number of leading attributes that are coordinates, which may be negative. */
+		private final int coordinateCount;
+
+		/** The index of the first color component; all attributes from it on are ones. */
+		private final int firstColor;
+
+		/**
+		 * Instantiates a new type.
+		 *
+		 * @param keyword
+		 *            the keyword the records of this type start with
+		 * @param valueCount
+		 *            the number of attributes
+		 * @param coordinateCount
+		 *            the number of leading attributes that are coordinates
+		 * @param colorCount
+		 *            the number of trailing attributes that are color components
+		 */
+		Type(String keyword, int valueCount, int coordinateCount, int colorCount) {
+			this.keyword = keyword.getBytes(StandardCharsets.US_ASCII);
+			this.keywordWord = (long) WORDS.get(Arrays.copyOf(this.keyword, Long.BYTES), 0);
+			this.keywordMask = -1L >>> (Long.SIZE - Byte.SIZE * this.keyword.length);
+			this.valueCount = valueCount;
+			this.coordinateCount = coordinateCount;
+			this.firstColor = valueCount - colorCount;
+		}
+
+		/**
+		 * Gets the number of attributes of the records of this type.
+		 *
+		 * @return the number of attributes
+		 */
+		public int getValueCount() {
+			return valueCount;
+		}
+	}
+
+	/** The channel the input is read from, or null if it is read from a buffer. */
+	private final ReadableByteChannel channel;
+
+	/** The buffer the input is read from, or null if it is read from a channel. */
+	private final ByteBuffer source;
+
+	/** The array holding the input being scanned. */
+	private byte[] bytes;
+
+	/** The position of the next unscanned byte in the array. */
+	private int position;
+
+	/** The end of the scanned input in the array, exclusive. */
+	private int limit;
+
+	/** Whether the input has reached its end. */
+	private boolean eof;
+
+	/** The number of the line the next record starts at, from 1. */
+	private long line;
+
+	/** The position in the array the current line starts at. */
+	private int lineStart;
+
+	/** The type of the current record. */
+	private Type type;
+
+	/** The attributes of the current record. */
+	private final int[] values = new int[MAX_VALUES];
+
+	/**
+	 * Instantiates a new tokenizer reading the given stream.
+	 *
+	 * @param stream
+	 *            the stream
+	 */
+	public JvdTokenizer(InputStream stream) {
+		this(Channels.newChannel(Objects.requireNonNull(stream, "Stream cannot be null.")));
+	}
+
+	/**
+	 * Instantiates a new tokenizer reading the given channel.
+	 *
+	 * @param channel
+	 *            the channel
+	 */
+	public JvdTokenizer(ReadableByteChannel channel) {
+		this.channel = Objects.requireNonNull(channel, "Channel cannot be null.");
+		this.source = null;
+		bytes = new byte[DEFAULT_BUFFER_SIZE];
+		line = 1;
+	}
+
+	/**
+	 * Instantiates a new tokenizer scanning the remaining bytes of the given
+	 * buffer, which hold whole lines of the input. The buffer's position and
+	 * limit are left unchanged.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @param firstLine
+	 *            the number of the line the buffer starts with, from 1, used in
+	 *            error messages
+	 */
+	public JvdTokenizer(ByteBuffer buffer, long firstLine) {
+		Objects.requireNonNull(buffer, "Buffer cannot be null.");
+		if (firstLine < 1) {
+			throw new IllegalArgumentException("First line must be positive, was: " + firstLine);
+		}
+
+		this.channel = null;
+		this.source = buffer.duplicate();
+		bytes = new byte[Math.max(1, Math.min(buffer.remaining(), DEFAULT_BUFFER_SIZE))];
+		line = firstLine;
+	}
+
+	/**
+	 * Scans the next record.
+	 *
+	 * @return the type of the record, or null if the end of the input has been
+	 *         reached
+	 * @throws IOException
+	 *             if reading the channel fails
+	 * @throws ObjectModelException
+	 *             if the record is malformed
+	 */
+	public Type next() throws IOException {
+		while (true) {
+			if (position == limit && !fill()) {
+				return null;
+			}
+
+			lineStart = position;
+			int end = scanRecord();
+			if (end >= 0) {
+				position = end;
+				line++;
+				return type;
+			}
+
+			// the record continues past the buffered input, so it is scanned
+			// again once more input has been read
+			fill();
+		}
+	}
+
+	/**
+	 * Gets the attribute of the current record at the given index.
+	 *
+	 * @param index
+	 *            the index, from 0 to the number of attributes of the record's
+	 *            type, exclusive
+	 * @return the attribute
+	 */
+	public int getValue(int index) {
+		return values[index];
+	}
+
+	/**
+	 * Gets the array holding the attributes of the current record. It is reused
+	 * for every record, and only its first elements, as many as the record's
+	 * type has attributes, are meaningful.
+	 *
+	 * @return the attributes
+	 */
+	public int[] getValues() {
+		return values;
+	}
+
+	/**
+	 * Gets the number of the line the current record was found at.
+	 *
+	 * @return the line number, from 1
+	 */
+	public long getLine() {
+		return line - 1;
+	}
+
+	/**
+	 * Scans the record starting at the current position, which must hold at
+	 * least one byte.
+	 *
+	 * @return the position after its line break, or -1 if the record is not
+	 *         complete within the buffered input and more input may follow
+	 */
+	private int scanRecord() {
+		byte[] bytes = this.bytes;
+		int p = position;
+		int limit = this.limit;
+
+		byte first = bytes[p];
+		Type type;
+		if (first == 'L') {
+			type = Type.LINE;
+		} else if (first == 'C') {
+			type = Type.CIRCLE;
+		} else if (first == 'F') {
+			type = Type.FILLED_CIRCLE;
+		} else {
+			throw error("Unknown geometrical object", p);
+		}
+		this.type = type;
+
+		byte[] keyword = type.keyword;
+		if (p + Long.BYTES <= limit) {
+			if (((long) WORDS.get(bytes, p) & type.keywordMask) != type.keywordWord) {
+				throw error("Unknown geometrical object", p);
+			}
+		} else {
+			for (int i = 1; i < keyword.length; i++) {
+				if (p + i >= limit) {
+					return eof ? fail("Unknown geometrical object", p) : -1;
+				}
+				if (bytes[p + i] != keyword[i]) {
+					throw error("Unknown geometrical object", p);
+				}
+			}
+		}
+		p += keyword.length;
+
+		int[] values = this.values;
+		for (int i = 0, n = type.valueCount; i < n; i++) {
+			if (p >= limit) {
+				return eof ? fail("Expected " + n + " attributes", p) : -1;
+			}
+			byte separator = bytes[p];
+			if (separator != ' ' && separator != '\t') {
+				throw error(isLineBreak(separator) ? "Expected " + n + " attributes" : "Expected a separator", p);
+			}
+			p++;
+
+			int start = p;
+			boolean negative = p < limit && bytes[p] == '-' && i < type.coordinateCount;
+			if (negative) {
+				p++;
+			}
+
+			int digits = p;
+			long value = 0;
+			long word;
+			int length;
+			if (p + Long.BYTES <= limit && (length = digitCount(word = (long) WORDS.get(bytes, p))) < Long.BYTES) {
+				// fewer than eight digits always fit; with none, the value is
+				// meaningless, but the missing number is reported below
+				value = parseDigits(word, length);
+				p += length;
+			} else {
+				// accumulated as a long, so a single comparison per digit
+				// detects numbers out of the range of an int
+				while (p < limit) {
+					int digit = bytes[p] - '0';
+					if (digit < 0 || digit > 9) {
+						break;
+					}
+					value = 10 * value + digit;
+					if (value > MAX_MAGNITUDE) {
+						throw error("Number too large", start);
+					}
+					p++;
+				}
+			}
+
+			if (p == limit && !eof) {
+				return -1;
+			}
+			if (p == digits) {
+				throw error("Expected a number", p);
+			}
+			if (negative) {
+				value = -value;
+			} else if (value > Integer.MAX_VALUE) {
+				throw error("Number too large", start);
+			}
+			if (i >= type.firstColor && value > 255) {
+				throw error("Color component must be from 0 to 255", start);
+			}
+			values[i] = (int) value;
+		}
+
+		if (p == limit) {
+			return eof ? p : -1;
+		}
+
+		byte terminator = bytes[p];
+		if (terminator == '\n') {
+			return p + 1;
+		}
+		if (terminator == '\r') {
+			if (p + 1 < limit) {
+				return bytes[p + 1] == '\n' ? p + 2 : p + 1;
+			}
+			return eof ? p + 1 : -1;
+		}
+
+		throw error("Expected the end of the line", p);
+	}
+
+	/**
+	 * Counts the leading decimal digits of the given eight bytes. A byte is a
+	 * digit if its high nibble is 3 and adding 6 to it leaves the high nibble
+	 * unchanged; a carry out of a byte can only come from a byte that is not a
+	 * digit, so it never hides a non-digit preceding it.
+	 *
+	 * @param word
+	 *            the bytes, the first one in the lowest byte
+	 * @return the number of leading digits, from 0 to 8
+	 */
+	private static int digitCount(long word) {
+		long nibbles = word & HIGH_NIBBLES | ((word + 0x0606060606060606L) & HIGH_NIBBLES) >>> 4;
+		return Long.numberOfTrailingZeros(nibbles ^ 0x3333333333333333L) >>> 3;
+	}
+
+	/**
+	 * Converts the given number of leading decimal digits of the given eight
+	 * bytes into their value. The digits are moved to the highest bytes, so the
+	 * bytes following them are dropped and zeros precede them, and the pairs,
+	 * quadruples and the octet of digits are then combined by three
+	 * multiplications.
+	 *
+	 * @param word
+	 *            the bytes, the first one in the lowest byte
+	 * @param length
+	 *            the number of leading digits, from 1 to 7
+	 * @return the value of the digits
+	 */
+	private static long parseDigits(long word, int length) {
+		long digits = (word - ZEROS) << (Long.SIZE - Byte.SIZE * length);
+		digits = (digits & 0x0F0F0F0F0F0F0F0FL) * (1 + (10 << 8)) >>> 8;
+		digits = (digits & 0x00FF00FF00FF00FFL) * (1 + (100 << 16)) >>> 16;
+		return (digits & 0x0000FFFF0000FFFFL) * (1 + (10000L << 32)) >>> 32;
+	}
+
+	/**
+	 * Checks whether the given byte breaks a line.
+	 *
+	 * @param b
+	 *            the byte
+	 * @return true, if it breaks a line
+	 */
+	private static boolean isLineBreak(byte b) {
+		return b == '\n' || b == '\r';
+	}
+
+	/**
+	 * Reads more input, moving the unscanned bytes to the start of the array and
+	 * growing the array if they fill all of it.
+	 *
+	 * @return true, if more input has been read, or the unscanned bytes are the
+	 *         last ones of the input
+	 * @throws IOException
+	 *             if reading the channel fails
+	 */
+	private boolean fill() throws IOException {
+		if (eof) {
+			return false;
+		}
+
+		int remaining = limit - position;
+		if (position > 0) {
+			System.arraycopy(bytes, position, bytes, 0, remaining);
+		} else if (remaining == bytes.length) {
+			bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+		}
+		position = 0;
+		limit = remaining;
+
+		int read = read();
+		if (read < 0) {
+			eof = true;
+			return remaining > 0;
+		}
+
+		limit += read;
+		return true;
+	}
+
+	/**
+	 * Reads input into the array after its limit, which must leave room for at
+	 * least one byte. Reading from a buffer marks the end of the input as soon
+	 * as the buffer is exhausted.
+	 *
+	 * @return the number of bytes read, or -1 if the end of the input has been
+	 *         reached
+	 * @throws IOException
+	 *             if reading the channel fails
+	 */
+	private int read() throws IOException {
+		if (channel == null) {
+			int read = Math.min(source.remaining(), bytes.length - limit);
+			source.get(bytes, limit, read);
+			eof = !source.hasRemaining();
+			return read > 0 || !eof ? read : -1;
+		}
+
+		ByteBuffer target = ByteBuffer.wrap(bytes, limit, bytes.length - limit);
+		int read;
+		do {
+			read = channel.read(target);
+		} while (read == 0);
+
+		return read;
+	}
+
+	/**
+	 * Throws the error for the given position, for use in return statements.
+	 *
+	 * @param message
+	 *            the message
+	 * @param p
+	 *            the position in the array
+	 * @return never returns
+	 */
+	private int fail(String message, int p) {
+		throw error(message, p);
+	}
+
+	/**
+	 * Creates the error with the given message, located at the given position of
+	 * the current line.
+	 *
+	 * @param message
+	 *            the message
+	 * @param p
+	 *            the position in the array
+	 * @return the error
+	 */
+	private ObjectModelException error(String message, int p) {
+		return new ObjectModelException(message + " at line " + line + ", column " + (p - lineStart + 1) + ".");
+	}
+}
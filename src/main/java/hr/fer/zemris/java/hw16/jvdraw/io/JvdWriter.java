@@ -0,0 +1,303 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectVisitor;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
+
+/**
+ * The class that writes the JVD representation of an image to a channel, byte
+ * for byte the same as GeometricalObjectSaver generates. The digits of the
+ * attributes are written straight into a direct buffer, which is written to
+ * the channel whenever it cannot fit another record, so the memory used does
+ * not depend on the size of the image and no strings are created.
+ *
+ * The buffer is allocated once and reused by every write. Objects are visited
+ * by write, or by encode when ParallelJvdWriter uses the writer for a shard,
+ * and visiting them otherwise is an error. A writer is not safe for use by
+ * multiple threads.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdWriter implements GeometricalObjectVisitor {
+
+	/** The default capacity of the buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	/** The largest number of bytes of a record: a keyword and 9 numbers. */
+	public static final int MAX_RECORD_SIZE = 7 + 9 * 12 + 1;
+
+	/** The keyword of lines. */
+	private static final byte[] LINE = "LINE".getBytes(StandardCharsets.US_ASCII);
+
+	/** The keyword of circles. */
+	private static final byte[] CIRCLE = "CIRCLE".getBytes(StandardCharsets.US_ASCII);
+
+	/** The keyword of filled circles. */
+	private static final byte[] FILLED_CIRCLE = "FCIRCLE".getBytes(StandardCharsets.US_ASCII);
+
+	/** The buffer the records are written into. */
+	private final ByteBuffer buffer;
+
+	/** The channel being written to, or null if not writing. */
+	private WritableByteChannel channel;
+
+	/** Whether objects are being encoded into the buffer only. */
+	private boolean encoding;
+
+	/**
+	 * Instantiates a new writer with a buffer of the default capacity.
+	 */
+	public JvdWriter() {
+		this(DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Instantiates a new writer.
+	 *
+	 * @param bufferSize
+	 *            the capacity of the buffer, at least {@value #MAX_RECORD_SIZE}
+	 */
+	public JvdWriter(int bufferSize) {
+		if (bufferSize < MAX_RECORD_SIZE) {
+			throw new IllegalArgumentException(
+					"Buffer size must be at least " + MAX_RECORD_SIZE + ", was: " + bufferSize);
+		}
+
+		buffer = ByteBuffer.allocateDirect(bufferSize);
+	}
+
+	/**
+	 * Saves the JVD representation of the given objects to the given path.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param savePath
+	 *            the save path
+	 * @throws IOException
+	 *             if writing the file fails
+	 */
+	public void save(Iterable<? extends GeometricalObject> objects, Path savePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(savePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(objects, channel);
+		}
+	}
+
+	/**
+	 * Writes the JVD representation of the given objects to the given channel.
+	 * The channel is not closed.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param channel
+	 *            the channel
+	 * @throws IOException
+	 *             if writing to the channel fails
+	 */
+	public void write(Iterable<? extends GeometricalObject> objects, WritableByteChannel channel)
+			throws IOException {
+		if (this.channel != null || encoding) {
+			throw new IllegalStateException("Writer is already writing.");
+		}
+
+		this.channel = Objects.requireNonNull(channel, "Channel cannot be null.");
+		buffer.clear();
+		try {
+			for (GeometricalObject object : objects) {
+				object.accept(this);
+			}
+			flush();
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		} finally {
+			this.channel = null;
+		}
+	}
+
+	/**
+	 * Encodes the JVD representation of the objects in the given range into the
+	 * buffer, which must fit all of them, i.e. {@value #MAX_RECORD_SIZE} bytes
+	 * per object.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param from
+	 *            the first index of the range, inclusive
+	 * @param to
+	 *            the last index of the range, exclusive
+	 * @return the buffer, ready to be read
+	 */
+	ByteBuffer encode(List<? extends GeometricalObject> objects, int from, int to) {
+		if (channel != null || encoding) {
+			throw new IllegalStateException("Writer is already writing.");
+		}
+		if ((long) (to - from) * MAX_RECORD_SIZE > buffer.capacity()) {
+			throw new IllegalArgumentException("Buffer cannot fit " + (to - from) + " objects.");
+		}
+
+		encoding = true;
+		buffer.clear();
+		try {
+			Iterator<? extends GeometricalObject> iterator = objects instanceof DocumentSnapshot
+					? ((DocumentSnapshot) objects).iterator(from)
+					: objects.listIterator(from);
+			for (int i = from; i < to; i++) {
+				iterator.next().accept(this);
+			}
+		} finally {
+			encoding = false;
+		}
+
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Writes JVD representation of the given line.
+	 */
+	@Override
+	public void visit(Line line) {
+		ensureRoom();
+		buffer.put(LINE);
+		putPoint(line.getStartPoint());
+		putPoint(line.getEndPoint());
+		putColor(line.getFgColor());
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes JVD representation of the given circle.
+	 */
+	@Override
+	public void visit(Circle circle) {
+		ensureRoom();
+		buffer.put(CIRCLE);
+		putCircle(circle);
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes JVD representation of the given filled circle.
+	 */
+	@Override
+	public void visit(FilledCircle filledCircle) {
+		ensureRoom();
+		buffer.put(FILLED_CIRCLE);
+		putCircle(filledCircle);
+		putColor(filledCircle.getBgColor());
+		buffer.put((byte) '\n');
+	}
+
+	/**
+	 * Writes the center, radius and outline color of the given circle.
+	 *
+	 * @param circle
+	 *            the circle
+	 */
+	private void putCircle(Circle circle) {
+		putPoint(circle.getCenter());
+		putInt(circle.calculateRadius());
+		putColor(circle.getFgColor());
+	}
+
+	/**
+	 * Writes the coordinates of the given point.
+	 *
+	 * @param point
+	 *            the point
+	 */
+	private void putPoint(Point point) {
+		putInt(point.x);
+		putInt(point.y);
+	}
+
+	/**
+	 * Writes the components of the given color.
+	 *
+	 * @param color
+	 *            the color
+	 */
+	private void putColor(Color color) {
+		putInt(color.getRed());
+		putInt(color.getGreen());
+		putInt(color.getBlue());
+	}
+
+	/**
+	 * Writes a separator and the decimal digits of the given number.
+	 *
+	 * @param value
+	 *            the number
+	 */
+	private void putInt(int value) {
+		buffer.put((byte) ' ');
+		if (value < 0) {
+			buffer.put((byte) '-');
+		}
+
+		// the digits are taken from the negative value, so Integer.MIN_VALUE fits
+		int negative = value < 0 ? value : -value;
+		int length = 1;
+		for (int limit = -10; length < 10 && negative <= limit; limit *= 10) {
+			length++;
+		}
+
+		int start = buffer.position();
+		for (int i = start + length - 1; i >= start; i--) {
+			buffer.put(i, (byte) ('0' - negative % 10));
+			negative /= 10;
+		}
+		buffer.position(start + length);
+	}
+
+	/**
+	 * Writes the buffer to the channel if it might not fit another record.
+	 */
+	private void ensureRoom() {
+		if (encoding) {
+			return;
+		}
+		if (channel == null) {
+			throw new IllegalStateException("Objects can only be visited while writing.");
+		}
+
+		if (buffer.remaining() < MAX_RECORD_SIZE) {
+			try {
+				flush();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+
+	/**
+	 * Writes the buffer to the channel and clears it.
+	 *
+	 * @throws IOException
+	 *             if writing to the channel fails
+	 */
+	private void flush() throws IOException {
+		buffer.flip();
+		while (buffer.hasRemaining()) {
+			channel.write(buffer);
+		}
+		buffer.clear();
+	}
+}
@@ -0,0 +1,87 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+/**
+ * The constants and helpers shared by JvdbSaver and JvdbReader. A JVDB file is
+ * the binary counterpart of a JVD file, holding exactly the attributes JVD
+ * does, so documents can be converted between the two without loss.
+ *
+ * A file starts with the header:
+ *
+ * <pre>
+ * magic        "JVDB"
+ * version      1 byte
+ * count        varint, the number of objects
+ * bounds       4 zig-zag varints: min x, min y, max x, max y
+ * palette      varint size, then 3 bytes (red, green, blue) per color
+ * </pre>
+ *
+ * followed by a record per object, in drawing order. A record is a tag byte
+ * and the object's attributes:
+ *
+ * <pre>
+ * LINE         dx dy  ex ey  color
+ * CIRCLE       dx dy  radius color
+ * FCIRCLE      dx dy  radius color fill
+ * </pre>
+ *
+ * where dx and dy are zig-zag varints holding the difference between the
+ * object's start point (the center of a circle) and the start point of the
+ * previous object, ex and ey are zig-zag varints holding the difference
+ * between a line's end and start points, the radius is a varint, and colors
+ * are varint indices into the palette. Differences are taken with int
+ * overflow, which decoding reverses.
+ *
+ * A varint stores 7 bits per byte, least significant first, with the high bit
+ * set on every byte but the last. Zig-zag encoding maps signed numbers to
+ * unsigned ones so that small magnitudes take few bytes.
+ *
+ * @author Damjan Vučina
+ */
+final class JvdbFormat {
+
+	/** The bytes every file starts with. */
+	static final byte[] MAGIC = { 'J', 'V', 'D', 'B' };
+
+	/** The version of the format. */
+	static final byte VERSION = 1;
+
+	/** The tag of line records. */
+	static final byte LINE = 0;
+
+	/** The tag of circle records. */
+	static final byte CIRCLE = 1;
+
+	/** The tag of filled circle records. */
+	static final byte FILLED_CIRCLE = 2;
+
+	/** The largest number of bytes of a varint. */
+	static final int MAX_VARINT_SIZE = 5;
+
+	/**
+	 * Prevents instantiation.
+	 */
+	private JvdbFormat() {
+	}
+
+	/**
+	 * Maps the given signed number to an unsigned one.
+	 *
+	 * @param n
+	 *            the number
+	 * @return the zig-zag encoded number
+	 */
+	static int zigZag(int n) {
+		return (n << 1) ^ (n >> 31);
+	}
+
+	/**
+	 * Maps the given zig-zag encoded number back to the signed one.
+	 *
+	 * @param n
+	 *            the zig-zag encoded number
+	 * @return the number
+	 */
+	static int unZigZag(int n) {
+		return (n >>> 1) ^ -(n & 1);
+	}
+}
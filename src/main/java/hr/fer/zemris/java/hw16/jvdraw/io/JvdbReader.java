@@ -0,0 +1,281 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
+import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
+
+/**
+ * The class that reads the JVDB representation of an image, as written by
+ * JvdbSaver. The header is read when the reader is created, so the number of
+ * objects and their bounds are known before the objects are. See JvdbFormat
+ * for the layout.
+ *
+ * Any deviation from the format is reported as an ObjectModelException with
+ * the offset it was found at.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdbReader {
+
+	/** The buffer holding the representation. */
+	private final ByteBuffer buffer;
+
+	/** The number of objects. */
+	private final int count;
+
+	/** The bounds of the objects. */
+	private final Rectangle bounds;
+
+	/** The colors of the palette. */
+	private final Color[] colors;
+
+	/**
+	 * Instantiates a new reader of the remaining bytes of the given buffer, and
+	 * reads the header.
+	 *
+	 * @param buffer
+	 *            the buffer
+	 * @throws ObjectModelException
+	 *             if the header is malformed
+	 */
+	public JvdbReader(ByteBuffer buffer) {
+		this.buffer = Objects.requireNonNull(buffer, "Buffer cannot be null.");
+
+		try {
+			for (byte b : JvdbFormat.MAGIC) {
+				if (buffer.get() != b) {
+					throw new ObjectModelException("Not a JVDB file.");
+				}
+			}
+			byte version = buffer.get();
+			if (version != JvdbFormat.VERSION) {
+				throw error("Unsupported version " + version, buffer.position() - 1);
+			}
+
+			count = getCount("object count");
+			int minX = getSigned();
+			int minY = getSigned();
+			int maxX = getSigned();
+			int maxY = getSigned();
+			bounds = new Rectangle(minX, minY, maxX - minX, maxY - minY);
+
+			int paletteSize = getCount("palette size");
+			if (paletteSize > buffer.remaining() / 3) {
+				throw error("Unexpected end of file", buffer.limit());
+			}
+
+			ColorPalette palette = new ColorPalette();
+			colors = new Color[paletteSize];
+			for (int i = 0; i < paletteSize; i++) {
+				int red = buffer.get() & 0xFF;
+				int green = buffer.get() & 0xFF;
+				int blue = buffer.get() & 0xFF;
+				colors[i] = palette.intern(red, green, blue).getColor();
+			}
+		} catch (BufferUnderflowException e) {
+			throw error("Unexpected end of file", buffer.limit());
+		}
+	}
+
+	/**
+	 * Reads the geometrical objects stored in the JVDB file at the given path.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the objects, in drawing order
+	 * @throws IOException
+	 *             if reading the file fails
+	 * @throws ObjectModelException
+	 *             if the file is malformed, or larger than the
+	 *             {@value Integer#MAX_VALUE} bytes a single mapping can hold
+	 */
+	public static List<GeometricalObject> load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			if (size > Integer.MAX_VALUE) {
+				throw new ObjectModelException(
+						"File is too large to be read as JVDB (" + size + " bytes, at most " + Integer.MAX_VALUE + ").");
+			}
+			ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+			return new JvdbReader(buffer).readObjects();
+		}
+	}
+
+	/**
+	 * Gets the number of objects.
+	 *
+	 * @return the number of objects
+	 */
+	public int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the bounds of the objects, as stored in the header. For an empty
+	 * image, the bounds are empty and at the origin.
+	 *
+	 * @return the bounds
+	 */
+	public Rectangle getBounds() {
+		return new Rectangle(bounds);
+	}
+
+	/**
+	 * Reads the objects. The records must end exactly at the end of the buffer.
+	 *
+	 * @return the objects, in drawing order
+	 * @throws ObjectModelException
+	 *             if a record is malformed
+	 */
+	public List<GeometricalObject> readObjects() {
+		// every record takes at least 5 bytes, so a corrupt count is not trusted
+		List<GeometricalObject> objects = new ArrayList<>(Math.min(count, buffer.remaining() / 5));
+		int x = 0;
+		int y = 0;
+
+		try {
+			for (int i = 0; i < count; i++) {
+				int offset = buffer.position();
+				byte tag = buffer.get();
+				x += getSigned();
+				y += getSigned();
+
+				switch (tag) {
+				case JvdbFormat.LINE:
+					int endX = x + getSigned();
+					int endY = y + getSigned();
+					objects.add(new Line(new Point(x, y), new Point(endX, endY), getColor()));
+					break;
+
+				case JvdbFormat.CIRCLE:
+					int radius = getRadius();
+					objects.add(new Circle(new Point(x, y), new Point(x, y + radius), getColor()));
+					break;
+
+				case JvdbFormat.FILLED_CIRCLE:
+					radius = getRadius();
+					objects.add(new FilledCircle(new Point(x, y), new Point(x, y + radius), getColor(), getColor()));
+					break;
+
+				default:
+					throw error("Unknown record tag " + tag, offset);
+				}
+			}
+		} catch (BufferUnderflowException e) {
+			throw error("Unexpected end of file", buffer.limit());
+		}
+
+		if (buffer.hasRemaining()) {
+			throw error("Unexpected data after the last object", buffer.position());
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Reads a varint holding a count, which must not be negative.
+	 *
+	 * @param name
+	 *            the name of the count, used in error messages
+	 * @return the count
+	 */
+	private int getCount(String name) {
+		int offset = buffer.position();
+		int count = getUnsigned();
+		if (count < 0) {
+			throw error("Invalid " + name + " " + Integer.toUnsignedString(count), offset);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Reads a varint holding a radius, which must not be negative.
+	 *
+	 * @return the radius
+	 */
+	private int getRadius() {
+		int offset = buffer.position();
+		int radius = getUnsigned();
+		if (radius < 0) {
+			throw error("Invalid radius " + Integer.toUnsignedString(radius), offset);
+		}
+
+		return radius;
+	}
+
+	/**
+	 * Reads a varint holding an index into the palette.
+	 *
+	 * @return the color at the index
+	 */
+	private Color getColor() {
+		int offset = buffer.position();
+		int index = getUnsigned();
+		if (index < 0 || index >= colors.length) {
+			throw error("Color index " + Integer.toUnsignedString(index) + " out of range", offset);
+		}
+
+		return colors[index];
+	}
+
+	/**
+	 * Reads a zig-zag varint.
+	 *
+	 * @return the signed number
+	 */
+	private int getSigned() {
+		return JvdbFormat.unZigZag(getUnsigned());
+	}
+
+	/**
+	 * Reads a varint.
+	 *
+	 * @return the number, taken as unsigned
+	 */
+	private int getUnsigned() {
+		int offset = buffer.position();
+		int n = 0;
+		for (int shift = 0; shift < 7 * JvdbFormat.MAX_VARINT_SIZE; shift += 7) {
+			byte b = buffer.get();
+			n |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				if (shift == 28 && b > 0x0F) {
+					break;
+				}
+				return n;
+			}
+		}
+
+		throw error("Malformed number", offset);
+	}
+
+	/**
+	 * Creates the error with the given message, located at the given offset.
+	 *
+	 * @param message
+	 *            the message
+	 * @param offset
+	 *            the offset in the buffer
+	 * @return the error
+	 */
+	private static ObjectModelException error(String message, int offset) {
+		return new ObjectModelException(message + " at offset " + offset + ".");
+	}
+}
@@ -0,0 +1,333 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectVisitor;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The class responsible for generating the JVDB representation of an image
+ * and saving such file, the binary counterpart of GeometricalObjectSaver. The
+ * visited objects are encoded into records right away, while the palette and
+ * the bounds are collected for the header, which is written in front of the
+ * records when saving. See JvdbFormat for the layout.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdbSaver implements GeometricalObjectVisitor {
+
+	/** The initial capacity of the records buffer. */
+	private static final int INITIAL_CAPACITY = 4096;
+
+	/** The encoded records. */
+	private Encoder records = new Encoder(INITIAL_CAPACITY);
+
+	/** The number of visited objects. */
+	private int count;
+
+	/** The indices of the colors in the palette, by their RGB values. */
+	private final Map<Integer, Integer> palette = new LinkedHashMap<>();
+
+	/** The x coordinate of the start point of the previous object. */
+	private int previousX;
+
+	/** The y coordinate of the start point of the previous object. */
+	private int previousY;
+
+	/** The smallest x coordinate of the visited objects. */
+	private long minX = Long.MAX_VALUE;
+
+	/** The smallest y coordinate of the visited objects. */
+	private long minY = Long.MAX_VALUE;
+
+	/** The largest x coordinate of the visited objects. */
+	private long maxX = Long.MIN_VALUE;
+
+	/** The largest y coordinate of the visited objects. */
+	private long maxY = Long.MIN_VALUE;
+
+	/**
+	 * Generates JVDB representation of the given line.
+	 */
+	@Override
+	public void visit(Line line) {
+		Point start = line.getStartPoint();
+		Point end = line.getEndPoint();
+
+		records.putByte(JvdbFormat.LINE);
+		putStart(start);
+		records.putSigned(end.x - start.x);
+		records.putSigned(end.y - start.y);
+		putColor(line.getFgColor());
+
+		include(start.x, start.y, start.x, start.y);
+		include(end.x, end.y, end.x, end.y);
+	}
+
+	/**
+	 * Generates JVDB representation of the given circle.
+	 */
+	@Override
+	public void visit(Circle circle) {
+		records.putByte(JvdbFormat.CIRCLE);
+		putCircle(circle);
+	}
+
+	/**
+	 * Generates JVDB representation of the given filled circle.
+	 */
+	@Override
+	public void visit(FilledCircle filledCircle) {
+		records.putByte(JvdbFormat.FILLED_CIRCLE);
+		putCircle(filledCircle);
+		putColor(filledCircle.getBgColor());
+	}
+
+	/**
+	 * Saves JVDB representation of the image to the path specified.
+	 *
+	 * @param savePath
+	 *            the save path
+	 * @throws IOException
+	 *             Signals that an I/O exception has occurred.
+	 */
+	public void save(Path savePath) throws IOException {
+		//@formatter:off
+		ByteBuffer[] buffers = {
+			ByteBuffer.wrap(header()),
+			ByteBuffer.wrap(records.bytes, 0, records.size)
+		};
+		//@formatter:on
+		reset();
+
+		try (FileChannel channel = FileChannel.open(savePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			while (buffers[0].hasRemaining() || buffers[1].hasRemaining()) {
+				channel.write(buffers);
+			}
+		}
+	}
+
+	/**
+	 * Gets the JVDB representation of the image, the way it would be saved.
+	 *
+	 * @return the jvdb representation of image
+	 */
+	public byte[] getJVDB() {
+		byte[] header = header();
+		byte[] jvdb = Arrays.copyOf(header, header.length + records.size);
+		System.arraycopy(records.bytes, 0, jvdb, header.length, records.size);
+		reset();
+
+		return jvdb;
+	}
+
+	/**
+	 * Encodes the header.
+	 *
+	 * @return the header
+	 */
+	private byte[] header() {
+		int capacity = JvdbFormat.MAGIC.length + 1 + 6 * JvdbFormat.MAX_VARINT_SIZE + 3 * palette.size();
+		Encoder header = new Encoder(capacity);
+		for (byte b : JvdbFormat.MAGIC) {
+			header.putByte(b);
+		}
+		header.putByte(JvdbFormat.VERSION);
+		header.putUnsigned(count);
+
+		boolean empty = count == 0;
+		header.putSigned(empty ? 0 : clamp(minX));
+		header.putSigned(empty ? 0 : clamp(minY));
+		header.putSigned(empty ? 0 : clamp(maxX));
+		header.putSigned(empty ? 0 : clamp(maxY));
+
+		header.putUnsigned(palette.size());
+		for (int rgb : palette.keySet()) {
+			header.putByte((byte) (rgb >> 16));
+			header.putByte((byte) (rgb >> 8));
+			header.putByte((byte) rgb);
+		}
+
+		return Arrays.copyOf(header.bytes, header.size);
+	}
+
+	/**
+	 * Forgets the visited objects.
+	 */
+	private void reset() {
+		records = new Encoder(INITIAL_CAPACITY);
+		count = 0;
+		palette.clear();
+		previousX = 0;
+		previousY = 0;
+		minX = Long.MAX_VALUE;
+		minY = Long.MAX_VALUE;
+		maxX = Long.MIN_VALUE;
+		maxY = Long.MIN_VALUE;
+	}
+
+	/**
+	 * Encodes the attributes of the given circle, following its tag.
+	 *
+	 * @param circle
+	 *            the circle
+	 */
+	private void putCircle(Circle circle) {
+		Point center = circle.getCenter();
+		int radius = circle.calculateRadius();
+
+		putStart(center);
+		records.putUnsigned(radius);
+		putColor(circle.getFgColor());
+
+		//@formatter:off
+		include(center.x - (long) radius, center.y - (long) radius,
+				center.x + (long) radius, center.y + (long) radius);
+		//@formatter:on
+	}
+
+	/**
+	 * Encodes the start point of an object as the difference from the start
+	 * point of the previous one, and counts the object.
+	 *
+	 * @param start
+	 *            the start point
+	 */
+	private void putStart(Point start) {
+		records.putSigned(start.x - previousX);
+		records.putSigned(start.y - previousY);
+		previousX = start.x;
+		previousY = start.y;
+		count++;
+	}
+
+	/**
+	 * Encodes the given color as its index in the palette, adding it to the
+	 * palette if it is not there yet.
+	 *
+	 * @param color
+	 *            the color
+	 */
+	private void putColor(Color color) {
+		int rgb = color.getRGB() & 0xFFFFFF;
+		Integer index = palette.get(rgb);
+		if (index == null) {
+			index = palette.size();
+			palette.put(rgb, index);
+		}
+
+		records.putUnsigned(index);
+	}
+
+	/**
+	 * Extends the bounds of the visited objects to include the given rectangle.
+	 *
+	 * @param x1
+	 *            the smallest x coordinate of the rectangle
+	 * @param y1
+	 *            the smallest y coordinate of the rectangle
+	 * @param x2
+	 *            the largest x coordinate of the rectangle
+	 * @param y2
+	 *            the largest y coordinate of the rectangle
+	 */
+	private void include(long x1, long y1, long x2, long y2) {
+		minX = Math.min(minX, x1);
+		minY = Math.min(minY, y1);
+		maxX = Math.max(maxX, x2);
+		maxY = Math.max(maxY, y2);
+	}
+
+	/**
+	 * Clamps the given coordinate to the range of int.
+	 *
+	 * @param coordinate
+	 *            the coordinate
+	 * @return the clamped coordinate
+	 */
+	private static int clamp(long coordinate) {
+		return (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, coordinate));
+	}
+
+	/**
+	 * The growable array the numbers of the format are encoded into.
+	 */
+	private static class Encoder {
+
+		/** The encoded bytes. */
+		private byte[] bytes;
+
+		/** The number of encoded bytes. */
+		private int size;
+
+		/**
+		 * Instantiates a new encoder.
+		 *
+		 * @param capacity
+		 *            the initial capacity
+		 */
+		private Encoder(int capacity) {
+			bytes = new byte[capacity];
+		}
+
+		/**
+		 * Encodes the given signed number as a zig-zag varint.
+		 *
+		 * @param n
+		 *            the number
+		 */
+		private void putSigned(int n) {
+			putUnsigned(JvdbFormat.zigZag(n));
+		}
+
+		/**
+		 * Encodes the given number, taken as unsigned, as a varint.
+		 *
+		 * @param n
+		 *            the number
+		 */
+		private void putUnsigned(int n) {
+			ensureCapacity(JvdbFormat.MAX_VARINT_SIZE);
+			while ((n & ~0x7F) != 0) {
+				bytes[size++] = (byte) (n & 0x7F | 0x80);
+				n >>>= 7;
+			}
+			bytes[size++] = (byte) n;
+		}
+
+		/**
+		 * Encodes the given byte.
+		 *
+		 * @param b
+		 *            the byte
+		 */
+		private void putByte(byte b) {
+			ensureCapacity(1);
+			bytes[size++] = b;
+		}
+
+		/**
+		 * Grows the array, if needed, to fit the given number of bytes more.
+		 *
+		 * @param count
+		 *            the number of bytes
+		 */
+		private void ensureCapacity(int count) {
+			if (size + count > bytes.length) {
+				bytes = Arrays.copyOf(bytes, Math.max(2 * bytes.length, size + count));
+			}
+		}
+	}
+}
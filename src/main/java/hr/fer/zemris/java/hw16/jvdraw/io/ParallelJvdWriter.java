@@ -0,0 +1,219 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+
+/**
+ * The class that writes the JVD representation of an image using several
+ * threads. The objects are split into shards of consecutive objects, which are
+ * encoded concurrently on a fork-join pool, each by its own JvdWriter into its
+ * own buffer, and then written to the channel in order by a single gathering
+ * write. The output is byte for byte the same as JvdWriter and
+ * GeometricalObjectSaver produce.
+ *
+ * Shards are processed in rounds of at most twice as many shards as the pool
+ * has threads, so the memory used is bounded by the buffers of one round and
+ * does not depend on the size of the image. The buffers are allocated on first
+ * use, only as many as the saved images need. Images of fewer than
+ * {@value #PARALLEL_THRESHOLD} shards, and every image when the pool has a
+ * single thread, are written by one sequential JvdWriter instead, since
+ * splitting them costs more than it gains. The objects must not change while they
+ * are being written, which is why a DocumentSnapshot is the intended input;
+ * reading a snapshot's range starts in logarithmic time. A writer is not safe
+ * for use by multiple threads.
+ *
+ * @author Damjan Vučina
+ */
+public class ParallelJvdWriter {
+
+	/** The default number of objects of a shard. */
+	public static final int DEFAULT_SHARD_SIZE = 2048;
+
+	/** The number of shards an image must fill to be encoded in parallel. */
+	public static final int PARALLEL_THRESHOLD = 4;
+
+	/** The pool the shards are encoded on. */
+	private final ForkJoinPool pool;
+
+	/** The number of objects of a shard. */
+	private final int shardSize;
+
+	/** The writers encoding the shards of a round, allocated on first use. */
+	private final JvdWriter[] shards;
+
+	/** The writer of the images written sequentially, allocated on first use. */
+	private JvdWriter sequential;
+
+	/** The encoded shards of the current round. */
+	private final ByteBuffer[] buffers;
+
+	/**
+	 * Instantiates a new writer encoding shards of the default size on the
+	 * common fork-join pool.
+	 */
+	public ParallelJvdWriter() {
+		this(ForkJoinPool.commonPool(), DEFAULT_SHARD_SIZE);
+	}
+
+	/**
+	 * Instantiates a new writer.
+	 *
+	 * @param pool
+	 *            the pool the shards are encoded on
+	 * @param shardSize
+	 *            the number of objects of a shard
+	 */
+	public ParallelJvdWriter(ForkJoinPool pool, int shardSize) {
+		this.pool = Objects.requireNonNull(pool, "Pool cannot be null.");
+		if (shardSize < 1 || shardSize > Integer.MAX_VALUE / JvdWriter.MAX_RECORD_SIZE) {
+			throw new IllegalArgumentException("Shard size must be positive and fit a buffer, was: " + shardSize);
+		}
+		this.shardSize = shardSize;
+
+		shards = new JvdWriter[2 * pool.getParallelism()];
+		buffers = new ByteBuffer[shards.length];
+	}
+
+	/**
+	 * Gets the pool the shards are encoded on.
+	 *
+	 * @return the pool
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gets the number of objects of a shard.
+	 *
+	 * @return the shard size
+	 */
+	public int getShardSize() {
+		return shardSize;
+	}
+
+	/**
+	 * Saves the JVD representation of the given objects to the given path.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param savePath
+	 *            the save path
+	 * @throws IOException
+	 *             if writing the file fails
+	 */
+	public void save(List<? extends GeometricalObject> objects, Path savePath) throws IOException {
+		try (FileChannel channel = FileChannel.open(savePath, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)) {
+			write(objects, channel);
+		}
+	}
+
+	/**
+	 * Writes the JVD representation of the given objects to the given channel.
+	 * The channel is not closed.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param channel
+	 *            the channel
+	 * @throws IOException
+	 *             if writing to the channel fails
+	 */
+	public void write(List<? extends GeometricalObject> objects, GatheringByteChannel channel) throws IOException {
+		Objects.requireNonNull(objects, "Objects cannot be null.");
+		Objects.requireNonNull(channel, "Channel cannot be null.");
+
+		int size = objects.size();
+		if (pool.getParallelism() == 1 || size < (long) PARALLEL_THRESHOLD * shardSize) {
+			if (sequential == null) {
+				sequential = new JvdWriter();
+			}
+			sequential.write(objects, channel);
+			return;
+		}
+
+		long roundSize = (long) shards.length * shardSize;
+		for (long from = 0; from < size; from += roundSize) {
+			int count = (int) Math.min(shards.length, (size - from + shardSize - 1) / shardSize);
+			for (int i = 0; i < count && shards[i] == null; i++) {
+				shards[i] = new JvdWriter(shardSize * JvdWriter.MAX_RECORD_SIZE);
+			}
+			pool.invoke(new EncodeTask(objects, (int) from, 0, count));
+
+			while (buffers[count - 1].hasRemaining()) {
+				channel.write(buffers, 0, count);
+			}
+		}
+	}
+
+	/**
+	 * The task encoding a range of the shards of a round, splitting it in halves
+	 * until a single shard is left.
+	 */
+	private class EncodeTask extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The objects. */
+		private final List<? extends GeometricalObject> objects;
+
+		/** The index of the first object of the round. */
+		private final int roundStart;
+
+		/** The first shard of the range. */
+		private final int from;
+
+		/** The end of the range, exclusive. */
+		private final int to;
+
+		/**
+		 * Instantiates a new task.
+		 *
+		 * @param objects
+		 *            the objects
+		 * @param roundStart
+		 *            the index of the first object of the round
+		 * @param from
+		 *            the first shard of the range
+		 * @param to
+		 *            the end of the range, exclusive
+		 */
+		private EncodeTask(List<? extends GeometricalObject> objects, int roundStart, int from, int to) {
+			this.objects = objects;
+			this.roundStart = roundStart;
+			this.from = from;
+			this.to = to;
+		}
+
+		/**
+		 * Encodes the range.
+		 */
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				int start = roundStart + from * shardSize;
+				int end = (int) Math.min(objects.size(), (long) start + shardSize);
+				buffers[from] = shards[from].encode(objects, start, end);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			//@formatter:off
+			invokeAll(new EncodeTask(objects, roundStart, from, middle),
+					  new EncodeTask(objects, roundStart, middle, to));
+			//@formatter:on
+		}
+	}
+}
@@ -0,0 +1,406 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The class that represents the palette of colors used by a document. Colors
+ * are interned: every distinct color is stored in a single palette entry, and
+ * the objects drawn on the canvas refer to entries instead of holding their own
+ * Color instances.
+ *
+ * Since entries are shared, changing the color of an entry recolors all objects
+ * referring to it at once. Recoloring all objects of a given color therefore
+ * only touches the palette, whose size is the number of distinct colors in the
+ * document, not the number of objects.
+ *
+ * The colors are kept in an array of ARGB values indexed by the entries, which
+ * is copied before an entry's color is changed once it has been handed out by
+ * colors, so an array handed out earlier keeps the colors the entries had at
+ * that time. This lets snapshots of the document capture the colors in
+ * constant time. An Entry is only a handle of its index, created on demand.
+ *
+ * The palette also counts the uses of its entries by the stored objects of its
+ * document, and keeps a digest of the colors of the used entries, so the
+ * colors actually in use and their digest are known without visiting the
+ * objects.
+ *
+ * @author Damjan Vučina
+ */
+public class ColorPalette {
+
+	/** The initial capacity of the array of colors. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The ARGB values of the colors of the entries. */
+	private int[] colors;
+
+	/** The Color instances of the entries, created on demand. */
+	private Color[] instances;
+
+	/** The number of entries. */
+	private int size;
+
+	/** Whether the array of colors has been handed out and must be copied before a color is changed. */
+	private boolean shared;
+
+	/** The indices of the entries, mapped by the ARGB values of their colors. */
+	private LongLongMap indices;
+
+	/** The number of uses of every entry by the stored objects. */
+	private int[] uses;
+
+	/** The digest of the colors of the used entries. */
+	private long digest;
+
+	/**
+	 * Instantiates a new, empty color palette.
+	 */
+	public ColorPalette() {
+		colors = new int[INITIAL_CAPACITY];
+		instances = new Color[INITIAL_CAPACITY];
+		uses = new int[INITIAL_CAPACITY];
+		indices = new LongLongMap();
+	}
+
+	/**
+	 * Gets the entry holding the given color, creating it if there is none.
+	 *
+	 * @param color
+	 *            the color
+	 * @return the entry
+	 */
+	public Entry intern(Color color) {
+		Objects.requireNonNull(color, "Color cannot be null.");
+
+		return intern(color.getRGB());
+	}
+
+	/**
+	 * Gets the entry holding the opaque color with the given components,
+	 * creating it if there is none. No Color instance is allocated.
+	 *
+	 * @param red
+	 *            the red component, from 0 to 255
+	 * @param green
+	 *            the green component, from 0 to 255
+	 * @param blue
+	 *            the blue component, from 0 to 255
+	 * @return the entry
+	 */
+	public Entry intern(int red, int green, int blue) {
+		if ((red | green | blue) < 0 || red > 255 || green > 255 || blue > 255) {
+			throw new IllegalArgumentException(
+					"Color components must be from 0 to 255, were: " + red + ", " + green + ", " + blue);
+		}
+
+		return intern(0xFF000000 | red << 16 | green << 8 | blue);
+	}
+
+	/**
+	 * Gets the number of entries.
+	 *
+	 * @return the number of entries
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the entry with the given index.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the entry
+	 */
+	public Entry getEntry(int index) {
+		checkIndex(index);
+
+		return new Entry(this, index);
+	}
+
+	/**
+	 * Gets the current color of the entry with the given index.
+	 *
+	 * @param index
+	 *            the index
+	 * @return the color
+	 */
+	public Color getColor(int index) {
+		checkIndex(index);
+
+		if (instances[index] == null) {
+			instances[index] = new Color(colors[index], true);
+		}
+		return instances[index];
+	}
+
+	/**
+	 * Checks whether the given entry is one of the entries of this palette.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return true, if the entry belongs to this palette
+	 */
+	public boolean contains(Entry entry) {
+		return entry.palette == this;
+	}
+
+	/**
+	 * Changes the color of all entries holding the given color, recoloring every
+	 * object that refers to them. Takes time proportional to the size of the
+	 * palette.
+	 *
+	 * @param from
+	 *            the color to be replaced
+	 * @param to
+	 *            the new color
+	 * @return the changed entries
+	 */
+	public List<Entry> recolor(Color from, Color to) {
+		Objects.requireNonNull(from, "Color cannot be null.");
+		Objects.requireNonNull(to, "Color cannot be null.");
+
+		List<Entry> changed = new ArrayList<>();
+		if (from.getRGB() == to.getRGB()) {
+			return changed;
+		}
+
+		for (int i = 0; i < size; i++) {
+			if (colors[i] == from.getRGB()) {
+				changed.add(new Entry(this, i));
+			}
+		}
+		for (Entry entry : changed) {
+			setColor(entry, to);
+		}
+
+		return changed;
+	}
+
+	/**
+	 * Gets the distinct colors of the entries used by the stored objects, in
+	 * the order of the entries. Takes time proportional to the size of the
+	 * palette.
+	 *
+	 * @return the colors
+	 */
+	public List<Color> getUsedColors() {
+		List<Color> used = new ArrayList<>();
+		LongLongMap seen = new LongLongMap();
+		for (int i = 0; i < size; i++) {
+			if (uses[i] > 0 && seen.put(keyOf(colors[i]), i) == LongLongMap.MISSING) {
+				used.add(new Color(colors[i], true));
+			}
+		}
+
+		return used;
+	}
+
+	/**
+	 * Changes the color of the given entry, keeping the lookup of entries by
+	 * their colors consistent.
+	 *
+	 * @param entry
+	 *            the entry, belonging to this palette
+	 * @param color
+	 *            the new color
+	 */
+	void setColor(Entry entry, Color color) {
+		int index = entry.index;
+		int old = colors[index];
+		if (indices.get(keyOf(old)) == index) {
+			indices.remove(keyOf(old));
+		}
+
+		if (shared) {
+			colors = colors.clone();
+			shared = false;
+		}
+		colors[index] = color.getRGB();
+		instances[index] = color;
+		if (indices.get(keyOf(colors[index])) == LongLongMap.MISSING) {
+			indices.put(keyOf(colors[index]), index);
+		}
+
+		if (uses[index] > 0) {
+			digest += hash(index, colors[index]) - hash(index, old);
+		}
+	}
+
+	/**
+	 * Hands out the ARGB values of the colors of the entries, indexed by the
+	 * entries. The array is never modified at the indices of the existing
+	 * entries afterwards, so it keeps describing the current colors of the
+	 * entries.
+	 *
+	 * @return the colors
+	 */
+	int[] colors() {
+		shared = true;
+		return colors;
+	}
+
+	/**
+	 * Records a use of the entry with the given index by a stored object.
+	 *
+	 * @param index
+	 *            the index
+	 */
+	void retain(int index) {
+		if (uses[index]++ == 0) {
+			digest += hash(index, colors[index]);
+		}
+	}
+
+	/**
+	 * Records that a stored object no longer uses the entry with the given
+	 * index.
+	 *
+	 * @param index
+	 *            the index
+	 */
+	void release(int index) {
+		if (--uses[index] == 0) {
+			digest -= hash(index, colors[index]);
+		}
+	}
+
+	/**
+	 * Gets the digest of the indices and the colors of the used entries.
+	 *
+	 * @return the digest
+	 */
+	long digest() {
+		return digest;
+	}
+
+	/**
+	 * Gets the entry holding the color with the given ARGB value, creating it
+	 * if there is none.
+	 *
+	 * @param rgb
+	 *            the ARGB value
+	 * @return the entry
+	 */
+	private Entry intern(int rgb) {
+		long index = indices.get(keyOf(rgb));
+		if (index != LongLongMap.MISSING) {
+			return new Entry(this, (int) index);
+		}
+
+		if (size == colors.length) {
+			colors = Arrays.copyOf(colors, 2 * size);
+			instances = Arrays.copyOf(instances, 2 * size);
+			uses = Arrays.copyOf(uses, 2 * size);
+			shared = false;
+		}
+		// entries beyond the size are never read through a handed out array
+		colors[size] = rgb;
+		indices.put(keyOf(rgb), size);
+
+		return new Entry(this, size++);
+	}
+
+	/**
+	 * Checks that an entry with the given index exists.
+	 *
+	 * @param index
+	 *            the index
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IllegalArgumentException("Valid indices are from 0 to " + (size - 1) + ", was: " + index);
+		}
+	}
+
+	/**
+	 * Gets the positive key the given ARGB value is mapped by.
+	 *
+	 * @param rgb
+	 *            the ARGB value
+	 * @return the key
+	 */
+	private static long keyOf(int rgb) {
+		return (rgb & 0xFFFFFFFFL) + 1;
+	}
+
+	/**
+	 * Calculates the hash of a used entry out of its index and its color.
+	 *
+	 * @param index
+	 *            the index
+	 * @param rgb
+	 *            the ARGB value of the color
+	 * @return the hash
+	 */
+	private static long hash(int index, int rgb) {
+		long h = (index * 0x9E3779B97F4A7C15L) ^ (rgb & 0xFFFFFFFFL);
+		h *= 0xFF51AFD7ED558CCDL;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * A single entry of a palette, i.e. the handle of its index. Objects that
+	 * do not belong to any document yet hold detached entries, which are not
+	 * part of any palette and hold their color themselves.
+	 */
+	public static final class Entry {
+
+		/** The palette of the entry, or null if it is detached. */
+		private final ColorPalette palette;
+
+		/** The index of the entry in its palette, or -1 if it is detached. */
+		private final int index;
+
+		/** The color of a detached entry. */
+		private final Color color;
+
+		/**
+		 * Instantiates a new detached entry.
+		 *
+		 * @param color
+		 *            the color
+		 */
+		public Entry(Color color) {
+			this.palette = null;
+			this.index = -1;
+			this.color = Objects.requireNonNull(color, "Color cannot be null.");
+		}
+
+		/**
+		 * Instantiates a new entry of the given palette.
+		 *
+		 * @param palette
+		 *            the palette
+		 * @param index
+		 *            the index of the entry in its palette
+		 */
+		private Entry(ColorPalette palette, int index) {
+			this.palette = palette;
+			this.index = index;
+			this.color = null;
+		}
+
+		/**
+		 * Gets the index of the entry in its palette.
+		 *
+		 * @return the index, or -1 if the entry is detached
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * Gets the current color of the entry.
+		 *
+		 * @return the color
+		 */
+		public Color getColor() {
+			return palette == null ? color : palette.getColor(index);
+		}
+	}
+}
@@ -0,0 +1,246 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * The class that keeps the history of the changes made to a DocumentModel,
+ * allowing them to be undone and redone. Every change is stored as a compact
+ * command describing only what has changed, e.g. the position and the
+ * detached subtree of removed objects, or the old and new attributes of an
+ * edited object, instead of a copy of the whole document.
+ *
+ * The history is bounded by a memory budget. Whenever the estimated size of
+ * the stored commands exceeds the budget, the oldest commands are forgotten.
+ * The most recent command is always kept, even if it alone exceeds the budget.
+ *
+ * @author Damjan Vučina
+ */
+public class CommandHistory {
+
+	/** The default memory budget, in bytes. */
+	public static final long DEFAULT_MEMORY_BUDGET = 32L << 20;
+
+	/** The commands that can be undone, the most recent one being the last. */
+	private Deque<Command> undoStack;
+
+	/** The commands that can be redone, the next one being the last. */
+	private Deque<Command> redoStack;
+
+	/** The maximal estimated size of all stored commands, in bytes. */
+	private long memoryBudget;
+
+	/** The estimated size of all stored commands, in bytes. */
+	private long memoryUsage;
+
+	/**
+	 * Instantiates a new command history with the default memory budget.
+	 */
+	public CommandHistory() {
+		this(DEFAULT_MEMORY_BUDGET);
+	}
+
+	/**
+	 * Instantiates a new command history.
+	 *
+	 * @param memoryBudget
+	 *            the maximal estimated size of all stored commands, in bytes
+	 */
+	public CommandHistory(long memoryBudget) {
+		undoStack = new ArrayDeque<>();
+		redoStack = new ArrayDeque<>();
+
+		setMemoryBudget(memoryBudget);
+	}
+
+	/**
+	 * Gets the memory budget.
+	 *
+	 * @return the maximal estimated size of all stored commands, in bytes
+	 */
+	public long getMemoryBudget() {
+		return memoryBudget;
+	}
+
+	/**
+	 * Sets the memory budget, forgetting the oldest commands if the stored ones
+	 * do not fit into the new budget.
+	 *
+	 * @param memoryBudget
+	 *            the maximal estimated size of all stored commands, in bytes
+	 */
+	public void setMemoryBudget(long memoryBudget) {
+		if (memoryBudget < 0) {
+			throw new IllegalArgumentException("Memory budget cannot be negative, was: " + memoryBudget);
+		}
+
+		this.memoryBudget = memoryBudget;
+		evict();
+	}
+
+	/**
+	 * Gets the estimated size of all stored commands.
+	 *
+	 * @return the estimated size, in bytes
+	 */
+	public long getMemoryUsage() {
+		return memoryUsage;
+	}
+
+	/**
+	 * Checks whether there is a change that can be undone.
+	 *
+	 * @return true, if there is a change that can be undone
+	 */
+	public boolean canUndo() {
+		return !undoStack.isEmpty();
+	}
+
+	/**
+	 * Checks whether there is a change that can be redone.
+	 *
+	 * @return true, if there is a change that can be redone
+	 */
+	public boolean canRedo() {
+		return !redoStack.isEmpty();
+	}
+
+	/**
+	 * Undoes the most recent change.
+	 *
+	 * @return true, if a change has been undone
+	 */
+	public boolean undo() {
+		Command command = undoStack.pollLast();
+		if (command == null) {
+			return false;
+		}
+
+		command.undo();
+		redoStack.addLast(command);
+		return true;
+	}
+
+	/**
+	 * Redoes the most recently undone change.
+	 *
+	 * @return true, if a change has been redone
+	 */
+	public boolean redo() {
+		Command command = redoStack.pollLast();
+		if (command == null) {
+			return false;
+		}
+
+		command.redo();
+		undoStack.addLast(command);
+		return true;
+	}
+
+	/**
+	 * Forgets all stored changes.
+	 */
+	public void clear() {
+		undoStack.clear();
+		redoStack.clear();
+		memoryUsage = 0;
+	}
+
+	/**
+	 * Stores a change that has just been made. All undone changes are
+	 * forgotten, since they can no longer be redone.
+	 *
+	 * @param command
+	 *            the command describing the change
+	 */
+	void record(Command command) {
+		Objects.requireNonNull(command, "Command cannot be null.");
+
+		for (Command undone : redoStack) {
+			memoryUsage -= undone.estimateSize();
+		}
+		redoStack.clear();
+
+		undoStack.addLast(command);
+		memoryUsage += command.estimateSize();
+		evict();
+	}
+
+	/**
+	 * Forgets the oldest changes until the stored ones fit into the memory
+	 * budget, always keeping at least one.
+	 */
+	private void evict() {
+		while (memoryUsage > memoryBudget && undoStack.size() + redoStack.size() > 1) {
+			Command evicted = undoStack.isEmpty() ? redoStack.pollFirst() : undoStack.pollFirst();
+			memoryUsage -= evicted.estimateSize();
+		}
+	}
+
+	/**
+	 * Creates a command consisting of the given commands, which are redone in
+	 * the given order and undone in the reverse order.
+	 *
+	 * @param commands
+	 *            the commands
+	 * @return the composed command
+	 */
+	static Command compose(List<Command> commands) {
+		Command[] parts = commands.toArray(new Command[commands.size()]);
+		long size = 0;
+		for (Command part : parts) {
+			size += part.estimateSize();
+		}
+		long estimatedSize = size;
+
+		return new Command() {
+
+			@Override
+			public void undo() {
+				for (int i = parts.length - 1; i >= 0; i--) {
+					parts[i].undo();
+				}
+			}
+
+			@Override
+			public void redo() {
+				for (Command part : parts) {
+					part.redo();
+				}
+			}
+
+			@Override
+			public long estimateSize() {
+				return estimatedSize;
+			}
+		};
+	}
+
+	/**
+	 * A single change stored in the history.
+	 */
+	interface Command {
+
+		/** The estimated size of a command without its payload, in bytes. */
+		long BASE_SIZE = 32;
+
+		/**
+		 * Reverts the change.
+		 */
+		void undo();
+
+		/**
+		 * Applies the change again after it has been reverted.
+		 */
+		void redo();
+
+		/**
+		 * Estimates the memory retained by this command.
+		 *
+		 * @return the estimated size, in bytes
+		 */
+		long estimateSize();
+	}
+}
@@ -1,9 +1,16 @@
 package hr.fer.zemris.java.hw16.jvdraw.model;
 
+import java.awt.Color;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Objects;
+import java.util.Set;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectListener;
 import static hr.fer.zemris.java.hw16.jvdraw.JVDraw.SHIFT_UP;
@@ -22,28 +29,110 @@ import static hr.fer.zemris.java.hw16.jvdraw.JVDraw.SHIFT_DOWN;
  *  This class also acts as a Subject
  * in the above mentioned pattern since it notifies an instance of DrawingCanvas
  * class that a new object has been added to the collection so it can be drawn
- * on the canvas.
+ * on the canvas. Listeners are notified through a DrawingModelEventBus, which
+ * delivers all changes made during one tick of the event dispatch thread in a
+ * single batch, unless a listener asks for synchronous delivery by
+ * implementing SynchronousDrawingModelListener. Batched events come with a
+ * read-only view of the collection as it was when they were fired, which
+ * shares the tree the collection had at that time.
+ * 
+ *  The model does not keep the objects handed to it. Their state is stored in
+ * the columns of the tree, and getObject and the list view create a new view
+ * of a stored object on every call, which is not kept either. A view carries
+ * the identifier of the object, so all views of an object, and the object
+ * originally added, are equal and are found by indexOf. Changes made to any of
+ * them are written back into the columns once their listeners are notified.
+ * 
+ *  Objects are kept in an order-statistic tree under sparse order labels, and
+ * every object's label is found through its stable identifier, in a map of
+ * primitive longs. This way the
+ * position of any object is known in logarithmic time, so removing, editing
+ * and reordering objects does not require scanning the whole collection. The
+ * tree keeps the state of the objects in immutable chunks of columns, and a
+ * change of an object copies only its chunk and the nodes above it, which
+ * makes taking an immutable snapshot of the whole collection a constant time
+ * operation. A second immutable tree indexes the labels by the places the
+ * stored states occupy on the canvas, and is updated alongside, so snapshots
+ * also find the objects in an area quickly.
+ * 
+ *  Every change is recorded in a CommandHistory as a compact command, so it
+ * can be undone and redone. Removed objects are kept in the detached subtree
+ * of the tree, which is linked back in when the removal is undone; undoing or
+ * redoing a bulk operation therefore takes time proportional to the number of
+ * affected objects only, without copying the rest of the document.
+ * 
+ *  The colors of all drawn objects are interned into the model's ColorPalette,
+ * so objects share a single entry per distinct color and all objects of a
+ * color can be recolored by changing the palette. The tree refers to the
+ * colors by their palette entries only, so recoloring copies neither chunks
+ * nor nodes; the palette versions its colors instead, and snapshots capture
+ * the version they were taken at.
  * 
  * @author Damjan Vučina
  */
 public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 
-	/** The currently drawn objects. */
+	/** The distance between the order labels of neighbouring objects. */
+	private static final long LABEL_GAP = 1L << 24;
+
+	/** The number of bits of an order label; labels are below 2^LABEL_BITS. */
+	private static final int LABEL_BITS = 62;
+
+	/** The exclusive upper bound of the order labels. */
+	private static final long LABEL_LIMIT = 1L << LABEL_BITS;
+
+	/**
+	 * The base of the density threshold of relabeled ranges: a range of 2^i
+	 * labels may hold at most DENSITY^i objects.
+	 */
+	private static final double DENSITY = 1.6;
+
+	/** The root of the tree holding the currently drawn objects. */
+	private ObjectTree.Node root;
+
+	/** The root of the tree indexing the labels in root by the objects' places. */
+	private SpatialTree.Node cells;
+
+	/** The order labels of the currently drawn objects, mapped by their ids. */
+	private LongLongMap labels;
+
+	/** The list view of the currently drawn objects. */
 	private List<GeometricalObject> objects;
 
 	/** The listeners. */
 	private List<DrawingModelListener> listeners;
 
+	/** The object responsible for delivering changes to the listeners. */
+	private DrawingModelEventBus eventBus;
+
+	/** The history of the changes made to this model. */
+	private CommandHistory history;
+
+	/** The palette holding the colors of the currently drawn objects. */
+	private ColorPalette palette;
+
+	/** The number of changes made to this model so far. */
+	private long modificationCount;
+
+	/** The digest of the content at the time it was last saved or opened. */
+	private long savedDigest;
+
 	/**
 	 * Instantiates a new document model.
 	 */
 	public DocumentModel() {
-		objects = new ArrayList<>();
+		labels = new LongLongMap();
+		objects = new ObjectsView();
 		listeners = new ArrayList<>();
+		eventBus = new DrawingModelEventBus(this, listeners, () -> new StateView(root, palette));
+		history = new CommandHistory();
+		palette = new ColorPalette();
 	}
 
 	/**
-	 * Gets the currently drawn objects.
+	 * Gets the currently drawn objects. The returned list is a live view of this
+	 * model, whose elements are views of the stored objects created on every
+	 * access; removing objects through it notifies the listeners.
 	 *
 	 * @return the currently drawn objects
 	 */
@@ -51,6 +140,17 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 		return objects;
 	}
 
+	/**
+	 * Takes an immutable snapshot of the currently drawn objects in constant
+	 * time. The snapshot can safely be read from other threads while this model
+	 * keeps changing.
+	 *
+	 * @return the snapshot
+	 */
+	public DocumentSnapshot snapshot() {
+		return new DocumentSnapshot(root, cells, palette.colors());
+	}
+
 	/**
 	 * Gets the listeners.
 	 *
@@ -61,13 +161,42 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 	}
 
 	/**
-	 * Sets the currently drawn objects.
+	 * Sets the currently drawn objects, as when a document is opened. Unlike
+	 * replaceAll, this cannot be undone: the history of changes is forgotten
+	 * and the palette is replaced by a new one holding only the colors of the
+	 * new objects. Listeners are notified by a single objectsRemoved event
+	 * covering the old content, followed by a single objectsAdded event
+	 * covering the new one.
 	 *
 	 * @param objects
 	 *            the currently drawn objects
 	 */
 	public void setObjects(List<GeometricalObject> objects) {
-		this.objects = objects;
+		Objects.requireNonNull(objects, "Objects cannot be null.");
+
+		List<GeometricalObject> newObjects = new ArrayList<>(objects);
+		Set<Long> ids = new HashSet<>();
+		for (GeometricalObject object : newObjects) {
+			if (!ids.add(Objects.requireNonNull(object, "Objects cannot contain null.").getId())) {
+				throw new IllegalArgumentException("Object is contained more than once: " + object);
+			}
+		}
+
+		if (root != null) {
+			eventBus.fireObjectsRemoved(0, getSize() - 1);
+		}
+
+		palette = new ColorPalette();
+		for (GeometricalObject object : newObjects) {
+			adopt(object);
+		}
+
+		rebuild(newObjects);
+		history.clear();
+		modificationCount++;
+		if (root != null) {
+			eventBus.fireObjectsAdded(0, getSize() - 1);
+		}
 	}
 
 	/**
@@ -78,6 +207,7 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 	 */
 	public void setListeners(List<DrawingModelListener> listeners) {
 		this.listeners = listeners;
+		eventBus.setListeners(listeners);
 	}
 
 	/**
@@ -87,28 +217,46 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 	 */
 	@Override
 	public int getSize() {
-		return objects.size();
+		return ObjectTree.size(root);
 	}
 
 	/**
-	 * Gets the specific object.
+	 * Creates a view of the specific object. The view is not kept by this
+	 * model, and changes made to it are stored once its listeners are
+	 * notified.
 	 *
 	 * @param index
 	 *            the index
-	 * @return the object
+	 * @return the view of the object
 	 */
 	@Override
 	public GeometricalObject getObject(int index) {
-		if (index < 0 || index >= objects.size()) {
+		if (index < 0 || index >= getSize()) {
 			throw new IllegalArgumentException(
-					"Valid indices are from 0 to " + (objects.size() - 1) + ", was: " + index);
+					"Valid indices are from 0 to " + (getSize() - 1) + ", was: " + index);
 		}
 
-		return objects.get(index);
+		return view(ObjectTree.valueAt(root, index, palette));
+	}
+
+	/**
+	 * Gets the index of the specified object in logarithmic time.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the index of the object, or -1 if it is not part of the collection
+	 */
+	@Override
+	public int indexOf(GeometricalObject object) {
+		Objects.requireNonNull(object, "Geometrical object cannot be null");
+
+		long label = labels.get(object.getId());
+		return label == LongLongMap.MISSING ? -1 : ObjectTree.rank(root, label);
 	}
 
 	/**
-	 * Adds the object to the collection.
+	 * Adds the object to the collection. Its current state is stored, and
+	 * changes made to it afterwards are stored once its listeners are notified.
 	 *
 	 * @param object
 	 *            the to be added object
@@ -116,15 +264,142 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 	@Override
 	public void add(GeometricalObject object) {
 		Objects.requireNonNull(object, "Cannot add null object");
+		if (labels.containsKey(object.getId())) {
+			throw new IllegalArgumentException("Object is already part of the collection: " + object);
+		}
 
-		objects.add(object);
-		object.addGeometricalObjectListener(this);
+		adopt(object);
+		int index = getSize();
+		attach(index, ObjectTree.build(Collections.singletonList(object), reserveLabels(index, 1)));
+		history.record(new RangeCommand(index, 1, null, true));
+	}
 
-		int modificationIndex = objects.size() - 1;
-		for (DrawingModelListener listener : listeners) {
-			listener.objectsAdded(this, modificationIndex, modificationIndex);
+	/**
+	 * Adds all given objects to the end of the collection, in the order they are
+	 * given. Listeners are notified by a single objectsAdded event covering the
+	 * whole added range.
+	 *
+	 * @param objects
+	 *            the to be added objects
+	 */
+	@Override
+	public void addAll(Collection<? extends GeometricalObject> objects) {
+		Objects.requireNonNull(objects, "Cannot add null objects");
+		if (objects.isEmpty()) {
+			return;
+		}
+
+		List<GeometricalObject> added = new ArrayList<>(objects);
+		Set<Long> ids = new HashSet<>();
+		for (GeometricalObject object : added) {
+			Objects.requireNonNull(object, "Cannot add null object");
+			if (labels.containsKey(object.getId()) || !ids.add(object.getId())) {
+				throw new IllegalArgumentException("Object is already part of the collection: " + object);
+			}
+		}
+		for (GeometricalObject object : added) {
+			adopt(object);
 		}
 
+		int index = getSize();
+		attach(index, ObjectTree.build(added, reserveLabels(index, added.size())));
+		history.record(new RangeCommand(index, added.size(), null, true));
+	}
+
+	/**
+	 * Removes all given objects from the collection. Listeners are notified by a
+	 * single objectsRemoved event per contiguous range of removed objects, fired
+	 * from the last range to the first one so the indices of every event are
+	 * valid at the time it is received.
+	 *
+	 * @param objects
+	 *            the objects to be removed from the collection
+	 */
+	@Override
+	public void removeAll(Collection<? extends GeometricalObject> objects) {
+		Objects.requireNonNull(objects, "Cannot remove null objects.");
+
+		int[] indices = new int[objects.size()];
+		int count = 0;
+		for (GeometricalObject object : objects) {
+			int index = indexOf(object);
+			if (index >= 0) {
+				indices[count++] = index;
+			}
+		}
+
+		List<CommandHistory.Command> commands = new ArrayList<>();
+		Arrays.sort(indices, 0, count);
+		int runEnd = count - 1;
+		while (runEnd >= 0) {
+			int runStart = runEnd;
+			while (runStart > 0 && indices[runStart - 1] >= indices[runStart] - 1) {
+				runStart--;
+			}
+
+			int index0 = indices[runStart];
+			int index1 = indices[runEnd];
+			commands.add(new RangeCommand(index0, index1 - index0 + 1, detach(index0, index1), false));
+
+			runEnd = runStart - 1;
+		}
+
+		if (!commands.isEmpty()) {
+			history.record(commands.size() == 1 ? commands.get(0) : CommandHistory.compose(commands));
+		}
+	}
+
+	/**
+	 * Replaces the whole content of the collection with the given objects.
+	 * Listeners are notified by a single objectsRemoved event covering the old
+	 * content, followed by a single objectsAdded event covering the new one.
+	 *
+	 * @param objects
+	 *            the new objects
+	 */
+	@Override
+	public void replaceAll(Collection<? extends GeometricalObject> objects) {
+		Objects.requireNonNull(objects, "Objects cannot be null.");
+
+		List<GeometricalObject> newObjects = new ArrayList<>(objects);
+		Set<Long> ids = new HashSet<>();
+		for (GeometricalObject object : newObjects) {
+			if (!ids.add(Objects.requireNonNull(object, "Objects cannot contain null.").getId())) {
+				throw new IllegalArgumentException("Object is contained more than once: " + object);
+			}
+		}
+		for (GeometricalObject object : newObjects) {
+			adopt(object);
+		}
+
+		List<CommandHistory.Command> commands = new ArrayList<>();
+		if (root != null) {
+			int size = getSize();
+			commands.add(new RangeCommand(0, size, detach(0, size - 1), false));
+		}
+
+		if (!newObjects.isEmpty()) {
+			attach(0, ObjectTree.build(newObjects, reserveLabels(0, newObjects.size())));
+			commands.add(new RangeCommand(0, newObjects.size(), null, true));
+		}
+
+		if (!commands.isEmpty()) {
+			history.record(CommandHistory.compose(commands));
+		}
+	}
+
+	/**
+	 * Removes all objects from the collection. Listeners are notified by a
+	 * single objectsRemoved event.
+	 */
+	@Override
+	public void clear() {
+		if (root == null) {
+			return;
+		}
+
+		int size = getSize();
+		history.record(new RangeCommand(0, size, detach(0, size - 1), false));
 	}
 
 	/**
@@ -137,12 +412,144 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 	public void remove(GeometricalObject object) {
 		Objects.requireNonNull(object, "Cannot remove null object.");
 
-		int modificationIndex = objects.indexOf(object);
-		for (DrawingModelListener listener : listeners) {
-			listener.objectsRemoved(this, modificationIndex, modificationIndex);
+		int modificationIndex = indexOf(object);
+		if (modificationIndex < 0) {
+			return;
+		}
+
+		history.record(new RangeCommand(modificationIndex, 1, detach(modificationIndex, modificationIndex), false));
+	}
+
+	/**
+	 * Applies the given edit to the given object, recording the change of the
+	 * object's attributes so it can be undone. The edit is expected to notify the
+	 * object's listeners, as GeometricalObjectEditor.acceptEditing does. The
+	 * states before and after the edit are taken from the stored object, so the
+	 * given object may be any view of it.
+	 *
+	 * @param object
+	 *            the edited object
+	 * @param edit
+	 *            the edit, e.g. accepting an editor's values
+	 */
+	public void commitEdit(GeometricalObject object, Runnable edit) {
+		Objects.requireNonNull(object, "Geometrical object cannot be null");
+		Objects.requireNonNull(edit, "Edit cannot be null.");
+
+		long id = object.getId();
+		int[] before = stateOf(id);
+		edit.run();
+		int[] after = stateOf(id);
+
+		if (before != null && after != null && !Arrays.equals(before, after)) {
+			history.record(new EditCommand(id, before, after));
+		}
+	}
+
+	/**
+	 * Gets the palette holding the colors of the currently drawn objects.
+	 *
+	 * @return the palette
+	 */
+	public ColorPalette getPalette() {
+		return palette;
+	}
+
+	/**
+	 * Gets the distinct colors the currently drawn objects are drawn in, both
+	 * their outlines and their areas, in the order of the palette entries
+	 * holding them. Unlike the palette, which also keeps the entries of removed
+	 * objects so their removal can be undone, this lists only colors that can
+	 * actually be recolored. The palette counts the uses of its entries, so this
+	 * takes time proportional to the size of the palette, not to the number of
+	 * objects.
+	 *
+	 * @return the colors
+	 */
+	public List<Color> getColors() {
+		return palette.getUsedColors();
+	}
+
+	/**
+	 * Recolors all objects drawn in the given color, both their outlines and
+	 * their areas. Only the palette entries holding the color are changed, and
+	 * the tree is left as it is, since it refers to the entries, not to their
+	 * colors. Listeners are notified by a single paletteChanged event, so they
+	 * can repaint without recomputing any geometry.
+	 *
+	 * @param from
+	 *            the color to be replaced
+	 * @param to
+	 *            the new color
+	 */
+	public void recolor(Color from, Color to) {
+		List<ColorPalette.Entry> changed = palette.recolor(from, to);
+		if (changed.isEmpty()) {
+			return;
 		}
 
-		objects.remove(object);
+		RecolorCommand command = new RecolorCommand(changed, from, to);
+		recolored();
+		history.record(command);
+	}
+
+	/**
+	 * Gets the number of changes made to this model so far. Every change
+	 * increments the count, including undoing and redoing a change.
+	 *
+	 * @return the modification count
+	 */
+	public long getModificationCount() {
+		return modificationCount;
+	}
+
+	/**
+	 * Gets the digest of the current content of this model in constant time.
+	 * The digest is maintained incrementally by the tree holding the objects,
+	 * which covers the objects' types, points, palette entries and drawing
+	 * order, and by the palette, which covers the colors of the entries in use.
+	 * Undoing changes, or recoloring back to the original color, therefore
+	 * restores the previous digest.
+	 *
+	 * @return the digest
+	 */
+	public long getDigest() {
+		return ObjectTree.digest(root) ^ palette.digest();
+	}
+
+	/**
+	 * Remembers the current content as the one stored on the disk, e.g. after
+	 * the document has been saved or opened.
+	 */
+	public void markSaved() {
+		savedDigest = getDigest();
+	}
+
+	/**
+	 * Checks in constant time whether the content differs from the one stored
+	 * on the disk when markSaved was last called, or from an empty document if
+	 * it has never been called.
+	 *
+	 * @return true, if the content has been modified
+	 */
+	public boolean isModified() {
+		return getDigest() != savedDigest;
+	}
+
+	/**
+	 * Gets the history of the changes made to this model.
+	 *
+	 * @return the history
+	 */
+	public CommandHistory getHistory() {
+		return history;
+	}
+
+	/**
+	 * Delivers all pending changes to the batched listeners right away.
+	 */
+	public void flushEvents() {
+		eventBus.flush();
 	}
 
 	/**
@@ -181,10 +588,17 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 	public void geometricalObjectChanged(GeometricalObject o) {
 		Objects.requireNonNull(o, "Geometrical object cannot be null");
 
-		int modificationIndex = objects.indexOf(o);
-		for (DrawingModelListener listener : listeners) {
-			listener.objectsChanged(this, modificationIndex, modificationIndex);
+		long label = labels.get(o.getId());
+		if (label == LongLongMap.MISSING) {
+			return;
 		}
+
+		o.setPalette(palette);
+		replace(label, o);
+		modificationCount++;
+
+		int modificationIndex = ObjectTree.rank(root, label);
+		eventBus.fireObjectsChanged(modificationIndex, modificationIndex);
 	}
 
 	/**
@@ -203,14 +617,999 @@ public class DocumentModel implements DrawingModel, GeometricalObjectListener {
 			throw new IllegalArgumentException("Shifting offset must be 1 or -1, was: " + offset);
 		}
 
-		int oldIndex = objects.indexOf(object);
+		int oldIndex = indexOf(object);
 		int newIndex = oldIndex + offset;
-		if (newIndex >= 0 && newIndex < objects.size()) {
-			Collections.swap(objects, oldIndex, newIndex);
+		if (oldIndex >= 0 && newIndex >= 0 && newIndex < getSize()) {
+			SwapCommand command = new SwapCommand(Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex));
+			command.redo();
+			history.record(command);
+		}
+	}
+
+	/**
+	 * Moves the specified object to the given position in logarithmic time,
+	 * shifting the objects in between by one place. Listeners are notified by a
+	 * single objectsChanged event covering the old and the new position.
+	 *
+	 * @param object
+	 *            the object
+	 * @param index
+	 *            the position of the object after the move
+	 */
+	@Override
+	public void moveTo(GeometricalObject object, int index) {
+		Objects.requireNonNull(object, "Geometrical object cannot be null");
+
+		moveAll(Collections.singletonList(object), index);
+	}
+
+	/**
+	 * Moves all given objects so they occupy consecutive positions starting at
+	 * the given index, keeping their relative drawing order. Every moved object
+	 * costs logarithmic time, regardless of the distance it is moved by, apart
+	 * from relabeling the objects around the target position when their order
+	 * labels run out, which adds amortized logarithmic time per moved object.
+	 * Listeners are notified by a
+	 * single objectsChanged event covering all old and new positions.
+	 *
+	 * @param objects
+	 *            the objects to be moved
+	 * @param index
+	 *            the position of the first moved object after the move
+	 */
+	@Override
+	public void moveAll(Collection<? extends GeometricalObject> objects, int index) {
+		Objects.requireNonNull(objects, "Objects cannot be null.");
+
+		Set<Long> ids = new HashSet<>();
+		int[] oldIndices = new int[objects.size()];
+		int count = 0;
+		for (GeometricalObject object : objects) {
+			int oldIndex = indexOf(object);
+			if (oldIndex >= 0 && ids.add(object.getId())) {
+				oldIndices[count++] = oldIndex;
+			}
+		}
+
+		if (count == 0) {
+			return;
+		}
+		if (index < 0 || index > getSize() - count) {
+			throw new IllegalArgumentException(
+					"Valid indices are from 0 to " + (getSize() - count) + ", was: " + index);
+		}
+
+		oldIndices = Arrays.copyOf(oldIndices, count);
+		Arrays.sort(oldIndices);
+		if (oldIndices[0] == index && oldIndices[count - 1] == index + count - 1) {
+			return;
+		}
+
+		long[] moved = new long[count];
+		for (int i = 0; i < count; i++) {
+			moved[i] = ObjectTree.idAt(root, oldIndices[i]);
+		}
+
+		MoveCommand command = new MoveCommand(moved, oldIndices, index);
+		command.redo();
+		history.record(command);
+	}
+
+	/**
+	 * Moves the specified object to the end of the collection, so it is drawn
+	 * over all other objects.
+	 *
+	 * @param object
+	 *            the object
+	 */
+	public void bringToFront(GeometricalObject object) {
+		moveTo(object, getSize() - 1);
+	}
+
+	/**
+	 * Moves the specified object to the beginning of the collection, so it is
+	 * drawn under all other objects.
+	 *
+	 * @param object
+	 *            the object
+	 */
+	public void sendToBack(GeometricalObject object) {
+		moveTo(object, 0);
+	}
+
+	/**
+	 * Reserves order labels for the given number of objects about to be placed
+	 * at consecutive positions starting at the given index. Appended objects
+	 * follow the last label at the usual gap and objects placed in front
+	 * precede the first one, so repeated insertions at either end never run
+	 * out of labels; elsewhere the labels are spread evenly between the labels
+	 * of the future neighbours. Only if there is no room between them are the
+	 * objects around the position relabeled.
+	 *
+	 * @param index
+	 *            the position of the first placed object
+	 * @param count
+	 *            the number of placed objects
+	 * @return the reserved labels, strictly increasing
+	 */
+	private long[] reserveLabels(int index, int count) {
+		int size = getSize();
+		long lower = index > 0 ? ObjectTree.labelAt(root, index - 1) : -1;
+		long upper = index < size ? ObjectTree.labelAt(root, index) : LABEL_LIMIT;
+
+		long first;
+		long step;
+		if (index == size && lower < LABEL_LIMIT - (count + 1L) * LABEL_GAP) {
+			first = index == 0 ? 0 : lower + LABEL_GAP;
+			step = LABEL_GAP;
+		} else if (index == 0 && upper >= count * LABEL_GAP) {
+			first = upper - count * LABEL_GAP;
+			step = LABEL_GAP;
+		} else {
+			step = (upper - lower) / (count + 1);
+			first = lower + step;
+			if (step < 1) {
+				return relabel(index, count);
+			}
+		}
+
+		long[] reserved = new long[count];
+		for (int i = 0; i < count; i++) {
+			reserved[i] = first + i * step;
+		}
+
+		return reserved;
+	}
+
+	/**
+	 * Makes room for the given number of objects about to be placed at the
+	 * given position by relabeling the objects around it. Of the aligned ranges
+	 * of 2^i labels holding the label next to the position, the smallest one
+	 * that would hold at most DENSITY^i objects after the placement is
+	 * relabeled evenly, leaving free labels at the position. A range is
+	 * relabeled only once the ranges nested in it have filled up, so placing
+	 * objects at the same spot over and over costs amortized logarithmic time
+	 * per object, instead of relabeling the whole collection every few dozen
+	 * placements.
+	 *
+	 * @param index
+	 *            the position of the first placed object
+	 * @param count
+	 *            the number of placed objects
+	 * @return the reserved labels, strictly increasing
+	 */
+	private long[] relabel(int index, int count) {
+		long pivot = ObjectTree.labelAt(root, index > 0 ? index - 1 : index);
+
+		for (int bits = 1; bits <= LABEL_BITS; bits++) {
+			long lo = pivot & -(1L << bits);
+			long hi = lo + (1L << bits);
+			int from = ObjectTree.rank(root, lo);
+			int to = ObjectTree.rank(root, hi);
 
-			for (DrawingModelListener listener : listeners) {
-				listener.objectsChanged(this, Math.min(oldIndex, newIndex), Math.max(oldIndex, newIndex));
+			long total = to - from + (long) count;
+			if (total > Math.pow(DENSITY, bits)) {
+				continue;
 			}
+
+			ObjectTree.Node[] head = ObjectTree.split(root, lo);
+			ObjectTree.Node[] tail = ObjectTree.split(head[1], hi);
+
+			long step = (1L << bits) / total;
+			int position = index - from;
+			long[] newLabels = new long[to - from];
+			for (int i = 0; i < newLabels.length; i++) {
+				newLabels[i] = lo + step * (i < position ? i : i + count);
+			}
+
+			ObjectTree.Node relabeled = ObjectTree.relabel(tail[0], newLabels);
+			root = ObjectTree.merge(ObjectTree.merge(head[0], relabeled), tail[1]);
+			cells = SpatialTree.insertAll(SpatialTree.deleteAll(cells, tail[0]), relabeled);
+			registerLabels(relabeled);
+
+			long[] reserved = new long[count];
+			for (int i = 0; i < count; i++) {
+				reserved[i] = lo + step * (position + i);
+			}
+
+			return reserved;
+		}
+
+		throw new IllegalStateException("No order labels left for " + count + " more objects.");
+	}
+
+	/**
+	 * Detaches the objects in the given range from the collection, notifying
+	 * the listeners before they are removed.
+	 *
+	 * @param index0
+	 *            the starting index of the range
+	 * @param index1
+	 *            the ending index of the range
+	 * @return the detached subtree, still holding the objects' labels
+	 */
+	private ObjectTree.Node detach(int index0, int index1) {
+		modificationCount++;
+		eventBus.fireObjectsRemoved(index0, index1);
+
+		ObjectTree.Node[] head = ObjectTree.split(root, ObjectTree.labelAt(root, index0));
+		ObjectTree.Node[] tail = ObjectTree.split(head[1], ObjectTree.labelAt(root, index1) + 1);
+		root = ObjectTree.merge(head[0], tail[1]);
+		cells = root == null ? null : SpatialTree.deleteAll(cells, tail[0]);
+		ObjectTree.forEachChunk(tail[0], chunk -> {
+			for (int i = 0; i < chunk.size(); i++) {
+				labels.remove(chunk.id(i));
+				releaseColors(chunk, i);
+			}
+		});
+
+		return tail[0];
+	}
+
+	/**
+	 * Attaches the objects of the given subtree to the collection, starting at
+	 * the given index. The subtree is linked in as it is if its labels fit
+	 * between the labels of its future neighbours; otherwise it is rebuilt
+	 * under newly reserved labels.
+	 *
+	 * @param index
+	 *            the index of the first attached object
+	 * @param subtree
+	 *            the subtree holding the objects, in drawing order
+	 */
+	private void attach(int index, ObjectTree.Node subtree) {
+		int size = getSize();
+		long first = ObjectTree.firstLabel(subtree);
+		long last = ObjectTree.lastLabel(subtree);
+
+		boolean fits = (index == 0 || ObjectTree.labelAt(root, index - 1) < first)
+				&& (index == size || last < ObjectTree.labelAt(root, index));
+
+		int count = ObjectTree.size(subtree);
+		if (!fits) {
+			subtree = ObjectTree.relabel(subtree, reserveLabels(index, count));
+		}
+		link(subtree);
+		retainColors(subtree);
+
+		modificationCount++;
+		eventBus.fireObjectsAdded(index, index + count - 1);
+	}
+
+	/**
+	 * Takes the row of the object with the given id out of the tree without
+	 * notifying anybody. The row is expected to be linked back in by link.
+	 *
+	 * @param id
+	 *            the id of the object
+	 * @return the tree holding the row only, still under its label
+	 */
+	private ObjectTree.Node extract(long id) {
+		long label = labels.remove(id);
+
+		ObjectTree.Node[] head = ObjectTree.split(root, label);
+		ObjectTree.Node[] tail = ObjectTree.split(head[1], label + 1);
+		root = ObjectTree.merge(head[0], tail[1]);
+		cells = SpatialTree.deleteAll(cells, tail[0]);
+
+		return tail[0];
+	}
+
+	/**
+	 * Links the rows of the given subtree into the tree without notifying
+	 * anybody. The labels of the subtree must fit between the labels of its
+	 * future neighbours.
+	 *
+	 * @param subtree
+	 *            the subtree
+	 */
+	private void link(ObjectTree.Node subtree) {
+		ObjectTree.Node[] parts = ObjectTree.split(root, ObjectTree.firstLabel(subtree));
+		root = ObjectTree.merge(ObjectTree.merge(parts[0], subtree), parts[1]);
+		cells = SpatialTree.insertAll(cells, subtree);
+		registerLabels(subtree);
+	}
+
+	/**
+	 * Notifies the listeners that the colors of the palette have changed. The
+	 * tree is not touched.
+	 */
+	private void recolored() {
+		modificationCount++;
+		if (root != null) {
+			eventBus.firePaletteChanged();
+		}
+	}
+
+	/**
+	 * Replaces the object stored under the given label, or takes its new state
+	 * if it has changed, and indexes the new state in place of the old one.
+	 *
+	 * @param label
+	 *            the label
+	 * @param object
+	 *            the new object
+	 */
+	private void replace(long label, GeometricalObject object) {
+		ObjectChunk chunk = ObjectTree.chunkOf(root, label);
+		releaseColors(chunk, chunk.indexOf(label));
+		cells = SpatialTree.delete(cells, ObjectTree.findShape(root, label), label);
+
+		root = ObjectTree.replace(root, label, object);
+		chunk = ObjectTree.chunkOf(root, label);
+		retainColors(chunk, chunk.indexOf(label));
+		cells = SpatialTree.insert(cells, ObjectTree.findShape(root, label), label);
+	}
+
+	/**
+	 * Records the uses of the palette entries by all objects of the given
+	 * subtree, which have just been attached.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 */
+	private void retainColors(ObjectTree.Node node) {
+		ObjectTree.forEachChunk(node, chunk -> {
+			for (int i = 0; i < chunk.size(); i++) {
+				retainColors(chunk, i);
+			}
+		});
+	}
+
+	/**
+	 * Records the uses of the palette entries by the object in the given row.
+	 *
+	 * @param chunk
+	 *            the chunk holding the row
+	 * @param index
+	 *            the position of the row
+	 */
+	private void retainColors(ObjectChunk chunk, int index) {
+		palette.retain(chunk.fgEntry(index));
+		if (chunk.bgEntry(index) >= 0) {
+			palette.retain(chunk.bgEntry(index));
+		}
+	}
+
+	/**
+	 * Records that the object in the given row, which is being detached, no
+	 * longer uses its palette entries.
+	 *
+	 * @param chunk
+	 *            the chunk holding the row
+	 * @param index
+	 *            the position of the row
+	 */
+	private void releaseColors(ObjectChunk chunk, int index) {
+		palette.release(chunk.fgEntry(index));
+		if (chunk.bgEntry(index) >= 0) {
+			palette.release(chunk.bgEntry(index));
+		}
+	}
+
+	/**
+	 * Maps the ids of all objects in the given subtree to their labels.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 */
+	private void registerLabels(ObjectTree.Node node) {
+		ObjectTree.forEachChunk(node, chunk -> {
+			for (int i = 0; i < chunk.size(); i++) {
+				labels.put(chunk.id(i), chunk.label(i));
+			}
+		});
+	}
+
+	/**
+	 * Sets this model's palette to the given object, which is about to be
+	 * stored, and registers this model as its listener, so changes made to the
+	 * object afterwards are stored as well.
+	 *
+	 * @param object
+	 *            the object
+	 */
+	private void adopt(GeometricalObject object) {
+		object.setPalette(palette);
+		object.removeGeometricalObjectListener(this);
+		object.addGeometricalObjectListener(this);
+	}
+
+	/**
+	 * Registers this model as the listener of the given view of a stored
+	 * object, so changes made to the view are stored.
+	 *
+	 * @param view
+	 *            the view
+	 * @return the view
+	 */
+	private GeometricalObject view(GeometricalObject view) {
+		view.addGeometricalObjectListener(this);
+		return view;
+	}
+
+	/**
+	 * Creates a view of the stored object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the view, or null if the object is not part of the collection
+	 */
+	private GeometricalObject viewOf(long id) {
+		long label = labels.get(id);
+		return label == LongLongMap.MISSING ? null : view(ObjectTree.valueAt(root, ObjectTree.rank(root, label), palette));
+	}
+
+	/**
+	 * Captures the stored state of the object with the given id.
+	 *
+	 * @param id
+	 *            the id
+	 * @return the state, or null if the object is not part of the collection
+	 */
+	private int[] stateOf(long id) {
+		GeometricalObject view = viewOf(id);
+		return view == null ? null : view.saveState();
+	}
+
+	/**
+	 * Swaps the objects at the given positions by moving their rows to each
+	 * other's labels.
+	 *
+	 * @param index0
+	 *            the position of the first object
+	 * @param index1
+	 *            the position of the second object
+	 */
+	private void swap(int index0, int index1) {
+		long id = ObjectTree.idAt(root, index0);
+		long otherId = ObjectTree.idAt(root, index1);
+		long label = labels.get(id);
+		long otherLabel = labels.get(otherId);
+
+		ObjectTree.Node row = extract(id);
+		ObjectTree.Node otherRow = extract(otherId);
+		link(ObjectTree.relabel(otherRow, new long[] { label }));
+		link(ObjectTree.relabel(row, new long[] { otherLabel }));
+
+		modificationCount++;
+		eventBus.fireObjectsChanged(Math.min(index0, index1), Math.max(index0, index1));
+	}
+
+	/**
+	 * Rebuilds the tree out of the given objects, assigning evenly spaced labels.
+	 *
+	 * @param newObjects
+	 *            the objects in drawing order
+	 */
+	private void rebuild(List<GeometricalObject> newObjects) {
+		long[] newLabels = new long[newObjects.size()];
+		LongLongMap newLabelMap = new LongLongMap(newLabels.length);
+
+		for (int i = 0; i < newLabels.length; i++) {
+			GeometricalObject object = Objects.requireNonNull(newObjects.get(i), "Objects cannot contain null.");
+			newLabels[i] = i * LABEL_GAP;
+
+			if (newLabelMap.put(object.getId(), newLabels[i]) != LongLongMap.MISSING) {
+				throw new IllegalArgumentException("Object is contained more than once: " + object);
+			}
+		}
+
+		labels = newLabelMap;
+		root = ObjectTree.build(newObjects, newLabels);
+		cells = SpatialTree.insertAll(null, root);
+		retainColors(root);
+	}
+
+	/**
+	 * The command recording the addition or the removal of a contiguous range of
+	 * objects.
+	 */
+	private class RangeCommand implements CommandHistory.Command {
+
+		/**
+		 * The memory retained per detached object, in bytes: its label and id
+		 * (8 bytes each), its type (1), its four coordinates and its two palette
+		 * indices (4 each) in the columns of its chunk.
+		 */
+		private static final long ROW_SIZE = 41;
+
+		/**
+		 * The memory retained per chunk of detached objects besides their rows,
+		 * in bytes: the headers and the padding of the chunk's nine columns, the
+		 * chunk itself and its tree node. ModelMemoryBenchmark measures 360
+		 * bytes per object removed one by one, i.e. per command holding a chunk
+		 * of a single object, and 45 bytes per object removed at once, which
+		 * this estimate matches.
+		 */
+		private static final long CHUNK_SIZE = 288;
+
+		/** The index of the first object of the range. */
+		private final int index;
+
+		/** The number of objects in the range. */
+		private final int count;
+
+		/** Whether the objects have been added, as opposed to removed. */
+		private final boolean addition;
+
+		/** The detached objects, while they are not part of the collection. */
+		private ObjectTree.Node detached;
+
+		/**
+		 * Instantiates a new range command.
+		 *
+		 * @param index
+		 *            the index of the first object of the range
+		 * @param count
+		 *            the number of objects in the range
+		 * @param detached
+		 *            the detached objects if they have been removed, otherwise null
+		 * @param addition
+		 *            whether the objects have been added, as opposed to removed
+		 */
+		private RangeCommand(int index, int count, ObjectTree.Node detached, boolean addition) {
+			this.index = index;
+			this.count = count;
+			this.detached = detached;
+			this.addition = addition;
+		}
+
+		@Override
+		public void undo() {
+			toggle(!addition);
+		}
+
+		@Override
+		public void redo() {
+			toggle(addition);
+		}
+
+		@Override
+		public long estimateSize() {
+			long chunks = count / ObjectChunk.CAPACITY + 1;
+			return BASE_SIZE + chunks * CHUNK_SIZE + count * ROW_SIZE;
+		}
+
+		/**
+		 * Attaches or detaches the objects of the range.
+		 *
+		 * @param attach
+		 *            whether the objects are to be attached
+		 */
+		private void toggle(boolean attach) {
+			if (attach) {
+				attach(index, detached);
+				detached = null;
+			} else {
+				detached = detach(index, index + count - 1);
+			}
+		}
+	}
+
+	/**
+	 * The command recording the swap of two objects.
+	 */
+	private class SwapCommand implements CommandHistory.Command {
+
+		/** The position of the first object. */
+		private final int index0;
+
+		/** The position of the second object. */
+		private final int index1;
+
+		/**
+		 * Instantiates a new swap command.
+		 *
+		 * @param index0
+		 *            the position of the first object
+		 * @param index1
+		 *            the position of the second object
+		 */
+		private SwapCommand(int index0, int index1) {
+			this.index0 = index0;
+			this.index1 = index1;
+		}
+
+		@Override
+		public void undo() {
+			swap(index0, index1);
+		}
+
+		@Override
+		public void redo() {
+			swap(index0, index1);
+		}
+
+		@Override
+		public long estimateSize() {
+			return BASE_SIZE;
+		}
+	}
+
+	/**
+	 * The command recording the move of one or more objects to consecutive
+	 * positions.
+	 */
+	private class MoveCommand implements CommandHistory.Command {
+
+		/** The ids of the moved objects, in drawing order. */
+		private final long[] moved;
+
+		/** The positions of the moved objects before the move, ascending. */
+		private final int[] oldIndices;
+
+		/** The position of the first moved object after the move. */
+		private final int index;
+
+		/**
+		 * Instantiates a new move command.
+		 *
+		 * @param moved
+		 *            the ids of the moved objects, in drawing order
+		 * @param oldIndices
+		 *            the positions of the moved objects before the move
+		 * @param index
+		 *            the position of the first moved object after the move
+		 */
+		private MoveCommand(long[] moved, int[] oldIndices, int index) {
+			this.moved = moved;
+			this.oldIndices = oldIndices;
+			this.index = index;
+		}
+
+		@Override
+		public void undo() {
+			ObjectTree.Node[] rows = new ObjectTree.Node[moved.length];
+			for (int i = 0; i < moved.length; i++) {
+				rows[i] = extract(moved[i]);
+			}
+			for (int i = 0; i < moved.length; i++) {
+				link(ObjectTree.relabel(rows[i], reserveLabels(oldIndices[i], 1)));
+			}
+
+			fireChanged();
+		}
+
+		@Override
+		public void redo() {
+			ObjectTree.Node rows = null;
+			for (long id : moved) {
+				rows = ObjectTree.merge(rows, extract(id));
+			}
+			link(ObjectTree.relabel(rows, reserveLabels(index, moved.length)));
+
+			fireChanged();
+		}
+
+		@Override
+		public long estimateSize() {
+			return BASE_SIZE + 12L * moved.length;
+		}
+
+		/**
+		 * Notifies the listeners about the range affected by the move.
+		 */
+		private void fireChanged() {
+			int index0 = Math.min(oldIndices[0], index);
+			int index1 = Math.max(oldIndices[oldIndices.length - 1], index + moved.length - 1);
+
+			modificationCount++;
+			eventBus.fireObjectsChanged(index0, index1);
+		}
+	}
+
+	/**
+	 * The command recording the change of the color of palette entries.
+	 */
+	private class RecolorCommand implements CommandHistory.Command {
+
+		/** The changed entries. */
+		private final List<ColorPalette.Entry> entries;
+
+		/** The color of the entries before the change. */
+		private final Color from;
+
+		/** The color of the entries after the change. */
+		private final Color to;
+
+		/**
+		 * Instantiates a new recolor command.
+		 *
+		 * @param entries
+		 *            the changed entries
+		 * @param from
+		 *            the color of the entries before the change
+		 * @param to
+		 *            the color of the entries after the change
+		 */
+		private RecolorCommand(List<ColorPalette.Entry> entries, Color from, Color to) {
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public void undo() {
+			for (ColorPalette.Entry entry : entries) {
+				palette.setColor(entry, from);
+			}
+			recolored();
+		}
+
+		@Override
+		public void redo() {
+			for (ColorPalette.Entry entry : entries) {
+				palette.setColor(entry, to);
+			}
+			recolored();
+		}
+
+		@Override
+		public long estimateSize() {
+			return BASE_SIZE + 8L * entries.size();
+		}
+	}
+
+	/**
+	 * The command recording the change of an object's attributes.
+	 */
+	private class EditCommand implements CommandHistory.Command {
+
+		/** The id of the edited object. */
+		private final long id;
+
+		/** The state of the object before the edit. */
+		private final int[] before;
+
+		/** The state of the object after the edit. */
+		private final int[] after;
+
+		/**
+		 * Instantiates a new edit command.
+		 *
+		 * @param id
+		 *            the id of the edited object
+		 * @param before
+		 *            the state of the object before the edit
+		 * @param after
+		 *            the state of the object after the edit
+		 */
+		private EditCommand(long id, int[] before, int[] after) {
+			this.id = id;
+			this.before = before;
+			this.after = after;
+		}
+
+		@Override
+		public void undo() {
+			restore(before);
+		}
+
+		@Override
+		public void redo() {
+			restore(after);
+		}
+
+		@Override
+		public long estimateSize() {
+			return BASE_SIZE + 2 * (16 + 4L * before.length);
+		}
+
+		/**
+		 * Stores the given state of the edited object, notifying the listeners.
+		 *
+		 * @param state
+		 *            the state
+		 */
+		private void restore(int[] state) {
+			GeometricalObject view = viewOf(id);
+			view.restoreState(state);
+			view.notifyListeners();
+		}
+	}
+
+	/**
+	 * The live list view of the currently drawn objects, whose elements are
+	 * views of the stored objects created on every access. Positional access
+	 * and lookups take logarithmic time, while iteration visits the objects in
+	 * drawing order in linear time.
+	 */
+	private class ObjectsView extends AbstractList<GeometricalObject> {
+
+		@Override
+		public GeometricalObject get(int index) {
+			return view(ObjectTree.valueAt(root, index, palette));
+		}
+
+		@Override
+		public int size() {
+			return getSize();
+		}
+
+		@Override
+		public Iterator<GeometricalObject> iterator() {
+			Iterator<GeometricalObject> values = ObjectTree.values(root, 0, palette);
+
+			return new Iterator<GeometricalObject>() {
+
+				@Override
+				public boolean hasNext() {
+					return values.hasNext();
+				}
+
+				@Override
+				public GeometricalObject next() {
+					return view(values.next());
+				}
+			};
+		}
+
+		@Override
+		public int indexOf(Object o) {
+			return o instanceof GeometricalObject ? DocumentModel.this.indexOf((GeometricalObject) o) : -1;
+		}
+
+		@Override
+		public int lastIndexOf(Object o) {
+			return indexOf(o);
+		}
+
+		@Override
+		public boolean contains(Object o) {
+			return indexOf(o) >= 0;
+		}
+
+		@Override
+		public GeometricalObject remove(int index) {
+			GeometricalObject object = get(index);
+			DocumentModel.this.remove(object);
+
+			return object;
+		}
+
+		@Override
+		public void clear() {
+			DocumentModel.this.clear();
+		}
+	}
+
+	/**
+	 * The read-only view of the collection as it was at some point in time,
+	 * passed to the batched listeners as the source of an event. It shares the
+	 * tree the collection had at that time, so it does not change when the
+	 * collection does; its objects are views of the rows the tree had. All
+	 * methods modifying the collection throw UnsupportedOperationException.
+	 */
+	private class StateView implements DrawingModel {
+
+		/** The root of the tree the collection had. */
+		private final ObjectTree.Node root;
+
+		/** The palette the rows of the tree refer to. */
+		private final ColorPalette palette;
+
+		/**
+		 * Instantiates a new state view.
+		 *
+		 * @param root
+		 *            the root of the tree the collection had
+		 * @param palette
+		 *            the palette the rows of the tree refer to
+		 */
+		private StateView(ObjectTree.Node root, ColorPalette palette) {
+			this.root = root;
+			this.palette = palette;
+		}
+
+		@Override
+		public int getSize() {
+			return ObjectTree.size(root);
+		}
+
+		@Override
+		public GeometricalObject getObject(int index) {
+			return view(ObjectTree.valueAt(root, index, palette));
+		}
+
+		/**
+		 * Gets the index the given object had. Takes logarithmic time if the
+		 * object still has the label it had then, and linear time otherwise.
+		 *
+		 * @param object
+		 *            the object
+		 * @return the index of the object, or -1 if it was not part of the
+		 *         collection
+		 */
+		@Override
+		public int indexOf(GeometricalObject object) {
+			Objects.requireNonNull(object, "Geometrical object cannot be null");
+
+			long id = object.getId();
+			long label = labels.get(id);
+			if (label != LongLongMap.MISSING) {
+				int index = ObjectTree.rank(root, label);
+				if (index < getSize() && ObjectTree.idAt(root, index) == id) {
+					return index;
+				}
+			}
+
+			// position of the chunk visited and position of the object found
+			int[] positions = { 0, -1 };
+			ObjectTree.forEachChunk(root, chunk -> {
+				for (int i = 0; i < chunk.size() && positions[1] < 0; i++) {
+					if (chunk.id(i) == id) {
+						positions[1] = positions[0] + i;
+					}
+				}
+				positions[0] += chunk.size();
+			});
+
+			return positions[1];
+		}
+
+		@Override
+		public void add(GeometricalObject object) {
+			throw readOnly();
+		}
+
+		@Override
+		public void addAll(Collection<? extends GeometricalObject> objects) {
+			throw readOnly();
+		}
+
+		@Override
+		public void removeAll(Collection<? extends GeometricalObject> objects) {
+			throw readOnly();
+		}
+
+		@Override
+		public void replaceAll(Collection<? extends GeometricalObject> objects) {
+			throw readOnly();
+		}
+
+		@Override
+		public void clear() {
+			throw readOnly();
+		}
+
+		@Override
+		public void addDrawingModelListener(DrawingModelListener l) {
+			throw readOnly();
+		}
+
+		@Override
+		public void removeDrawingModelListener(DrawingModelListener l) {
+			throw readOnly();
+		}
+
+		@Override
+		public void remove(GeometricalObject object) {
+			throw readOnly();
+		}
+
+		@Override
+		public void changeOrder(GeometricalObject object, int offset) {
+			throw readOnly();
+		}
+
+		@Override
+		public void moveTo(GeometricalObject object, int index) {
+			throw readOnly();
+		}
+
+		@Override
+		public void moveAll(Collection<? extends GeometricalObject> objects, int index) {
+			throw readOnly();
+		}
+
+		/**
+		 * Creates the exception thrown by the methods modifying the collection.
+		 *
+		 * @return the exception
+		 */
+		private UnsupportedOperationException readOnly() {
+			return new UnsupportedOperationException("State of the collection passed to a listener cannot be modified.");
 		}
 	}
 }
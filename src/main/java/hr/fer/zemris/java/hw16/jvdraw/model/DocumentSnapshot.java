@@ -0,0 +1,268 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectVisitor;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The class that represents an immutable view of the objects drawn on the
+ * canvas at the time the snapshot was taken. Taking a snapshot takes constant
+ * time, since the snapshot shares the immutable tree nodes of the
+ * DocumentModel it was taken from; later modifications of the model copy the
+ * nodes they change instead of touching the shared ones.
+ *
+ * The snapshot does not hand out the model's objects, which are edited and
+ * recolored in place, but detached values created from the state the tree
+ * stored for them when they were last changed. The stored state refers to the
+ * colors by their palette entries, and the snapshot captures the colors of the
+ * entries in the array the palette hands out, which is copied instead of
+ * modified when the palette is recolored. The stored state is never modified,
+ * so neither the sequence of objects nor their points and colors ever change, and a snapshot can be read from any thread, e.g. for saving or
+ * exporting the image in the background while the user keeps drawing. Every
+ * access creates a new value, which the snapshot does not keep; modifying it
+ * affects nothing else.
+ *
+ * The snapshot also shares the model's spatial index of the stored state, so
+ * the objects touching an area, or lying under a point, are found without
+ * visiting most of the others.
+ *
+ * @author Damjan Vučina
+ */
+public final class DocumentSnapshot extends AbstractList<GeometricalObject> {
+
+	/** The root of the shared tree. */
+	private final ObjectTree.Node root;
+
+	/** The root of the shared index of the tree's labels by the objects' places. */
+	private final SpatialTree.Node cells;
+
+	/** The ARGB values of the colors of the palette entries the tree refers to. */
+	private final int[] colors;
+
+	/**
+	 * Instantiates a new snapshot.
+	 *
+	 * @param root
+	 *            the root of the shared tree
+	 * @param cells
+	 *            the root of the shared index of the tree's labels
+	 * @param colors
+	 *            the colors of the palette entries, as handed out by the
+	 *            palette
+	 */
+	DocumentSnapshot(ObjectTree.Node root, SpatialTree.Node cells, int[] colors) {
+		this.root = root;
+		this.cells = cells;
+		this.colors = colors;
+	}
+
+	/**
+	 * Gets the object at the given position in logarithmic time.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the object
+	 */
+	@Override
+	public GeometricalObject get(int index) {
+		return ObjectTree.valueAt(root, index, colors);
+	}
+
+	/**
+	 * Gets the number of objects in this snapshot.
+	 *
+	 * @return the number of objects
+	 */
+	@Override
+	public int size() {
+		return ObjectTree.size(root);
+	}
+
+	/**
+	 * Creates an iterator visiting the objects in drawing order in linear time.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<GeometricalObject> iterator() {
+		return ObjectTree.values(root, 0, colors);
+	}
+
+	/**
+	 * Creates an iterator visiting the objects in drawing order, starting at the
+	 * given position. Finding the position takes logarithmic time, after which
+	 * every object takes constant time on average, unlike iterating a subList,
+	 * which looks up every object by its position.
+	 *
+	 * @param from
+	 *            the position of the first visited object, from 0 to the size
+	 *            of the snapshot
+	 * @return the iterator
+	 */
+	public Iterator<GeometricalObject> iterator(int from) {
+		if (from < 0 || from > size()) {
+			throw new IndexOutOfBoundsException("Position must be from 0 to " + size() + ", was: " + from);
+		}
+
+		return ObjectTree.values(root, from, colors);
+	}
+
+	/**
+	 * Finds the objects whose bounding boxes, as calculated by
+	 * GeometricalObjectBBCalculator, share a pixel with the given area. A box
+	 * covers the pixels from its origin up to and including its origin plus its
+	 * size. Only the objects in the cells of the spatial index near the area
+	 * are examined, so the time taken grows with the number of objects near the
+	 * area rather than with the size of the snapshot.
+	 *
+	 * @param area
+	 *            the area
+	 * @return the objects, in drawing order
+	 */
+	public List<GeometricalObject> query(Rectangle area) {
+		Objects.requireNonNull(area, "Area cannot be null.");
+
+		long[] labels = SpatialTree.query(cells, area);
+		List<GeometricalObject> found = new ArrayList<>(labels.length);
+		ObjectTree.values(root, labels, 0, labels.length, colors, found);
+
+		return found;
+	}
+
+	/**
+	 * Finds the objects lying under the given point. An object lies under the
+	 * point if its outline, or its area for filled circles, is at most the
+	 * given tolerance away from the point. Only the objects whose bounding
+	 * boxes touch the square of the tolerance around the point are examined.
+	 *
+	 * @param point
+	 *            the point
+	 * @param tolerance
+	 *            the tolerance in pixels, not negative
+	 * @return the objects, in drawing order
+	 */
+	public List<GeometricalObject> query(Point point, int tolerance) {
+		Objects.requireNonNull(point, "Point cannot be null.");
+		if (tolerance < 0) {
+			throw new IllegalArgumentException("Tolerance cannot be negative, was: " + tolerance);
+		}
+
+		Rectangle area = new Rectangle(point.x - tolerance, point.y - tolerance, 2 * tolerance + 1,
+				2 * tolerance + 1);
+		List<GeometricalObject> found = query(area);
+
+		HitTester hitTester = new HitTester(point, tolerance);
+		found.removeIf(object -> !hitTester.test(object));
+		return found;
+	}
+
+	/**
+	 * Calculates the union of the bounding boxes of the objects drawn
+	 * differently in this snapshot than in the given earlier one, i.e. of the
+	 * objects added, removed, changed or moved in the drawing order in between,
+	 * with the boxes of both states of a changed object. Boxes are calculated
+	 * and cover pixels as for query. The parts of the spatial index both
+	 * snapshots share are skipped, so the time taken grows with the number of
+	 * changes between them rather than with the size of the snapshots, and the
+	 * search stops as soon as the union contains the given limit. Recoloring of
+	 * palette entries is not a difference, since it changes no stored state;
+	 * DrawingModelListener.paletteChanged announces it.
+	 *
+	 * @param earlier
+	 *            the earlier snapshot of the same model, or null if there is
+	 *            none, in which case all objects differ
+	 * @param limit
+	 *            the area beyond which the union is of no interest
+	 * @return the union, or null if no object is drawn differently
+	 */
+	public Rectangle differenceFrom(DocumentSnapshot earlier, Rectangle limit) {
+		Objects.requireNonNull(limit, "Limit cannot be null.");
+
+		return SpatialTree.difference(earlier == null ? null : earlier.cells, cells, limit);
+	}
+
+	/**
+	 * Finds the topmost object lying under the given point, as query does.
+	 *
+	 * @param point
+	 *            the point
+	 * @param tolerance
+	 *            the tolerance in pixels, not negative
+	 * @return the topmost object, or null if there is none
+	 */
+	public GeometricalObject topmostAt(Point point, int tolerance) {
+		List<GeometricalObject> hits = query(point, tolerance);
+
+		return hits.isEmpty() ? null : hits.get(hits.size() - 1);
+	}
+
+	/**
+	 * The visitor that checks whether a visited object lies under a point.
+	 */
+	private static class HitTester implements GeometricalObjectVisitor {
+
+		/** The point. */
+		private final Point point;
+
+		/** The tolerance in pixels. */
+		private final int tolerance;
+
+		/** Whether the last visited object was hit. */
+		private boolean hit;
+
+		/**
+		 * Instantiates a new hit tester.
+		 *
+		 * @param point
+		 *            the point
+		 * @param tolerance
+		 *            the tolerance in pixels
+		 */
+		private HitTester(Point point, int tolerance) {
+			this.point = point;
+			this.tolerance = tolerance;
+		}
+
+		/**
+		 * Checks whether the given object lies under the point.
+		 *
+		 * @param object
+		 *            the object
+		 * @return true, if the object was hit
+		 */
+		private boolean test(GeometricalObject object) {
+			object.accept(this);
+
+			return hit;
+		}
+
+		@Override
+		public void visit(Line line) {
+			Point s = line.getStartPoint();
+			Point e = line.getEndPoint();
+
+			hit = Line2D.ptSegDist(s.x, s.y, e.x, e.y, point.x, point.y) <= tolerance;
+		}
+
+		@Override
+		public void visit(Circle circle) {
+			hit = Math.abs(point.distance(circle.getCenter()) - circle.calculateRadius()) <= tolerance;
+		}
+
+		@Override
+		public void visit(FilledCircle filledCircle) {
+			hit = point.distance(filledCircle.getCenter()) <= filledCircle.calculateRadius() + tolerance;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package hr.fer.zemris.java.hw16.jvdraw.model;
 
+import java.util.Collection;
+
 import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
 
 /**
@@ -26,6 +28,15 @@ public interface DrawingModel {
 	 */
 	GeometricalObject getObject(int index);
 
+	/**
+	 * Gets the index of the specified object.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the index of the object, or -1 if it is not part of the collection
+	 */
+	int indexOf(GeometricalObject object);
+
 	/**
 	 * Adds the object to the collection.
 	 *
@@ -34,6 +45,43 @@ public interface DrawingModel {
 	 */
 	void add(GeometricalObject object);
 
+	/**
+	 * Adds all given objects to the end of the collection, in the order they are
+	 * given. Listeners are notified by a single objectsAdded event covering the
+	 * whole added range.
+	 *
+	 * @param objects
+	 *            the to be added objects
+	 */
+	void addAll(Collection<? extends GeometricalObject> objects);
+
+	/**
+	 * Removes all given objects from the collection. Listeners are notified by a
+	 * single objectsRemoved event per contiguous range of removed objects, fired
+	 * from the last range to the first one so the indices of every event are
+	 * valid at the time it is received.
+	 *
+	 * @param objects
+	 *            the objects to be removed from the collection
+	 */
+	void removeAll(Collection<? extends GeometricalObject> objects);
+
+	/**
+	 * Replaces the whole content of the collection with the given objects.
+	 * Listeners are notified by a single objectsRemoved event covering the old
+	 * content, followed by a single objectsAdded event covering the new one.
+	 *
+	 * @param objects
+	 *            the new objects
+	 */
+	void replaceAll(Collection<? extends GeometricalObject> objects);
+
+	/**
+	 * Removes all objects from the collection. Listeners are notified by a
+	 * single objectsRemoved event.
+	 */
+	void clear();
+
 	/**
 	 * Adds the drawing model listener.
 	 *
@@ -69,4 +117,29 @@ public interface DrawingModel {
 	 *            the offset
 	 */
 	void changeOrder(GeometricalObject object, int offset);
+
+	/**
+	 * Moves the specified object to the given position, shifting the objects in
+	 * between by one place. Listeners are notified by a single objectsChanged
+	 * event covering the old and the new position.
+	 *
+	 * @param object
+	 *            the object
+	 * @param index
+	 *            the position of the object after the move
+	 */
+	void moveTo(GeometricalObject object, int index);
+
+	/**
+	 * Moves all given objects so they occupy consecutive positions starting at
+	 * the given index, keeping their relative drawing order. Listeners are
+	 * notified by a single objectsChanged event covering all old and new
+	 * positions.
+	 *
+	 * @param objects
+	 *            the objects to be moved
+	 * @param index
+	 *            the position of the first moved object after the move
+	 */
+	void moveAll(Collection<? extends GeometricalObject> objects, int index);
 }
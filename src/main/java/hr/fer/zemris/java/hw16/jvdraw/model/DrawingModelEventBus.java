@@ -0,0 +1,362 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import javax.swing.SwingUtilities;
+
+/**
+ * The class responsible for delivering the changes of a drawing model to its
+ * listeners. Listeners implementing SynchronousDrawingModelListener are
+ * notified immediately. All other listeners receive the events collected
+ * during one tick of the event dispatch thread in a single batch, delivered at
+ * the end of the tick.
+ *
+ * By the time a batch is delivered, the model may have changed further, so the
+ * indices of an event need not be valid in the model anymore. Every queued
+ * event therefore captures a read-only view of the state of the model it
+ * describes, which is passed to the batched listeners as the source of the
+ * event: the state after the change for additions and changes, and the state
+ * before the change for removals, just like synchronous listeners see it.
+ *
+ * While collecting, consecutive additions and removals of neighbouring ranges
+ * are merged into a single range, and ranges of changed objects that overlap or
+ * touch each other are merged as long as no addition or removal happened in
+ * between. A merged removal keeps the state captured by the first of the
+ * merged events, and other merged events keep the state captured by the last
+ * one, so the merged range is valid in its state. Consecutive palette
+ * changes are merged into the last one. The batched listeners
+ * therefore receive the same sequence of changes, only expressed by fewer
+ * events.
+ *
+ * The queue of pending events is guarded by a lock, since changes may be fired
+ * on other threads than the event dispatch thread, which delivers the batches,
+ * e.g. while a document is loaded. Events are delivered outside of the lock,
+ * so listeners may fire further changes.
+ *
+ * @author Damjan Vučina
+ */
+public class DrawingModelEventBus {
+
+	/** The kind of an event announcing added objects. */
+	private static final int ADDED = 0;
+
+	/** The kind of an event announcing removed objects. */
+	private static final int REMOVED = 1;
+
+	/** The kind of an event announcing changed objects. */
+	private static final int CHANGED = 2;
+
+	/** The kind of an event announcing changed palette colors. */
+	private static final int PALETTE = 3;
+
+	/** The model whose changes are delivered. */
+	private DrawingModel source;
+
+	/** The supplier of read-only views of the current state of the model. */
+	private Supplier<? extends DrawingModel> states;
+
+	/** The listeners. */
+	private List<DrawingModelListener> listeners;
+
+	/** The lock guarding the pending events and the scheduling of their delivery. */
+	private final Object pendingLock = new Object();
+
+	/** The events waiting to be delivered to the batched listeners. */
+	private List<Event> pending;
+
+	/** Whether the delivery of pending events has been scheduled. */
+	private boolean flushScheduled;
+
+	/**
+	 * Instantiates a new event bus.
+	 *
+	 * @param source
+	 *            the model whose changes are delivered
+	 * @param listeners
+	 *            the listeners
+	 * @param states
+	 *            the supplier of read-only views of the current state of the
+	 *            model, which must not change when the model does
+	 */
+	public DrawingModelEventBus(DrawingModel source, List<DrawingModelListener> listeners,
+			Supplier<? extends DrawingModel> states) {
+		this.source = Objects.requireNonNull(source, "Source cannot be null.");
+		this.listeners = Objects.requireNonNull(listeners, "Listeners cannot be null.");
+		this.states = Objects.requireNonNull(states, "States cannot be null.");
+
+		pending = new ArrayList<>();
+	}
+
+	/**
+	 * Sets the listeners.
+	 *
+	 * @param listeners
+	 *            the new listeners
+	 */
+	public void setListeners(List<DrawingModelListener> listeners) {
+		this.listeners = Objects.requireNonNull(listeners, "Listeners cannot be null.");
+	}
+
+	/**
+	 * Announces that the objects in the given range have been added.
+	 *
+	 * @param index0
+	 *            the starting index of the newly added objects
+	 * @param index1
+	 *            the ending index of the newly added objects
+	 */
+	public void fireObjectsAdded(int index0, int index1) {
+		fire(ADDED, index0, index1);
+	}
+
+	/**
+	 * Announces that the objects in the given range are about to be removed.
+	 *
+	 * @param index0
+	 *            the starting index of the removed objects
+	 * @param index1
+	 *            the ending index of the removed objects
+	 */
+	public void fireObjectsRemoved(int index0, int index1) {
+		fire(REMOVED, index0, index1);
+	}
+
+	/**
+	 * Announces that the objects in the given range have been changed.
+	 *
+	 * @param index0
+	 *            the starting index of the changed objects
+	 * @param index1
+	 *            the ending index of the changed objects
+	 */
+	public void fireObjectsChanged(int index0, int index1) {
+		fire(CHANGED, index0, index1);
+	}
+
+	/**
+	 * Announces that the colors of the palette have been changed.
+	 */
+	public void firePaletteChanged() {
+		fire(PALETTE, -1, -1);
+	}
+
+	/**
+	 * Delivers all pending events to the batched listeners right away.
+	 */
+	public void flush() {
+		List<Event> events;
+		synchronized (pendingLock) {
+			flushScheduled = false;
+			if (pending.isEmpty()) {
+				return;
+			}
+
+			events = pending;
+			pending = new ArrayList<>();
+		}
+
+		for (Event event : events) {
+			for (DrawingModelListener listener : new ArrayList<>(listeners)) {
+				if (!(listener instanceof SynchronousDrawingModelListener)) {
+					event.deliverTo(event.state, listener);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Delivers the event to the synchronous listeners and queues it for the
+	 * batched ones, together with the current state of the model.
+	 *
+	 * @param kind
+	 *            the kind of the event
+	 * @param index0
+	 *            the starting index of the range, -1 for palette changes
+	 * @param index1
+	 *            the ending index of the range, -1 for palette changes
+	 */
+	private void fire(int kind, int index0, int index1) {
+		boolean batched = false;
+		for (DrawingModelListener listener : listeners) {
+			if (listener instanceof SynchronousDrawingModelListener) {
+				Event.deliverTo(kind, index0, index1, source, listener);
+			} else {
+				batched = true;
+			}
+		}
+
+		if (batched) {
+			enqueue(new Event(kind, index0, index1, states.get()));
+		}
+	}
+
+	/**
+	 * Queues the event for the batched listeners, merging it with the already
+	 * queued events where possible, and schedules the delivery.
+	 *
+	 * @param event
+	 *            the event
+	 */
+	private void enqueue(Event event) {
+		synchronized (pendingLock) {
+			merge(event);
+
+			if (!flushScheduled) {
+				flushScheduled = true;
+				SwingUtilities.invokeLater(this::flush);
+			}
+		}
+	}
+
+	/**
+	 * Adds the event to the pending ones, merging it with them where possible.
+	 * The caller holds the lock of the pending events.
+	 *
+	 * @param event
+	 *            the event
+	 */
+	private void merge(Event event) {
+		if (event.kind == CHANGED) {
+			for (int i = pending.size() - 1; i >= 0 && pending.get(i).kind == CHANGED; i--) {
+				Event queued = pending.get(i);
+				if (queued.index0 <= event.index1 + 1 && event.index0 <= queued.index1 + 1) {
+					event = new Event(CHANGED, Math.min(queued.index0, event.index0),
+							Math.max(queued.index1, event.index1), event.state);
+					pending.remove(i);
+				}
+			}
+			pending.add(event);
+
+		} else if (event.kind == PALETTE) {
+			if (!pending.isEmpty() && pending.get(pending.size() - 1).kind == PALETTE) {
+				pending.set(pending.size() - 1, event);
+			} else {
+				pending.add(event);
+			}
+
+		} else {
+			Event last = pending.isEmpty() ? null : pending.get(pending.size() - 1);
+			Event merged = last == null ? null : last.mergeStructural(event);
+
+			if (merged != null) {
+				pending.set(pending.size() - 1, merged);
+			} else {
+				pending.add(event);
+			}
+		}
+	}
+
+	/**
+	 * A single event waiting to be delivered.
+	 */
+	private static class Event {
+
+		/** The kind of the event. */
+		private final int kind;
+
+		/** The starting index of the range. */
+		private final int index0;
+
+		/** The ending index of the range. */
+		private final int index1;
+
+		/** The state of the model the range refers to. */
+		private final DrawingModel state;
+
+		/**
+		 * Instantiates a new event.
+		 *
+		 * @param kind
+		 *            the kind of the event
+		 * @param index0
+		 *            the starting index of the range
+		 * @param index1
+		 *            the ending index of the range
+		 * @param state
+		 *            the state of the model the range refers to
+		 */
+		private Event(int kind, int index0, int index1, DrawingModel state) {
+			this.kind = kind;
+			this.index0 = index0;
+			this.index1 = index1;
+			this.state = state;
+		}
+
+		/**
+		 * Merges the next addition or removal with this event, if both describe
+		 * a single contiguous range.
+		 *
+		 * @param next
+		 *            the event that followed this one
+		 * @return the merged event, or null if the events cannot be merged
+		 */
+		private Event mergeStructural(Event next) {
+			if (kind != next.kind) {
+				return null;
+			}
+
+			int length = next.index1 - next.index0 + 1;
+			if (kind == ADDED && next.index0 >= index0 && next.index0 <= index1 + 1) {
+				return new Event(ADDED, index0, index1 + length, next.state);
+			}
+			if (kind == REMOVED && next.index1 + 1 == index0) {
+				return new Event(REMOVED, next.index0, index1, state);
+			}
+			if (kind == REMOVED && next.index0 == index0) {
+				return new Event(REMOVED, index0, index1 + length, state);
+			}
+
+			return null;
+		}
+
+		/**
+		 * Delivers this event to the given listener.
+		 *
+		 * @param source
+		 *            the model passed to the listener
+		 * @param listener
+		 *            the listener
+		 */
+		private void deliverTo(DrawingModel source, DrawingModelListener listener) {
+			deliverTo(kind, index0, index1, source, listener);
+		}
+
+		/**
+		 * Delivers an event of the given kind to the given listener.
+		 *
+		 * @param kind
+		 *            the kind of the event
+		 * @param index0
+		 *            the starting index of the range
+		 * @param index1
+		 *            the ending index of the range
+		 * @param source
+		 *            the model passed to the listener
+		 * @param listener
+		 *            the listener
+		 */
+		private static void deliverTo(int kind, int index0, int index1, DrawingModel source,
+				DrawingModelListener listener) {
+			switch (kind) {
+			case ADDED:
+				listener.objectsAdded(source, index0, index1);
+				break;
+
+			case REMOVED:
+				listener.objectsRemoved(source, index0, index1);
+				break;
+
+			case PALETTE:
+				listener.paletteChanged(source);
+				break;
+
+			default:
+				listener.objectsChanged(source, index0, index1);
+				break;
+			}
+		}
+	}
+}
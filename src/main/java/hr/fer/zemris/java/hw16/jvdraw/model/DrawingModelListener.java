@@ -3,7 +3,9 @@ package hr.fer.zemris.java.hw16.jvdraw.model;
 /**
  * Interface that defines the methods that need to be implemented by any object
  * that wishes to get notified by any changes in the DocumentModel's collection
- * of geometrical objects.
+ * of geometrical objects. DocumentModel delivers the changes made during one
+ * tick of the event dispatch thread in a single batch; listeners that need to
+ * be notified immediately implement SynchronousDrawingModelListener.
  * 
  * @author Damjan Vučina
  */
@@ -47,4 +49,15 @@ public interface DrawingModelListener {
 	 *            the ending index of the changed objects
 	 */
 	public void objectsChanged(DrawingModel source, int index0, int index1);
+
+	/**
+	 * Method invoked whenever the colors of the palette the geometrical objects are drawn in have been changed,
+	 * which changes the colors of the objects but neither their number nor their geometry. Does nothing by
+	 * default.
+	 *
+	 * @param source
+	 *            reference to the source object that acts as a Subject in the Observer pattern
+	 */
+	public default void paletteChanged(DrawingModel source) {
+	}
 }
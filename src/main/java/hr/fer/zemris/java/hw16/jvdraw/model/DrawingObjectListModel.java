@@ -138,6 +138,22 @@ public class DrawingObjectListModel extends AbstractListModel<GeometricalObject>
 		notifyListeners(event, l -> l.contentsChanged(event));
 	}
 
+	/**
+	 * Method invoked whenever the colors of the palette the geometrical
+	 * objects are drawn in have been changed. The descriptions of the objects
+	 * may include their colors, so all of them are announced as changed.
+	 *
+	 * @param source
+	 *            reference to the source object that acts as a Subject in the
+	 *            Observer pattern
+	 */
+	@Override
+	public void paletteChanged(DrawingModel source) {
+		if (source.getSize() > 0) {
+			objectsChanged(source, 0, source.getSize() - 1);
+		}
+	}
+
 	/**
 	 * Notifies listeners.
 	 *
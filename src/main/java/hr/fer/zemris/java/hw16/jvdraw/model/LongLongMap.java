@@ -0,0 +1,195 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+/**
+ * The class that represents a map from positive long keys to long values,
+ * stored in two primitive arrays with open addressing and linear probing. It
+ * takes 16 bytes per slot and keeps at least a quarter of the slots free,
+ * where a HashMap of boxed keys and values takes about 80 bytes per mapping.
+ * Removing a key shifts the following keys of its probe sequence back, so no
+ * tombstones are left behind.
+ *
+ * @author Damjan Vučina
+ */
+final class LongLongMap {
+
+	/** The value returned for keys that are not present. */
+	static final long MISSING = Long.MIN_VALUE;
+
+	/** The initial number of slots, a power of two. */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** The keys, 0 marking a free slot. */
+	private long[] keys;
+
+	/** The values, in the slots of their keys. */
+	private long[] values;
+
+	/** The number of mappings. */
+	private int size;
+
+	/**
+	 * Instantiates a new, empty map.
+	 */
+	LongLongMap() {
+		this(0);
+	}
+
+	/**
+	 * Instantiates a new, empty map able to hold the given number of mappings
+	 * without growing.
+	 *
+	 * @param expected
+	 *            the expected number of mappings
+	 */
+	LongLongMap(int expected) {
+		int capacity = INITIAL_CAPACITY;
+		while (capacity - capacity / 4 < expected) {
+			capacity <<= 1;
+		}
+
+		keys = new long[capacity];
+		values = new long[capacity];
+	}
+
+	/**
+	 * Gets the number of mappings.
+	 *
+	 * @return the size
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * Gets the value mapped to the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the value, or MISSING if the key is not present
+	 */
+	long get(long key) {
+		int mask = keys.length - 1;
+		for (int slot = slotOf(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				return values[slot];
+			}
+		}
+
+		return MISSING;
+	}
+
+	/**
+	 * Checks whether the given key is present.
+	 *
+	 * @param key
+	 *            the key
+	 * @return true, if the key is present
+	 */
+	boolean containsKey(long key) {
+		return get(key) != MISSING;
+	}
+
+	/**
+	 * Maps the given key to the given value.
+	 *
+	 * @param key
+	 *            the key, positive
+	 * @param value
+	 *            the value, other than MISSING
+	 * @return the previous value, or MISSING if the key was not present
+	 */
+	long put(long key, long value) {
+		if (key <= 0) {
+			throw new IllegalArgumentException("Keys must be positive, was: " + key);
+		}
+
+		int mask = keys.length - 1;
+		int slot = slotOf(key, mask);
+		for (; keys[slot] != 0; slot = (slot + 1) & mask) {
+			if (keys[slot] == key) {
+				long previous = values[slot];
+				values[slot] = value;
+				return previous;
+			}
+		}
+
+		keys[slot] = key;
+		values[slot] = value;
+		if (++size > keys.length - keys.length / 4) {
+			grow();
+		}
+
+		return MISSING;
+	}
+
+	/**
+	 * Removes the mapping of the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @return the removed value, or MISSING if the key was not present
+	 */
+	long remove(long key) {
+		int mask = keys.length - 1;
+		int slot = slotOf(key, mask);
+		while (keys[slot] != key) {
+			if (keys[slot] == 0) {
+				return MISSING;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		long removed = values[slot];
+		size--;
+
+		// moves back the following keys that would not be found past the gap
+		int gap = slot;
+		for (int next = (gap + 1) & mask; keys[next] != 0; next = (next + 1) & mask) {
+			int home = slotOf(keys[next], mask);
+			if (((next - home) & mask) >= ((next - gap) & mask)) {
+				keys[gap] = keys[next];
+				values[gap] = values[next];
+				gap = next;
+			}
+		}
+		keys[gap] = 0;
+
+		return removed;
+	}
+
+	/**
+	 * Doubles the number of slots, placing all keys anew.
+	 */
+	private void grow() {
+		long[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new long[oldKeys.length * 2];
+		values = new long[oldValues.length * 2];
+
+		int mask = keys.length - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldKeys[i] != 0) {
+				int slot = slotOf(oldKeys[i], mask);
+				while (keys[slot] != 0) {
+					slot = (slot + 1) & mask;
+				}
+				keys[slot] = oldKeys[i];
+				values[slot] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Gets the home slot of the given key.
+	 *
+	 * @param key
+	 *            the key
+	 * @param mask
+	 *            the number of slots minus one
+	 * @return the slot
+	 */
+	private static int slotOf(long key, int mask) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32)) & mask;
+	}
+}
@@ -0,0 +1,544 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The class that represents an immutable run of consecutive geometrical
+ * objects, stored in parallel columns: the order labels, the identifiers,
+ * the types, the coordinates of the points and the indices of the palette
+ * entries holding the colors. A chunk holds at most
+ * {@value #CAPACITY} objects and is the unit ObjectTree copies on write, so
+ * changing an object copies the columns of its chunk only.
+ *
+ * The columns hold the state the objects had when the chunk was created, and
+ * nothing modifies them afterwards, so a chunk shared by several versions of
+ * the tree describes the objects the same way in all of them. The objects
+ * handed out by value are created from the columns on every call and are not
+ * kept by the chunk; they carry the identifiers of their rows, so every
+ * object created from the same row is equal to the others.
+ *
+ * Rows refer to colors only by their palette indices, and the colors
+ * themselves are looked up when values are created, either in the palette or
+ * in an array of colors the palette has handed out. Recoloring the palette
+ * therefore changes no chunk.
+ *
+ * @author Damjan Vučina
+ */
+final class ObjectChunk {
+
+	/** The maximal number of objects in a chunk. */
+	static final int CAPACITY = 64;
+
+	/** The type of a line. */
+	static final byte LINE = 0;
+
+	/** The type of a circle. */
+	static final byte CIRCLE = 1;
+
+	/** The type of a filled circle. */
+	static final byte FILLED_CIRCLE = 2;
+
+	/** The color of the shapes, whose colors are not looked up. */
+	private static final ColorPalette.Entry TRANSPARENT = new ColorPalette.Entry(new Color(0, true));
+
+	/** The odd base of the polynomial digest of a run of objects. */
+	static final long DIGEST_BASE = 0x9E3779B97F4A7C15L;
+
+	/** The order labels, strictly increasing. */
+	private final long[] labels;
+
+	/** The identifiers of the objects. */
+	private final long[] ids;
+
+	/** The types of the objects. */
+	private final byte[] types;
+
+	/** The x coordinates of the start points. */
+	private final int[] startX;
+
+	/** The y coordinates of the start points. */
+	private final int[] startY;
+
+	/** The x coordinates of the end points. */
+	private final int[] endX;
+
+	/** The y coordinates of the end points. */
+	private final int[] endY;
+
+	/** The palette indices of the outline colors. */
+	private final int[] fgEntries;
+
+	/** The palette indices of the area colors, -1 for objects without an area. */
+	private final int[] bgEntries;
+
+	/** The digest of the objects of this chunk, in drawing order. */
+	final long digest;
+
+	/** The base of the digest raised to the number of objects. */
+	final long power;
+
+	/**
+	 * The function writing a row of a chunk under construction.
+	 */
+	@FunctionalInterface
+	private interface RowWriter {
+
+		/**
+		 * Writes the row at the given position of the given chunk.
+		 *
+		 * @param chunk
+		 *            the chunk under construction
+		 * @param index
+		 *            the position of the row
+		 */
+		void write(ObjectChunk chunk, int index);
+	}
+
+	/**
+	 * Instantiates a new chunk of the given size, whose rows are written by the
+	 * given function in increasing order.
+	 *
+	 * @param size
+	 *            the number of objects
+	 * @param writer
+	 *            the function writing the rows
+	 */
+	private ObjectChunk(int size, RowWriter writer) {
+		labels = new long[size];
+		ids = new long[size];
+		types = new byte[size];
+		startX = new int[size];
+		startY = new int[size];
+		endX = new int[size];
+		endY = new int[size];
+		fgEntries = new int[size];
+		bgEntries = new int[size];
+
+		long digest = 0;
+		long power = 1;
+		for (int i = 0; i < size; i++) {
+			writer.write(this, i);
+			digest = digest * DIGEST_BASE + hash(i);
+			power *= DIGEST_BASE;
+		}
+
+		this.digest = digest;
+		this.power = power;
+	}
+
+	/**
+	 * Creates a chunk holding the current state of the given range of objects.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param labels
+	 *            the labels of the objects, strictly increasing
+	 * @param from
+	 *            the first index, inclusive
+	 * @param to
+	 *            the last index, exclusive; at most {@value #CAPACITY} objects
+	 *            past the first one
+	 * @return the chunk
+	 */
+	static ObjectChunk of(List<GeometricalObject> objects, long[] labels, int from, int to) {
+		return new ObjectChunk(to - from, (chunk, i) -> chunk.freeze(i, labels[from + i], objects.get(from + i)));
+	}
+
+	/**
+	 * Creates a chunk holding the objects of both given chunks, all labels of
+	 * the first one being smaller than all labels of the second one.
+	 *
+	 * @param a
+	 *            the first chunk
+	 * @param b
+	 *            the second chunk
+	 * @return the joined chunk
+	 */
+	static ObjectChunk concat(ObjectChunk a, ObjectChunk b) {
+		int split = a.size();
+
+		return new ObjectChunk(split + b.size(), (chunk, i) -> {
+			if (i < split) {
+				chunk.copy(i, a, i);
+			} else {
+				chunk.copy(i, b, i - split);
+			}
+		});
+	}
+
+	/**
+	 * Creates a copy of the given chunk whose objects get the given labels.
+	 *
+	 * @param chunk
+	 *            the chunk
+	 * @param labels
+	 *            the new labels, strictly increasing
+	 * @param from
+	 *            the position of the label of the first object of the chunk
+	 * @return the copy
+	 */
+	static ObjectChunk relabeled(ObjectChunk chunk, long[] labels, int from) {
+		return new ObjectChunk(chunk.size(), (copy, i) -> {
+			copy.copy(i, chunk, i);
+			copy.labels[i] = labels[from + i];
+		});
+	}
+
+	/**
+	 * Gets the number of objects in this chunk.
+	 *
+	 * @return the number of objects
+	 */
+	int size() {
+		return labels.length;
+	}
+
+	/**
+	 * Gets the smallest label of this chunk.
+	 *
+	 * @return the first label
+	 */
+	long first() {
+		return labels[0];
+	}
+
+	/**
+	 * Gets the greatest label of this chunk.
+	 *
+	 * @return the last label
+	 */
+	long last() {
+		return labels[labels.length - 1];
+	}
+
+	/**
+	 * Gets the label at the given position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the label
+	 */
+	long label(int index) {
+		return labels[index];
+	}
+
+	/**
+	 * Gets the identifier of the object at the given position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the identifier
+	 */
+	long id(int index) {
+		return ids[index];
+	}
+
+	/**
+	 * Gets the palette index of the outline color of the object at the given
+	 * position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the palette index
+	 */
+	int fgEntry(int index) {
+		return fgEntries[index];
+	}
+
+	/**
+	 * Gets the palette index of the area color of the object at the given
+	 * position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the palette index, or -1 if the object has no area
+	 */
+	int bgEntry(int index) {
+		return bgEntries[index];
+	}
+
+	/**
+	 * Finds the position of the given label, as Arrays.binarySearch does.
+	 *
+	 * @param label
+	 *            the label
+	 * @return the position, or (-(insertion point) - 1) if the label is not
+	 *         present
+	 */
+	int indexOf(long label) {
+		return Arrays.binarySearch(labels, label);
+	}
+
+	/**
+	 * Gets the number of labels of this chunk smaller than the given label.
+	 *
+	 * @param label
+	 *            the label
+	 * @return the number of smaller labels
+	 */
+	int rank(long label) {
+		int index = indexOf(label);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	/**
+	 * Creates an object describing the geometry of the object at the given
+	 * position. Its colors are detached transparent ones, since they are not
+	 * looked up; it serves for calculating bounds only.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the shape
+	 */
+	GeometricalObject shape(int index) {
+		return value(index, null, null);
+	}
+
+	/**
+	 * Creates an object describing the object at the given position, holding
+	 * the entries of the given palette the row refers to. Its colors are the
+	 * current colors of the entries.
+	 *
+	 * @param index
+	 *            the position
+	 * @param palette
+	 *            the palette the rows refer to
+	 * @return the value
+	 */
+	GeometricalObject value(int index, ColorPalette palette) {
+		GeometricalObject value = value(index, palette, null);
+		value.setPalette(palette);
+		return value;
+	}
+
+	/**
+	 * Creates an object describing the object at the given position, detached
+	 * from any palette and holding the colors the given array, handed out by
+	 * the palette the rows refer to, has at the row's indices.
+	 *
+	 * @param index
+	 *            the position
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries
+	 * @return the value
+	 */
+	GeometricalObject value(int index, int[] colors) {
+		return value(index, null, colors);
+	}
+
+	/**
+	 * Creates a copy of this chunk holding the current state of the given
+	 * object at the given position, under the label of the row it replaces.
+	 *
+	 * @param index
+	 *            the position
+	 * @param object
+	 *            the object
+	 * @return the copy
+	 */
+	ObjectChunk with(int index, GeometricalObject object) {
+		return new ObjectChunk(size(), (chunk, i) -> {
+			if (i == index) {
+				chunk.freeze(i, labels[i], object);
+			} else {
+				chunk.copy(i, this, i);
+			}
+		});
+	}
+
+	/**
+	 * Creates a copy of this chunk without the object at the given position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the copy, or null if it would be empty
+	 */
+	ObjectChunk without(int index) {
+		if (size() == 1) {
+			return null;
+		}
+
+		return new ObjectChunk(size() - 1, (chunk, i) -> chunk.copy(i, this, i < index ? i : i + 1));
+	}
+
+	/**
+	 * Creates a chunk holding the given range of the objects of this chunk.
+	 *
+	 * @param from
+	 *            the first position, inclusive
+	 * @param to
+	 *            the last position, exclusive
+	 * @return the chunk, or null if the range is empty
+	 */
+	ObjectChunk slice(int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+		if (from == 0 && to == size()) {
+			return this;
+		}
+
+		return new ObjectChunk(to - from, (chunk, i) -> chunk.copy(i, this, from + i));
+	}
+
+	/**
+	 * Creates an object describing the object at the given position, with
+	 * colors taken from the given palette or the given array of colors, or
+	 * transparent ones if neither is given.
+	 *
+	 * @param index
+	 *            the position
+	 * @param palette
+	 *            the palette the rows refer to, may be null
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries, may be
+	 *            null
+	 * @return the value
+	 */
+	private GeometricalObject value(int index, ColorPalette palette, int[] colors) {
+		Point start = new Point(startX[index], startY[index]);
+		Point end = new Point(endX[index], endY[index]);
+		ColorPalette.Entry fgColor = entryOf(fgEntries[index], palette, colors);
+
+		switch (types[index]) {
+		case LINE:
+			return new Line(ids[index], start, end, fgColor);
+		case CIRCLE:
+			return new Circle(ids[index], start, end, fgColor);
+		default:
+			ColorPalette.Entry bgColor = entryOf(bgEntries[index], palette, colors);
+			return new FilledCircle(ids[index], start, end, fgColor, bgColor);
+		}
+	}
+
+	/**
+	 * Writes the current state of the given object into the row at the given
+	 * position. The colors of the object must be held by the entries of a
+	 * palette.
+	 *
+	 * @param index
+	 *            the position
+	 * @param label
+	 *            the label of the object
+	 * @param object
+	 *            the object
+	 */
+	private void freeze(int index, long label, GeometricalObject object) {
+		labels[index] = label;
+		ids[index] = object.getId();
+		types[index] = object instanceof FilledCircle ? FILLED_CIRCLE : object instanceof Circle ? CIRCLE : LINE;
+		startX[index] = object.getStartPoint().x;
+		startY[index] = object.getStartPoint().y;
+		endX[index] = object.getEndPoint().x;
+		endY[index] = object.getEndPoint().y;
+		fgEntries[index] = indexOf(object.getFgColorEntry());
+		bgEntries[index] = object instanceof FilledCircle ? indexOf(((FilledCircle) object).getBgColorEntry()) : -1;
+	}
+
+	/**
+	 * Copies a row of the given chunk into the row at the given position.
+	 *
+	 * @param index
+	 *            the position
+	 * @param source
+	 *            the chunk holding the copied row
+	 * @param sourceIndex
+	 *            the position of the copied row
+	 */
+	private void copy(int index, ObjectChunk source, int sourceIndex) {
+		labels[index] = source.labels[sourceIndex];
+		ids[index] = source.ids[sourceIndex];
+		types[index] = source.types[sourceIndex];
+		startX[index] = source.startX[sourceIndex];
+		startY[index] = source.startY[sourceIndex];
+		endX[index] = source.endX[sourceIndex];
+		endY[index] = source.endY[sourceIndex];
+		fgEntries[index] = source.fgEntries[sourceIndex];
+		bgEntries[index] = source.bgEntries[sourceIndex];
+	}
+
+	/**
+	 * Calculates the content hash of the object at the given position out of
+	 * its type, points and the palette indices of its colors.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the hash
+	 */
+	private long hash(int index) {
+		long h = types[index] + 1;
+		h = mix(h, startX[index]);
+		h = mix(h, startY[index]);
+		h = mix(h, endX[index]);
+		h = mix(h, endY[index]);
+		h = mix(h, fgEntries[index]);
+		if (types[index] == FILLED_CIRCLE) {
+			h = mix(h, bgEntries[index]);
+		}
+
+		return h;
+	}
+
+	/**
+	 * Mixes the given value into the given hash.
+	 *
+	 * @param h
+	 *            the hash
+	 * @param value
+	 *            the value
+	 * @return the new hash
+	 */
+	private static long mix(long h, long value) {
+		h = (h ^ value) * 0xFF51AFD7ED558CCDL;
+		return h ^ (h >>> 29);
+	}
+
+	/**
+	 * Gets the palette index of the given entry.
+	 *
+	 * @param entry
+	 *            the entry
+	 * @return the index
+	 * @throws IllegalArgumentException
+	 *             if the entry is detached
+	 */
+	private static int indexOf(ColorPalette.Entry entry) {
+		Objects.requireNonNull(entry, "Stored colors cannot be null.");
+		if (entry.getIndex() < 0) {
+			throw new IllegalArgumentException("Stored colors must be palette entries, was detached: " + entry.getColor());
+		}
+
+		return entry.getIndex();
+	}
+
+	/**
+	 * Gets the entry with the given index of the given palette, or a detached
+	 * entry holding the color the given array has at the index, or a detached
+	 * transparent entry if neither is given.
+	 *
+	 * @param index
+	 *            the palette index
+	 * @param palette
+	 *            the palette, may be null
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries, may be
+	 *            null
+	 * @return the entry
+	 */
+	private static ColorPalette.Entry entryOf(int index, ColorPalette palette, int[] colors) {
+		if (palette != null) {
+			return palette.getEntry(index);
+		}
+
+		return colors != null ? new ColorPalette.Entry(new Color(colors[index], true)) : TRANSPARENT;
+	}
+}
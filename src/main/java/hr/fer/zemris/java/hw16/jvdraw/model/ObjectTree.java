@@ -0,0 +1,899 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+
+/**
+ * The class that holds the operations on an order-statistic treap of
+ * geometrical objects. Every object is stored under an order label, a sparse
+ * long value whose ordering matches the order in which the objects are drawn.
+ * Consecutive objects are grouped into ObjectChunks, which store their state
+ * in parallel columns, and every node of the treap holds one chunk. Each node
+ * knows the number of objects in its subtree, so both the object at a given
+ * position and the position of a given label are found in logarithmic time.
+ *
+ * Every node also keeps a polynomial digest of the content of its subtree, so
+ * the digest of the whole collection is maintained by the same path copying
+ * that maintains the subtree sizes.
+ *
+ * Nodes and chunks are never modified once created. Every operation copies
+ * the nodes on the path it changes, and the chunk of a changed object, and
+ * returns the new root, so a root captured earlier still describes the
+ * collection as it was at that time. Merging two trees joins the chunks at
+ * their seam if they fit into one, so splitting and merging the tree over and
+ * over does not leave it fragmented into tiny chunks.
+ *
+ * @author Damjan Vučina
+ */
+final class ObjectTree {
+
+	/**
+	 * Prevents instantiation of this helper class.
+	 */
+	private ObjectTree() {
+	}
+
+	/**
+	 * A single immutable node of the treap.
+	 */
+	static final class Node {
+
+		/** The chunk of objects stored in this node. */
+		final ObjectChunk chunk;
+
+		/** The heap priority of the node. */
+		final int priority;
+
+		/** The left subtree, holding smaller labels. */
+		final Node left;
+
+		/** The right subtree, holding greater labels. */
+		final Node right;
+
+		/** The number of objects in this subtree. */
+		final int size;
+
+		/** The digest of the objects in this subtree, in drawing order. */
+		final long digest;
+
+		/** The base of the digest raised to the number of objects in this subtree. */
+		final long power;
+
+		/**
+		 * Instantiates a new leaf, whose priority is derived from the first label
+		 * of the given chunk.
+		 *
+		 * @param chunk
+		 *            the chunk
+		 */
+		private Node(ObjectChunk chunk) {
+			this(chunk, priorityOf(chunk.first()), null, null);
+		}
+
+		/**
+		 * Instantiates a new node.
+		 *
+		 * @param chunk
+		 *            the chunk
+		 * @param priority
+		 *            the heap priority
+		 * @param left
+		 *            the left subtree
+		 * @param right
+		 *            the right subtree
+		 */
+		private Node(ObjectChunk chunk, int priority, Node left, Node right) {
+			this.chunk = chunk;
+			this.priority = priority;
+			this.left = left;
+			this.right = right;
+			this.size = size(left) + chunk.size() + size(right);
+			this.digest = (digest(left) * chunk.power + chunk.digest) * power(right) + digest(right);
+			this.power = power(left) * chunk.power * power(right);
+		}
+
+		/**
+		 * Creates a copy of this node with different children.
+		 *
+		 * @param left
+		 *            the new left subtree
+		 * @param right
+		 *            the new right subtree
+		 * @return the copy
+		 */
+		private Node withChildren(Node left, Node right) {
+			return new Node(chunk, priority, left, right);
+		}
+
+		/**
+		 * Creates a copy of this node holding a different chunk, whose labels must
+		 * lie between the labels of the children.
+		 *
+		 * @param chunk
+		 *            the new chunk
+		 * @return the copy
+		 */
+		private Node withChunk(ObjectChunk chunk) {
+			return new Node(chunk, priority, left, right);
+		}
+	}
+
+	/**
+	 * Gets the size of the given subtree.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @return the number of objects
+	 */
+	static int size(Node node) {
+		return node == null ? 0 : node.size;
+	}
+
+	/**
+	 * Gets the digest of the given subtree.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @return the digest
+	 */
+	static long digest(Node node) {
+		return node == null ? 0 : node.digest;
+	}
+
+	/**
+	 * Gets the base of the digest raised to the size of the given subtree.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @return the power
+	 */
+	private static long power(Node node) {
+		return node == null ? 1 : node.power;
+	}
+
+	/**
+	 * Creates a value describing the object at the given position, holding the
+	 * entries of the given palette its row refers to.
+	 *
+	 * @param root
+	 *            the root
+	 * @param index
+	 *            the position
+	 * @param palette
+	 *            the palette the rows refer to
+	 * @return the value
+	 */
+	static GeometricalObject valueAt(Node root, int index, ColorPalette palette) {
+		int[] offset = new int[1];
+		return nodeAt(root, index, offset).chunk.value(offset[0], palette);
+	}
+
+	/**
+	 * Creates a detached value describing the object at the given position,
+	 * with the colors the given array, handed out by the palette the rows refer
+	 * to, has at the indices of its row.
+	 *
+	 * @param root
+	 *            the root
+	 * @param index
+	 *            the position
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries
+	 * @return the value
+	 */
+	static GeometricalObject valueAt(Node root, int index, int[] colors) {
+		int[] offset = new int[1];
+		return nodeAt(root, index, offset).chunk.value(offset[0], colors);
+	}
+
+	/**
+	 * Gets the identifier of the object at the given position.
+	 *
+	 * @param root
+	 *            the root
+	 * @param index
+	 *            the position
+	 * @return the identifier
+	 */
+	static long idAt(Node root, int index) {
+		int[] offset = new int[1];
+		return nodeAt(root, index, offset).chunk.id(offset[0]);
+	}
+
+	/**
+	 * Gets the label of the object at the given position.
+	 *
+	 * @param root
+	 *            the root
+	 * @param index
+	 *            the position
+	 * @return the label
+	 */
+	static long labelAt(Node root, int index) {
+		int[] offset = new int[1];
+		return nodeAt(root, index, offset).chunk.label(offset[0]);
+	}
+
+	/**
+	 * Finds the node whose chunk holds the given position.
+	 *
+	 * @param root
+	 *            the root
+	 * @param index
+	 *            the position
+	 * @param offset
+	 *            the array whose only element is set to the position within the
+	 *            chunk
+	 * @return the node
+	 */
+	private static Node nodeAt(Node root, int index, int[] offset) {
+		if (index < 0 || index >= size(root)) {
+			throw new IndexOutOfBoundsException("Valid indices are from 0 to " + (size(root) - 1) + ", was: " + index);
+		}
+
+		Node node = root;
+		while (true) {
+			int leftSize = size(node.left);
+			if (index < leftSize) {
+				node = node.left;
+			} else if (index < leftSize + node.chunk.size()) {
+				offset[0] = index - leftSize;
+				return node;
+			} else {
+				index -= leftSize + node.chunk.size();
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Gets the smallest label in the given tree.
+	 *
+	 * @param root
+	 *            the root, must not be null
+	 * @return the first label
+	 */
+	static long firstLabel(Node root) {
+		return first(root).first();
+	}
+
+	/**
+	 * Gets the greatest label in the given tree.
+	 *
+	 * @param root
+	 *            the root, must not be null
+	 * @return the last label
+	 */
+	static long lastLabel(Node root) {
+		return last(root).last();
+	}
+
+	/**
+	 * Gets the chunk holding the smallest labels of the given tree.
+	 *
+	 * @param root
+	 *            the root, must not be null
+	 * @return the first chunk
+	 */
+	private static ObjectChunk first(Node root) {
+		Node node = root;
+		while (node.left != null) {
+			node = node.left;
+		}
+
+		return node.chunk;
+	}
+
+	/**
+	 * Gets the chunk holding the greatest labels of the given tree.
+	 *
+	 * @param root
+	 *            the root, must not be null
+	 * @return the last chunk
+	 */
+	private static ObjectChunk last(Node root) {
+		Node node = root;
+		while (node.right != null) {
+			node = node.right;
+		}
+
+		return node.chunk;
+	}
+
+	/**
+	 * Gets the number of objects whose labels are smaller than the given label,
+	 * i.e. the position of the object with the given label.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @return the rank of the label
+	 */
+	static int rank(Node root, long label) {
+		int rank = 0;
+
+		Node node = root;
+		while (node != null) {
+			if (label <= node.chunk.first()) {
+				node = node.left;
+			} else if (label > node.chunk.last()) {
+				rank += size(node.left) + node.chunk.size();
+				node = node.right;
+			} else {
+				return rank + size(node.left) + node.chunk.rank(label);
+			}
+		}
+
+		return rank;
+	}
+
+	/**
+	 * Finds the node whose chunk holds the given label.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @return the node, or null if there is none
+	 */
+	private static Node nodeOf(Node root, long label) {
+		Node node = root;
+		while (node != null) {
+			if (label < node.chunk.first()) {
+				node = node.left;
+			} else if (label > node.chunk.last()) {
+				node = node.right;
+			} else {
+				return node.chunk.indexOf(label) >= 0 ? node : null;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Creates a shape describing the geometry of the object stored under the
+	 * given label, as ObjectChunk.shape does.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @return the shape, or null if there is no such object
+	 */
+	static GeometricalObject findShape(Node root, long label) {
+		Node node = nodeOf(root, label);
+		return node == null ? null : node.chunk.shape(node.chunk.indexOf(label));
+	}
+
+	/**
+	 * Finds the chunk holding the object stored under the given label.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @return the chunk, or null if there is no such object
+	 */
+	static ObjectChunk chunkOf(Node root, long label) {
+		Node node = nodeOf(root, label);
+		return node == null ? null : node.chunk;
+	}
+
+	/**
+	 * Collects the values stored under the given labels, all of which must be
+	 * present. The search paths of the labels share their common prefixes, so
+	 * looking up many labels at once visits far fewer nodes than looking them
+	 * up one by one.
+	 *
+	 * @param node
+	 *            the root of the subtree
+	 * @param labels
+	 *            the labels, strictly increasing
+	 * @param from
+	 *            the first label looked up in the subtree, inclusive
+	 * @param to
+	 *            the last label looked up in the subtree, exclusive
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries the rows
+	 *            refer to
+	 * @param found
+	 *            the list the detached values are added to, in the order of the
+	 *            labels
+	 */
+	static void values(Node node, long[] labels, int from, int to, int[] colors, List<GeometricalObject> found) {
+		if (from >= to) {
+			return;
+		}
+
+		ObjectChunk chunk = node.chunk;
+		int start = rankOf(labels, from, to, chunk.first());
+		int end = rankOf(labels, start, to, chunk.last() + 1);
+
+		values(node.left, labels, from, start, colors, found);
+		for (int i = start; i < end; i++) {
+			found.add(chunk.value(chunk.indexOf(labels[i]), colors));
+		}
+		values(node.right, labels, end, to, colors, found);
+	}
+
+	/**
+	 * Gets the position of the first of the given range of sorted labels that
+	 * is not smaller than the given label.
+	 *
+	 * @param labels
+	 *            the labels, strictly increasing
+	 * @param from
+	 *            the first position of the range, inclusive
+	 * @param to
+	 *            the last position of the range, exclusive
+	 * @param label
+	 *            the label
+	 * @return the position
+	 */
+	private static int rankOf(long[] labels, int from, int to, long label) {
+		int index = Arrays.binarySearch(labels, from, to, label);
+		return index >= 0 ? index : -index - 1;
+	}
+
+	/**
+	 * Passes the shape, as ObjectChunk.shape creates it, and the label of every
+	 * object of the given subtree to the given action, in drawing order.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @param action
+	 *            the action
+	 */
+	static void forEachShape(Node node, ObjLongConsumer<GeometricalObject> action) {
+		while (node != null) {
+			forEachShape(node.left, action);
+			for (int i = 0; i < node.chunk.size(); i++) {
+				action.accept(node.chunk.shape(i), node.chunk.label(i));
+			}
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Passes every chunk of the given subtree to the given action, in drawing
+	 * order.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @param action
+	 *            the action
+	 */
+	static void forEachChunk(Node node, Consumer<ObjectChunk> action) {
+		while (node != null) {
+			forEachChunk(node.left, action);
+			action.accept(node.chunk);
+			node = node.right;
+		}
+	}
+
+	/**
+	 * Inserts the object under the given label, which must not be present yet.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @param object
+	 *            the object
+	 * @return the new root
+	 */
+	static Node insert(Node root, long label, GeometricalObject object) {
+		Node[] parts = split(root, label);
+		Node leaf = build(Collections.singletonList(object), new long[] { label });
+
+		return merge(merge(parts[0], leaf), parts[1]);
+	}
+
+	/**
+	 * Removes the object with the given label.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @return the new root
+	 */
+	static Node delete(Node root, long label) {
+		if (root == null) {
+			return null;
+		}
+
+		if (label < root.chunk.first()) {
+			return root.withChildren(delete(root.left, label), root.right);
+		} else if (label > root.chunk.last()) {
+			return root.withChildren(root.left, delete(root.right, label));
+		}
+
+		int index = root.chunk.indexOf(label);
+		if (index < 0) {
+			return root;
+		}
+
+		ObjectChunk rest = root.chunk.without(index);
+		return rest == null ? join(root.left, root.right) : root.withChunk(rest);
+	}
+
+	/**
+	 * Writes the current state of the given object into the row stored under
+	 * the given label. Only the chunk holding the label is copied.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @param object
+	 *            the new object
+	 * @return the new root
+	 */
+	static Node replace(Node root, long label, GeometricalObject object) {
+		if (root == null) {
+			throw new NoSuchElementException("No object stored under label " + label);
+		}
+
+		if (label < root.chunk.first()) {
+			return root.withChildren(replace(root.left, label, object), root.right);
+		} else if (label > root.chunk.last()) {
+			return root.withChildren(root.left, replace(root.right, label, object));
+		}
+
+		int index = root.chunk.indexOf(label);
+		if (index < 0) {
+			throw new NoSuchElementException("No object stored under label " + label);
+		}
+
+		return root.withChunk(root.chunk.with(index, object));
+	}
+
+	/**
+	 * Splits the tree into the objects with labels smaller than the given label
+	 * and the objects with labels greater or equal to it. A chunk holding labels
+	 * on both sides is split in two.
+	 *
+	 * @param root
+	 *            the root
+	 * @param label
+	 *            the label
+	 * @return the roots of the two parts
+	 */
+	static Node[] split(Node root, long label) {
+		if (root == null) {
+			return new Node[2];
+		}
+
+		ObjectChunk chunk = root.chunk;
+		if (label <= chunk.first()) {
+			Node[] parts = split(root.left, label);
+			parts[1] = root.withChildren(parts[1], root.right);
+			return parts;
+		} else if (label > chunk.last()) {
+			Node[] parts = split(root.right, label);
+			parts[0] = root.withChildren(root.left, parts[0]);
+			return parts;
+		}
+
+		// the node's priority stays valid for both halves of its chunk
+		int rank = chunk.rank(label);
+		Node[] parts = new Node[2];
+		parts[0] = new Node(chunk.slice(0, rank), root.priority, root.left, null);
+		parts[1] = new Node(chunk.slice(rank, chunk.size()), root.priority, null, root.right);
+		return parts;
+	}
+
+	/**
+	 * Merges two trees, where all labels of the first one are smaller than all
+	 * labels of the second one. If the last chunk of the first tree and the
+	 * first chunk of the second one fit into a single chunk, they are joined.
+	 *
+	 * @param a
+	 *            the first tree
+	 * @param b
+	 *            the second tree
+	 * @return the new root
+	 */
+	static Node merge(Node a, Node b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+
+		ObjectChunk last = last(a);
+		ObjectChunk first = first(b);
+		if (last.size() + first.size() > ObjectChunk.CAPACITY) {
+			return join(a, b);
+		}
+
+		Node seam = new Node(ObjectChunk.concat(last, first));
+		return join(join(withoutLast(a), seam), withoutFirst(b));
+	}
+
+	/**
+	 * Merges two trees, where all labels of the first one are smaller than all
+	 * labels of the second one, keeping all chunks as they are.
+	 *
+	 * @param a
+	 *            the first tree
+	 * @param b
+	 *            the second tree
+	 * @return the new root
+	 */
+	private static Node join(Node a, Node b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+
+		if (a.priority > b.priority) {
+			return a.withChildren(a.left, join(a.right, b));
+		} else {
+			return b.withChildren(join(a, b.left), b.right);
+		}
+	}
+
+	/**
+	 * Removes the node holding the first chunk of the given tree.
+	 *
+	 * @param node
+	 *            the root, must not be null
+	 * @return the new root
+	 */
+	private static Node withoutFirst(Node node) {
+		return node.left == null ? node.right : node.withChildren(withoutFirst(node.left), node.right);
+	}
+
+	/**
+	 * Removes the node holding the last chunk of the given tree.
+	 *
+	 * @param node
+	 *            the root, must not be null
+	 * @return the new root
+	 */
+	private static Node withoutLast(Node node) {
+		return node.right == null ? node.left : node.withChildren(node.left, withoutLast(node.right));
+	}
+
+	/**
+	 * Builds a tree out of the given objects in linear time, grouping them into
+	 * full chunks.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param labels
+	 *            the labels of the objects, strictly increasing
+	 * @return the root
+	 */
+	static Node build(List<GeometricalObject> objects, long[] labels) {
+		List<ObjectChunk> chunks = new ArrayList<>(objects.size() / ObjectChunk.CAPACITY + 1);
+		for (int from = 0; from < objects.size(); from += ObjectChunk.CAPACITY) {
+			chunks.add(ObjectChunk.of(objects, labels, from, Math.min(from + ObjectChunk.CAPACITY, objects.size())));
+		}
+
+		return build(chunks, 0, chunks.size());
+	}
+
+	/**
+	 * Builds a tree holding the objects of the given tree under the given
+	 * labels, in linear time. The chunks keep their sizes, so the new tree is
+	 * no more fragmented than the given one.
+	 *
+	 * @param root
+	 *            the root
+	 * @param labels
+	 *            the new labels, strictly increasing, one per object
+	 * @return the new root
+	 */
+	static Node relabel(Node root, long[] labels) {
+		List<ObjectChunk> chunks = new ArrayList<>();
+		int[] from = new int[1];
+		forEachChunk(root, chunk -> {
+			chunks.add(ObjectChunk.relabeled(chunk, labels, from[0]));
+			from[0] += chunk.size();
+		});
+
+		return build(chunks, 0, chunks.size());
+	}
+
+	/**
+	 * Builds a tree out of the given range of chunks. The priorities of the
+	 * nodes are restored bottom-up, which keeps the heap property without
+	 * rotating.
+	 *
+	 * @param chunks
+	 *            the chunks, in drawing order
+	 * @param from
+	 *            the first index, inclusive
+	 * @param to
+	 *            the last index, exclusive
+	 * @return the root
+	 */
+	private static Node build(List<ObjectChunk> chunks, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+
+		int middle = (from + to) >>> 1;
+		Node left = build(chunks, from, middle);
+		Node right = build(chunks, middle + 1, to);
+
+		ObjectChunk chunk = chunks.get(middle);
+		int priority = Math.max(priorityOf(chunk.first()), Math.max(priorityOf(left), priorityOf(right)) + 1);
+		return new Node(chunk, priority, left, right);
+	}
+
+	/**
+	 * Creates an iterator over detached values describing the objects of the
+	 * given tree in drawing order, starting at the given position, with the
+	 * colors the given array, handed out by the palette the rows refer to, has
+	 * at the indices of their rows. Finding the position takes logarithmic
+	 * time.
+	 *
+	 * @param root
+	 *            the root
+	 * @param from
+	 *            the position of the first value visited, from 0 to the size of
+	 *            the tree
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries
+	 * @return the iterator
+	 */
+	static Iterator<GeometricalObject> values(Node root, int from, int[] colors) {
+		return values(root, from, null, colors);
+	}
+
+	/**
+	 * Creates an iterator over values describing the objects of the given tree
+	 * in drawing order, starting at the given position, which hold the entries
+	 * of the given palette their rows refer to.
+	 *
+	 * @param root
+	 *            the root
+	 * @param from
+	 *            the position of the first value visited, from 0 to the size of
+	 *            the tree
+	 * @param palette
+	 *            the palette the rows refer to
+	 * @return the iterator
+	 */
+	static Iterator<GeometricalObject> values(Node root, int from, ColorPalette palette) {
+		return values(root, from, palette, null);
+	}
+
+	/**
+	 * Creates an iterator over values describing the objects of the given tree
+	 * in drawing order, starting at the given position, taking their colors
+	 * either from the given palette or from the given array of colors.
+	 *
+	 * @param root
+	 *            the root
+	 * @param from
+	 *            the position of the first value visited, from 0 to the size of
+	 *            the tree
+	 * @param palette
+	 *            the palette the rows refer to, or null if the colors are taken
+	 *            from the array
+	 * @param colors
+	 *            the ARGB values of the colors of the palette entries, used if
+	 *            the palette is null
+	 * @return the iterator
+	 */
+	private static Iterator<GeometricalObject> values(Node root, int from, ColorPalette palette, int[] colors) {
+		return new Iterator<GeometricalObject>() {
+
+			/** The nodes whose chunks and right subtrees are still to be visited. */
+			private Deque<Node> stack = new ArrayDeque<>();
+
+			/** The chunk being visited. */
+			private ObjectChunk chunk;
+
+			/** The position of the next visited object in the chunk. */
+			private int offset;
+
+			{
+				// the nodes the search goes left from are the ones still to be
+				// visited, and it ends at the node holding the position
+				Node node = root;
+				int index = from;
+				while (node != null) {
+					int leftSize = size(node.left);
+					if (index < leftSize) {
+						stack.push(node);
+						node = node.left;
+					} else if (index < leftSize + node.chunk.size()) {
+						chunk = node.chunk;
+						offset = index - leftSize;
+						pushLeft(node.right);
+						break;
+					} else {
+						index -= leftSize + node.chunk.size();
+						node = node.right;
+					}
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return chunk != null || !stack.isEmpty();
+			}
+
+			@Override
+			public GeometricalObject next() {
+				if (chunk == null) {
+					if (stack.isEmpty()) {
+						throw new NoSuchElementException();
+					}
+
+					Node node = stack.pop();
+					chunk = node.chunk;
+					offset = 0;
+					pushLeft(node.right);
+				}
+
+				GeometricalObject next = palette != null ? chunk.value(offset, palette) : chunk.value(offset, colors);
+				if (++offset == chunk.size()) {
+					chunk = null;
+				}
+				return next;
+			}
+
+			/**
+			 * Pushes the given node and all its left descendants.
+			 *
+			 * @param node
+			 *            the node
+			 */
+			private void pushLeft(Node node) {
+				while (node != null) {
+					stack.push(node);
+					node = node.left;
+				}
+			}
+		};
+	}
+
+	/**
+	 * Gets the priority of the given subtree's root.
+	 *
+	 * @param node
+	 *            the root, may be null
+	 * @return the priority
+	 */
+	private static int priorityOf(Node node) {
+		return node == null ? Integer.MIN_VALUE : node.priority;
+	}
+
+	/**
+	 * Derives a pseudo-random heap priority from the given label.
+	 *
+	 * @param label
+	 *            the label
+	 * @return the priority
+	 */
+	static int priorityOf(long label) {
+		long h = label * 0x9E3779B97F4A7C15L;
+		h ^= h >>> 32;
+		h *= 0xD6E8FEB86659FD93L;
+		h ^= h >>> 32;
+
+		return (int) (h >>> 34);
+	}
+}
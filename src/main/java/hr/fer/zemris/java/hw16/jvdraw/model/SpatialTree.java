@@ -0,0 +1,677 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectBBCalculator;
+
+/**
+ * The class that holds the operations on a treap indexing the order labels of
+ * geometrical objects by the places they occupy on the canvas. The canvas is
+ * covered by a hierarchy of loose grids: the cells of the lowest level are
+ * {@value #BASE_CELL_SIZE} pixels wide, and every next level doubles them. An
+ * object belongs to the single cell of the lowest level whose cells are at
+ * least as large as its bounding box, namely the one holding the center of the
+ * box, so the box never reaches more than half a cell out of its cell.
+ *
+ * The treap is ordered by the cell and then by the label. Cells of a level are
+ * ordered row by row, so the labels of the objects in a row of cells are found
+ * in a single descent. The labels in an area are
+ * thereby found in time growing with the number of rows of cells the area
+ * touches and the number of objects in them, rather than with the size of the collection.
+ *
+ * Like the nodes of ObjectTree, nodes are never modified once created. Every
+ * operation copies the nodes on the path it changes and returns the new root,
+ * so a root captured earlier still indexes the collection as it was.
+ *
+ * Every indexed state of an object gets a stamp of its own, which the copies
+ * of its node keep. Two roots are compared by skipping the subtrees they
+ * share and the nodes whose stamps match, so the area whose drawing differs
+ * between two versions of the collection is found in time growing with the
+ * number of changes between them rather than with the size of the collection.
+ *
+ * @author Damjan Vučina
+ */
+final class SpatialTree {
+
+	/** The width and height of a cell of the lowest level, in pixels. */
+	static final int BASE_CELL_SIZE = 16;
+
+	/** The highest level, whose cells are as large as any bounding box. */
+	private static final int MAX_LEVEL = 27;
+
+	/** The number of bits a cell's column or row is packed into. */
+	private static final int COORDINATE_BITS = 29;
+
+	/** The mask of the bits a cell's column or row is packed into. */
+	private static final long COORDINATE_MASK = (1L << COORDINATE_BITS) - 1;
+
+	/** The source of the stamps of the indexed states. */
+	private static final AtomicLong STAMPS = new AtomicLong();
+
+	/**
+	 * Prevents instantiation of this helper class.
+	 */
+	private SpatialTree() {
+	}
+
+	/**
+	 * A single immutable node of the treap.
+	 */
+	static final class Node {
+
+		/** The cell of the indexed object. */
+		final long cell;
+
+		/** The order label of the indexed object. */
+		final long label;
+
+		/** The stamp of the indexed state, shared by the copies of the node. */
+		final long stamp;
+
+		/** The heap priority of the node. */
+		final int priority;
+
+		/** The smallest x coordinate covered by the indexed object. */
+		final int minX;
+
+		/** The smallest y coordinate covered by the indexed object. */
+		final int minY;
+
+		/** The greatest x coordinate covered by the indexed object. */
+		final int maxX;
+
+		/** The greatest y coordinate covered by the indexed object. */
+		final int maxY;
+
+		/** The left subtree, holding smaller keys. */
+		final Node left;
+
+		/** The right subtree, holding greater keys. */
+		final Node right;
+
+		/**
+		 * Instantiates a new leaf indexing the given value of an object.
+		 *
+		 * @param value
+		 *            the value
+		 * @param label
+		 *            the order label of the object
+		 */
+		private Node(GeometricalObject value, long label) {
+			Rectangle bounds = boundsOf(value);
+
+			this.cell = cellOf(bounds);
+			this.label = label;
+			this.stamp = STAMPS.incrementAndGet();
+			this.priority = priorityOf(cell, label);
+			this.minX = bounds.x;
+			this.minY = bounds.y;
+			this.maxX = bounds.x + bounds.width;
+			this.maxY = bounds.y + bounds.height;
+			this.left = null;
+			this.right = null;
+		}
+
+		/**
+		 * Instantiates a new node indexing the same object as the given node.
+		 *
+		 * @param key
+		 *            the node indexing the object
+		 * @param priority
+		 *            the heap priority
+		 * @param left
+		 *            the left subtree
+		 * @param right
+		 *            the right subtree
+		 */
+		private Node(Node key, int priority, Node left, Node right) {
+			this.cell = key.cell;
+			this.label = key.label;
+			this.stamp = key.stamp;
+			this.priority = priority;
+			this.minX = key.minX;
+			this.minY = key.minY;
+			this.maxX = key.maxX;
+			this.maxY = key.maxY;
+			this.left = left;
+			this.right = right;
+		}
+
+		/**
+		 * Creates a copy of this node with different children.
+		 *
+		 * @param left
+		 *            the new left subtree
+		 * @param right
+		 *            the new right subtree
+		 * @return the copy
+		 */
+		private Node withChildren(Node left, Node right) {
+			return new Node(this, priority, left, right);
+		}
+	}
+
+	/**
+	 * Indexes the values of all objects of the given subtree of an ObjectTree
+	 * under their labels. An empty index is built in linear time after sorting,
+	 * otherwise every value is inserted on its own.
+	 *
+	 * @param root
+	 *            the root of the index, may be null
+	 * @param subtree
+	 *            the root of the subtree of an ObjectTree, may be null
+	 * @return the new root
+	 */
+	static Node insertAll(Node root, ObjectTree.Node subtree) {
+		if (root == null) {
+			return build(subtree);
+		}
+
+		Node[] result = { root };
+		ObjectTree.forEachShape(subtree, (value, label) -> result[0] = insert(result[0], value, label));
+		return result[0];
+	}
+
+	/**
+	 * Removes the values of all objects of the given subtree of an ObjectTree
+	 * from the index. The values must be the ones they were indexed with.
+	 *
+	 * @param root
+	 *            the root of the index
+	 * @param subtree
+	 *            the root of the subtree of an ObjectTree, may be null
+	 * @return the new root
+	 */
+	static Node deleteAll(Node root, ObjectTree.Node subtree) {
+		Node[] result = { root };
+		ObjectTree.forEachShape(subtree, (value, label) -> result[0] = delete(result[0], value, label));
+		return result[0];
+	}
+
+	/**
+	 * Indexes the given value of an object under the object's label.
+	 *
+	 * @param root
+	 *            the root of the index
+	 * @param value
+	 *            the value
+	 * @param label
+	 *            the label
+	 * @return the new root
+	 */
+	static Node insert(Node root, GeometricalObject value, long label) {
+		return insert(root, new Node(value, label));
+	}
+
+	/**
+	 * Removes the given value of an object from the index. The value must be the
+	 * one it was indexed with.
+	 *
+	 * @param root
+	 *            the root of the index
+	 * @param value
+	 *            the value
+	 * @param label
+	 *            the label
+	 * @return the new root
+	 */
+	static Node delete(Node root, GeometricalObject value, long label) {
+		return delete(root, cellOf(value), label);
+	}
+
+	/**
+	 * Finds the labels of the objects whose bounding boxes share a pixel with
+	 * the given area. Only the rows of cells that may hold such objects are
+	 * searched.
+	 *
+	 * @param root
+	 *            the root of the index
+	 * @param area
+	 *            the area
+	 * @return the labels, in increasing order
+	 */
+	static long[] query(Node root, Rectangle area) {
+		List<Long> found = new ArrayList<>();
+		if (root != null && !area.isEmpty()) {
+			long x0 = area.x;
+			long y0 = area.y;
+			long x1 = x0 + area.width - 1;
+			long y1 = y0 + area.height - 1;
+
+			for (int level = 0; level <= MAX_LEVEL; level++) {
+				// a box reaches at most half a cell out of its cell
+				long size = (long) BASE_CELL_SIZE << level;
+				long half = size / 2;
+				long column0 = Math.floorDiv(x0 - size - half, size);
+				long row0 = Math.floorDiv(y0 - size - half, size);
+				long column1 = Math.floorDiv(x1 + half, size);
+				long row1 = Math.floorDiv(y1 + half, size);
+
+				for (long row = row0; row <= row1; row++) {
+					// negative columns are packed after the positive ones
+					if (column0 < 0 && column1 >= 0) {
+						collect(root, pack(level, column0, row), pack(level, -1, row), area, found);
+						collect(root, pack(level, 0, row), pack(level, column1, row), area, found);
+					} else {
+						collect(root, pack(level, column0, row), pack(level, column1, row), area, found);
+					}
+				}
+			}
+		}
+
+		long[] labels = new long[found.size()];
+		for (int i = 0; i < labels.length; i++) {
+			labels[i] = found.get(i);
+		}
+		Arrays.sort(labels);
+		return labels;
+	}
+
+	/**
+	 * Calculates the union of the bounding boxes of the indexed states present
+	 * in only one of the given indexes, i.e. of the objects that have been
+	 * added, removed, changed or moved in the drawing order between them.
+	 * Subtrees shared by both indexes are skipped, and the search stops as soon
+	 * as the union contains the given limit.
+	 *
+	 * @param a
+	 *            the root of the first index, may be null
+	 * @param b
+	 *            the root of the second index, may be null
+	 * @param limit
+	 *            the area beyond which the union is of no interest
+	 * @return the union, as a box covering the pixels from its origin up to and
+	 *         including its origin plus its size, or null if the indexes hold
+	 *         the same states
+	 */
+	static Rectangle difference(Node a, Node b, Rectangle limit) {
+		Damage damage = new Damage(limit);
+		difference(a, b, damage);
+
+		return damage.union;
+	}
+
+	/**
+	 * Adds the bounding boxes of the states present in only one of the given
+	 * subtrees to the given damage.
+	 *
+	 * @param a
+	 *            the first subtree, may be null
+	 * @param b
+	 *            the second subtree, may be null
+	 * @param damage
+	 *            the damage
+	 */
+	private static void difference(Node a, Node b, Damage damage) {
+		if (a == b || damage.isComplete()) {
+			return;
+		}
+		if (a == null || b == null) {
+			damage.addAll(a == null ? b : a);
+			return;
+		}
+
+		if (a.stamp == b.stamp) {
+			// the same key splits both subtrees the same way
+			difference(a.left, b.left, damage);
+			difference(a.right, b.right, damage);
+			return;
+		}
+
+		Node[] head = split(b, a.cell, a.label);
+		Node[] tail = split(head[1], a.cell, a.label + 1);
+		if (tail[0] == null || tail[0].stamp != a.stamp) {
+			damage.add(a);
+			damage.addAll(tail[0]);
+		}
+		difference(a.left, head[0], damage);
+		difference(a.right, tail[1], damage);
+	}
+
+	/**
+	 * Calculates the cell the given object belongs to.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the cell
+	 */
+	static long cellOf(GeometricalObject object) {
+		return cellOf(boundsOf(object));
+	}
+
+	/**
+	 * Calculates the cell an object with the given bounding box belongs to.
+	 *
+	 * @param bounds
+	 *            the bounding box
+	 * @return the cell
+	 */
+	private static long cellOf(Rectangle bounds) {
+		long extent = Math.max(bounds.width, bounds.height);
+
+		int level = 0;
+		while (level < MAX_LEVEL && ((long) BASE_CELL_SIZE << level) < extent) {
+			level++;
+		}
+
+		long size = (long) BASE_CELL_SIZE << level;
+		long column = Math.floorDiv(bounds.x + (long) bounds.width / 2, size);
+		long row = Math.floorDiv(bounds.y + (long) bounds.height / 2, size);
+		return pack(level, column, row);
+	}
+
+	/**
+	 * Calculates the bounding box of the given object, as
+	 * GeometricalObjectBBCalculator does. The box covers the pixels from its
+	 * origin up to and including its origin plus its size.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the bounding box
+	 */
+	private static Rectangle boundsOf(GeometricalObject object) {
+		GeometricalObjectBBCalculator bbCalculator = new GeometricalObjectBBCalculator();
+		object.accept(bbCalculator);
+
+		return bbCalculator.getBoundingBox();
+	}
+
+	/**
+	 * Packs the level, the column and the row of a cell into a single key.
+	 *
+	 * @param level
+	 *            the level
+	 * @param column
+	 *            the column
+	 * @param row
+	 *            the row
+	 * @return the key
+	 */
+	private static long pack(int level, long column, long row) {
+		//@formatter:off
+		return (long) level << (2 * COORDINATE_BITS)
+			 | (row & COORDINATE_MASK) << COORDINATE_BITS
+			 | (column & COORDINATE_MASK);
+		//@formatter:on
+	}
+
+	/**
+	 * Collects the labels of the nodes in the given range of cells whose
+	 * objects touch the given area.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @param from
+	 *            the first cell of the range
+	 * @param to
+	 *            the last cell of the range, inclusive
+	 * @param area
+	 *            the area
+	 * @param found
+	 *            the list the labels are added to
+	 */
+	private static void collect(Node node, long from, long to, Rectangle area, List<Long> found) {
+		while (node != null) {
+			if (node.cell < from) {
+				node = node.right;
+			} else if (node.cell > to) {
+				node = node.left;
+			} else {
+				//@formatter:off
+				if (node.minX < area.x + area.width
+						&& node.maxX >= area.x
+						&& node.minY < area.y + area.height
+						&& node.maxY >= area.y) {
+					found.add(node.label);
+				}
+				//@formatter:on
+				collect(node.left, from, to, area, found);
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Inserts the given leaf, whose key must not be present yet.
+	 *
+	 * @param root
+	 *            the root
+	 * @param leaf
+	 *            the leaf
+	 * @return the new root
+	 */
+	private static Node insert(Node root, Node leaf) {
+		Node[] parts = split(root, leaf.cell, leaf.label);
+
+		return merge(merge(parts[0], leaf), parts[1]);
+	}
+
+	/**
+	 * Removes the given key.
+	 *
+	 * @param root
+	 *            the root
+	 * @param cell
+	 *            the cell
+	 * @param label
+	 *            the label
+	 * @return the new root
+	 */
+	private static Node delete(Node root, long cell, long label) {
+		if (root == null) {
+			return null;
+		}
+
+		int comparison = compare(cell, label, root);
+		if (comparison == 0) {
+			return merge(root.left, root.right);
+		} else if (comparison < 0) {
+			return root.withChildren(delete(root.left, cell, label), root.right);
+		} else {
+			return root.withChildren(root.left, delete(root.right, cell, label));
+		}
+	}
+
+	/**
+	 * Splits the tree into the nodes with keys smaller than the given key and
+	 * the nodes with keys greater or equal to it.
+	 *
+	 * @param root
+	 *            the root
+	 * @param cell
+	 *            the cell of the key
+	 * @param label
+	 *            the label of the key
+	 * @return the roots of the two parts
+	 */
+	private static Node[] split(Node root, long cell, long label) {
+		if (root == null) {
+			return new Node[2];
+		}
+
+		if (compare(cell, label, root) > 0) {
+			Node[] parts = split(root.right, cell, label);
+			parts[0] = root.withChildren(root.left, parts[0]);
+			return parts;
+		} else {
+			Node[] parts = split(root.left, cell, label);
+			parts[1] = root.withChildren(parts[1], root.right);
+			return parts;
+		}
+	}
+
+	/**
+	 * Merges two trees, where all keys of the first one are smaller than all
+	 * keys of the second one.
+	 *
+	 * @param a
+	 *            the first tree
+	 * @param b
+	 *            the second tree
+	 * @return the new root
+	 */
+	private static Node merge(Node a, Node b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+
+		if (a.priority > b.priority) {
+			return a.withChildren(a.left, merge(a.right, b));
+		} else {
+			return b.withChildren(merge(a, b.left), b.right);
+		}
+	}
+
+	/**
+	 * Builds a tree indexing the values of all objects of the given subtree of
+	 * an ObjectTree.
+	 *
+	 * @param subtree
+	 *            the root of the subtree of an ObjectTree, may be null
+	 * @return the root
+	 */
+	private static Node build(ObjectTree.Node subtree) {
+		Node[] leaves = new Node[ObjectTree.size(subtree)];
+		int[] count = new int[1];
+		ObjectTree.forEachShape(subtree, (value, label) -> leaves[count[0]++] = new Node(value, label));
+		Arrays.sort(leaves, (a, b) -> compare(a.cell, a.label, b));
+
+		return build(leaves, 0, leaves.length);
+	}
+
+	/**
+	 * Builds a tree out of the given range of sorted keys. The priorities of
+	 * the nodes are restored bottom-up, which keeps the heap property without
+	 * rotating.
+	 *
+	 * @param leaves
+	 *            the leaves, sorted by their keys
+	 * @param from
+	 *            the first index, inclusive
+	 * @param to
+	 *            the last index, exclusive
+	 * @return the root
+	 */
+	private static Node build(Node[] leaves, int from, int to) {
+		if (from >= to) {
+			return null;
+		}
+
+		int middle = (from + to) >>> 1;
+		Node left = build(leaves, from, middle);
+		Node right = build(leaves, middle + 1, to);
+
+		Node key = leaves[middle];
+		int priority = Math.max(key.priority, Math.max(priorityOf(left), priorityOf(right)) + 1);
+		return new Node(key, priority, left, right);
+	}
+
+	/**
+	 * Compares the given key with the key of the given node.
+	 *
+	 * @param cell
+	 *            the cell of the key
+	 * @param label
+	 *            the label of the key
+	 * @param node
+	 *            the node
+	 * @return a negative number, zero or a positive number, if the key is
+	 *         smaller than, equal to or greater than the node's key
+	 */
+	private static int compare(long cell, long label, Node node) {
+		return cell != node.cell ? Long.compare(cell, node.cell) : Long.compare(label, node.label);
+	}
+
+	/**
+	 * The union of the bounding boxes of the differing states found so far.
+	 */
+	private static final class Damage {
+
+		/** The area beyond which the union is of no interest. */
+		private final Rectangle limit;
+
+		/** The union, or null if nothing has been found. */
+		private Rectangle union;
+
+		/**
+		 * Instantiates a new, empty damage.
+		 *
+		 * @param limit
+		 *            the area beyond which the union is of no interest
+		 */
+		private Damage(Rectangle limit) {
+			this.limit = limit;
+		}
+
+		/**
+		 * Checks whether the union already contains the limit, so nothing
+		 * found afterwards can change the outcome.
+		 *
+		 * @return true, if the union contains the limit
+		 */
+		private boolean isComplete() {
+			return union != null && union.contains(limit);
+		}
+
+		/**
+		 * Adds the bounding box of the state indexed by the given node.
+		 *
+		 * @param node
+		 *            the node
+		 */
+		private void add(Node node) {
+			Rectangle bounds = new Rectangle(node.minX, node.minY, node.maxX - node.minX, node.maxY - node.minY);
+			if (union == null) {
+				union = bounds;
+			} else {
+				union.add(bounds);
+			}
+		}
+
+		/**
+		 * Adds the bounding boxes of all states indexed by the given subtree.
+		 *
+		 * @param node
+		 *            the root of the subtree, may be null
+		 */
+		private void addAll(Node node) {
+			while (node != null && !isComplete()) {
+				addAll(node.left);
+				add(node);
+				node = node.right;
+			}
+		}
+	}
+
+	/**
+	 * Gets the priority of the given subtree's root.
+	 *
+	 * @param node
+	 *            the root, may be null
+	 * @return the priority
+	 */
+	private static int priorityOf(Node node) {
+		return node == null ? Integer.MIN_VALUE : node.priority;
+	}
+
+	/**
+	 * Derives a pseudo-random heap priority from the given key.
+	 *
+	 * @param cell
+	 *            the cell of the key
+	 * @param label
+	 *            the label of the key
+	 * @return the priority
+	 */
+	private static int priorityOf(long cell, long label) {
+		return ObjectTree.priorityOf(label ^ cell * 0xC2B2AE3D27D4EB4FL);
+	}
+}
@@ -0,0 +1,13 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+/**
+ * Marker interface for the listeners that need to be notified about changes in
+ * the DocumentModel's collection of geometrical objects immediately, instead of
+ * receiving them batched once per frame. Removal events received by such
+ * listeners are delivered while the removed objects are still present in the
+ * model, so the listener can inspect them.
+ *
+ * @author Damjan Vučina
+ */
+public interface SynchronousDrawingModelListener extends DrawingModelListener {
+}
@@ -0,0 +1,662 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
+
+import static hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter.DEFAULT_STROKE;
+
+/**
+ * The class that renders the committed objects of a canvas on a dedicated
+ * thread, so that the event dispatch thread never rasterizes anything. The
+ * canvas requests frames with a snapshot of its document and the size of its
+ * view, and reports the areas damaged by changes; the render thread draws the
+ * snapshot into an offscreen buffer through its own TileCache, and publishes
+ * the buffer once the whole frame is complete. The canvas then only copies the
+ * latest published frame.
+ *
+ * Along with every published frame, the render thread passes the union of the
+ * damage it took over since the previous frame to the frame listener, or the
+ * whole view if the view, the scale or all tiles have changed, so that only
+ * the area of the view that actually differs needs to be repainted.
+ *
+ * Frames are double-buffered: the render thread draws into the back buffer
+ * while the front one may be copied, and the buffers are swapped under a lock
+ * the copying holds as well, so a frame is never shown half-drawn.
+ *
+ * Frames are rendered in device pixels, at the scale of the default transform
+ * of the screen the canvas is shown on, and are copied back through the
+ * inverse scale, so that they are as sharp as the screen on HiDPI displays
+ * instead of being magnified from a buffer of the view's logical size.
+ *
+ * A frame is rendered in slices of a configurable time budget. Between the
+ * slices, the
+ * render thread takes over newer requests and applies the current budget: the
+ * tiles they damage are invalidated, discarding their unfinished work, while the unfinished tiles
+ * they do not touch resume where they stopped. Requests arriving faster than
+ * frames can be rendered are thereby coalesced into the next complete frame.
+ *
+ * Every published frame is recorded in the PaintStatistics given to the
+ * renderer, with the time from taking over its first request to publishing it
+ * and the numbers of shapes visited, drawn and culled on the way. An object
+ * counts as culled once per frame that rendered any tile, if it was found in
+ * none of the rendered tiles.
+ *
+ * The objects of a tile are found by querying the snapshot itself, whose tree
+ * knows the bounding boxes of its subtrees, so finding them neither visits the
+ * whole snapshot nor depends on structures owned by the event dispatch thread.
+ *
+ * @author Damjan Vučina
+ */
+public class BackgroundRenderer {
+
+	/** The default time budget of a single slice of rendering, in milliseconds. */
+	public static final long DEFAULT_TIME_BUDGET = 16;
+
+	/** The thread the frames are rendered on. */
+	private final Thread thread;
+
+	/** The rasterizer the tiles are drawn with. */
+	private final TileRasterizer rasterizer;
+
+	/** The cache of the rendered tiles, confined to the render thread. */
+	private final TileCache tileCache;
+
+	/** The finder of the objects of a tile, confined to the render thread. */
+	private final SnapshotFinder finder;
+
+	/** The action run on the render thread with the changed area whenever a frame is published. */
+	private final Consumer<Rectangle> frameListener;
+
+	/** The statistics the frames are recorded in. */
+	private final PaintStatistics statistics;
+
+	/** The time budget of a single slice, in milliseconds, or 0 if unbounded. */
+	private volatile long timeBudget = DEFAULT_TIME_BUDGET;
+
+	/** The lock guarding the pending request. */
+	private final Object requestLock = new Object();
+
+	/** The latest request not yet taken over by the render thread, or null. */
+	private Request pending;
+
+	/** The lock guarding the front buffer, held while copying or swapping it. */
+	private final Object frameLock = new Object();
+
+	/** The latest complete frame, or null if there is none yet. */
+	private BufferedImage front;
+
+	/** The number of device pixels per unit of canvas coordinates of the front buffer. */
+	private double frontScale = 1;
+
+	/** The buffer the next frame is drawn into, confined to the render thread. */
+	private BufferedImage back;
+
+	/** Whether the renderer has been disposed. */
+	private volatile boolean disposed;
+
+	/** The number of published frames. */
+	private volatile long frameCount;
+
+	/** The number of objects drawn into tiles so far. */
+	private volatile long drawnCount;
+
+	/** The number of objects left out of all tiles of the rendered frames so far. */
+	private volatile long culledCount;
+
+	/** The time the frame in progress was started, as in System.nanoTime(). */
+	private long frameStart;
+
+	/** The number of visited objects when the previous frame was published. */
+	private long lastVisited;
+
+	/** The number of simplified objects when the previous frame was published. */
+	private long lastSimplified;
+
+	/** The view of the request taken over last, in canvas coordinates, or null if there is none. */
+	private Rectangle frameView;
+
+	/** The union of the damage taken over since the previous frame, or null if there is none. */
+	private Rectangle frameDamage;
+
+	/** Whether the whole view has changed since the previous frame. */
+	private boolean frameDamageAll;
+
+	/**
+	 * Instantiates a new background renderer with its own statistics and starts
+	 * its thread.
+	 *
+	 * @param rasterizer
+	 *            the rasterizer the tiles are drawn with
+	 * @param frameListener
+	 *            the action run on the render thread with the area of the view
+	 *            that differs from the previous frame, in canvas coordinates,
+	 *            whenever a frame is published, e.g. scheduling a repaint of
+	 *            that area
+	 */
+	public BackgroundRenderer(TileRasterizer rasterizer, Consumer<Rectangle> frameListener) {
+		this(rasterizer, frameListener, new PaintStatistics());
+	}
+
+	/**
+	 * Instantiates a new background renderer and starts its thread.
+	 *
+	 * @param rasterizer
+	 *            the rasterizer the tiles are drawn with
+	 * @param frameListener
+	 *            the action run on the render thread with the area of the view
+	 *            that differs from the previous frame, in canvas coordinates,
+	 *            whenever a frame is published, e.g. scheduling a repaint of
+	 *            that area
+	 * @param statistics
+	 *            the statistics the frames are recorded in
+	 */
+	public BackgroundRenderer(TileRasterizer rasterizer, Consumer<Rectangle> frameListener,
+			PaintStatistics statistics) {
+		this.rasterizer = Objects.requireNonNull(rasterizer, "Rasterizer cannot be null.");
+		this.frameListener = Objects.requireNonNull(frameListener, "Frame listener cannot be null.");
+		this.statistics = Objects.requireNonNull(statistics, "Statistics cannot be null.");
+
+		finder = new SnapshotFinder();
+		tileCache = new TileCache(finder, rasterizer);
+
+		thread = new Thread(this::run, "JVDraw renderer");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Gets the rasterizer the tiles are drawn with.
+	 *
+	 * @return the rasterizer
+	 */
+	public TileRasterizer getRasterizer() {
+		return rasterizer;
+	}
+
+	/**
+	 * Gets the statistics the frames are recorded in.
+	 *
+	 * @return the statistics
+	 */
+	public PaintStatistics getStatistics() {
+		return statistics;
+	}
+
+	/**
+	 * Gets the time budget of a single slice of rendering.
+	 *
+	 * @return the time budget, in milliseconds, or 0 if it is unbounded
+	 */
+	public long getTimeBudget() {
+		return timeBudget;
+	}
+
+	/**
+	 * Sets the time budget of a single slice of rendering. The render thread
+	 * applies it when it takes over the next request. With an unbounded budget,
+	 * every frame is rendered in a single slice, and newer requests wait until
+	 * it is published.
+	 *
+	 * @param timeBudget
+	 *            the time budget, in milliseconds, or 0 for an unbounded one
+	 */
+	public void setTimeBudget(long timeBudget) {
+		if (timeBudget < 0) {
+			throw new IllegalArgumentException("Time budget cannot be negative, was: " + timeBudget);
+		}
+
+		this.timeBudget = timeBudget;
+	}
+
+	/**
+	 * Gets the number of frames published so far.
+	 *
+	 * @return the number of frames
+	 */
+	public long getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Gets the number of objects drawn into tiles so far.
+	 *
+	 * @return the number of drawn objects
+	 */
+	public long getDrawnCount() {
+		return drawnCount;
+	}
+
+	/**
+	 * Gets the number of objects that were left out of the frames rendered so
+	 * far, since they lay outside all rendered tiles of a frame. Frames whose
+	 * tiles were all cached do not count.
+	 *
+	 * @return the number of culled objects
+	 */
+	public long getCulledCount() {
+		return culledCount;
+	}
+
+	/**
+	 * Requests a frame showing the given snapshot in a view of the given size,
+	 * at one device pixel per unit of canvas coordinates.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the objects
+	 * @param size
+	 *            the size of the view
+	 */
+	public void request(DocumentSnapshot snapshot, Dimension size) {
+		request(snapshot, size, 1);
+	}
+
+	/**
+	 * Requests a frame showing the given snapshot in a view of the given size,
+	 * rendered at the given scale. The request replaces an earlier one the
+	 * render thread has not taken over yet, keeping its damage. Changing the
+	 * scale renders the whole view again.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the objects
+	 * @param size
+	 *            the size of the view, in canvas coordinates
+	 * @param scale
+	 *            the number of device pixels per unit of canvas coordinates,
+	 *            e.g. the horizontal scale of the default transform of the
+	 *            screen
+	 */
+	public void request(DocumentSnapshot snapshot, Dimension size, double scale) {
+		Objects.requireNonNull(snapshot, "Snapshot cannot be null.");
+		Objects.requireNonNull(size, "Size cannot be null.");
+		if (!(scale > 0) || Double.isInfinite(scale)) {
+			throw new IllegalArgumentException("Scale must be positive and finite, was: " + scale);
+		}
+
+		synchronized (requestLock) {
+			if (pending == null) {
+				pending = new Request();
+			}
+			pending.snapshot = snapshot;
+			pending.view = new Rectangle(size);
+			pending.scale = scale;
+			requestLock.notifyAll();
+		}
+	}
+
+	/**
+	 * Reports the given area as damaged, so that it is rendered again in the
+	 * next requested frame.
+	 *
+	 * @param damage
+	 *            the damaged area
+	 */
+	public void invalidate(Rectangle damage) {
+		Objects.requireNonNull(damage, "Damage cannot be null.");
+
+		synchronized (requestLock) {
+			if (pending == null) {
+				pending = new Request();
+			}
+			if (!pending.damageAll) {
+				pending.damage.add(new Rectangle(damage));
+			}
+		}
+	}
+
+	/**
+	 * Reports the whole view as damaged, so that it is rendered again in the
+	 * next requested frame.
+	 */
+	public void invalidateAll() {
+		synchronized (requestLock) {
+			if (pending == null) {
+				pending = new Request();
+			}
+			pending.damageAll = true;
+			pending.damage.clear();
+		}
+	}
+
+	/**
+	 * Copies the latest complete frame into the given graphics at the origin,
+	 * scaled down by the scale it was rendered at, so that its device pixels
+	 * map one to one onto the ones of a screen of that scale, and fills the
+	 * part of the view it does not cover with the background color.
+	 *
+	 * @param g2d
+	 *            the graphics
+	 * @param view
+	 *            the view that needs to be covered
+	 */
+	public void paintFrame(Graphics2D g2d, Rectangle view) {
+		int width = 0;
+		int height = 0;
+
+		synchronized (frameLock) {
+			if (front != null) {
+				g2d.drawImage(front, AffineTransform.getScaleInstance(1 / frontScale, 1 / frontScale), null);
+				width = (int) (front.getWidth() / frontScale);
+				height = (int) (front.getHeight() / frontScale);
+			}
+		}
+
+		if (width >= view.x + view.width && height >= view.y + view.height) {
+			return;
+		}
+
+		g2d.setColor(rasterizer.getBackground());
+		if (width < view.x + view.width) {
+			g2d.fillRect(width, view.y, view.x + view.width - width, view.height);
+		}
+		if (height < view.y + view.height) {
+			g2d.fillRect(view.x, height, view.width, view.y + view.height - height);
+		}
+	}
+
+	/**
+	 * Stops the render thread and releases the frames. No frames are published
+	 * afterwards, and painting fills the view with the background color.
+	 * Disposing a disposed renderer does nothing.
+	 */
+	public void dispose() {
+		synchronized (requestLock) {
+			disposed = true;
+			requestLock.notifyAll();
+		}
+		thread.interrupt();
+
+		synchronized (frameLock) {
+			front = null;
+		}
+	}
+
+	/**
+	 * Checks whether the renderer has been disposed.
+	 *
+	 * @return true, if the renderer has been disposed
+	 */
+	public boolean isDisposed() {
+		return disposed;
+	}
+
+	/**
+	 * Waits for the render thread to stop after the renderer has been
+	 * disposed.
+	 *
+	 * @param millis
+	 *            the maximal time to wait, in milliseconds
+	 * @return true, if the thread has stopped
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public boolean awaitTermination(long millis) throws InterruptedException {
+		thread.join(millis);
+		return !thread.isAlive();
+	}
+
+	/**
+	 * The body of the render thread, rendering frames until the renderer is
+	 * disposed or the thread is interrupted.
+	 * Unexpected exceptions are passed to the thread's handler, and the cache
+	 * is invalidated so that the next frame starts from scratch.
+	 */
+	private void run() {
+		Request request = null;
+		while (!disposed && !Thread.currentThread().isInterrupted()) {
+			try {
+				if (request == null) {
+					request = take();
+					frameStart = System.nanoTime();
+				}
+				request = render(request);
+			} catch (InterruptedException e) {
+				return;
+			} catch (RuntimeException e) {
+				thread.getUncaughtExceptionHandler().uncaughtException(thread, e);
+				tileCache.invalidateAll();
+				frameDamageAll = true;
+				request = null;
+			}
+		}
+	}
+
+	/**
+	 * Renders a frame for the given request, taking over newer requests between
+	 * the slices, and publishes it once it is complete.
+	 *
+	 * @param request
+	 *            the request
+	 * @return a newer request that arrived after the frame had been completed,
+	 *         or null if there is none
+	 */
+	private Request render(Request request) {
+		Rectangle view = apply(request);
+		if (view.isEmpty()) {
+			return null;
+		}
+
+		if (back == null || back.getWidth() != view.width || back.getHeight() != view.height) {
+			back = new BufferedImage(view.width, view.height, BufferedImage.TYPE_INT_RGB);
+		}
+
+		Graphics2D g2d = back.createGraphics();
+		try {
+			while (!tileCache.paint(g2d, view)) {
+				Request newer = poll();
+				if (newer != null) {
+					return newer;
+				}
+			}
+		} finally {
+			g2d.dispose();
+		}
+
+		synchronized (frameLock) {
+			if (disposed) {
+				return null;
+			}
+			BufferedImage published = back;
+			back = front;
+			front = published;
+			frontScale = tileCache.getScale();
+		}
+		frameCount++;
+		recordFrame(finder.finishFrame());
+
+		Rectangle damage = frameDamageAll ? new Rectangle(frameView) : frameDamage;
+		frameDamage = null;
+		frameDamageAll = false;
+		if (damage != null) {
+			frameListener.accept(damage);
+		}
+
+		return poll();
+	}
+
+	/**
+	 * Records the frame that has just been published in the statistics, and
+	 * starts timing the next one.
+	 *
+	 * @param culled
+	 *            the number of objects left out of the frame
+	 */
+	private void recordFrame(long culled) {
+		long visited = rasterizer.getVisitedCount();
+		long simplified = rasterizer.getSimplifiedCount();
+		culledCount += culled;
+
+		if (statistics.isEnabled()) {
+			long now = System.nanoTime();
+			//@formatter:off
+			statistics.recordFrame(now - frameStart,
+								   visited - lastVisited,
+								   visited - lastVisited - (simplified - lastSimplified),
+								   culled);
+			//@formatter:on
+			frameStart = now;
+		}
+
+		lastVisited = visited;
+		lastSimplified = simplified;
+	}
+
+	/**
+	 * Applies the scale and the damage of the given request and the current
+	 * time budget to the tile cache, prepares the finder for the request's
+	 * snapshot, and adds the damage to the one of the next published frame.
+	 *
+	 * @param request
+	 *            the request
+	 * @return the view of the request, in device pixels
+	 */
+	private Rectangle apply(Request request) {
+		if (request.damageAll || request.scale != tileCache.getScale() || !request.view.equals(frameView)) {
+			frameDamageAll = true;
+		}
+		frameView = request.view;
+
+		tileCache.setScale(request.scale);
+		if (request.damageAll) {
+			tileCache.invalidateAll();
+		}
+		for (Rectangle damage : request.damage) {
+			tileCache.invalidate(damage);
+			frameDamage = frameDamage == null ? new Rectangle(damage) : frameDamage.union(damage);
+		}
+
+		tileCache.setTimeBudget(timeBudget);
+		finder.snapshot = request.snapshot;
+
+		double scale = request.scale;
+		Rectangle view = request.view;
+		return new Rectangle((int) Math.ceil(view.width * scale), (int) Math.ceil(view.height * scale));
+	}
+
+	/**
+	 * Waits for a request and takes it over.
+	 *
+	 * @return the request
+	 * @throws InterruptedException
+	 *             if the render thread is interrupted or the renderer is
+	 *             disposed while waiting
+	 */
+	private Request take() throws InterruptedException {
+		synchronized (requestLock) {
+			while (pending == null || pending.snapshot == null) {
+				if (disposed) {
+					throw new InterruptedException("Renderer has been disposed.");
+				}
+				requestLock.wait();
+			}
+
+			Request request = pending;
+			pending = null;
+			return request;
+		}
+	}
+
+	/**
+	 * Takes over a pending request, if there is one.
+	 *
+	 * @return the request, or null if there is none
+	 */
+	private Request poll() {
+		synchronized (requestLock) {
+			if (pending == null || pending.snapshot == null) {
+				return null;
+			}
+
+			Request request = pending;
+			pending = null;
+			return request;
+		}
+	}
+
+	/**
+	 * A request for a frame, together with the damage reported since the
+	 * previous one.
+	 */
+	private static class Request {
+
+		/** The snapshot of the objects, or null if no frame has been requested. */
+		private DocumentSnapshot snapshot;
+
+		/** The view the frame covers, in canvas coordinates. */
+		private Rectangle view;
+
+		/** The number of device pixels per unit of canvas coordinates. */
+		private double scale = 1;
+
+		/** The damaged areas. */
+		private final List<Rectangle> damage = new ArrayList<>();
+
+		/** Whether the whole view is damaged. */
+		private boolean damageAll;
+	}
+
+	/**
+	 * The finder of the objects of a tile, querying the snapshot of the request
+	 * being rendered.
+	 */
+	private class SnapshotFinder implements TileCache.ObjectFinder {
+
+		/** The snapshot of the objects, or null before the first request. */
+		private DocumentSnapshot snapshot;
+
+		/** The ids of the distinct objects found for the tiles of the frame in progress. */
+		private final Set<Long> found = new HashSet<>();
+
+		/** Whether any tile of the frame in progress has been rendered. */
+		private boolean rendered;
+
+		/**
+		 * Finishes counting the objects of the frame that has just been
+		 * completed.
+		 *
+		 * @return the number of objects of the latest snapshot found in none of
+		 *         the frame's rendered tiles, or 0 if no tile was rendered
+		 */
+		private long finishFrame() {
+			long culled = rendered ? Math.max(snapshot.size() - found.size(), 0) : 0;
+			found.clear();
+			rendered = false;
+
+			return culled;
+		}
+
+		/**
+		 * Finds the objects of the tile with the given area, i.e. the ones whose
+		 * bounding boxes touch the area widened by the stroke.
+		 *
+		 * @param area
+		 *            the area of a tile of the view
+		 * @return the objects, in drawing order
+		 */
+		@Override
+		public List<GeometricalObject> find(Rectangle area) {
+			int margin = DEFAULT_STROKE + 1;
+			Rectangle widened = new Rectangle(area);
+			widened.grow(margin, margin);
+
+			List<GeometricalObject> objects = snapshot.query(widened);
+			drawnCount += objects.size();
+			for (GeometricalObject object : objects) {
+				found.add(object.getId());
+			}
+			rendered = true;
+			return objects;
+		}
+	}
+}
@@ -0,0 +1,202 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * The class that collects a histogram of durations, such as the times it takes
+ * to paint a frame. The durations are counted in buckets growing by powers of
+ * two: the first bucket holds the durations shorter than a microsecond, and
+ * every following bucket the ones up to twice as long as those of the previous
+ * bucket. Percentiles are therefore reported with the precision of a factor of
+ * two, which is enough to tell a smooth frame from a stalled one.
+ *
+ * Durations can be recorded from any thread.
+ *
+ * @author Damjan Vučina
+ */
+public class LatencyHistogram {
+
+	/** The number of buckets. */
+	private static final int BUCKETS = 40;
+
+	/** The number of nanoseconds in a microsecond. */
+	private static final long MICROSECOND = 1000;
+
+	/** The number of recorded durations in every bucket. */
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+	/** The sum of the recorded durations, in nanoseconds. */
+	private final AtomicLong total = new AtomicLong();
+
+	/** The longest recorded duration, in nanoseconds. */
+	private final AtomicLong max = new AtomicLong();
+
+	/**
+	 * Records a single duration.
+	 *
+	 * @param nanos
+	 *            the duration, in nanoseconds
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			throw new IllegalArgumentException("Duration cannot be negative, was: " + nanos);
+		}
+
+		counts.incrementAndGet(bucket(nanos));
+		total.addAndGet(nanos);
+		max.accumulateAndGet(nanos, Math::max);
+	}
+
+	/**
+	 * Gets the number of recorded durations.
+	 *
+	 * @return the number of recorded durations
+	 */
+	public long getCount() {
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			count += counts.get(i);
+		}
+
+		return count;
+	}
+
+	/**
+	 * Gets the mean of the recorded durations.
+	 *
+	 * @return the mean, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0 : total.get() / (double) count;
+	}
+
+	/**
+	 * Gets the longest recorded duration.
+	 *
+	 * @return the longest duration, in nanoseconds
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Gets the duration the given fraction of the recorded durations does not
+	 * exceed, rounded up to the upper bound of its bucket.
+	 *
+	 * @param fraction
+	 *            the fraction, from 0 to 1, e.g. 0.99 for the 99th percentile
+	 * @return the duration, in nanoseconds, or 0 if nothing has been recorded
+	 */
+	public long getPercentile(double fraction) {
+		if (!(fraction >= 0 && fraction <= 1)) {
+			throw new IllegalArgumentException("Fraction must be from 0 to 1, was: " + fraction);
+		}
+
+		long count = getCount();
+		if (count == 0) {
+			return 0;
+		}
+
+		long rank = Math.max((long) Math.ceil(fraction * count), 1);
+		long seen = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), getMax());
+			}
+		}
+
+		return getMax();
+	}
+
+	/**
+	 * Removes all recorded durations.
+	 */
+	public void reset() {
+		for (int i = 0; i < BUCKETS; i++) {
+			counts.set(i, 0);
+		}
+		total.set(0);
+		max.set(0);
+	}
+
+	/**
+	 * Returns the summary of the recorded durations followed by a line with a
+	 * bar for every non-empty bucket.
+	 *
+	 * @return the histogram as text
+	 */
+	@Override
+	public String toString() {
+		long count = getCount();
+		long largest = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			largest = Math.max(largest, counts.get(i));
+		}
+
+		StringBuilder sb = new StringBuilder();
+		//@formatter:off
+		sb.append(String.format("count %d, mean %.2f ms, p50 %.2f ms, p99 %.2f ms, max %.2f ms%n",
+								count,
+								getMean() / 1e6,
+								getPercentile(0.5) / 1e6,
+								getPercentile(0.99) / 1e6,
+								getMax() / 1e6));
+		//@formatter:on
+
+		for (int i = 0; i < BUCKETS; i++) {
+			long bucketCount = counts.get(i);
+			if (bucketCount == 0) {
+				continue;
+			}
+
+			int bar = (int) Math.max(1, 40 * bucketCount / largest);
+			sb.append(String.format("  < %10.3f ms %8d %s%n", upperBound(i) / 1e6, bucketCount, repeat('#', bar)));
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Gets the bucket of the given duration.
+	 *
+	 * @param nanos
+	 *            the duration, in nanoseconds
+	 * @return the bucket
+	 */
+	private static int bucket(long nanos) {
+		long micros = nanos / MICROSECOND;
+		return Math.min(64 - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+	}
+
+	/**
+	 * Gets the exclusive upper bound of the durations in the given bucket.
+	 *
+	 * @param bucket
+	 *            the bucket
+	 * @return the upper bound, in nanoseconds
+	 */
+	private static long upperBound(int bucket) {
+		return bucket == BUCKETS - 1 ? Long.MAX_VALUE : (1L << bucket) * MICROSECOND;
+	}
+
+	/**
+	 * Repeats the given character.
+	 *
+	 * @param c
+	 *            the character
+	 * @param times
+	 *            the number of repetitions
+	 * @return the repeated characters
+	 */
+	private static String repeat(char c, int times) {
+		StringBuilder sb = new StringBuilder(times);
+		for (int i = 0; i < times; i++) {
+			sb.append(c);
+		}
+
+		return sb.toString();
+	}
+}
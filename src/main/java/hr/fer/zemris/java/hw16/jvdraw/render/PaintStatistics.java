@@ -0,0 +1,470 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * The class that collects statistics of the paint path: the durations of the
+ * paints of the canvas, of rendering frames in the background and of
+ * rasterizing exported images, the numbers of visited, drawn and culled shapes
+ * and the rate at which the canvas is asked to be redrawn. Durations are kept
+ * in LatencyHistograms, counts in LongAdders, so recording is cheap and can be
+ * done from any thread.
+ *
+ * Collecting is off unless the system property {@value #ENABLED_PROPERTY} is
+ * set to true, or it is turned on through the MBean or the overlay. While it is
+ * off, every record method returns after reading a single volatile flag, and
+ * the callers skip reading the clock.
+ *
+ * @author Damjan Vučina
+ */
+public class PaintStatistics implements PaintStatisticsMBean {
+
+	/** The system property turning collecting on at startup. */
+	public static final String ENABLED_PROPERTY = "jvdraw.paintStatistics";
+
+	/** The name the statistics are registered under as an MBean. */
+	public static final String OBJECT_NAME = "hr.fer.zemris.java.hw16.jvdraw:type=PaintStatistics";
+
+	/** Whether the statistics are being collected. */
+	private volatile boolean enabled = Boolean.getBoolean(ENABLED_PROPERTY);
+
+	/** Whether the statistics are shown over the canvas. */
+	private volatile boolean overlayVisible;
+
+	/** The durations of the paints of the canvas. */
+	private final LatencyHistogram paintTimes = new LatencyHistogram();
+
+	/** The durations of rendering the frames. */
+	private final LatencyHistogram frameTimes = new LatencyHistogram();
+
+	/** The durations of rasterizing the exported images. */
+	private final LatencyHistogram exportTimes = new LatencyHistogram();
+
+	/** The number of objects handed to the painters. */
+	private final LongAdder shapesVisited = new LongAdder();
+
+	/** The number of objects drawn as shapes. */
+	private final LongAdder shapesDrawn = new LongAdder();
+
+	/** The number of objects left out of the rendered tiles. */
+	private final LongAdder shapesCulled = new LongAdder();
+
+	/** The number of objects visited in the last frame. */
+	private volatile long lastFrameVisited;
+
+	/** The number of objects drawn as shapes in the last frame. */
+	private volatile long lastFrameDrawn;
+
+	/** The number of objects culled in the last frame. */
+	private volatile long lastFrameCulled;
+
+	/** The number of repaint requests. */
+	private final LongAdder repaintRequests = new LongAdder();
+
+	/** The time the statistics were last reset, as in System.nanoTime(). */
+	private volatile long resetTime = System.nanoTime();
+
+	/**
+	 * Registers these statistics with the platform MBean server, replacing
+	 * statistics registered earlier under the same name.
+	 */
+	public void register() {
+		try {
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			ObjectName name = new ObjectName(OBJECT_NAME);
+			if (server.isRegistered(name)) {
+				server.unregisterMBean(name);
+			}
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			throw new IllegalStateException("Cannot register paint statistics as " + OBJECT_NAME + ".", e);
+		}
+	}
+
+	/**
+	 * Records a single paint of the canvas.
+	 *
+	 * @param nanos
+	 *            the duration, in nanoseconds
+	 */
+	public void recordPaint(long nanos) {
+		if (enabled) {
+			paintTimes.record(nanos);
+		}
+	}
+
+	/**
+	 * Records a single frame rendered in the background.
+	 *
+	 * @param nanos
+	 *            the duration, in nanoseconds
+	 * @param visited
+	 *            the number of objects handed to the painters
+	 * @param drawn
+	 *            the number of objects drawn as shapes
+	 * @param culled
+	 *            the number of objects left out of the rendered tiles
+	 */
+	public void recordFrame(long nanos, long visited, long drawn, long culled) {
+		if (!enabled) {
+			return;
+		}
+
+		frameTimes.record(nanos);
+		shapesVisited.add(visited);
+		shapesDrawn.add(drawn);
+		shapesCulled.add(culled);
+		lastFrameVisited = visited;
+		lastFrameDrawn = drawn;
+		lastFrameCulled = culled;
+	}
+
+	/**
+	 * Records rasterizing a single exported image.
+	 *
+	 * @param nanos
+	 *            the duration, in nanoseconds
+	 * @param visited
+	 *            the number of objects handed to the painters
+	 * @param drawn
+	 *            the number of objects drawn as shapes
+	 */
+	public void recordExport(long nanos, long visited, long drawn) {
+		if (!enabled) {
+			return;
+		}
+
+		exportTimes.record(nanos);
+		shapesVisited.add(visited);
+		shapesDrawn.add(drawn);
+	}
+
+	/**
+	 * Records a single request to redraw the canvas.
+	 */
+	public void recordRepaintRequest() {
+		if (enabled) {
+			repaintRequests.increment();
+		}
+	}
+
+	/**
+	 * Gets the histogram of the durations of the paints of the canvas.
+	 *
+	 * @return the histogram
+	 */
+	public LatencyHistogram getPaintTimes() {
+		return paintTimes;
+	}
+
+	/**
+	 * Gets the histogram of the durations of rendering the frames.
+	 *
+	 * @return the histogram
+	 */
+	public LatencyHistogram getFrameTimes() {
+		return frameTimes;
+	}
+
+	/**
+	 * Gets the histogram of the durations of rasterizing the exported images.
+	 *
+	 * @return the histogram
+	 */
+	public LatencyHistogram getExportTimes() {
+		return exportTimes;
+	}
+
+	/**
+	 * Checks whether the statistics are being collected.
+	 *
+	 * @return true, if the statistics are being collected
+	 */
+	@Override
+	public boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Sets whether the statistics are being collected.
+	 *
+	 * @param enabled
+	 *            whether the statistics are being collected
+	 */
+	@Override
+	public void setEnabled(boolean enabled) {
+		this.enabled = enabled;
+	}
+
+	/**
+	 * Checks whether the statistics are shown over the canvas.
+	 *
+	 * @return true, if the overlay is visible
+	 */
+	@Override
+	public boolean isOverlayVisible() {
+		return overlayVisible;
+	}
+
+	/**
+	 * Sets whether the statistics are shown over the canvas. Showing them turns
+	 * collecting them on.
+	 *
+	 * @param overlayVisible
+	 *            whether the overlay is visible
+	 */
+	@Override
+	public void setOverlayVisible(boolean overlayVisible) {
+		if (overlayVisible) {
+			enabled = true;
+		}
+		this.overlayVisible = overlayVisible;
+	}
+
+	/**
+	 * Gets the number of paints of the canvas.
+	 *
+	 * @return the number of paints
+	 */
+	@Override
+	public long getPaintCount() {
+		return paintTimes.getCount();
+	}
+
+	/**
+	 * Gets the mean duration of a paint of the canvas.
+	 *
+	 * @return the mean duration
+	 */
+	@Override
+	public double getPaintTimeMean() {
+		return paintTimes.getMean() / 1e6;
+	}
+
+	/**
+	 * Gets the duration half of the paints of the canvas did not exceed.
+	 *
+	 * @return the median duration
+	 */
+	@Override
+	public double getPaintTimeP50() {
+		return paintTimes.getPercentile(0.5) / 1e6;
+	}
+
+	/**
+	 * Gets the duration 99 percent of the paints of the canvas did not exceed.
+	 *
+	 * @return the 99th percentile of the durations
+	 */
+	@Override
+	public double getPaintTimeP99() {
+		return paintTimes.getPercentile(0.99) / 1e6;
+	}
+
+	/**
+	 * Gets the longest duration of a paint of the canvas.
+	 *
+	 * @return the longest duration
+	 */
+	@Override
+	public double getPaintTimeMax() {
+		return paintTimes.getMax() / 1e6;
+	}
+
+	/**
+	 * Gets the histogram of the durations of the paints of the canvas.
+	 *
+	 * @return the histogram as text
+	 */
+	@Override
+	public String getPaintTimeHistogram() {
+		return paintTimes.toString();
+	}
+
+	/**
+	 * Gets the number of frames rendered in the background.
+	 *
+	 * @return the number of frames
+	 */
+	@Override
+	public long getFrameCount() {
+		return frameTimes.getCount();
+	}
+
+	/**
+	 * Gets the mean duration of rendering a frame.
+	 *
+	 * @return the mean duration
+	 */
+	@Override
+	public double getFrameTimeMean() {
+		return frameTimes.getMean() / 1e6;
+	}
+
+	/**
+	 * Gets the duration 99 percent of the frames did not exceed.
+	 *
+	 * @return the 99th percentile of the durations
+	 */
+	@Override
+	public double getFrameTimeP99() {
+		return frameTimes.getPercentile(0.99) / 1e6;
+	}
+
+	/**
+	 * Gets the longest duration of rendering a frame.
+	 *
+	 * @return the longest duration
+	 */
+	@Override
+	public double getFrameTimeMax() {
+		return frameTimes.getMax() / 1e6;
+	}
+
+	/**
+	 * Gets the histogram of the durations of rendering the frames.
+	 *
+	 * @return the histogram as text
+	 */
+	@Override
+	public String getFrameTimeHistogram() {
+		return frameTimes.toString();
+	}
+
+	/**
+	 * Gets the number of exported images.
+	 *
+	 * @return the number of exports
+	 */
+	@Override
+	public long getExportCount() {
+		return exportTimes.getCount();
+	}
+
+	/**
+	 * Gets the mean duration of rasterizing an exported image.
+	 *
+	 * @return the mean duration
+	 */
+	@Override
+	public double getExportTimeMean() {
+		return exportTimes.getMean() / 1e6;
+	}
+
+	/**
+	 * Gets the longest duration of rasterizing an exported image.
+	 *
+	 * @return the longest duration
+	 */
+	@Override
+	public double getExportTimeMax() {
+		return exportTimes.getMax() / 1e6;
+	}
+
+	/**
+	 * Gets the number of objects handed to the painters.
+	 *
+	 * @return the number of visited shapes
+	 */
+	@Override
+	public long getShapesVisited() {
+		return shapesVisited.sum();
+	}
+
+	/**
+	 * Gets the number of objects the painters drew as shapes, i.e. the visited
+	 * ones that were not simplified by the level-of-detail mode.
+	 *
+	 * @return the number of drawn shapes
+	 */
+	@Override
+	public long getShapesDrawn() {
+		return shapesDrawn.sum();
+	}
+
+	/**
+	 * Gets the number of objects left out of the rendered tiles, since they lay
+	 * outside them.
+	 *
+	 * @return the number of culled shapes
+	 */
+	@Override
+	public long getShapesCulled() {
+		return shapesCulled.sum();
+	}
+
+	/**
+	 * Gets the number of objects visited in the last frame.
+	 *
+	 * @return the number of shapes visited in the last frame
+	 */
+	@Override
+	public long getLastFrameShapesVisited() {
+		return lastFrameVisited;
+	}
+
+	/**
+	 * Gets the number of objects drawn as shapes in the last frame.
+	 *
+	 * @return the number of shapes drawn in the last frame
+	 */
+	@Override
+	public long getLastFrameShapesDrawn() {
+		return lastFrameDrawn;
+	}
+
+	/**
+	 * Gets the number of objects culled in the last frame.
+	 *
+	 * @return the number of shapes culled in the last frame
+	 */
+	@Override
+	public long getLastFrameShapesCulled() {
+		return lastFrameCulled;
+	}
+
+	/**
+	 * Gets the number of times the canvas requested to be redrawn.
+	 *
+	 * @return the number of repaint requests
+	 */
+	@Override
+	public long getRepaintRequests() {
+		return repaintRequests.sum();
+	}
+
+	/**
+	 * Gets the mean number of repaint requests per second since the statistics
+	 * were last reset.
+	 *
+	 * @return the rate of repaint requests
+	 */
+	@Override
+	public double getRepaintRequestRate() {
+		double seconds = (System.nanoTime() - resetTime) / 1e9;
+		return seconds <= 0 ? 0 : repaintRequests.sum() / seconds;
+	}
+
+	/**
+	 * Removes all collected statistics.
+	 */
+	@Override
+	public void reset() {
+		paintTimes.reset();
+		frameTimes.reset();
+		exportTimes.reset();
+		shapesVisited.reset();
+		shapesDrawn.reset();
+		shapesCulled.reset();
+		lastFrameVisited = 0;
+		lastFrameDrawn = 0;
+		lastFrameCulled = 0;
+		repaintRequests.reset();
+		resetTime = System.nanoTime();
+	}
+}
@@ -0,0 +1,203 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+/**
+ * The management interface of PaintStatistics, exposing the collected paint
+ * statistics as attributes of a JMX MBean. All durations are in milliseconds.
+ *
+ * @author Damjan Vučina
+ */
+public interface PaintStatisticsMBean {
+
+	/**
+	 * Checks whether the statistics are being collected.
+	 *
+	 * @return true, if the statistics are being collected
+	 */
+	boolean isEnabled();
+
+	/**
+	 * Sets whether the statistics are being collected.
+	 *
+	 * @param enabled
+	 *            whether the statistics are being collected
+	 */
+	void setEnabled(boolean enabled);
+
+	/**
+	 * Checks whether the statistics are shown over the canvas.
+	 *
+	 * @return true, if the overlay is visible
+	 */
+	boolean isOverlayVisible();
+
+	/**
+	 * Sets whether the statistics are shown over the canvas. Showing them turns
+	 * collecting them on.
+	 *
+	 * @param overlayVisible
+	 *            whether the overlay is visible
+	 */
+	void setOverlayVisible(boolean overlayVisible);
+
+	/**
+	 * Gets the number of paints of the canvas.
+	 *
+	 * @return the number of paints
+	 */
+	long getPaintCount();
+
+	/**
+	 * Gets the mean duration of a paint of the canvas.
+	 *
+	 * @return the mean duration
+	 */
+	double getPaintTimeMean();
+
+	/**
+	 * Gets the duration half of the paints of the canvas did not exceed.
+	 *
+	 * @return the median duration
+	 */
+	double getPaintTimeP50();
+
+	/**
+	 * Gets the duration 99 percent of the paints of the canvas did not exceed.
+	 *
+	 * @return the 99th percentile of the durations
+	 */
+	double getPaintTimeP99();
+
+	/**
+	 * Gets the longest duration of a paint of the canvas.
+	 *
+	 * @return the longest duration
+	 */
+	double getPaintTimeMax();
+
+	/**
+	 * Gets the histogram of the durations of the paints of the canvas.
+	 *
+	 * @return the histogram as text
+	 */
+	String getPaintTimeHistogram();
+
+	/**
+	 * Gets the number of frames rendered in the background.
+	 *
+	 * @return the number of frames
+	 */
+	long getFrameCount();
+
+	/**
+	 * Gets the mean duration of rendering a frame.
+	 *
+	 * @return the mean duration
+	 */
+	double getFrameTimeMean();
+
+	/**
+	 * Gets the duration 99 percent of the frames did not exceed.
+	 *
+	 * @return the 99th percentile of the durations
+	 */
+	double getFrameTimeP99();
+
+	/**
+	 * Gets the longest duration of rendering a frame.
+	 *
+	 * @return the longest duration
+	 */
+	double getFrameTimeMax();
+
+	/**
+	 * Gets the histogram of the durations of rendering the frames.
+	 *
+	 * @return the histogram as text
+	 */
+	String getFrameTimeHistogram();
+
+	/**
+	 * Gets the number of exported images.
+	 *
+	 * @return the number of exports
+	 */
+	long getExportCount();
+
+	/**
+	 * Gets the mean duration of rasterizing an exported image.
+	 *
+	 * @return the mean duration
+	 */
+	double getExportTimeMean();
+
+	/**
+	 * Gets the longest duration of rasterizing an exported image.
+	 *
+	 * @return the longest duration
+	 */
+	double getExportTimeMax();
+
+	/**
+	 * Gets the number of objects handed to the painters.
+	 *
+	 * @return the number of visited shapes
+	 */
+	long getShapesVisited();
+
+	/**
+	 * Gets the number of objects the painters drew as shapes, i.e. the visited
+	 * ones that were not simplified by the level-of-detail mode.
+	 *
+	 * @return the number of drawn shapes
+	 */
+	long getShapesDrawn();
+
+	/**
+	 * Gets the number of objects left out of the rendered tiles, since they lay
+	 * outside them.
+	 *
+	 * @return the number of culled shapes
+	 */
+	long getShapesCulled();
+
+	/**
+	 * Gets the number of objects visited in the last frame.
+	 *
+	 * @return the number of shapes visited in the last frame
+	 */
+	long getLastFrameShapesVisited();
+
+	/**
+	 * Gets the number of objects drawn as shapes in the last frame.
+	 *
+	 * @return the number of shapes drawn in the last frame
+	 */
+	long getLastFrameShapesDrawn();
+
+	/**
+	 * Gets the number of objects culled in the last frame.
+	 *
+	 * @return the number of shapes culled in the last frame
+	 */
+	long getLastFrameShapesCulled();
+
+	/**
+	 * Gets the number of times the canvas requested to be redrawn.
+	 *
+	 * @return the number of repaint requests
+	 */
+	long getRepaintRequests();
+
+	/**
+	 * Gets the mean number of repaint requests per second since the statistics
+	 * were last reset.
+	 *
+	 * @return the rate of repaint requests
+	 */
+	double getRepaintRequestRate();
+
+	/**
+	 * Removes all collected statistics.
+	 */
+	void reset();
+}
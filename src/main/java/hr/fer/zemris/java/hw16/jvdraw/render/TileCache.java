@@ -0,0 +1,565 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+
+/**
+ * The class that caches the rendered contents of a canvas split into square
+ * tiles of a fixed size. Tiles are rendered on demand when they are painted for
+ * the first time or after they have been invalidated, and are copied from the
+ * cache otherwise.
+ *
+ * All tiles missing from a single paint are rasterized together by a
+ * TileRasterizer, in parallel.
+ *
+ * With a time budget set, a paint finds the objects of the missing tiles and
+ * rasterizes them only until the budget runs out, and paints the partially
+ * drawn tiles as they are; tiles not started yet keep their old contents. The
+ * next paint resumes them where they stopped. Invalidating a tile discards the work
+ * in progress on it, so that no stale objects are finished.
+ *
+ * Tiles are rendered at a scale, which is the number of device pixels per
+ * unit of canvas coordinates, e.g. 2 on a HiDPI screen, so that they stay
+ * sharp when copied to such a screen. Tiles and painted areas are in device
+ * pixels, while the finder and invalidation work in canvas coordinates.
+ *
+ * Changes invalidate only the tiles their area touches. Invalidated tiles keep
+ * their images, which are reused when the tiles are rendered again. The number
+ * of cached tiles is bounded by the number of tiles of the area painted last,
+ * plus a fixed number of other tiles, so the bound follows the size and the
+ * scale of the view and is never exceeded: once the cache is full, a new tile
+ * takes over the image of the least recently painted one, which is cleared to
+ * the background first so that it never shows another tile's contents while
+ * its own are pending.
+ *
+ * @author Damjan Vučina
+ */
+public class TileCache {
+
+	/** The default width and height of a tile, in pixels. */
+	public static final int DEFAULT_TILE_SIZE = TileRasterizer.DEFAULT_TILE_SIZE;
+
+	/** The default maximal number of cached tiles outside the area painted last. */
+	public static final int DEFAULT_MAX_TILES = 16;
+
+	/** The width and height of a tile, in pixels. */
+	private final int tileSize;
+
+	/** The maximal number of cached tiles outside the area painted last. */
+	private int maxTiles;
+
+	/** The number of tiles of the area painted last. */
+	private int areaTiles;
+
+	/** The object that finds the objects to be drawn into tiles. */
+	private final ObjectFinder finder;
+
+	/** The object that rasterizes the tiles. */
+	private final TileRasterizer rasterizer;
+
+	/**
+	 * The cached tiles mapped by their keys, the least recently painted first.
+	 * Painted tiles are moved to the end explicitly, so that looking tiles up
+	 * for invalidation does not count as using them.
+	 */
+	private LinkedHashMap<Long, Tile> tiles;
+
+	/** The number of device pixels per unit of canvas coordinates. */
+	private double scale = 1;
+
+	/** The time budget of a single paint, in nanoseconds, or 0 if unbounded. */
+	private long timeBudget;
+
+	/**
+	 * The time the last paint took to copy a single tile, in nanoseconds. It is
+	 * reserved from the time budget of the next paint for copying its tiles.
+	 */
+	private long copyTime;
+
+	/** The number of the paint in progress, or of the last one. */
+	private int paintNumber;
+
+	/** The number of tiles that were copied from the cache. */
+	private long hitCount;
+
+	/** The number of tiles that had to be rendered. */
+	private long missCount;
+
+	/** The number of evicted tiles. */
+	private long evictionCount;
+
+	/**
+	 * Instantiates a new tile cache with the default tile size and bound.
+	 *
+	 * @param finder
+	 *            the object that finds the objects to be drawn into tiles
+	 * @param rasterizer
+	 *            the object that rasterizes the tiles
+	 */
+	public TileCache(ObjectFinder finder, TileRasterizer rasterizer) {
+		this(finder, rasterizer, DEFAULT_TILE_SIZE, DEFAULT_MAX_TILES);
+	}
+
+	/**
+	 * Instantiates a new tile cache.
+	 *
+	 * @param finder
+	 *            the object that finds the objects to be drawn into tiles
+	 * @param rasterizer
+	 *            the object that rasterizes the tiles
+	 * @param tileSize
+	 *            the width and height of a tile, in pixels
+	 * @param maxTiles
+	 *            the maximal number of cached tiles outside the area painted
+	 *            last
+	 */
+	public TileCache(ObjectFinder finder, TileRasterizer rasterizer, int tileSize, int maxTiles) {
+		this.finder = Objects.requireNonNull(finder, "Finder cannot be null.");
+		this.rasterizer = Objects.requireNonNull(rasterizer, "Rasterizer cannot be null.");
+		if (tileSize <= 0) {
+			throw new IllegalArgumentException("Tile size must be positive, was: " + tileSize);
+		}
+		this.tileSize = tileSize;
+
+		tiles = new LinkedHashMap<>();
+		setMaxTiles(maxTiles);
+	}
+
+	/**
+	 * Gets the rasterizer the invalid tiles are drawn with.
+	 *
+	 * @return the rasterizer
+	 */
+	public TileRasterizer getRasterizer() {
+		return rasterizer;
+	}
+
+	/**
+	 * Gets the width and height of a tile.
+	 *
+	 * @return the tile size, in pixels
+	 */
+	public int getTileSize() {
+		return tileSize;
+	}
+
+	/**
+	 * Gets the scale the tiles are rendered at.
+	 *
+	 * @return the number of device pixels per unit of canvas coordinates
+	 */
+	public double getScale() {
+		return scale;
+	}
+
+	/**
+	 * Sets the scale the tiles are rendered at. Changing it invalidates all
+	 * tiles, since their device pixels no longer cover the same canvas area.
+	 *
+	 * @param scale
+	 *            the number of device pixels per unit of canvas coordinates
+	 */
+	public void setScale(double scale) {
+		if (!(scale > 0) || Double.isInfinite(scale)) {
+			throw new IllegalArgumentException("Scale must be positive and finite, was: " + scale);
+		}
+
+		if (scale != this.scale) {
+			this.scale = scale;
+			invalidateAll();
+		}
+	}
+
+	/**
+	 * Gets the time budget for rasterizing the missing tiles in a single paint.
+	 *
+	 * @return the time budget, in milliseconds, or 0 if it is unbounded
+	 */
+	public long getTimeBudget() {
+		return timeBudget / 1_000_000;
+	}
+
+	/**
+	 * Sets the time budget for rasterizing the missing tiles in a single paint.
+	 * Tiles not finished within the budget are painted partially drawn, and
+	 * finished by the following paints.
+	 *
+	 * @param timeBudget
+	 *            the time budget, in milliseconds, or 0 for an unbounded one
+	 */
+	public void setTimeBudget(long timeBudget) {
+		if (timeBudget < 0) {
+			throw new IllegalArgumentException("Time budget cannot be negative, was: " + timeBudget);
+		}
+
+		this.timeBudget = timeBudget * 1_000_000;
+	}
+
+	/**
+	 * Gets the maximal number of cached tiles outside the area painted last.
+	 *
+	 * @return the maximal number of cached tiles outside the painted area
+	 */
+	public int getMaxTiles() {
+		return maxTiles;
+	}
+
+	/**
+	 * Sets the maximal number of cached tiles outside the area painted last,
+	 * evicting the least recently used ones if there are more.
+	 *
+	 * @param maxTiles
+	 *            the maximal number of cached tiles outside the painted area
+	 */
+	public void setMaxTiles(int maxTiles) {
+		if (maxTiles < 0) {
+			throw new IllegalArgumentException("Maximal number of tiles cannot be negative, was: " + maxTiles);
+		}
+
+		this.maxTiles = maxTiles;
+		evict();
+	}
+
+	/**
+	 * Gets the number of cached tiles, valid or not.
+	 *
+	 * @return the number of cached tiles
+	 */
+	public int size() {
+		return tiles.size();
+	}
+
+	/**
+	 * Gets the number of tiles that were copied from the cache.
+	 *
+	 * @return the number of cache hits
+	 */
+	public long getHitCount() {
+		return hitCount;
+	}
+
+	/**
+	 * Gets the number of tiles that had to be rendered.
+	 *
+	 * @return the number of cache misses
+	 */
+	public long getMissCount() {
+		return missCount;
+	}
+
+	/**
+	 * Gets the number of tiles evicted from the cache.
+	 *
+	 * @return the number of evictions
+	 */
+	public long getEvictionCount() {
+		return evictionCount;
+	}
+
+	/**
+	 * Paints the tiles touching the given area, rasterizing the ones that are not
+	 * cached or have been invalidated first. If the time budget runs out, some of
+	 * the tiles are painted only partially drawn or with their old contents, and
+	 * the area has to be painted again to finish them. Once the budget has run
+	 * out, no more objects are looked up for tiles, except for the first tile
+	 * rendered by the paint. The time the tiles are expected to take to be
+	 * copied, as measured by the last paint, is part of the budget.
+	 *
+	 * @param g2d
+	 *            the graphics
+	 * @param area
+	 *            the area that needs to be painted, in device pixels
+	 * @return true, if all painted tiles are complete
+	 */
+	public boolean paint(Graphics2D g2d, Rectangle area) {
+		Objects.requireNonNull(g2d, "Graphics cannot be null.");
+		Objects.requireNonNull(area, "Area cannot be null.");
+		if (area.isEmpty()) {
+			return true;
+		}
+
+		int paint = ++paintNumber;
+		int tx0 = Math.floorDiv(area.x, tileSize);
+		int ty0 = Math.floorDiv(area.y, tileSize);
+		int tx1 = Math.floorDiv(area.x + area.width - 1, tileSize);
+		int ty1 = Math.floorDiv(area.y + area.height - 1, tileSize);
+		long count = (long) (tx1 - tx0 + 1) * (ty1 - ty0 + 1);
+		areaTiles = (int) Math.min(count, Integer.MAX_VALUE - maxTiles);
+		long deadline = System.nanoTime() + timeBudget - Math.min(copyTime * count, timeBudget);
+		boolean postponed = false;
+
+		List<Tile> missing = new ArrayList<>();
+		List<TileRasterizer.Job> jobs = new ArrayList<>();
+		for (int ty = ty0; ty <= ty1; ty++) {
+			for (int tx = tx0; tx <= tx1; tx++) {
+				Long key = tileKey(tx, ty);
+				Tile tile = tiles.remove(key);
+				if (tile == null) {
+					tile = new Tile(reclaimImage());
+				}
+				tiles.put(key, tile);
+				tile.lastPaint = paint;
+
+				if (tile.valid) {
+					hitCount++;
+					continue;
+				}
+
+				if (tile.job == null) {
+					if (timeBudget != 0 && !jobs.isEmpty() && System.nanoTime() - deadline >= 0) {
+						postponed = true;
+						continue;
+					}
+					missCount++;
+
+					Rectangle tileArea = new Rectangle(tx * tileSize, ty * tileSize, tileSize, tileSize);
+					List<GeometricalObject> objects = finder.find(toCanvas(tileArea));
+					tile.job = new TileRasterizer.Job(tile.image, tileArea, objects, scale);
+				}
+				missing.add(tile);
+				jobs.add(tile.job);
+			}
+		}
+
+		boolean complete = !postponed;
+		if (timeBudget == 0) {
+			rasterizer.rasterize(jobs);
+		} else if (!rasterizer.rasterize(jobs, Math.max(deadline - System.nanoTime(), 1))) {
+			complete = false;
+		}
+
+		for (Tile tile : missing) {
+			if (tile.job.isDone()) {
+				tile.valid = true;
+				tile.job = null;
+			}
+		}
+
+		long start = System.nanoTime();
+		for (int ty = ty0; ty <= ty1; ty++) {
+			for (int tx = tx0; tx <= tx1; tx++) {
+				g2d.drawImage(tiles.get(tileKey(tx, ty)).image, tx * tileSize, ty * tileSize, null);
+			}
+		}
+		copyTime = (System.nanoTime() - start) / count;
+
+		evict();
+		return complete;
+	}
+
+	/**
+	 * Invalidates the tiles touching the given area, so that they are rendered
+	 * again the next time they are painted. Unfinished rendering of these tiles
+	 * is discarded.
+	 *
+	 * @param area
+	 *            the changed area, in canvas coordinates
+	 */
+	public void invalidate(Rectangle area) {
+		Objects.requireNonNull(area, "Area cannot be null.");
+		if (area.isEmpty()) {
+			return;
+		}
+
+		Rectangle device = toDevice(area);
+		int tx0 = Math.floorDiv(device.x, tileSize);
+		int ty0 = Math.floorDiv(device.y, tileSize);
+		int tx1 = Math.floorDiv(device.x + device.width - 1, tileSize);
+		int ty1 = Math.floorDiv(device.y + device.height - 1, tileSize);
+
+		if ((long) (tx1 - tx0 + 1) * (ty1 - ty0 + 1) > tiles.size()) {
+			for (Map.Entry<Long, Tile> entry : tiles.entrySet()) {
+				long key = entry.getKey();
+				int tx = (int) (key >> 32);
+				int ty = (int) key;
+				if (tx >= tx0 && tx <= tx1 && ty >= ty0 && ty <= ty1) {
+					entry.getValue().invalidate();
+				}
+			}
+			return;
+		}
+
+		for (int ty = ty0; ty <= ty1; ty++) {
+			for (int tx = tx0; tx <= tx1; tx++) {
+				Tile tile = tiles.get(tileKey(tx, ty));
+				if (tile != null) {
+					tile.invalidate();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Invalidates all tiles.
+	 */
+	public void invalidateAll() {
+		for (Tile tile : tiles.values()) {
+			tile.invalidate();
+		}
+	}
+
+	/**
+	 * Gets an image for a new tile, cleared to the background. If the cache is
+	 * full, the image of the least recently painted tile is taken over,
+	 * evicting that tile. The tiles of the paint in progress are the most
+	 * recently painted ones, and the bound leaves room for all of them, so the
+	 * evicted tile is never one of them.
+	 *
+	 * @return the image
+	 */
+	private BufferedImage reclaimImage() {
+		BufferedImage image;
+		if (tiles.size() < bound()) {
+			image = new BufferedImage(tileSize, tileSize, BufferedImage.TYPE_INT_RGB);
+		} else {
+			Iterator<Tile> it = tiles.values().iterator();
+			image = it.next().image;
+			it.remove();
+			evictionCount++;
+		}
+
+		Graphics2D g2d = image.createGraphics();
+		g2d.setColor(rasterizer.getBackground());
+		g2d.fillRect(0, 0, tileSize, tileSize);
+		g2d.dispose();
+		return image;
+	}
+
+	/**
+	 * Evicts the least recently painted tiles while there are more than
+	 * allowed.
+	 */
+	private void evict() {
+		Iterator<Tile> it = tiles.values().iterator();
+		while (tiles.size() > bound()) {
+			it.next();
+			it.remove();
+			evictionCount++;
+		}
+	}
+
+	/**
+	 * Gets the maximal number of cached tiles, i.e. the tiles of the area
+	 * painted last and the allowed number of others.
+	 *
+	 * @return the maximal number of cached tiles
+	 */
+	private int bound() {
+		return areaTiles + maxTiles;
+	}
+
+	/**
+	 * Packs the coordinates of a tile into a single key.
+	 *
+	 * @param tx
+	 *            the column of the tile
+	 * @param ty
+	 *            the row of the tile
+	 * @return the key
+	 */
+	private static Long tileKey(int tx, int ty) {
+		return ((long) tx << 32) | (ty & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Converts the given area in device pixels to the smallest area in canvas
+	 * coordinates covering it.
+	 *
+	 * @param area
+	 *            the area, in device pixels
+	 * @return the area, in canvas coordinates
+	 */
+	private Rectangle toCanvas(Rectangle area) {
+		if (scale == 1) {
+			return area;
+		}
+
+		int x0 = (int) Math.floor(area.x / scale);
+		int y0 = (int) Math.floor(area.y / scale);
+		int x1 = (int) Math.ceil((area.x + area.width) / scale);
+		int y1 = (int) Math.ceil((area.y + area.height) / scale);
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	/**
+	 * Converts the given area in canvas coordinates to the smallest area in
+	 * device pixels covering it.
+	 *
+	 * @param area
+	 *            the area, in canvas coordinates
+	 * @return the area, in device pixels
+	 */
+	private Rectangle toDevice(Rectangle area) {
+		if (scale == 1) {
+			return area;
+		}
+
+		int x0 = (int) Math.floor(area.x * scale);
+		int y0 = (int) Math.floor(area.y * scale);
+		int x1 = (int) Math.ceil((area.x + area.width) * scale);
+		int y1 = (int) Math.ceil((area.y + area.height) * scale);
+		return new Rectangle(x0, y0, x1 - x0, y1 - y0);
+	}
+
+	/**
+	 * The interface for the objects that find the objects to be drawn into
+	 * tiles.
+	 */
+	@FunctionalInterface
+	public interface ObjectFinder {
+
+		/**
+		 * Finds all objects that may cover some pixel of the given area.
+		 *
+		 * @param area
+		 *            the area, in canvas coordinates
+		 * @return the objects, in drawing order
+		 */
+		List<GeometricalObject> find(Rectangle area);
+	}
+
+	/**
+	 * A single cached tile.
+	 */
+	private static class Tile {
+
+		/** The rendered contents. */
+		private final BufferedImage image;
+
+		/** Whether the contents are up to date. */
+		private boolean valid;
+
+		/** The unfinished rendering of the contents, or null if there is none. */
+		private TileRasterizer.Job job;
+
+		/** The number of the paint that last used this tile. */
+		private int lastPaint;
+
+		/**
+		 * Instantiates a new, invalid tile.
+		 *
+		 * @param image
+		 *            the image holding the contents
+		 */
+		private Tile(BufferedImage image) {
+			this.image = image;
+		}
+
+		/**
+		 * Marks the contents as outdated, discarding their unfinished rendering.
+		 */
+		private void invalidate() {
+			valid = false;
+			job = null;
+		}
+	}
+}
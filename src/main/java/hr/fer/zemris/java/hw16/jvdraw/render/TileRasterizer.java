@@ -0,0 +1,571 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectBBCalculator;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.LevelOfDetail;
+
+import static hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter.DEFAULT_STROKE;
+
+/**
+ * The class responsible for rasterizing geometrical objects into independent
+ * tiles in parallel. The tiles are distributed over a fork-join pool, and every
+ * worker draws with its own GeometricalObjectPainter into its own Graphics2D,
+ * so no drawing state is shared between threads.
+ *
+ * Every tile is drawn exactly as the sequential path would draw the same area:
+ * the tile is filled with the background color and its objects are painted in
+ * their drawing order, translated by whole pixels and clipped to the tile. The
+ * result is therefore pixel-identical to painting all objects into a single
+ * Graphics2D. The one exception is the default Java2D renderer, which
+ * subdivides long curves crossing the clip, slightly changing their
+ * antialiasing. Programs needing identical pixels must turn the subdivision
+ * off by setting {@link #CURVE_SUBDIVIDER_PROPERTY} to false before anything is
+ * antialiased, either on the command line or first thing in their main method,
+ * as JVDraw does.
+ *
+ * Tiles can also be rasterized within a time budget. The deadline is then
+ * checked before every object, and a tile not finished when the budget runs
+ * out keeps its progress, so that rasterizing it again resumes where it
+ * stopped. Tiles not started before the deadline are left untouched. Since the objects are composited one after another either
+ * way, a tile drawn over several calls is identical to one drawn at once.
+ *
+ * The objects must not be modified while they are being rasterized, since the
+ * workers read them without any synchronization. The canvas and the export
+ * therefore rasterize the values of DocumentSnapshots, which are created for
+ * the reader and nothing else modifies, never the objects of the model being
+ * edited.
+ *
+ * @author Damjan Vučina
+ */
+public class TileRasterizer {
+
+	/** The default width and height of a tile, in pixels. */
+	public static final int DEFAULT_TILE_SIZE = 256;
+
+	/**
+	 * The system property controlling whether the Java2D renderer subdivides
+	 * curves crossing the clip.
+	 */
+	public static final String CURVE_SUBDIVIDER_PROPERTY = "sun.java2d.renderer.clip.subdivider";
+
+	/** The pool the tiles are rasterized on. */
+	private final ForkJoinPool pool;
+
+	/** The color the tiles are filled with before drawing the objects. */
+	private final Color background;
+
+	/** Whether the workers' painters draw in batching mode. */
+	private volatile boolean batching;
+
+	/** The level-of-detail settings of the workers' painters, or null if off. */
+	private volatile LevelOfDetail levelOfDetail;
+
+	/** The number of objects handed to the workers' painters. */
+	private final LongAdder visitedCount = new LongAdder();
+
+	/** The number of objects the workers' painters have simplified. */
+	private final LongAdder simplifiedCount = new LongAdder();
+
+	/**
+	 * Instantiates a new tile rasterizer using the common fork-join pool.
+	 *
+	 * @param background
+	 *            the color the tiles are filled with before drawing the objects
+	 */
+	public TileRasterizer(Color background) {
+		this(background, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Instantiates a new tile rasterizer.
+	 *
+	 * @param background
+	 *            the color the tiles are filled with before drawing the objects
+	 * @param pool
+	 *            the pool the tiles are rasterized on
+	 */
+	public TileRasterizer(Color background, ForkJoinPool pool) {
+		this.background = Objects.requireNonNull(background, "Background cannot be null.");
+		this.pool = Objects.requireNonNull(pool, "Pool cannot be null.");
+	}
+
+	/**
+	 * Gets the pool the tiles are rasterized on.
+	 *
+	 * @return the pool
+	 */
+	public ForkJoinPool getPool() {
+		return pool;
+	}
+
+	/**
+	 * Gets the color the tiles are filled with before drawing the objects.
+	 *
+	 * @return the background color
+	 */
+	public Color getBackground() {
+		return background;
+	}
+
+	/**
+	 * Checks whether the workers' painters draw in batching mode.
+	 *
+	 * @return true, if the painters draw in batching mode
+	 */
+	public boolean isBatching() {
+		return batching;
+	}
+
+	/**
+	 * Sets whether the workers' painters draw in batching mode, which issues far
+	 * fewer drawing calls, but may blend overlapping antialiased edges of
+	 * objects with the same color differently. The result is then no longer
+	 * pixel-identical to drawing the objects one by one. Batching pays off on
+	 * pipelines where every state change is expensive, not when drawing into
+	 * images in software, where rasterizing the merged paths dominates.
+	 *
+	 * @param batching
+	 *            whether the painters draw in batching mode
+	 */
+	public void setBatching(boolean batching) {
+		this.batching = batching;
+	}
+
+	/**
+	 * Gets the level-of-detail settings of the workers' painters.
+	 *
+	 * @return the settings, or null if the level-of-detail mode is off
+	 */
+	public LevelOfDetail getLevelOfDetail() {
+		return levelOfDetail;
+	}
+
+	/**
+	 * Sets the level-of-detail settings of the workers' painters. While the mode
+	 * is on, tiny objects are drawn as single pixels or skipped, so the result
+	 * is no longer pixel-identical to drawing the objects one by one; objects at
+	 * or above the pixel threshold are still drawn exactly.
+	 *
+	 * @param levelOfDetail
+	 *            the settings, or null to turn the level-of-detail mode off
+	 */
+	public void setLevelOfDetail(LevelOfDetail levelOfDetail) {
+		this.levelOfDetail = levelOfDetail;
+	}
+
+	/**
+	 * Gets the number of objects handed to the painters over all rasterized
+	 * tiles so far. An object touching several tiles is counted once for every
+	 * tile.
+	 *
+	 * @return the number of visited objects
+	 */
+	public long getVisitedCount() {
+		return visitedCount.sum();
+	}
+
+	/**
+	 * Gets the number of objects simplified in level-of-detail mode over all
+	 * rasterized tiles so far. An object touching several tiles is counted once
+	 * for every tile.
+	 *
+	 * @return the number of simplified objects
+	 */
+	public long getSimplifiedCount() {
+		return simplifiedCount.sum();
+	}
+
+	/**
+	 * Rasterizes the given tiles in parallel and waits until all of them are
+	 * done.
+	 *
+	 * @param jobs
+	 *            the tiles
+	 */
+	public void rasterize(List<Job> jobs) {
+		rasterize(jobs, 0, false);
+	}
+
+	/**
+	 * Rasterizes the given tiles in parallel within the given time budget and
+	 * waits until all of them are done or the budget has run out. The first
+	 * tile draws at least one of its objects, so repeated calls always make
+	 * progress; no other object is drawn after the deadline. Tiles that are not
+	 * done keep their progress and resume when they are rasterized again.
+	 *
+	 * @param jobs
+	 *            the tiles
+	 * @param budget
+	 *            the time budget, in nanoseconds
+	 * @return true, if all tiles are done
+	 */
+	public boolean rasterize(List<Job> jobs, long budget) {
+		if (budget <= 0) {
+			throw new IllegalArgumentException("Budget must be positive, was: " + budget);
+		}
+
+		return rasterize(jobs, System.nanoTime() + budget, true);
+	}
+
+	/**
+	 * Rasterizes the given tiles in parallel until all of them are done or the
+	 * given deadline has passed.
+	 *
+	 * @param jobs
+	 *            the tiles
+	 * @param deadline
+	 *            the deadline, as in System.nanoTime()
+	 * @param bounded
+	 *            whether the deadline applies
+	 * @return true, if all tiles are done
+	 */
+	private boolean rasterize(List<Job> jobs, long deadline, boolean bounded) {
+		Objects.requireNonNull(jobs, "Jobs cannot be null.");
+
+		if (jobs.size() == 1) {
+			draw(jobs.get(0), createPainter(), deadline, bounded, true);
+		} else if (!jobs.isEmpty()) {
+			pool.invoke(new RasterizeTask(jobs, 0, jobs.size(), deadline, bounded));
+		}
+
+		for (Job job : jobs) {
+			if (!job.isDone()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Rasterizes the given objects into a new image covering the given area. The
+	 * area is split into tiles of the default size, and every tile is given only
+	 * the objects whose bounding boxes, widened by the stroke, touch it.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param area
+	 *            the area, in canvas coordinates
+	 * @param imageType
+	 *            the type of the created image, as in BufferedImage
+	 * @return the image
+	 */
+	public BufferedImage rasterize(List<GeometricalObject> objects, Rectangle area, int imageType) {
+		return rasterize(objects, area, imageType, DEFAULT_TILE_SIZE);
+	}
+
+	/**
+	 * Rasterizes the given objects into a new image covering the given area. The
+	 * area is split into tiles of the given size, and every tile is given only
+	 * the objects whose bounding boxes, widened by the stroke, touch it.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param area
+	 *            the area, in canvas coordinates
+	 * @param imageType
+	 *            the type of the created image, as in BufferedImage
+	 * @param tileSize
+	 *            the width and height of a tile, in pixels
+	 * @return the image
+	 */
+	public BufferedImage rasterize(List<GeometricalObject> objects, Rectangle area, int imageType, int tileSize) {
+		Objects.requireNonNull(objects, "Objects cannot be null.");
+		Objects.requireNonNull(area, "Area cannot be null.");
+		if (area.isEmpty()) {
+			throw new IllegalArgumentException("Area cannot be empty, was: " + area);
+		}
+		if (tileSize <= 0) {
+			throw new IllegalArgumentException("Tile size must be positive, was: " + tileSize);
+		}
+
+		BufferedImage image = new BufferedImage(area.width, area.height, imageType);
+
+		int columns = (area.width + tileSize - 1) / tileSize;
+		int rows = (area.height + tileSize - 1) / tileSize;
+		List<List<GeometricalObject>> binned = bin(objects, area, tileSize, columns, rows);
+
+		List<Job> jobs = new ArrayList<>(columns * rows);
+		for (int row = 0; row < rows; row++) {
+			for (int column = 0; column < columns; column++) {
+				int x = column * tileSize;
+				int y = row * tileSize;
+				int width = Math.min(tileSize, area.width - x);
+				int height = Math.min(tileSize, area.height - y);
+
+				//@formatter:off
+				jobs.add(new Job(image.getSubimage(x, y, width, height),
+								 new Rectangle(area.x + x, area.y + y, width, height),
+								 binned.get(row * columns + column)));
+				//@formatter:on
+			}
+		}
+
+		rasterize(jobs);
+		return image;
+	}
+
+	/**
+	 * Distributes the given objects among the tiles their bounding boxes,
+	 * widened by the stroke, touch. Every tile receives its objects in drawing
+	 * order.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param area
+	 *            the area covered by the tiles
+	 * @param tileSize
+	 *            the width and height of a tile
+	 * @param columns
+	 *            the number of tile columns
+	 * @param rows
+	 *            the number of tile rows
+	 * @return the objects of every tile, row by row
+	 */
+	static List<List<GeometricalObject>> bin(List<GeometricalObject> objects, Rectangle area, int tileSize,
+			int columns, int rows) {
+
+		List<List<GeometricalObject>> binned = new ArrayList<>(columns * rows);
+		for (int i = columns * rows; i > 0; i--) {
+			binned.add(new ArrayList<>());
+		}
+
+		GeometricalObjectBBCalculator bbCalculator = new GeometricalObjectBBCalculator();
+		for (GeometricalObject object : objects) {
+			object.accept(bbCalculator);
+			Rectangle bounds = bbCalculator.getBoundingBox();
+
+			int margin = DEFAULT_STROKE + 1;
+			int column0 = Math.max(Math.floorDiv(bounds.x - margin - area.x, tileSize), 0);
+			int row0 = Math.max(Math.floorDiv(bounds.y - margin - area.y, tileSize), 0);
+			int column1 = Math.min(Math.floorDiv(bounds.x + bounds.width + margin - area.x, tileSize), columns - 1);
+			int row1 = Math.min(Math.floorDiv(bounds.y + bounds.height + margin - area.y, tileSize), rows - 1);
+
+			for (int row = row0; row <= row1; row++) {
+				for (int column = column0; column <= column1; column++) {
+					binned.get(row * columns + column).add(object);
+				}
+			}
+		}
+
+		return binned;
+	}
+
+	/**
+	 * Creates a painter for a single tile with the current settings.
+	 *
+	 * @return the painter
+	 */
+	private GeometricalObjectPainter createPainter() {
+		GeometricalObjectPainter goPainter = new GeometricalObjectPainter(batching);
+		goPainter.setLevelOfDetail(levelOfDetail);
+		return goPainter;
+	}
+
+	/**
+	 * Draws a single tile, starting from its progress, until it is done or the
+	 * given deadline has passed. The deadline is checked before every object.
+	 * The tile is filled with the background color before its first object is
+	 * drawn; a tile not started yet is not touched once the deadline has
+	 * passed, unless it is the first one.
+	 *
+	 * @param job
+	 *            the tile
+	 * @param goPainter
+	 *            the painter owned by the calling worker
+	 * @param deadline
+	 *            the deadline, as in System.nanoTime()
+	 * @param bounded
+	 *            whether the deadline applies
+	 * @param first
+	 *            whether the first object is drawn regardless of the deadline
+	 */
+	private void draw(Job job, GeometricalObjectPainter goPainter, long deadline, boolean bounded, boolean first) {
+		Rectangle area = job.area;
+		if (job.isDone() || !job.started && bounded && !first && System.nanoTime() - deadline >= 0) {
+			return;
+		}
+
+		Graphics2D g2d = job.image.createGraphics();
+		try {
+			g2d.translate(-area.x, -area.y);
+			g2d.clip(area);
+
+			if (!job.started) {
+				g2d.setColor(background);
+				g2d.fillRect(area.x, area.y, area.width, area.height);
+				job.started = true;
+			}
+
+			g2d.scale(job.scale, job.scale);
+			goPainter.setG2d(g2d);
+			List<GeometricalObject> objects = job.objects;
+			int size = objects.size();
+			int start = job.progress;
+			boolean force = first;
+			while (job.progress < size) {
+				if (bounded && !force && System.nanoTime() - deadline >= 0) {
+					break;
+				}
+				force = false;
+
+				objects.get(job.progress).accept(goPainter);
+				job.progress++;
+			}
+			goPainter.flush();
+			visitedCount.add(job.progress - start);
+			simplifiedCount.add(goPainter.getSimplifiedCount());
+		} finally {
+			g2d.dispose();
+		}
+	}
+
+	/**
+	 * A single tile to be rasterized. It remembers whether it has been filled
+	 * with the background and how many of its objects have been drawn, so that
+	 * it can be rasterized in several steps.
+	 */
+	public static final class Job {
+
+		/** The image the tile is drawn into, at its origin. */
+		private final BufferedImage image;
+
+		/** The area of the tile, in device pixels. */
+		private final Rectangle area;
+
+		/** The objects touching the tile, in drawing order. */
+		private final List<GeometricalObject> objects;
+
+		/** The number of device pixels per unit of canvas coordinates. */
+		private final double scale;
+
+		/** Whether the tile has been filled with the background color. */
+		private boolean started;
+
+		/** The number of objects drawn so far. */
+		private int progress;
+
+		/**
+		 * Instantiates a new tile to be rasterized at one device pixel per unit
+		 * of canvas coordinates.
+		 *
+		 * @param image
+		 *            the image the tile is drawn into, at its origin
+		 * @param area
+		 *            the area of the tile, in canvas coordinates
+		 * @param objects
+		 *            the objects touching the tile, in drawing order
+		 */
+		public Job(BufferedImage image, Rectangle area, List<GeometricalObject> objects) {
+			this(image, area, objects, 1);
+		}
+
+		/**
+		 * Instantiates a new tile to be rasterized at the given scale, e.g. the
+		 * one of the default transform of a HiDPI screen.
+		 *
+		 * @param image
+		 *            the image the tile is drawn into, at its origin
+		 * @param area
+		 *            the area of the tile, in device pixels
+		 * @param objects
+		 *            the objects touching the tile, in drawing order
+		 * @param scale
+		 *            the number of device pixels per unit of canvas coordinates
+		 */
+		public Job(BufferedImage image, Rectangle area, List<GeometricalObject> objects, double scale) {
+			this.image = Objects.requireNonNull(image, "Image cannot be null.");
+			this.area = new Rectangle(Objects.requireNonNull(area, "Area cannot be null."));
+			this.objects = Objects.requireNonNull(objects, "Objects cannot be null.");
+			if (!(scale > 0) || Double.isInfinite(scale)) {
+				throw new IllegalArgumentException("Scale must be positive and finite, was: " + scale);
+			}
+			this.scale = scale;
+		}
+
+		/**
+		 * Checks whether the tile has been filled and all its objects have been
+		 * drawn.
+		 *
+		 * @return true, if the tile is done
+		 */
+		public boolean isDone() {
+			return started && progress == objects.size();
+		}
+	}
+
+	/**
+	 * The task rasterizing a range of tiles, splitting it in halves until a
+	 * single tile is left.
+	 */
+	private class RasterizeTask extends RecursiveAction {
+
+		/** The Constant serialVersionUID. */
+		private static final long serialVersionUID = 1L;
+
+		/** The tiles. */
+		private final List<Job> jobs;
+
+		/** The first tile of the range. */
+		private final int from;
+
+		/** The end of the range, exclusive. */
+		private final int to;
+
+		/** The deadline, as in System.nanoTime(). */
+		private final long deadline;
+
+		/** Whether the deadline applies. */
+		private final boolean bounded;
+
+		/**
+		 * Instantiates a new task.
+		 *
+		 * @param jobs
+		 *            the tiles
+		 * @param from
+		 *            the first tile of the range
+		 * @param to
+		 *            the end of the range, exclusive
+		 * @param deadline
+		 *            the deadline, as in System.nanoTime()
+		 * @param bounded
+		 *            whether the deadline applies
+		 */
+		private RasterizeTask(List<Job> jobs, int from, int to, long deadline, boolean bounded) {
+			this.jobs = jobs;
+			this.from = from;
+			this.to = to;
+			this.deadline = deadline;
+			this.bounded = bounded;
+		}
+
+		/**
+		 * Rasterizes the range.
+		 */
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				draw(jobs.get(from), createPainter(), deadline, bounded, from == 0);
+				return;
+			}
+
+			int middle = (from + to) >>> 1;
+			//@formatter:off
+			invokeAll(new RasterizeTask(jobs, from, middle, deadline, bounded),
+					  new RasterizeTask(jobs, middle, to, deadline, bounded));
+			//@formatter:on
+		}
+	}
+}
@@ -0,0 +1,36 @@
+package hr.fer.zemris.java.hw16.jvdraw;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+import hr.fer.zemris.java.hw16.jvdraw.render.BackgroundRenderer;
+
+/**
+ * The tests of JDrawingCanvas: removing the canvas from its parent, e.g. by
+ * disposing its window, must stop the thread of its renderer.
+ *
+ * @author Damjan Vučina
+ */
+public class JDrawingCanvasTest {
+
+	/**
+	 * Tests that the renderer is disposed and its thread stops once the canvas
+	 * is removed.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the thread
+	 */
+	@Test
+	public void testRemoveDisposesRenderer() throws InterruptedException {
+		JDrawingCanvas canvas = new JDrawingCanvas(null, new DocumentModel());
+		BackgroundRenderer renderer = canvas.getRenderer();
+		assertFalse(renderer.isDisposed());
+
+		canvas.removeNotify();
+		assertTrue(renderer.isDisposed());
+		assertTrue(renderer.awaitTermination(10_000));
+	}
+}
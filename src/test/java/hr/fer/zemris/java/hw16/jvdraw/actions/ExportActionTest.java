@@ -0,0 +1,87 @@
+package hr.fer.zemris.java.hw16.jvdraw.actions;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.render.PaintStatistics;
+
+/**
+ * The tests of ExportAction: every export must record the shapes it
+ * rasterized itself, even while other exports are running.
+ *
+ * @author Damjan Vučina
+ */
+public class ExportActionTest {
+
+	/** The number of exported objects. */
+	private static final int OBJECTS = 3000;
+
+	/** The number of concurrent exports. */
+	private static final int EXPORTS = 4;
+
+	/**
+	 * Tests that concurrent exports record exactly the shapes a single export
+	 * records, once per export.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the exports
+	 */
+	@Test
+	public void testConcurrentExportStatistics() throws InterruptedException {
+		List<GeometricalObject> objects = randomObjects(new Random(42));
+
+		PaintStatistics single = new PaintStatistics();
+		single.setEnabled(true);
+		ExportAction.rasterize(objects, single);
+		long visited = single.getShapesVisited();
+		assertTrue("The export should have visited every object, was: " + visited, visited >= OBJECTS);
+
+		PaintStatistics concurrent = new PaintStatistics();
+		concurrent.setEnabled(true);
+		List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < EXPORTS; i++) {
+			threads.add(new Thread(() -> ExportAction.rasterize(objects, concurrent)));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		assertEquals(EXPORTS, concurrent.getExportCount());
+		assertEquals(EXPORTS * visited, concurrent.getShapesVisited());
+		assertEquals(EXPORTS * single.getShapesDrawn(), concurrent.getShapesDrawn());
+	}
+
+	/**
+	 * Creates random lines and circles spanning several tiles.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> randomObjects(Random random) {
+		List<GeometricalObject> objects = new ArrayList<>(OBJECTS);
+		for (int i = 0; i < OBJECTS; i++) {
+			Point start = new Point(random.nextInt(1000), random.nextInt(1000));
+			Point end = new Point(start.x + random.nextInt(80), start.y + random.nextInt(80));
+			Color color = new Color(random.nextInt(0x1000000));
+
+			objects.add(random.nextBoolean() ? new Line(start, end, color) : new Circle(start, end, color));
+		}
+
+		return objects;
+	}
+}
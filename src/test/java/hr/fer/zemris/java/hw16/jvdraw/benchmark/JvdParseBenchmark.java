@@ -0,0 +1,284 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.awt.Point;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import hr.fer.zemris.java.hw16.jvdraw.actions.UtilityProvider;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdLoader;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdTokenizer;
+import hr.fer.zemris.java.hw16.jvdraw.model.ColorPalette;
+
+/**
+ * Command line program that compares the throughput of loading a JVD file the
+ * way it used to be loaded, i.e. reading all lines, matching them against
+ * regular expressions and splitting them, with scanning it through a single
+ * JvdTokenizer and with a JvdLoader parsing mapped chunks of it in parallel.
+ * Parsing alone, without creating the objects, is measured for the first two
+ * as well. JvdLoaderTest checks that the loaders create the same objects.
+ * The number of lines of the generated file can be given as the first
+ * argument.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdParseBenchmark {
+
+	/** The default number of lines of the generated file. */
+	private static final int DEFAULT_LINES = 2_000_000;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of measured repetitions for every loader. */
+	private static final int REPETITIONS = 3;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of lines, optional
+	 * @throws IOException
+	 *             if writing or reading the generated file fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_LINES;
+
+		Path file = Files.createTempFile("jvd-parse-benchmark", ".jvd");
+		try {
+			write(file, n);
+			double megabytes = Files.size(file) / 1e6;
+			System.out.printf("Lines: %d, file: %.1f MB%n", n, megabytes);
+
+			JvdLoader parallelLoader = new JvdLoader();
+			long legacyParser = Long.MAX_VALUE;
+			long legacy = Long.MAX_VALUE;
+			long tokenizer = Long.MAX_VALUE;
+			long loader = Long.MAX_VALUE;
+			long parallel = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				long start = System.nanoTime();
+				LegacyParser.parse(file);
+				legacyParser = Math.min(legacyParser, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				LegacyParser.load(file);
+				legacy = Math.min(legacy, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				tokenize(file);
+				tokenizer = Math.min(tokenizer, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				load(file);
+				loader = Math.min(loader, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				parallelLoader.load(file);
+				parallel = Math.min(parallel, System.nanoTime() - start);
+			}
+
+			print("Regex parser:", legacyParser, n, megabytes, legacyParser);
+			print("Tokenizer:", tokenizer, n, megabytes, legacyParser);
+			print("Regex loader:", legacy, n, megabytes, legacy);
+			print("Tokenizer loader:", loader, n, megabytes, legacy);
+			print("Parallel loader:", parallel, n, megabytes, legacy);
+			System.out.println("Parallelism: " + parallelLoader.getPool().getParallelism());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Prints the result of a single loader.
+	 *
+	 * @param title
+	 *            the title of the loader
+	 * @param time
+	 *            the shortest time of loading the file, in nanoseconds
+	 * @param lines
+	 *            the number of lines
+	 * @param megabytes
+	 *            the size of the file, in megabytes
+	 * @param legacy
+	 *            the shortest time of the regex counterpart, in nanoseconds
+	 */
+	private static void print(String title, long time, int lines, double megabytes, long legacy) {
+		//@formatter:off
+		System.out.printf("%-17s %8.1f ms, %6.2f M lines/s, %7.1f MB/s, %5.1fx%n",
+						  title,
+						  time / 1e6,
+						  lines / (time / 1e3),
+						  megabytes / (time / 1e9),
+						  legacy / (double) time);
+		//@formatter:on
+	}
+
+	/**
+	 * Writes a file of random objects.
+	 *
+	 * @param file
+	 *            the file
+	 * @param n
+	 *            the number of objects
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	private static void write(Path file, int n) throws IOException {
+		Random random = new Random(SEED);
+		GeometricalObjectSaver saver = new GeometricalObjectSaver();
+
+		try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			for (int i = 0; i < n; i++) {
+				ModelMemoryBenchmark.randomObject(random).accept(saver);
+				writer.write(saver.getJVD());
+			}
+		}
+	}
+
+	/**
+	 * Loads the given file through a single tokenizer.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the objects
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	private static List<GeometricalObject> load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return UtilityProvider.fromChannel(channel);
+		}
+	}
+
+	/**
+	 * Scans the given file without creating any objects.
+	 *
+	 * @param file
+	 *            the file
+	 * @return the sum of all attributes, so that scanning is not optimized away
+	 * @throws IOException
+	 *             if reading fails
+	 */
+	private static long tokenize(Path file) throws IOException {
+		long sum = 0;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			JvdTokenizer tokenizer = new JvdTokenizer(channel);
+			JvdTokenizer.Type type;
+			while ((type = tokenizer.next()) != null) {
+				for (int i = 0; i < type.getValueCount(); i++) {
+					sum += tokenizer.getValue(i);
+				}
+			}
+		}
+
+		return sum;
+	}
+
+	/**
+	 * The loader reading JVD files the way UtilityProvider used to: all lines
+	 * are read into strings, matched against up to three regular expressions,
+	 * split and parsed through a stream.
+	 */
+	private static class LegacyParser {
+
+		/** The line pattern. */
+		private static final Pattern LINE_PATTERN = Pattern
+				.compile("LINE\\s(\\d+\\s){2}(\\d+\\s){2}(\\d+\\s\\d+\\s\\d+)");
+
+		/** The circle pattern. */
+		private static final Pattern CIRCLE_PATTERN = Pattern
+				.compile("CIRCLE\\s(\\d+\\s){2}(\\d+\\s){1}(\\d+\\s\\d+\\s\\d+)");
+
+		/** The filled circle pattern. */
+		private static final Pattern FILLED_CIRCLE_PATTERN = Pattern
+				.compile("FCIRCLE\\s(\\d+\\s){2}(\\d+\\s){1}(\\d+\\s){3}(\\d+\\s\\d+\\s\\d+)");
+
+		/**
+		 * Loads the objects of the given file.
+		 *
+		 * @param file
+		 *            the file
+		 * @return the objects
+		 * @throws IOException
+		 *             if reading fails
+		 */
+		private static List<GeometricalObject> load(Path file) throws IOException {
+			List<String> jvdLines = Files.readAllLines(file, StandardCharsets.UTF_8);
+			List<GeometricalObject> objects = new ArrayList<>();
+			ColorPalette palette = new ColorPalette();
+
+			for (String jvdLine : jvdLines) {
+				if (LINE_PATTERN.matcher(jvdLine).matches()) {
+					int[] e = extractElements(jvdLine);
+					objects.add(new Line(new Point(e[0], e[1]), new Point(e[2], e[3]),
+							palette.intern(e[4], e[5], e[6]).getColor()));
+
+				} else if (CIRCLE_PATTERN.matcher(jvdLine).matches()) {
+					int[] e = extractElements(jvdLine);
+					objects.add(new Circle(new Point(e[0], e[1]), new Point(e[0], e[1] + e[2]),
+							palette.intern(e[3], e[4], e[5]).getColor()));
+
+				} else if (FILLED_CIRCLE_PATTERN.matcher(jvdLine).matches()) {
+					int[] e = extractElements(jvdLine);
+					objects.add(new FilledCircle(new Point(e[0], e[1]), new Point(e[0], e[1] + e[2]),
+							palette.intern(e[3], e[4], e[5]).getColor(), palette.intern(e[6], e[7], e[8]).getColor()));
+
+				} else {
+					throw new IllegalStateException("Unknown geometrical object in JVD file.");
+				}
+			}
+
+			return objects;
+		}
+
+		/**
+		 * Parses the lines of the given file without creating any objects.
+		 *
+		 * @param file
+		 *            the file
+		 * @return the sum of all attributes, so that parsing is not optimized away
+		 * @throws IOException
+		 *             if reading fails
+		 */
+		private static long parse(Path file) throws IOException {
+			long sum = 0;
+			for (String jvdLine : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+				if (!LINE_PATTERN.matcher(jvdLine).matches() && !CIRCLE_PATTERN.matcher(jvdLine).matches()
+						&& !FILLED_CIRCLE_PATTERN.matcher(jvdLine).matches()) {
+					throw new IllegalStateException("Unknown geometrical object in JVD file.");
+				}
+				for (int element : extractElements(jvdLine)) {
+					sum += element;
+				}
+			}
+
+			return sum;
+		}
+
+		/**
+		 * Extracts the attributes of a line.
+		 *
+		 * @param jvdLine
+		 *            the line
+		 * @return the attributes
+		 */
+		private static int[] extractElements(String jvdLine) {
+			return Arrays.stream(jvdLine.split(" ")).skip(1).mapToInt(Integer::parseInt).toArray();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdWriter;
+
+/**
+ * Command line program that compares saving a JVD file with
+ * GeometricalObjectSaver, which builds the whole representation as a string
+ * first, with JvdWriter, which streams it through a fixed buffer. For each
+ * save it measures the time and the number of bytes allocated by the saving
+ * thread. JvdWriterTest checks that both write identical files. The numbers
+ * of objects can be given as arguments.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdWriteBenchmark {
+
+	/** The default numbers of objects. */
+	private static final int[] DEFAULT_OBJECTS = { 100_000, 1_000_000 };
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of measured repetitions for every saver. */
+	private static final int REPETITIONS = 3;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the numbers of objects, optional
+	 * @throws IOException
+	 *             if writing the files fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int[] sizes = args.length > 0 ? Arrays.stream(args).mapToInt(Integer::parseInt).toArray() : DEFAULT_OBJECTS;
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+
+		GeometricalObjectSaver saver = new GeometricalObjectSaver();
+		JvdWriter writer = new JvdWriter();
+		Path expected = Files.createTempFile("jvd-write-benchmark", ".jvd");
+		Path actual = Files.createTempFile("jvd-write-benchmark", ".jvd");
+		try {
+			for (int n : sizes) {
+				List<GeometricalObject> objects = randomObjects(n);
+
+				long saverTime = Long.MAX_VALUE;
+				long writerTime = Long.MAX_VALUE;
+				long saverBytes = 0;
+				long writerBytes = 0;
+				for (int i = 0; i < REPETITIONS; i++) {
+					long allocated = threads.getThreadAllocatedBytes(thread);
+					long start = System.nanoTime();
+					objects.forEach(object -> object.accept(saver));
+					saver.save(expected);
+					saverTime = Math.min(saverTime, System.nanoTime() - start);
+					saverBytes = threads.getThreadAllocatedBytes(thread) - allocated;
+
+					allocated = threads.getThreadAllocatedBytes(thread);
+					start = System.nanoTime();
+					writer.save(objects, actual);
+					writerTime = Math.min(writerTime, System.nanoTime() - start);
+					writerBytes = threads.getThreadAllocatedBytes(thread) - allocated;
+				}
+
+				//@formatter:off
+				System.out.printf("%8d objects, %6.1f MB: saver %7.1f ms, %8.1f MB allocated; "
+								+ "writer %7.1f ms, %6.3f MB allocated; %4.1fx faster%n",
+								  n, Files.size(actual) / 1e6,
+								  saverTime / 1e6, saverBytes / 1e6,
+								  writerTime / 1e6, writerBytes / 1e6,
+								  saverTime / (double) writerTime);
+				//@formatter:on
+			}
+		} finally {
+			Files.delete(expected);
+			Files.delete(actual);
+		}
+	}
+
+	/**
+	 * Creates random objects.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> randomObjects(int n) {
+		Random random = new Random(SEED);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			objects.add(ModelMemoryBenchmark.randomObject(random));
+		}
+
+		return objects;
+	}
+}
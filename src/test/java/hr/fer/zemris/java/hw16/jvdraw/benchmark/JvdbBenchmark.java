@@ -0,0 +1,196 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdLoader;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdbReader;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdbSaver;
+
+/**
+ * Command line program that compares the text JVD format with the binary JVDB
+ * format: the size of the files and the time it takes to save and load them.
+ * The objects are scattered over a 2000 x 2000 canvas, with colors taken from a
+ * palette of {@value #PALETTE_SIZE} colors. JvdbRoundTripTest checks that a
+ * JVD file converted to JVDB and back is unchanged, byte for byte. The number
+ * of objects can be given as the first argument.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdbBenchmark {
+
+	/** The default number of objects. */
+	private static final int DEFAULT_OBJECTS = 1_000_000;
+
+	/** The number of colors the objects are drawn with. */
+	private static final int PALETTE_SIZE = 64;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of measured repetitions for every operation. */
+	private static final int REPETITIONS = 3;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of objects, optional
+	 * @throws IOException
+	 *             if writing or reading the files fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+		List<GeometricalObject> objects = randomObjects(n);
+
+		Path jvd = Files.createTempFile("jvdb-benchmark", ".jvd");
+		Path jvdb = Files.createTempFile("jvdb-benchmark", ".jvdb");
+		try {
+			GeometricalObjectSaver jvdSaver = new GeometricalObjectSaver();
+			JvdbSaver jvdbSaver = new JvdbSaver();
+			JvdLoader jvdLoader = new JvdLoader();
+
+			saveJvd(objects, jvdSaver, jvd);
+			saveJvdb(jvdLoader.load(jvd), jvdbSaver, jvdb);
+
+			long jvdSave = Long.MAX_VALUE;
+			long jvdbSave = Long.MAX_VALUE;
+			long jvdLoad = Long.MAX_VALUE;
+			long jvdbLoad = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				long start = System.nanoTime();
+				saveJvd(objects, jvdSaver, jvd);
+				jvdSave = Math.min(jvdSave, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				saveJvdb(objects, jvdbSaver, jvdb);
+				jvdbSave = Math.min(jvdbSave, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				jvdLoader.load(jvd);
+				jvdLoad = Math.min(jvdLoad, System.nanoTime() - start);
+
+				start = System.nanoTime();
+				JvdbReader.load(jvdb);
+				jvdbLoad = Math.min(jvdbLoad, System.nanoTime() - start);
+			}
+
+			long jvdSize = Files.size(jvd);
+			long jvdbSize = Files.size(jvdb);
+			System.out.printf("Objects: %d, palette: %d colors%n", n, PALETTE_SIZE);
+			//@formatter:off
+			System.out.printf("Size:  %10d B (%5.1f B/object) vs %10d B (%5.1f B/object), %5.1fx smaller%n",
+							  jvdSize, jvdSize / (double) n, jvdbSize, jvdbSize / (double) n,
+							  jvdSize / (double) jvdbSize);
+			//@formatter:on
+			print("Save:", jvdSave, jvdbSave);
+			print("Load:", jvdLoad, jvdbLoad);
+		} finally {
+			Files.delete(jvd);
+			Files.delete(jvdb);
+		}
+	}
+
+	/**
+	 * Prints the times of an operation on both formats.
+	 *
+	 * @param title
+	 *            the title of the operation
+	 * @param jvd
+	 *            the shortest time of the operation on the JVD file, in
+	 *            nanoseconds
+	 * @param jvdb
+	 *            the shortest time of the operation on the JVDB file, in
+	 *            nanoseconds
+	 */
+	private static void print(String title, long jvd, long jvdb) {
+		//@formatter:off
+		System.out.printf("%-6s %8.1f ms JVD vs %8.1f ms JVDB, %5.1fx faster%n",
+						  title, jvd / 1e6, jvdb / 1e6, jvd / (double) jvdb);
+		//@formatter:on
+	}
+
+	/**
+	 * Saves the given objects to a JVD file.
+	 *
+	 * @param objects
+	 *            the objects
+	 * @param saver
+	 *            the saver
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	private static void saveJvd(List<GeometricalObject> objects, GeometricalObjectSaver saver, Path file)
+			throws IOException {
+		objects.forEach(object -> object.accept(saver));
+		saver.save(file);
+	}
+
+	/**
+	 * Saves the given objects to a JVDB file.
+	 *
+	 * @param objects
+	 *            the objects
+	 * @param saver
+	 *            the saver
+	 * @param file
+	 *            the file
+	 * @throws IOException
+	 *             if writing fails
+	 */
+	private static void saveJvdb(List<GeometricalObject> objects, JvdbSaver saver, Path file) throws IOException {
+		objects.forEach(object -> object.accept(saver));
+		saver.save(file);
+	}
+
+	/**
+	 * Creates random objects, the way ModelMemoryBenchmark does, but with colors
+	 * taken from a small palette.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> randomObjects(int n) {
+		Random random = new Random(SEED);
+		Color[] palette = new Color[PALETTE_SIZE];
+		for (int i = 0; i < palette.length; i++) {
+			palette[i] = new Color(random.nextInt(0x1000000));
+		}
+
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Point start = new Point(random.nextInt(2000), random.nextInt(2000));
+			Point end = new Point(start.x + random.nextInt(50), start.y + random.nextInt(50));
+			Color fg = palette[random.nextInt(palette.length)];
+
+			switch (random.nextInt(3)) {
+			case 0:
+				objects.add(new Line(start, end, fg));
+				break;
+
+			case 1:
+				objects.add(new Circle(start, end, fg));
+				break;
+
+			default:
+				objects.add(new FilledCircle(start, end, fg, palette[random.nextInt(palette.length)]));
+			}
+		}
+
+		return objects;
+	}
+}
@@ -0,0 +1,226 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+
+/**
+ * Command line program that measures the heap occupied per stored object by
+ * DocumentModel, with random colors and with a palette of
+ * {@value #PALETTE_COLORS} colors, and by a plain list holding the objects
+ * themselves. The number of objects can be given as the first argument.
+ *
+ * It also measures the heap the CommandHistory retains per removed object,
+ * for objects removed one by one and for all objects removed at once, next to
+ * the history's own estimate, which its memory budget is enforced by.
+ *
+ * Run with a fixed heap (e.g. -Xms2g -Xmx2g) for stable results.
+ *
+ * @author Damjan Vučina
+ */
+public class ModelMemoryBenchmark {
+
+	/** The default number of objects stored in each model. */
+	private static final int DEFAULT_OBJECTS = 300_000;
+
+	/** The number of distinct colors of the drawing with a small palette. */
+	private static final int PALETTE_COLORS = 16;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of objects, optional
+	 */
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+
+		long randomBytes = measureModel(n, 0);
+		long paletteBytes = measureModel(n, PALETTE_COLORS);
+		long listBytes = measureList(n, 0);
+
+		System.out.printf("Objects:                    %d%n", n);
+		System.out.printf("DocumentModel, random:      %.1f bytes/object%n", randomBytes / (double) n);
+		System.out.printf("DocumentModel, %2d colors:   %.1f bytes/object%n", PALETTE_COLORS, paletteBytes / (double) n);
+		System.out.printf("ArrayList of objects:       %.1f bytes/object%n", listBytes / (double) n);
+
+		for (boolean single : new boolean[] { true, false }) {
+			long[] history = measureHistory(n, single);
+			System.out.printf("History, removed %s: %.1f bytes/object, estimated %.1f%n",
+					single ? "one by one" : "at once   ", history[0] / (double) n, history[1] / (double) n);
+		}
+	}
+
+	/**
+	 * Fills a document model with random objects of {@value #PALETTE_COLORS}
+	 * colors, removes them all, and measures the heap retained by the history
+	 * of the removals, i.e. released by clearing the history.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @param single
+	 *            whether the objects are removed one by one, as opposed to all
+	 *            at once
+	 * @return the number of retained bytes and the history's estimate of it
+	 */
+	static long[] measureHistory(int n, boolean single) {
+		DocumentModel model = new DocumentModel();
+		model.getHistory().setMemoryBudget(Long.MAX_VALUE);
+		Random random = new Random(SEED);
+		for (int i = 0; i < n; i++) {
+			model.add(randomObject(random, PALETTE_COLORS));
+		}
+		model.getHistory().clear();
+
+		if (single) {
+			while (model.getSize() > 0) {
+				model.remove(model.getObject(model.getSize() / 2));
+			}
+		} else {
+			model.removeAll(model.getObjects());
+		}
+
+		long estimate = model.getHistory().getMemoryUsage();
+		long before = usedHeap();
+		model.getHistory().clear();
+		long after = usedHeap();
+		if (model.getSize() != 0) {
+			throw new IllegalStateException("Model kept objects.");
+		}
+
+		return new long[] { before - after, estimate };
+	}
+
+	/**
+	 * Fills a document model with random objects and measures the retained
+	 * heap.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @param colors
+	 *            the number of distinct colors, or 0 for random colors
+	 * @return the number of retained bytes
+	 */
+	static long measureModel(int n, int colors) {
+		long before = usedHeap();
+
+		DocumentModel model = new DocumentModel();
+		Random random = new Random(SEED);
+		for (int i = 0; i < n; i++) {
+			model.add(randomObject(random, colors));
+		}
+
+		long after = usedHeap();
+		if (model.getSize() != n) {
+			throw new IllegalStateException("Model lost objects.");
+		}
+
+		return after - before;
+	}
+
+	/**
+	 * Fills a plain list with random objects and measures the retained heap.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @param colors
+	 *            the number of distinct colors, or 0 for random colors
+	 * @return the number of retained bytes
+	 */
+	static long measureList(int n, int colors) {
+		long before = usedHeap();
+
+		List<GeometricalObject> list = new ArrayList<>();
+		Random random = new Random(SEED);
+		for (int i = 0; i < n; i++) {
+			list.add(randomObject(random, colors));
+		}
+
+		long after = usedHeap();
+		if (list.size() != n) {
+			throw new IllegalStateException("List lost objects.");
+		}
+
+		return after - before;
+	}
+
+	/**
+	 * Creates a random object of a random color the way the JVD loader does.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @return the object
+	 */
+	static GeometricalObject randomObject(Random random) {
+		return randomObject(random, 0);
+	}
+
+	/**
+	 * Creates a random object the way the JVD loader does.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @param colors
+	 *            the number of distinct colors, or 0 for random colors
+	 * @return the object
+	 */
+	static GeometricalObject randomObject(Random random, int colors) {
+		Point start = new Point(random.nextInt(2000), random.nextInt(2000));
+		Point end = new Point(start.x + random.nextInt(50), start.y + random.nextInt(50));
+		Color fg = randomColor(random, colors);
+
+		switch (random.nextInt(3)) {
+		case 0:
+			return new Line(start, end, fg);
+
+		case 1:
+			return new Circle(start, end, fg);
+
+		default:
+			return new FilledCircle(start, end, fg, randomColor(random, colors));
+		}
+	}
+
+	/**
+	 * Creates a random opaque color.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @param colors
+	 *            the number of distinct colors, or 0 for any color
+	 * @return the color
+	 */
+	private static Color randomColor(Random random, int colors) {
+		return new Color(colors > 0 ? random.nextInt(colors) * 0x0F0F0F : random.nextInt(0x1000000));
+	}
+
+	/**
+	 * Gets the currently used heap after requesting garbage collection.
+	 *
+	 * @return the used heap in bytes
+	 */
+	static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			try {
+				Thread.sleep(50);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,303 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.awt.BasicStroke;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectVisitor;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+import static hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas.CANVAS_COLOR;
+import static hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter.DEFAULT_STROKE;
+
+/**
+ * Command line program that compares the cost of painting a frame the way
+ * objects used to be painted, i.e. with a new stroke, hint and color for every
+ * object, with GeometricalObjectPainter drawing objects one by one and in
+ * batching mode. Besides the time per frame, the number of drawing calls and
+ * state changes, each of which makes Java2D validate its pipeline, is reported.
+ *
+ * Three documents are painted: one with random colors, and two drawn in runs
+ * of objects sharing their colors, as when the user keeps the selected colors
+ * while drawing. The objects of a run are scattered over the whole frame in the
+ * first of them, and clustered together in the second, as when drawing a
+ * detailed part of a picture. The number of objects can be given as the first
+ * argument.
+ *
+ * @author Damjan Vučina
+ */
+public class PainterBenchmark {
+
+	/** The default number of painted objects. */
+	private static final int DEFAULT_OBJECTS = 100_000;
+
+	/** The number of objects sharing their colors in the second document. */
+	private static final int RUN_LENGTH = 200;
+
+	/** The width and height of the area the objects of a clustered run lie in. */
+	private static final int CLUSTER_SIZE = 96;
+
+	/** The width and height of the painted frame. */
+	private static final int FRAME_SIZE = 2048;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of measured repetitions for every configuration. */
+	private static final int REPETITIONS = 5;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of objects, optional
+	 */
+	public static void main(String[] args) {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+
+		System.out.printf("Objects: %d, frame: %dx%d%n", n, FRAME_SIZE, FRAME_SIZE);
+		measure("Random colors", randomColors(n));
+		measure("Scattered color runs of " + RUN_LENGTH, colorRuns(n, FRAME_SIZE));
+		measure("Clustered color runs of " + RUN_LENGTH, colorRuns(n, CLUSTER_SIZE));
+	}
+
+	/**
+	 * Paints the given document with every painter and prints the results.
+	 *
+	 * @param title
+	 *            the title of the document
+	 * @param objects
+	 *            the objects of the document
+	 */
+	private static void measure(String title, List<GeometricalObject> objects) {
+		System.out.println();
+		System.out.println(title + ":");
+
+		BufferedImage frame = new BufferedImage(FRAME_SIZE, FRAME_SIZE, BufferedImage.TYPE_INT_RGB);
+		LegacyPainter legacy = new LegacyPainter();
+		long legacyTime = time(frame, objects, legacy);
+		System.out.printf("  per object, legacy: %8.1f ms, %8d draw calls, %8d state changes%n", legacyTime / 1e6,
+				legacy.drawCalls / (REPETITIONS + 1), legacy.stateChanges / (REPETITIONS + 1));
+
+		for (boolean batching : new boolean[] { false, true }) {
+			GeometricalObjectPainter goPainter = new GeometricalObjectPainter(batching);
+			long time = time(frame, objects, goPainter);
+
+			//@formatter:off
+			System.out.printf("  %-19s %8.1f ms, %8d draw calls, %8d state changes, %.2fx faster%n",
+							  batching ? "batching:" : "per object:",
+							  time / 1e6,
+							  goPainter.getDrawCallCount() / (REPETITIONS + 1),
+							  goPainter.getStateChangeCount() / (REPETITIONS + 1),
+							  legacyTime / (double) time);
+			//@formatter:on
+		}
+	}
+
+	/**
+	 * Paints the given objects into the frame a few times.
+	 *
+	 * @param frame
+	 *            the frame
+	 * @param objects
+	 *            the objects
+	 * @param painter
+	 *            the painter, either a GeometricalObjectPainter or a
+	 *            LegacyPainter
+	 * @return the shortest time of a single paint, in nanoseconds
+	 */
+	private static long time(BufferedImage frame, List<GeometricalObject> objects, GeometricalObjectVisitor painter) {
+		long best = Long.MAX_VALUE;
+
+		for (int i = 0; i <= REPETITIONS; i++) {
+			long start = System.nanoTime();
+
+			Graphics2D g2d = frame.createGraphics();
+			g2d.setColor(CANVAS_COLOR);
+			g2d.fillRect(0, 0, FRAME_SIZE, FRAME_SIZE);
+			if (painter instanceof GeometricalObjectPainter) {
+				GeometricalObjectPainter goPainter = (GeometricalObjectPainter) painter;
+				goPainter.setG2d(g2d);
+				for (GeometricalObject object : objects) {
+					object.accept(goPainter);
+				}
+				goPainter.flush();
+			} else {
+				((LegacyPainter) painter).g2d = g2d;
+				for (GeometricalObject object : objects) {
+					object.accept(painter);
+				}
+			}
+			g2d.dispose();
+
+			if (i > 0) {
+				best = Math.min(best, System.nanoTime() - start);
+			}
+		}
+
+		return best;
+	}
+
+	/**
+	 * Creates a document with random colors.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> randomColors(int n) {
+		Random random = new Random(SEED);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Color fg = new Color(random.nextInt(0x1000000));
+			Color bg = new Color(random.nextInt(0x1000000));
+			objects.add(randomObject(random, new Point(), FRAME_SIZE, fg, bg));
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Creates a document drawn in runs of objects sharing their colors.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @param spread
+	 *            the width and height of the area the objects of a run lie in
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> colorRuns(int n, int spread) {
+		Random random = new Random(SEED);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		Point origin = null;
+		Color fg = null;
+		Color bg = null;
+		for (int i = 0; i < n; i++) {
+			if (i % RUN_LENGTH == 0) {
+				origin = new Point(random.nextInt(FRAME_SIZE - spread + 1), random.nextInt(FRAME_SIZE - spread + 1));
+				fg = new Color(random.nextInt(0x1000000));
+				bg = new Color(random.nextInt(0x1000000));
+			}
+			objects.add(randomObject(random, origin, spread, fg, bg));
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Creates a random object starting within the given area.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @param origin
+	 *            the top left corner of the area
+	 * @param spread
+	 *            the width and height of the area
+	 * @param fg
+	 *            the foreground color
+	 * @param bg
+	 *            the background color, used by filled circles
+	 * @return the object
+	 */
+	private static GeometricalObject randomObject(Random random, Point origin, int spread, Color fg, Color bg) {
+		Point start = new Point(origin.x + random.nextInt(spread), origin.y + random.nextInt(spread));
+		Point end = new Point(start.x + random.nextInt(30), start.y + random.nextInt(30));
+
+		switch (random.nextInt(3)) {
+		case 0:
+			return new Line(start, end, fg);
+
+		case 1:
+			return new Circle(start, end, fg);
+
+		default:
+			return new FilledCircle(start, end, fg, bg);
+		}
+	}
+
+	/**
+	 * The painter drawing objects the way GeometricalObjectPainter used to:
+	 * every object sets a newly created stroke, the antialiasing hint and its
+	 * colors.
+	 */
+	private static class LegacyPainter implements GeometricalObjectVisitor {
+
+		/** The drawing object. */
+		private Graphics2D g2d;
+
+		/** The number of issued drawing calls. */
+		private long drawCalls;
+
+		/** The number of changes of the drawing object's state. */
+		private long stateChanges;
+
+		/**
+		 * Draws the given line.
+		 *
+		 * @param line
+		 *            the line
+		 */
+		@Override
+		public void visit(Line line) {
+			setUpStroke();
+			g2d.setColor(line.getFgColor());
+			g2d.drawLine(line.getStartPoint().x, line.getStartPoint().y, line.getEndPoint().x, line.getEndPoint().y);
+			stateChanges++;
+			drawCalls++;
+		}
+
+		/**
+		 * Draws the given circle.
+		 *
+		 * @param circle
+		 *            the circle
+		 */
+		@Override
+		public void visit(Circle circle) {
+			setUpStroke();
+			int radius = circle.calculateRadius();
+			g2d.setColor(circle.getFgColor());
+			g2d.drawOval(circle.getStartPoint().x - radius, circle.getStartPoint().y - radius, 2 * radius, 2 * radius);
+			stateChanges++;
+			drawCalls++;
+		}
+
+		/**
+		 * Draws the given filled circle.
+		 *
+		 * @param filledCircle
+		 *            the filled circle
+		 */
+		@Override
+		public void visit(FilledCircle filledCircle) {
+			setUpStroke();
+			int radius = filledCircle.calculateRadius();
+			g2d.setColor(filledCircle.getBgColor());
+			g2d.fillOval(filledCircle.getStartPoint().x - radius, filledCircle.getStartPoint().y - radius, 2 * radius,
+					2 * radius);
+			stateChanges++;
+			drawCalls++;
+
+			visit((Circle) filledCircle);
+		}
+
+		/**
+		 * Sets up the stroke and the antialiasing hint.
+		 */
+		private void setUpStroke() {
+			g2d.setStroke(new BasicStroke(DEFAULT_STROKE));
+			g2d.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+			stateChanges += 2;
+		}
+	}
+}
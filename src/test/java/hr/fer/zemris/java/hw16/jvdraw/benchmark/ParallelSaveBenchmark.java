@@ -0,0 +1,120 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+import hr.fer.zemris.java.hw16.jvdraw.io.JvdWriter;
+import hr.fer.zemris.java.hw16.jvdraw.io.ParallelJvdWriter;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
+
+/**
+ * Command line program that measures the speedup of saving a snapshot of a
+ * document with ParallelJvdWriter, for an increasing number of worker threads
+ * up to the number of available cores, over saving it sequentially with
+ * GeometricalObjectSaver and with JvdWriter. JvdWriterTest checks that all of
+ * them write identical files. The number of objects can be given as the first
+ * argument.
+ *
+ * @author Damjan Vučina
+ */
+public class ParallelSaveBenchmark {
+
+	/** The default number of saved objects. */
+	private static final int DEFAULT_OBJECTS = 1_000_000;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of measured repetitions for every configuration. */
+	private static final int REPETITIONS = 5;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of objects, optional
+	 * @throws IOException
+	 *             if writing the files fails
+	 */
+	public static void main(String[] args) throws IOException {
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+
+		Random random = new Random(SEED);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			objects.add(ModelMemoryBenchmark.randomObject(random));
+		}
+		DocumentModel model = new DocumentModel();
+		model.replaceAll(objects);
+		DocumentSnapshot snapshot = model.snapshot();
+
+		Path expectedFile = Files.createTempFile("parallel-save-benchmark", ".jvd");
+		Path file = Files.createTempFile("parallel-save-benchmark", ".jvd");
+		try {
+			GeometricalObjectSaver saver = new GeometricalObjectSaver();
+			long sequential = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				long start = System.nanoTime();
+				snapshot.forEach(object -> object.accept(saver));
+				saver.save(expectedFile);
+				sequential = Math.min(sequential, System.nanoTime() - start);
+			}
+			long size = Files.size(expectedFile);
+
+			JvdWriter writer = new JvdWriter();
+			long streaming = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				long start = System.nanoTime();
+				writer.save(snapshot, file);
+				streaming = Math.min(streaming, System.nanoTime() - start);
+			}
+
+			System.out.printf("Objects: %d, file: %.1f MB%n", n, size / 1e6);
+			System.out.printf("GeometricalObjectSaver: %8.1f ms%n", sequential / 1e6);
+			System.out.printf("JvdWriter:              %8.1f ms, speedup %.2fx%n", streaming / 1e6,
+					sequential / (double) streaming);
+
+			for (ForkJoinPool pool : createPools()) {
+				ParallelJvdWriter parallelWriter = new ParallelJvdWriter(pool, ParallelJvdWriter.DEFAULT_SHARD_SIZE);
+				long parallel = Long.MAX_VALUE;
+				for (int i = 0; i < REPETITIONS; i++) {
+					long start = System.nanoTime();
+					parallelWriter.save(snapshot, file);
+					parallel = Math.min(parallel, System.nanoTime() - start);
+				}
+				pool.shutdown();
+
+				System.out.printf("%2d threads:             %8.1f ms, speedup %.2fx%n", pool.getParallelism(),
+						parallel / 1e6, sequential / (double) parallel);
+			}
+		} finally {
+			Files.delete(expectedFile);
+			Files.delete(file);
+		}
+	}
+
+	/**
+	 * Creates pools with 1, 2, 4, ... threads, up to the number of available
+	 * cores.
+	 *
+	 * @return the pools
+	 */
+	private static List<ForkJoinPool> createPools() {
+		int cores = Runtime.getRuntime().availableProcessors();
+		List<ForkJoinPool> pools = new ArrayList<>();
+		for (int threads = 1; threads < cores; threads *= 2) {
+			pools.add(new ForkJoinPool(threads));
+		}
+		pools.add(new ForkJoinPool(cores));
+
+		return pools;
+	}
+}
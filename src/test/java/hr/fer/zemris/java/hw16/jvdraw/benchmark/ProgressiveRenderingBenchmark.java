@@ -0,0 +1,138 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
+import hr.fer.zemris.java.hw16.jvdraw.render.BackgroundRenderer;
+import hr.fer.zemris.java.hw16.jvdraw.render.LatencyHistogram;
+import hr.fer.zemris.java.hw16.jvdraw.render.TileCache;
+import hr.fer.zemris.java.hw16.jvdraw.render.TileRasterizer;
+
+import static hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas.CANVAS_COLOR;
+import static hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter.DEFAULT_STROKE;
+
+/**
+ * Command line program that shows the effect of rendering the canvas within a
+ * time budget per paint. A large document is rendered from scratch a few
+ * times, as after opening it, once with an unbounded budget and once with the
+ * budget of a slice of the BackgroundRenderer, and the histograms of the times
+ * of the single paints are printed. Without a budget, the rendering thread is
+ * blocked for the whole rendering; with it, no paint takes much longer than
+ * the budget, at the cost of more paints, and newer changes can be taken over
+ * between them. TileCacheTest checks that both ways produce the same image.
+ * The number of objects can be given as the first argument.
+ *
+ * @author Damjan Vučina
+ */
+public class ProgressiveRenderingBenchmark {
+
+	/** The default number of objects in the document. */
+	private static final int DEFAULT_OBJECTS = 200_000;
+
+	/** The width and height of the painted view. */
+	private static final int VIEW_SIZE = 2048;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of times the document is rendered from scratch. */
+	private static final int REPETITIONS = 5;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of objects, optional
+	 */
+	public static void main(String[] args) {
+		if (System.getProperty(TileRasterizer.CURVE_SUBDIVIDER_PROPERTY) == null) {
+			System.setProperty(TileRasterizer.CURVE_SUBDIVIDER_PROPERTY, "false");
+		}
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+		TileRasterizer rasterizer = new TileRasterizer(CANVAS_COLOR);
+
+		Random random = new Random(SEED);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			objects.add(ModelMemoryBenchmark.randomObject(random));
+		}
+
+		DocumentModel model = new DocumentModel();
+		model.addAll(objects);
+		DocumentSnapshot snapshot = model.snapshot();
+
+		System.out.printf("Objects: %d, view: %dx%d%n", n, VIEW_SIZE, VIEW_SIZE);
+		measure("Unbounded budget", snapshot, rasterizer, 0);
+		measure("Budget of " + BackgroundRenderer.DEFAULT_TIME_BUDGET + " ms", snapshot, rasterizer,
+				BackgroundRenderer.DEFAULT_TIME_BUDGET);
+	}
+
+	/**
+	 * Renders the whole view from scratch a few times with the given budget,
+	 * painting it until all tiles are complete, and prints the histogram of the
+	 * times of the single paints.
+	 *
+	 * @param title
+	 *            the title of the configuration
+	 * @param snapshot
+	 *            the snapshot of the document
+	 * @param rasterizer
+	 *            the rasterizer
+	 * @param timeBudget
+	 *            the time budget of a paint, in milliseconds, or 0 if unbounded
+	 */
+	private static void measure(String title, DocumentSnapshot snapshot, TileRasterizer rasterizer,
+			long timeBudget) {
+
+		TileCache tileCache = new TileCache(area -> find(snapshot, area), rasterizer);
+		tileCache.setTimeBudget(timeBudget);
+
+		BufferedImage view = new BufferedImage(VIEW_SIZE, VIEW_SIZE, BufferedImage.TYPE_INT_RGB);
+		Rectangle area = new Rectangle(0, 0, VIEW_SIZE, VIEW_SIZE);
+		LatencyHistogram frameTimes = new LatencyHistogram();
+		long paints = 0;
+
+		for (int i = 0; i <= REPETITIONS; i++) {
+			tileCache.invalidateAll();
+			frameTimes.reset();
+			paints = 0;
+
+			boolean complete = false;
+			while (!complete) {
+				long start = System.nanoTime();
+				Graphics2D g2d = view.createGraphics();
+				complete = tileCache.paint(g2d, area);
+				g2d.dispose();
+				frameTimes.record(System.nanoTime() - start);
+				paints++;
+			}
+		}
+
+		System.out.println();
+		System.out.printf("%s, %d paints per rendering:%n", title, paints);
+		System.out.print(frameTimes);
+	}
+
+	/**
+	 * Finds the objects to be drawn into the given area through the spatial
+	 * index of the snapshot.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the document
+	 * @param area
+	 *            the area
+	 * @return the objects, in drawing order
+	 */
+	private static List<GeometricalObject> find(DocumentSnapshot snapshot, Rectangle area) {
+		Rectangle widened = new Rectangle(area);
+		widened.grow(DEFAULT_STROKE, DEFAULT_STROKE);
+		return snapshot.query(widened);
+	}
+}
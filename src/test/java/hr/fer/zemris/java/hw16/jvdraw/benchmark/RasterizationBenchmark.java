@@ -0,0 +1,153 @@
+package hr.fer.zemris.java.hw16.jvdraw.benchmark;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectBBCalculator;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter;
+import hr.fer.zemris.java.hw16.jvdraw.render.TileRasterizer;
+
+import static hr.fer.zemris.java.hw16.jvdraw.JDrawingCanvas.CANVAS_COLOR;
+
+/**
+ * Command line program that measures the speedup of TileRasterizer over
+ * painting all objects sequentially into a single image, for an increasing
+ * number of worker threads up to the number of available cores. Every parallel
+ * image is checked to be pixel-identical to the sequential one. The number of
+ * objects can be given as the first argument.
+ *
+ * @author Damjan Vučina
+ */
+public class RasterizationBenchmark {
+
+	/** The default number of rasterized objects. */
+	private static final int DEFAULT_OBJECTS = 200_000;
+
+	/** The seed used for generating random objects. */
+	private static final long SEED = 42;
+
+	/** The number of measured repetitions for every configuration. */
+	private static final int REPETITIONS = 5;
+
+	/**
+	 * The main method.
+	 *
+	 * @param args
+	 *            the number of objects, optional
+	 */
+	public static void main(String[] args) {
+		if (System.getProperty(TileRasterizer.CURVE_SUBDIVIDER_PROPERTY) == null) {
+			System.setProperty(TileRasterizer.CURVE_SUBDIVIDER_PROPERTY, "false");
+		}
+		int n = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_OBJECTS;
+		TileRasterizer[] rasterizers = createRasterizers();
+
+		Random random = new Random(SEED);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			objects.add(ModelMemoryBenchmark.randomObject(random));
+		}
+
+		GeometricalObjectBBCalculator bbCalculator = new GeometricalObjectBBCalculator();
+		for (GeometricalObject object : objects) {
+			object.accept(bbCalculator);
+		}
+		Rectangle area = bbCalculator.getBoundingBox();
+
+		BufferedImage expected = rasterizeSequentially(objects, area);
+		long sequential = Long.MAX_VALUE;
+		for (int i = 0; i < REPETITIONS; i++) {
+			long start = System.nanoTime();
+			rasterizeSequentially(objects, area);
+			sequential = Math.min(sequential, System.nanoTime() - start);
+		}
+
+		System.out.printf("Objects: %d, image: %dx%d%n", n, area.width, area.height);
+		System.out.printf("Sequential:  %8.1f ms%n", sequential / 1e6);
+
+		for (TileRasterizer rasterizer : rasterizers) {
+			ForkJoinPool pool = rasterizer.getPool();
+
+			BufferedImage actual = rasterizer.rasterize(objects, area, BufferedImage.TYPE_3BYTE_BGR);
+			if (!Arrays.equals(pixels(expected), pixels(actual))) {
+				throw new IllegalStateException("Parallel image differs from the sequential one.");
+			}
+
+			long parallel = Long.MAX_VALUE;
+			for (int i = 0; i < REPETITIONS; i++) {
+				long start = System.nanoTime();
+				rasterizer.rasterize(objects, area, BufferedImage.TYPE_3BYTE_BGR);
+				parallel = Math.min(parallel, System.nanoTime() - start);
+			}
+			pool.shutdown();
+
+			System.out.printf("%2d threads: %8.1f ms, speedup %.2fx%n", pool.getParallelism(), parallel / 1e6,
+					sequential / (double) parallel);
+		}
+	}
+
+	/**
+	 * Creates rasterizers using pools with 1, 2, 4, ... threads, up to the number
+	 * of available cores. They are created before anything is painted, so that
+	 * the renderer is configured for tiled rasterization.
+	 *
+	 * @return the rasterizers
+	 */
+	private static TileRasterizer[] createRasterizers() {
+		int cores = Runtime.getRuntime().availableProcessors();
+		List<TileRasterizer> rasterizers = new ArrayList<>();
+		for (int threads = 1; threads < cores; threads *= 2) {
+			rasterizers.add(new TileRasterizer(CANVAS_COLOR, new ForkJoinPool(threads)));
+		}
+		rasterizers.add(new TileRasterizer(CANVAS_COLOR, new ForkJoinPool(cores)));
+
+		return rasterizers.toArray(new TileRasterizer[rasterizers.size()]);
+	}
+
+	/**
+	 * Paints all objects into a single image with a single painter, the way
+	 * images were exported before rasterizing in tiles.
+	 *
+	 * @param objects
+	 *            the objects
+	 * @param area
+	 *            the area covered by the image
+	 * @return the image
+	 */
+	private static BufferedImage rasterizeSequentially(List<GeometricalObject> objects, Rectangle area) {
+		BufferedImage image = new BufferedImage(area.width, area.height, BufferedImage.TYPE_3BYTE_BGR);
+
+		Graphics2D g2d = image.createGraphics();
+		g2d.translate(-area.x, -area.y);
+		g2d.setColor(CANVAS_COLOR);
+		g2d.fillRect(area.x, area.y, area.width, area.height);
+
+		GeometricalObjectPainter goPainter = new GeometricalObjectPainter();
+		goPainter.setG2d(g2d);
+		for (GeometricalObject object : objects) {
+			object.accept(goPainter);
+		}
+		g2d.dispose();
+
+		return image;
+	}
+
+	/**
+	 * Gets the pixels of the given image.
+	 *
+	 * @param image
+	 *            the image
+	 * @return the pixels
+	 */
+	private static byte[] pixels(BufferedImage image) {
+		return ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+	}
+}
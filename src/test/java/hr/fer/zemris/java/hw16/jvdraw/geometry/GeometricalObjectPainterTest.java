@@ -0,0 +1,206 @@
+package hr.fer.zemris.java.hw16.jvdraw.geometry;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * The tests of GeometricalObjectPainter: the painter must set the state of its
+ * drawing object only when it changes, without changing the drawn pixels, and
+ * in batching mode it must draw runs of objects of the same colors together
+ * without breaking their drawing order, while in level-of-detail mode tiny
+ * objects are reduced to single pixels or skipped.
+ *
+ * @author Damjan Vučina
+ */
+public class GeometricalObjectPainterTest {
+
+	/** The width and height of the painted images. */
+	private static final int SIZE = 200;
+
+	/**
+	 * Tests that the painter sets the stroke once and a color only when it
+	 * differs from the previous one, that setting a new drawing object resets
+	 * the remembered state, and that the pixels are the same as when every
+	 * object is drawn with its state set from scratch.
+	 */
+	@Test
+	public void testStateCaching() {
+		List<GeometricalObject> objects = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			objects.add(new Line(new Point(i, 0), new Point(SIZE - i, SIZE), Color.BLACK));
+			objects.add(new Circle(new Point(100, 100), new Point(100, 100 + i), Color.BLACK));
+		}
+		for (int i = 0; i < 10; i++) {
+			Point center = new Point(15 * i + 20, 150);
+			objects.add(new FilledCircle(center, new Point(center.x, 160), Color.BLUE, Color.WHITE));
+		}
+
+		BufferedImage cached = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		GeometricalObjectPainter painter = new GeometricalObjectPainter();
+		Graphics2D g2d = cached.createGraphics();
+		painter.setG2d(g2d);
+		objects.forEach(object -> object.accept(painter));
+		assertEquals(100 + 2 * 10, painter.getDrawCallCount());
+		assertEquals(2 + 1 + 2 * 10, painter.getStateChangeCount());
+
+		painter.setG2d(g2d);
+		objects.get(0).accept(painter);
+		assertEquals(2 + 1 + 2 * 10 + 2 + 1, painter.getStateChangeCount());
+		g2d.dispose();
+
+		BufferedImage fresh = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		g2d = fresh.createGraphics();
+		objects.add(objects.get(0));
+		for (GeometricalObject object : objects) {
+			GeometricalObjectPainter single = new GeometricalObjectPainter();
+			single.setG2d(g2d);
+			object.accept(single);
+		}
+		g2d.dispose();
+
+		assertArrayEquals(pixels(fresh), pixels(cached));
+	}
+
+	/**
+	 * Tests that a run of outlines of the same color is drawn by a single call,
+	 * that filled circles of the same colors join the run unless they overlap
+	 * it, and that a filled circle overlapping the collected outlines is drawn
+	 * over them.
+	 */
+	@Test
+	public void testBatching() {
+		List<GeometricalObject> lines = new ArrayList<>();
+		for (int i = 0; i < 50; i++) {
+			lines.add(new Line(new Point(10 + i, 10), new Point(60 - i, 60), Color.BLACK));
+		}
+		assertEquals(1, paint(lines, true, new int[1]));
+
+		//@formatter:off
+		List<GeometricalObject> circles = Arrays.asList(
+				new FilledCircle(new Point(20, 20), new Point(20, 30), Color.RED, Color.GREEN),
+				new FilledCircle(new Point(50, 20), new Point(50, 30), Color.RED, Color.GREEN));
+		//@formatter:on
+		assertEquals(2, paint(circles, true, new int[1]));
+		assertEquals(4, paint(circles, false, new int[1]));
+
+		//@formatter:off
+		List<GeometricalObject> covered = Arrays.asList(
+				new Line(new Point(70, 100), new Point(130, 100), Color.RED),
+				new FilledCircle(new Point(100, 100), new Point(100, 120), Color.RED, Color.GREEN));
+		//@formatter:on
+		int[] center = new int[1];
+		assertEquals(1 + 2, paint(covered, true, center));
+		assertEquals(Color.GREEN.getRGB(), center[0]);
+	}
+
+	/**
+	 * Tests that in level-of-detail mode objects below the pixel threshold on
+	 * the device are drawn as a single pixel of their color, the topmost one
+	 * of a cell winning, that objects below the skip threshold are not drawn,
+	 * and that larger objects are drawn exactly as without the mode.
+	 */
+	@Test
+	public void testLevelOfDetail() {
+		//@formatter:off
+		List<GeometricalObject> objects = Arrays.asList(
+				new Line(new Point(10, 190), new Point(190, 10), Color.BLACK),
+				new Circle(new Point(50, 50), new Point(50, 51), Color.RED),
+				new Line(new Point(20, 150), new Point(20, 150), Color.BLUE),
+				new Circle(new Point(50, 50), new Point(51, 50), Color.GREEN),
+				new FilledCircle(new Point(100, 100), new Point(100, 130), Color.RED, Color.YELLOW));
+		//@formatter:on
+
+		BufferedImage simplified = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		GeometricalObjectPainter painter = new GeometricalObjectPainter();
+		painter.setLevelOfDetail(new LevelOfDetail(3, 1, 1));
+		paintOnWhite(simplified, objects, painter, 1);
+		assertEquals(3, painter.getSimplifiedCount());
+		assertEquals(1 + 2 + 1, painter.getDrawCallCount());
+		assertEquals(Color.GREEN.getRGB(), simplified.getRGB(50, 50));
+		assertEquals(Color.WHITE.getRGB(), simplified.getRGB(51, 50));
+		assertEquals(Color.WHITE.getRGB(), simplified.getRGB(20, 150));
+
+		BufferedImage full = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		List<GeometricalObject> large = Arrays.asList(objects.get(0), objects.get(4));
+		paintOnWhite(full, large, new GeometricalObjectPainter(), 1);
+		paintOnWhite(simplified, large, painter, 1);
+		assertArrayEquals(pixels(full), pixels(simplified));
+
+		painter.setLevelOfDetail(new LevelOfDetail());
+		paintOnWhite(simplified, large, painter, 0.02);
+		assertEquals(3 + 1, painter.getSimplifiedCount());
+		assertEquals(Color.RED.getRGB(), simplified.getRGB(2, 2));
+	}
+
+	/**
+	 * Fills the given image with white and paints the given objects into it at
+	 * the given scale, flushing the painter.
+	 *
+	 * @param image
+	 *            the image
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param painter
+	 *            the painter
+	 * @param scale
+	 *            the scale of the drawing object's transform
+	 */
+	private static void paintOnWhite(BufferedImage image, List<GeometricalObject> objects,
+			GeometricalObjectPainter painter, double scale) {
+		Graphics2D g2d = image.createGraphics();
+		g2d.setColor(Color.WHITE);
+		g2d.fillRect(0, 0, image.getWidth(), image.getHeight());
+		g2d.scale(scale, scale);
+
+		painter.setG2d(g2d);
+		objects.forEach(object -> object.accept(painter));
+		painter.flush();
+		g2d.dispose();
+	}
+
+	/**
+	 * Paints the given objects into a new image and flushes the painter.
+	 *
+	 * @param objects
+	 *            the objects, in drawing order
+	 * @param batching
+	 *            whether the painter batches the objects
+	 * @param center
+	 *            the array the color of the pixel at (100, 100) is stored into
+	 * @return the number of draw calls
+	 */
+	private static long paint(List<GeometricalObject> objects, boolean batching, int[] center) {
+		BufferedImage image = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = image.createGraphics();
+		GeometricalObjectPainter painter = new GeometricalObjectPainter(batching);
+		painter.setG2d(g2d);
+		objects.forEach(object -> object.accept(painter));
+		painter.flush();
+		g2d.dispose();
+
+		center[0] = image.getRGB(100, 100);
+		return painter.getDrawCallCount();
+	}
+
+	/**
+	 * Gets the pixels of the given image.
+	 *
+	 * @param image
+	 *            the image, of an integer type
+	 * @return the pixels
+	 */
+	private static int[] pixels(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+}
@@ -0,0 +1,247 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
+
+/**
+ * The tests of JvdLoader: the objects of the chunks must be stitched together
+ * into the objects of the whole file wherever the chunks end, and errors must
+ * be located as a single tokenizer reading the whole file would locate them.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdLoaderTest {
+
+	/** The chunk sizes the files are loaded with, in bytes. */
+	private static final int[] CHUNK_SIZES = { 1, 2, 3, 7, 31, 64, 1000, JvdLoader.DEFAULT_CHUNK_SIZE };
+
+	/** The pool the chunks are parsed on. */
+	private static ForkJoinPool pool;
+
+	/** The folder the files are written to. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Creates the pool.
+	 */
+	@BeforeClass
+	public static void createPool() {
+		pool = new ForkJoinPool(2);
+	}
+
+	/**
+	 * Shuts the pool down.
+	 */
+	@AfterClass
+	public static void shutdownPool() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests that a file loaded in chunks of any size yields the objects it was
+	 * written from, in their order.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testChunks() throws IOException {
+		String jvd = RandomObjects.toJvd(RandomObjects.create(42, 500));
+		Path file = write(jvd);
+
+		for (int chunkSize : CHUNK_SIZES) {
+			List<GeometricalObject> objects = new JvdLoader(pool, chunkSize).load(file);
+			assertEquals("Chunk size " + chunkSize, 500, objects.size());
+			assertEquals("Chunk size " + chunkSize, jvd, RandomObjects.toJvd(objects));
+		}
+	}
+
+	/**
+	 * Tests that the objects of a file of a few colors share a palette entry
+	 * per color, and that a file of more colors than the cache of colors holds
+	 * keeps the colors of all objects.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testSharedColors() throws IOException {
+		StringBuilder jvd = new StringBuilder();
+		for (int i = 0; i < 300; i++) {
+			jvd.append("FCIRCLE 5 5 2 ").append(i % 3).append(" 0 0 ").append(i % 3).append(" 0 0\n");
+		}
+		List<GeometricalObject> objects = new JvdLoader(pool, JvdLoader.DEFAULT_CHUNK_SIZE).load(write(jvd.toString()));
+		assertEquals(jvd.toString(), RandomObjects.toJvd(objects));
+		for (int i = 0; i < objects.size(); i++) {
+			FilledCircle circle = (FilledCircle) objects.get(i);
+			assertSame(circle.getFgColorEntry(), circle.getBgColorEntry());
+			assertSame(objects.get(i % 3).getFgColorEntry(), circle.getFgColorEntry());
+		}
+
+		jvd.setLength(0);
+		for (int i = 0; i < 4096; i++) {
+			jvd.append("LINE 0 0 1 1 ").append(i >> 6).append(' ').append(i & 63).append(" 7\n");
+		}
+		objects = new JvdLoader(pool, JvdLoader.DEFAULT_CHUNK_SIZE).load(write(jvd.toString()));
+		assertEquals(jvd.toString(), RandomObjects.toJvd(objects));
+	}
+
+	/**
+	 * Tests that chunks are stitched correctly at every offset of a file with
+	 * "\r\n" line breaks, including the ones between the two bytes of a line
+	 * break.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testChunksWithCrLf() throws IOException {
+		String jvd = RandomObjects.toJvd(RandomObjects.create(7, 20));
+		Path file = write(jvd.replace("\n", "\r\n"));
+
+		for (int chunkSize = 1; chunkSize <= Files.size(file); chunkSize++) {
+			List<GeometricalObject> objects = new JvdLoader(pool, chunkSize).load(file);
+			assertEquals("Chunk size " + chunkSize, jvd, RandomObjects.toJvd(objects));
+		}
+	}
+
+	/**
+	 * Tests that the last line does not need a line break.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testNoFinalLineBreak() throws IOException {
+		Path file = write("LINE 1 2 3 4 5 6 7\nCIRCLE 1 2 3 4 5 6");
+
+		for (int chunkSize : CHUNK_SIZES) {
+			assertEquals(2, new JvdLoader(pool, chunkSize).load(file).size());
+		}
+	}
+
+	/**
+	 * Tests that an empty file has no objects.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		assertTrue(new JvdLoader(pool, 1).load(write("")).isEmpty());
+	}
+
+	/**
+	 * Tests that an error in a later chunk is reported with the line number
+	 * counted from the start of the file.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testErrorLine() throws IOException {
+		StringBuilder jvd = new StringBuilder();
+		appendLines(jvd, 300);
+		jvd.append("LINE 1 2 3\n");
+		appendLines(jvd, 300);
+		Path file = write(jvd.toString());
+
+		for (int chunkSize : CHUNK_SIZES) {
+			assertError(file, chunkSize, "Expected 7 attributes at line 301, column 11.");
+		}
+	}
+
+	/**
+	 * Tests that the first error of the file is reported when several chunks
+	 * are malformed.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testFirstError() throws IOException {
+		StringBuilder jvd = new StringBuilder();
+		appendLines(jvd, 49);
+		jvd.append("CIRCLE 1 2 3 4 5 256\r\n");
+		appendLines(jvd, 200);
+		jvd.append("SQUARE 1 2\r\n");
+		appendLines(jvd, 10);
+		Path file = write(jvd.toString());
+
+		for (int chunkSize : CHUNK_SIZES) {
+			assertError(file, chunkSize, "Color component must be from 0 to 255 at line 50, column 18.");
+		}
+	}
+
+	/**
+	 * Appends valid lines to the given builder.
+	 *
+	 * @param jvd
+	 *            the builder
+	 * @param n
+	 *            the number of lines
+	 */
+	private static void appendLines(StringBuilder jvd, int n) {
+		for (int i = 0; i < n; i++) {
+			jvd.append("LINE ").append(i).append(" 2 3 4 5 6 7\n");
+		}
+	}
+
+	/**
+	 * Checks that loading the given file in chunks of the given size fails with
+	 * the given message.
+	 *
+	 * @param file
+	 *            the file
+	 * @param chunkSize
+	 *            the chunk size
+	 * @param message
+	 *            the expected message
+	 * @throws IOException
+	 *             if reading the file fails
+	 */
+	private static void assertError(Path file, int chunkSize, String message) throws IOException {
+		try {
+			new JvdLoader(pool, chunkSize).load(file);
+			fail("Expected an error with chunk size " + chunkSize + ": " + message);
+		} catch (ObjectModelException e) {
+			assertEquals("Chunk size " + chunkSize, message, e.getMessage());
+		}
+	}
+
+	/**
+	 * Writes the given text to a new file.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the path of the file
+	 * @throws IOException
+	 *             if writing the file fails
+	 */
+	private Path write(String text) throws IOException {
+		Path file = folder.newFile().toPath();
+		Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+
+		return file;
+	}
+}
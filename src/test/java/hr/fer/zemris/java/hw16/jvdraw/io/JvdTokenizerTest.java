@@ -0,0 +1,305 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.model.ObjectModelException;
+
+/**
+ * The tests of JvdTokenizer: the records it splits the input into, and the
+ * lines and columns of the errors it reports, both when the whole input is in
+ * its buffer and when a record is split between two reads of a stream.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdTokenizerTest {
+
+	/**
+	 * Tests that the records of all types are scanned with their attributes,
+	 * whatever line breaks and separators they use.
+	 *
+	 * @throws IOException
+	 *             if reading the input fails
+	 */
+	@Test
+	public void testRecords() throws IOException {
+		String jvd = "LINE 1 2 -3 4 255 0 17\nCIRCLE -5 6 7 1 2 3\r\nFCIRCLE 1\t2 3 4 5 6 7 8 9\r"
+				+ "LINE -2147483648 0 2147483647 0 0 0 0";
+		JvdTokenizer tokenizer = new JvdTokenizer(stream(jvd));
+
+		assertRecord(tokenizer, JvdTokenizer.Type.LINE, 1, 1, 2, -3, 4, 255, 0, 17);
+		assertRecord(tokenizer, JvdTokenizer.Type.CIRCLE, 2, -5, 6, 7, 1, 2, 3);
+		assertRecord(tokenizer, JvdTokenizer.Type.FILLED_CIRCLE, 3, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+		assertRecord(tokenizer, JvdTokenizer.Type.LINE, 4, Integer.MIN_VALUE, 0, Integer.MAX_VALUE, 0, 0, 0, 0);
+		assertNull(tokenizer.next());
+	}
+
+	/**
+	 * Tests that an empty input has no records.
+	 *
+	 * @throws IOException
+	 *             if reading the input fails
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		assertNull(new JvdTokenizer(stream("")).next());
+	}
+
+	/**
+	 * Tests that an unknown keyword is reported at the start of its line.
+	 */
+	@Test
+	public void testUnknownObject() {
+		assertError("LINE 1 2 3 4 5 6 7\nSQUARE 1 2\n", "Unknown geometrical object at line 2, column 1.");
+		assertError("LINE 1 2 3 4 5 6 7\nCIRCUS 1 2 3 4 5 6\n", "Unknown geometrical object at line 2, column 1.");
+		assertError("LINE 1 2 3 4 5 6 7\n\nLINE 1 2 3 4 5 6 7", "Unknown geometrical object at line 2, column 1.");
+	}
+
+	/**
+	 * Tests that a color component out of range is reported at its first
+	 * digit.
+	 */
+	@Test
+	public void testColorOutOfRange() {
+		assertError("CIRCLE 1 2 3 4 5 256\n", "Color component must be from 0 to 255 at line 1, column 18.");
+	}
+
+	/**
+	 * Tests that a missing attribute is reported at the line break.
+	 */
+	@Test
+	public void testMissingAttribute() {
+		assertError("LINE 1 2 3 4 5 6\n", "Expected 7 attributes at line 1, column 17.");
+		assertError("LINE 1 2 3 4 5 6", "Expected 7 attributes at line 1, column 17.");
+	}
+
+	/**
+	 * Tests that a negative radius is not taken for a number.
+	 */
+	@Test
+	public void testNegativeRadius() {
+		assertError("CIRCLE 1 2 -3 4 5 6\n", "Expected a number at line 1, column 12.");
+	}
+
+	/**
+	 * Tests that an attribute not preceded by a space or tab is reported at the
+	 * unexpected character.
+	 */
+	@Test
+	public void testMissingSeparator() {
+		assertError("LINE 1,2 3 4 5 6 7\n", "Expected a separator at line 1, column 7.");
+	}
+
+	/**
+	 * Tests that a number overflowing an int is reported at its first digit.
+	 */
+	@Test
+	public void testNumberTooLarge() {
+		assertError("LINE 1 2 99999999999 4 5 6 7\n", "Number too large at line 1, column 10.");
+		assertError("LINE 1 2 2147483648 4 5 6 7\n", "Number too large at line 1, column 10.");
+	}
+
+	/**
+	 * Tests that numbers of every length are read the same whether eight bytes
+	 * at a time, with enough input following them, or digit by digit, at the
+	 * end of the input or when every read of the stream returns a single byte,
+	 * including numbers with more than eight leading zeros.
+	 *
+	 * @throws IOException
+	 *             if reading the input fails
+	 */
+	@Test
+	public void testNumberLengths() throws IOException {
+		long number = 0;
+		for (int length = 1; length <= 10; length++) {
+			number = 10 * number + length % 10;
+			int value = (int) Math.min(number, Integer.MAX_VALUE);
+			String record = "LINE " + value + " -" + value + " 00000000000" + value + " 0 255 9 10";
+
+			for (String jvd : Arrays.asList(record, record + "\n" + record + "\n")) {
+				for (JvdTokenizer tokenizer : Arrays.asList(new JvdTokenizer(stream(jvd)),
+						new JvdTokenizer(new TrickleInputStream(jvd)))) {
+					assertRecord(tokenizer, JvdTokenizer.Type.LINE, 1, value, -value, value, 0, 255, 9, 10);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Tests that an extra attribute is reported where the line should have
+	 * ended.
+	 */
+	@Test
+	public void testExtraAttribute() {
+		assertError("LINE 1 2 3 4 5 6 7 8\n", "Expected the end of the line at line 1, column 19.");
+	}
+
+	/**
+	 * Tests that the errors are located the same way when every read of the
+	 * stream returns a single byte, so that every record is split between
+	 * reads.
+	 */
+	@Test
+	public void testErrorsSplitBetweenReads() {
+		String jvd = "LINE 1 2 3 4 5 6 7\r\nCIRCLE 1 2 3 4 5 6\r\nCIRCLE 1 2 3 4 5 256\r\n";
+		assertError(new JvdTokenizer(new TrickleInputStream(jvd)),
+				"Color component must be from 0 to 255 at line 3, column 18.");
+	}
+
+	/**
+	 * Tests that a buffer scanned on its own counts its lines from the given
+	 * first line, and starts at the buffer's position.
+	 */
+	@Test
+	public void testBufferFirstLine() {
+		byte[] bytes = "SKIPPED\nLINE 1 2 3 4 5 6 7\nLINE 1 2 3 4 5 6\n".getBytes(StandardCharsets.UTF_8);
+		ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		buffer.position("SKIPPED\n".length());
+
+		assertError(new JvdTokenizer(buffer, 41), "Expected 7 attributes at line 42, column 17.");
+		assertEquals("SKIPPED\n".length(), buffer.position());
+	}
+
+	/**
+	 * Tests that an input much larger than the buffer of the tokenizer, read in
+	 * pieces that end in the middle of records, yields the objects it was
+	 * written from.
+	 *
+	 * @throws IOException
+	 *             if reading the input fails
+	 */
+	@Test
+	public void testLargeInput() throws IOException {
+		List<GeometricalObject> objects = RandomObjects.create(42, 20_000);
+		String jvd = RandomObjects.toJvd(objects);
+		if (jvd.length() <= 2 * JvdTokenizer.DEFAULT_BUFFER_SIZE) {
+			fail("The input should not fit the buffer.");
+		}
+
+		List<GeometricalObject> read = JvdLoader.readObjects(new JvdTokenizer(stream(jvd)));
+		assertEquals(jvd, RandomObjects.toJvd(read));
+	}
+
+	/**
+	 * Scans the next record and checks its type, line and attributes.
+	 *
+	 * @param tokenizer
+	 *            the tokenizer
+	 * @param type
+	 *            the expected type
+	 * @param line
+	 *            the expected line
+	 * @param values
+	 *            the expected attributes
+	 * @throws IOException
+	 *             if reading the input fails
+	 */
+	private static void assertRecord(JvdTokenizer tokenizer, JvdTokenizer.Type type, long line, int... values)
+			throws IOException {
+		assertEquals(type, tokenizer.next());
+		assertEquals(line, tokenizer.getLine());
+		assertEquals(type.getValueCount(), values.length);
+		assertArrayEquals(values, Arrays.copyOf(tokenizer.getValues(), values.length));
+	}
+
+	/**
+	 * Checks that scanning the given input fails with the given message.
+	 *
+	 * @param jvd
+	 *            the input
+	 * @param message
+	 *            the expected message
+	 */
+	private static void assertError(String jvd, String message) {
+		assertError(new JvdTokenizer(stream(jvd)), message);
+	}
+
+	/**
+	 * Checks that scanning the input of the given tokenizer fails with the given
+	 * message.
+	 *
+	 * @param tokenizer
+	 *            the tokenizer
+	 * @param message
+	 *            the expected message
+	 */
+	private static void assertError(JvdTokenizer tokenizer, String message) {
+		try {
+			while (tokenizer.next() != null) {
+			}
+			fail("Expected an error: " + message);
+		} catch (ObjectModelException e) {
+			assertEquals(message, e.getMessage());
+		} catch (IOException e) {
+			throw new AssertionError(e);
+		}
+	}
+
+	/**
+	 * Creates a stream of the UTF-8 bytes of the given text.
+	 *
+	 * @param text
+	 *            the text
+	 * @return the stream
+	 */
+	private static InputStream stream(String text) {
+		return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * The stream returning a single byte per read and never reporting more
+	 * bytes as available.
+	 */
+	private static class TrickleInputStream extends ByteArrayInputStream {
+
+		/**
+		 * Instantiates a new stream of the UTF-8 bytes of the given text.
+		 *
+		 * @param text
+		 *            the text
+		 */
+		private TrickleInputStream(String text) {
+			super(text.getBytes(StandardCharsets.UTF_8));
+		}
+
+		/**
+		 * Reads a single byte into the given array.
+		 *
+		 * @param b
+		 *            the array
+		 * @param off
+		 *            the offset in the array
+		 * @param len
+		 *            the largest number of bytes to read
+		 * @return the number of bytes read, or -1 at the end of the stream
+		 */
+		@Override
+		public synchronized int read(byte[] b, int off, int len) {
+			return super.read(b, off, Math.min(len, 1));
+		}
+
+		/**
+		 * Reports no bytes as available, so that a channel reading this stream
+		 * returns after every single byte.
+		 *
+		 * @return 0
+		 */
+		@Override
+		public synchronized int available() {
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+
+/**
+ * The tests of JvdWriter and ParallelJvdWriter: whatever their buffer and
+ * shard sizes, they must write exactly the bytes GeometricalObjectSaver
+ * writes.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdWriterTest {
+
+	/** The number of random objects. */
+	private static final int OBJECTS = 5000;
+
+	/** The pool the shards are encoded on. */
+	private static ForkJoinPool pool;
+
+	/** The random objects. */
+	private static List<GeometricalObject> objects;
+
+	/** The JVD representation of the random objects. */
+	private static byte[] expected;
+
+	/** The folder the files are written to. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Creates the pool and the random objects.
+	 */
+	@BeforeClass
+	public static void setUp() {
+		pool = new ForkJoinPool(2);
+		objects = RandomObjects.create(42, OBJECTS);
+		expected = RandomObjects.toJvd(objects).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Shuts the pool down.
+	 */
+	@AfterClass
+	public static void tearDown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Tests that a file saved with the default buffer is identical.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testSave() throws IOException {
+		Path file = folder.newFile().toPath();
+		new JvdWriter().save(objects, file);
+
+		assertArrayEquals(expected, Files.readAllBytes(file));
+	}
+
+	/**
+	 * Tests that the output is identical when the buffer can hold only a single
+	 * record of the largest size, and that the writer can be reused.
+	 *
+	 * @throws IOException
+	 *             if writing to the channel fails
+	 */
+	@Test
+	public void testSmallBuffer() throws IOException {
+		JvdWriter writer = new JvdWriter(JvdWriter.MAX_RECORD_SIZE);
+
+		for (int i = 0; i < 2; i++) {
+			ByteArrayOutputStream stream = new ByteArrayOutputStream();
+			writer.write(objects, Channels.newChannel(stream));
+			assertArrayEquals(expected, stream.toByteArray());
+		}
+	}
+
+	/**
+	 * Tests that records of the largest size are identical.
+	 *
+	 * @throws IOException
+	 *             if writing to the channel fails
+	 */
+	@Test
+	public void testExtremeValues() throws IOException {
+		Point min = new Point(Integer.MIN_VALUE, Integer.MIN_VALUE);
+		Point max = new Point(Integer.MAX_VALUE, Integer.MAX_VALUE);
+		Color color = new Color(100, 200, 255);
+
+		//@formatter:off
+		List<GeometricalObject> extreme = Arrays.asList(
+				new Line(min, max, color),
+				new Line(max, min, Color.BLACK),
+				new Circle(min, new Point(min.x, min.y + 1000), color),
+				new FilledCircle(new Point(-1_000_000_000, -1_000_000_000), new Point(-1_000_000_000, 1_000_000_000),
+								 color, color));
+		//@formatter:on
+		byte[] extremeJvd = RandomObjects.toJvd(extreme).getBytes(StandardCharsets.UTF_8);
+
+		ByteArrayOutputStream stream = new ByteArrayOutputStream();
+		new JvdWriter(JvdWriter.MAX_RECORD_SIZE).write(extreme, Channels.newChannel(stream));
+		assertArrayEquals(extremeJvd, stream.toByteArray());
+	}
+
+	/**
+	 * Tests that ParallelJvdWriter writes identical files for shard sizes that
+	 * split the objects into many shards, into a few and into a single one,
+	 * whether they are encoded in parallel or not.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testParallel() throws IOException {
+		Path file = folder.newFile().toPath();
+
+		for (int shardSize : new int[] { 1, 7, 64, OBJECTS / ParallelJvdWriter.PARALLEL_THRESHOLD, OBJECTS,
+				ParallelJvdWriter.DEFAULT_SHARD_SIZE }) {
+			ParallelJvdWriter writer = new ParallelJvdWriter(pool, shardSize);
+			for (int i = 0; i < 2; i++) {
+				writer.save(objects, file);
+				assertArrayEquals("Shard size " + shardSize, expected, Files.readAllBytes(file));
+			}
+		}
+	}
+
+	/**
+	 * Tests that ParallelJvdWriter writes identical files for fewer objects than
+	 * it encodes in parallel, including none.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testParallelFewObjects() throws IOException {
+		Path file = folder.newFile().toPath();
+		ParallelJvdWriter writer = new ParallelJvdWriter(pool, 1);
+
+		for (int n = 0; n <= ParallelJvdWriter.PARALLEL_THRESHOLD + 1; n++) {
+			List<GeometricalObject> few = objects.subList(0, n);
+			writer.save(few, file);
+			assertArrayEquals(RandomObjects.toJvd(few).getBytes(StandardCharsets.UTF_8), Files.readAllBytes(file));
+		}
+
+		writer.save(Collections.emptyList(), file);
+		assertArrayEquals(new byte[0], Files.readAllBytes(file));
+	}
+
+	/**
+	 * Tests that ParallelJvdWriter writes an identical file from a snapshot of a
+	 * document, which holds copies of the objects.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the file fails
+	 */
+	@Test
+	public void testParallelSnapshot() throws IOException {
+		DocumentModel model = new DocumentModel();
+		model.replaceAll(RandomObjects.create(42, OBJECTS));
+
+		Path file = folder.newFile().toPath();
+		new ParallelJvdWriter(pool, 100).save(model.snapshot(), file);
+		assertArrayEquals(expected, Files.readAllBytes(file));
+	}
+}
@@ -0,0 +1,108 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+
+/**
+ * The tests of converting documents between the JVD and JVDB formats: a JVD
+ * file converted to JVDB and back must be unchanged, byte for byte.
+ *
+ * @author Damjan Vučina
+ */
+public class JvdbRoundTripTest {
+
+	/** The folder the files are written to. */
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	/**
+	 * Tests the round trip of random objects.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the files fails
+	 */
+	@Test
+	public void testRandomObjects() throws IOException {
+		assertRoundTrip(RandomObjects.toJvd(RandomObjects.create(42, 5000)), 5000);
+	}
+
+	/**
+	 * Tests the round trip of coordinates whose differences overflow an int.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the files fails
+	 */
+	@Test
+	public void testExtremeCoordinates() throws IOException {
+		//@formatter:off
+		String jvd = "LINE -2147483648 2147483647 2147483647 -2147483648 0 0 0\n"
+				   + "CIRCLE 2147483647 -2147483648 0 255 255 255\n"
+				   + "FCIRCLE -2147483648 2147483647 0 1 2 3 4 5 6\n"
+				   + "LINE 0 0 -2147483648 -2147483648 255 0 0\n";
+		//@formatter:on
+		assertRoundTrip(jvd, 4);
+	}
+
+	/**
+	 * Tests the round trip of an empty document.
+	 *
+	 * @throws IOException
+	 *             if writing or reading the files fails
+	 */
+	@Test
+	public void testEmpty() throws IOException {
+		assertRoundTrip("", 0);
+
+		JvdbSaver saver = new JvdbSaver();
+		JvdbReader reader = new JvdbReader(ByteBuffer.wrap(saver.getJVDB()));
+		assertEquals(0, reader.getCount());
+		assertTrue(reader.getBounds().isEmpty());
+		assertTrue(reader.readObjects().isEmpty());
+	}
+
+	/**
+	 * Converts the given JVD representation to JVDB and back, through files,
+	 * and checks that the result is unchanged.
+	 *
+	 * @param jvd
+	 *            the JVD representation
+	 * @param count
+	 *            the number of objects it holds
+	 * @throws IOException
+	 *             if writing or reading the files fails
+	 */
+	private void assertRoundTrip(String jvd, int count) throws IOException {
+		Path jvdFile = folder.newFile("document.jvd").toPath();
+		Path jvdbFile = folder.newFile("document.jvdb").toPath();
+		Path copy = folder.newFile("copy.jvd").toPath();
+		Files.write(jvdFile, jvd.getBytes(StandardCharsets.UTF_8));
+
+		JvdbSaver jvdbSaver = new JvdbSaver();
+		new JvdLoader().load(jvdFile).forEach(object -> object.accept(jvdbSaver));
+		jvdbSaver.save(jvdbFile);
+
+		List<GeometricalObject> objects = JvdbReader.load(jvdbFile);
+		assertEquals(count, objects.size());
+
+		GeometricalObjectSaver jvdSaver = new GeometricalObjectSaver();
+		objects.forEach(object -> object.accept(jvdSaver));
+		jvdSaver.save(copy);
+
+		assertArrayEquals(Files.readAllBytes(jvdFile), Files.readAllBytes(copy));
+	}
+}
@@ -0,0 +1,96 @@
+package hr.fer.zemris.java.hw16.jvdraw.io;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectSaver;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The helper class that creates random geometrical objects for the tests of
+ * the readers and writers of the document formats, and compares objects by
+ * their JVD representations, since the objects do not define equality.
+ *
+ * @author Damjan Vučina
+ */
+final class RandomObjects {
+
+	/** The largest absolute value of a generated coordinate. */
+	private static final int MAX_COORDINATE = 100_000;
+
+	/**
+	 * Instantiates a new random objects.
+	 */
+	private RandomObjects() {
+	}
+
+	/**
+	 * Creates random lines, circles and filled circles of random colors. The
+	 * coordinates may be negative and the objects may be large, so that the
+	 * records have all lengths the format allows in practice.
+	 *
+	 * @param seed
+	 *            the seed of the random generator
+	 * @param n
+	 *            the number of objects
+	 * @return the objects
+	 */
+	static List<GeometricalObject> create(long seed, int n) {
+		Random random = new Random(seed);
+		List<GeometricalObject> objects = new ArrayList<>(n);
+
+		for (int i = 0; i < n; i++) {
+			Point start = new Point(coordinate(random), coordinate(random));
+			Point end = new Point(start.x + random.nextInt(1000), start.y + random.nextInt(1000));
+			Color fg = new Color(random.nextInt(0x1000000));
+
+			switch (random.nextInt(3)) {
+			case 0:
+				objects.add(new Line(start, end, fg));
+				break;
+
+			case 1:
+				objects.add(new Circle(start, end, fg));
+				break;
+
+			default:
+				objects.add(new FilledCircle(start, end, fg, new Color(random.nextInt(0x1000000))));
+			}
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Gets the JVD representation of the given objects, as written by
+	 * GeometricalObjectSaver.
+	 *
+	 * @param objects
+	 *            the objects
+	 * @return the JVD representation
+	 */
+	static String toJvd(List<? extends GeometricalObject> objects) {
+		GeometricalObjectSaver saver = new GeometricalObjectSaver();
+		objects.forEach(object -> object.accept(saver));
+
+		return saver.getJVD();
+	}
+
+	/**
+	 * Creates a random coordinate, small most of the time.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @return the coordinate
+	 */
+	private static int coordinate(Random random) {
+		int bound = random.nextInt(4) == 0 ? MAX_COORDINATE : 2000;
+		return random.nextInt(2 * bound + 1) - bound;
+	}
+}
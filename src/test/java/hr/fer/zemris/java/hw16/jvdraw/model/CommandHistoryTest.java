@@ -0,0 +1,145 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The tests of CommandHistory: the oldest commands must be forgotten as soon
+ * as the estimated sizes of the stored ones exceed the memory budget, and the
+ * estimates of the commands of a DocumentModel must follow the number of
+ * objects they retain.
+ *
+ * @author Damjan Vučina
+ */
+public class CommandHistoryTest {
+
+	/**
+	 * Tests that recording commands beyond the budget forgets the oldest ones,
+	 * that undone commands count until they are forgotten, and that the most
+	 * recent command is kept even if it alone exceeds the budget.
+	 */
+	@Test
+	public void testBudgetEviction() {
+		List<String> log = new ArrayList<>();
+		CommandHistory history = new CommandHistory(100);
+
+		history.record(new Recorded("a", 40, log));
+		history.record(new Recorded("b", 40, log));
+		assertEquals(80, history.getMemoryUsage());
+
+		history.record(new Recorded("c", 40, log));
+		assertEquals(80, history.getMemoryUsage());
+		assertTrue(history.undo());
+		assertTrue(history.undo());
+		assertFalse(history.undo());
+		assertEquals("[undo c, undo b]", log.toString());
+		assertEquals(80, history.getMemoryUsage());
+
+		history.record(new Recorded("d", 10, log));
+		assertFalse(history.canRedo());
+		assertEquals(10, history.getMemoryUsage());
+
+		history.record(new Recorded("e", 500, log));
+		assertEquals(500, history.getMemoryUsage());
+		assertTrue(history.undo());
+		assertFalse(history.canUndo());
+
+		history.record(new Recorded("f", 60, log));
+		history.record(new Recorded("g", 30, log));
+		history.setMemoryBudget(50);
+		assertEquals(30, history.getMemoryUsage());
+		assertTrue(history.undo());
+		assertFalse(history.undo());
+		assertEquals("[undo c, undo b, undo e, undo g]", log.toString());
+	}
+
+	/**
+	 * Tests that the estimate of removed objects grows with their number and
+	 * the number of chunks they occupy, and that a budget fitting only some
+	 * removals keeps the most recent ones undoable.
+	 */
+	@Test
+	public void testRemovalEstimates() {
+		DocumentModel model = new DocumentModel();
+		for (int i = 0; i < 1000; i++) {
+			model.add(new Line(new Point(i, 0), new Point(i, 10), Color.BLACK));
+		}
+		CommandHistory history = model.getHistory();
+		history.clear();
+
+		model.remove(model.getObject(0));
+		long single = history.getMemoryUsage();
+		model.removeAll(model.getObjects().subList(0, 640));
+		long bulk = history.getMemoryUsage() - single;
+		assertTrue("Removing 640 objects should cost less than 640 single removals, was: " + bulk, bulk < 640 * single);
+		assertTrue("Removing 640 objects should cost more than a single removal, was: " + bulk, bulk > 10 * single);
+
+		history.clear();
+		history.setMemoryBudget(3 * single);
+		for (int i = 0; i < 10; i++) {
+			model.remove(model.getObject(0));
+		}
+		assertEquals(3 * single, history.getMemoryUsage());
+		assertEquals(349, model.getSize());
+
+		while (history.undo()) {
+		}
+		assertEquals(352, model.getSize());
+	}
+
+	/**
+	 * The command recording its undoing into a log, of a fixed estimated size.
+	 */
+	private static class Recorded implements CommandHistory.Command {
+
+		/** The name of the command. */
+		private final String name;
+
+		/** The estimated size of the command. */
+		private final long size;
+
+		/** The log. */
+		private final List<String> log;
+
+		/**
+		 * Instantiates a new recorded command.
+		 *
+		 * @param name
+		 *            the name of the command
+		 * @param size
+		 *            the estimated size of the command
+		 * @param log
+		 *            the log
+		 */
+		private Recorded(String name, long size, List<String> log) {
+			this.name = name;
+			this.size = size;
+			this.log = log;
+		}
+
+		@Override
+		public void undo() {
+			log.add("undo " + name);
+		}
+
+		@Override
+		public void redo() {
+			log.add("redo " + name);
+		}
+
+		@Override
+		public long estimateSize() {
+			return size;
+		}
+	}
+}
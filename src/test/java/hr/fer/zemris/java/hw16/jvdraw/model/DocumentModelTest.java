@@ -0,0 +1,506 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import static hr.fer.zemris.java.hw16.jvdraw.JVDraw.SHIFT_DOWN;
+import static hr.fer.zemris.java.hw16.jvdraw.JVDraw.SHIFT_UP;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The tests of DocumentModel: moving objects, undoing and redoing the moves,
+ * notifying the listeners of bulk operations by range events, and telling
+ * whether the content differs from the saved one by its digest.
+ *
+ * @author Damjan Vučina
+ */
+public class DocumentModelTest {
+
+	/**
+	 * Tests that moving a single object shifts the objects in between, and that
+	 * the move can be undone and redone.
+	 */
+	@Test
+	public void testMoveTo() {
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(10);
+		model.addAll(objects);
+		model.getHistory().clear();
+
+		model.moveTo(objects.get(3), 7);
+		assertOrder(model, objects, 0, 1, 2, 4, 5, 6, 7, 3, 8, 9);
+
+		model.moveTo(objects.get(8), 0);
+		assertOrder(model, objects, 8, 0, 1, 2, 4, 5, 6, 7, 3, 9);
+
+		assertTrue(model.getHistory().undo());
+		assertOrder(model, objects, 0, 1, 2, 4, 5, 6, 7, 3, 8, 9);
+		assertTrue(model.getHistory().undo());
+		assertOrder(model, objects, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+		assertFalse(model.getHistory().undo());
+
+		assertTrue(model.getHistory().redo());
+		assertTrue(model.getHistory().redo());
+		assertOrder(model, objects, 8, 0, 1, 2, 4, 5, 6, 7, 3, 9);
+		assertFalse(model.getHistory().redo());
+	}
+
+	/**
+	 * Tests that moving several objects places them next to each other in
+	 * their relative order, and that the move can be undone.
+	 */
+	@Test
+	public void testMoveAll() {
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(10);
+		model.addAll(objects);
+
+		model.moveAll(Arrays.asList(objects.get(8), objects.get(1), objects.get(4)), 2);
+		assertOrder(model, objects, 0, 2, 1, 4, 8, 3, 5, 6, 7, 9);
+
+		model.getHistory().undo();
+		assertOrder(model, objects, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+	}
+
+	/**
+	 * Tests bringing objects to the front, sending them to the back and
+	 * swapping neighbours.
+	 */
+	@Test
+	public void testReorder() {
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(5);
+		model.addAll(objects);
+
+		model.bringToFront(objects.get(1));
+		assertOrder(model, objects, 0, 2, 3, 4, 1);
+		model.sendToBack(objects.get(3));
+		assertOrder(model, objects, 3, 0, 2, 4, 1);
+		model.changeOrder(objects.get(2), SHIFT_DOWN);
+		assertOrder(model, objects, 3, 2, 0, 4, 1);
+		model.changeOrder(objects.get(1), SHIFT_UP);
+		assertOrder(model, objects, 3, 2, 0, 4, 1);
+
+		model.getHistory().undo();
+		assertOrder(model, objects, 3, 0, 2, 4, 1);
+	}
+
+	/**
+	 * Tests that a removal is undone by putting the object back at its
+	 * position.
+	 */
+	@Test
+	public void testRemoveUndo() {
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(10);
+		model.addAll(objects);
+
+		model.remove(objects.get(5));
+		assertEquals(9, model.getSize());
+		assertEquals(-1, model.indexOf(objects.get(5)));
+
+		model.getHistory().undo();
+		assertOrder(model, objects, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+		assertEquals(objects.get(5), model.getObject(5));
+	}
+
+	/**
+	 * Tests that the bulk operations notify the listeners by range events: a
+	 * single one for adding and clearing, one per contiguous run for removing,
+	 * from the last run to the first, and one removal followed by one addition
+	 * for replacing the content.
+	 */
+	@Test
+	public void testBulkEvents() {
+		DocumentModel model = new DocumentModel();
+		List<String> events = new ArrayList<>();
+		model.addDrawingModelListener(new RangeRecorder(events));
+
+		List<GeometricalObject> objects = lines(6);
+		model.addAll(objects);
+		assertEquals(Collections.singletonList("added 0 5"), events);
+
+		events.clear();
+		model.removeAll(Arrays.asList(objects.get(4), objects.get(1), line(7), objects.get(2)));
+		assertEquals(Arrays.asList("removed 4 4", "removed 1 2"), events);
+		assertOrder(model, objects, 0, 3, 5);
+
+		events.clear();
+		model.removeAll(Collections.singletonList(objects.get(1)));
+		model.addAll(Collections.emptyList());
+		assertTrue(events.isEmpty());
+
+		List<GeometricalObject> replacement = lines(2);
+		model.replaceAll(replacement);
+		assertEquals(Arrays.asList("removed 0 2", "added 0 1"), events);
+		assertEquals(replacement.get(1), model.getObject(1));
+
+		events.clear();
+		model.clear();
+		model.clear();
+		assertEquals(Collections.singletonList("removed 0 1"), events);
+		assertEquals(0, model.getSize());
+
+		model.getHistory().undo();
+		model.getHistory().undo();
+		assertOrder(model, objects, 0, 3, 5);
+	}
+
+	/**
+	 * Tests that the model hands out new views of the stored objects, which
+	 * keep the alpha of the colors, and that an edit made through a view is
+	 * stored and can be undone.
+	 */
+	@Test
+	public void testViews() {
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(3);
+		objects.set(2, new Line(new Point(1, 1), new Point(2, 2), new Color(0x40123456, true)));
+		model.addAll(objects);
+
+		GeometricalObject view = model.getObject(1);
+		assertNotSame(view, model.getObject(1));
+		assertEquals(objects.get(1), view);
+		assertEquals(1, model.indexOf(view));
+		assertEquals(0x40123456, model.getObject(2).getFgColor().getRGB());
+
+		model.commitEdit(view, () -> {
+			view.setEndPoint(new Point(-7, 7));
+			view.notifyListeners();
+		});
+		assertEquals(new Point(-7, 7), model.getObject(1).getEndPoint());
+
+		model.getHistory().undo();
+		assertEquals(new Point(1, 2), model.getObject(1).getEndPoint());
+		model.getHistory().redo();
+		assertEquals(new Point(-7, 7), model.getObjects().get(1).getEndPoint());
+	}
+
+	/**
+	 * Tests a long random sequence of moves, undos and redos against a list,
+	 * including many moves to the same position, which use up the order labels
+	 * there and force relabeling.
+	 */
+	@Test
+	public void testRandomMoves() {
+		Random random = new Random(42);
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(50);
+		model.addAll(objects);
+		model.getHistory().clear();
+
+		List<GeometricalObject> expected = new ArrayList<>(objects);
+		Deque<List<GeometricalObject>> undone = new ArrayDeque<>();
+		Deque<List<GeometricalObject>> done = new ArrayDeque<>();
+
+		for (int step = 0; step < 5000; step++) {
+			int operation = random.nextInt(10);
+			if (operation == 0 && !done.isEmpty()) {
+				undone.push(expected);
+				expected = done.pop();
+				assertTrue(model.getHistory().undo());
+
+			} else if (operation == 1 && !undone.isEmpty()) {
+				done.push(expected);
+				expected = undone.pop();
+				assertTrue(model.getHistory().redo());
+
+			} else {
+				List<GeometricalObject> moved = new ArrayList<>();
+				for (int i = random.nextInt(3); i >= 0; i--) {
+					GeometricalObject object = expected.get(random.nextInt(expected.size()));
+					if (!moved.contains(object)) {
+						moved.add(object);
+					}
+				}
+				int index = random.nextBoolean() ? 1 : random.nextInt(expected.size() - moved.size() + 1);
+
+				List<GeometricalObject> current = expected;
+				List<GeometricalObject> next = new ArrayList<>(current);
+				next.removeAll(moved);
+				moved.sort((a, b) -> Integer.compare(current.indexOf(a), current.indexOf(b)));
+				next.addAll(index, moved);
+
+				model.moveAll(moved, index);
+				if (!next.equals(expected)) {
+					done.push(expected);
+					undone.clear();
+					expected = next;
+				}
+			}
+
+			assertEquals("Step " + step, expected, model.getObjects());
+		}
+	}
+
+	/**
+	 * Tests that the document is modified after edits and unmodified again once
+	 * they are undone or reverted, relative to the content last marked saved.
+	 */
+	@Test
+	public void testModified() {
+		DocumentModel model = new DocumentModel();
+		assertFalse(model.isModified());
+
+		List<GeometricalObject> objects = lines(3);
+		model.addAll(objects);
+		assertTrue(model.isModified());
+		model.markSaved();
+		assertFalse(model.isModified());
+
+		GeometricalObject line = objects.get(1);
+		model.commitEdit(line, () -> {
+			line.setEndPoint(new Point(-7, 7));
+			line.notifyListeners();
+		});
+		assertTrue(model.isModified());
+		model.getHistory().undo();
+		assertFalse(model.isModified());
+		model.getHistory().redo();
+		assertTrue(model.isModified());
+		model.getHistory().undo();
+		assertFalse(model.isModified());
+
+		model.moveTo(objects.get(0), 2);
+		assertTrue(model.isModified());
+		model.moveTo(objects.get(0), 0);
+		assertFalse(model.isModified());
+
+		model.recolor(Color.BLACK, Color.RED);
+		assertTrue(model.isModified());
+		model.recolor(Color.RED, Color.BLACK);
+		assertFalse(model.isModified());
+
+		model.remove(objects.get(2));
+		assertTrue(model.isModified());
+		model.getHistory().undo();
+		assertFalse(model.isModified());
+	}
+
+	/**
+	 * Tests that documents with equal content have equal digests, whichever
+	 * way they were created.
+	 */
+	@Test
+	public void testDigest() {
+		DocumentModel built = new DocumentModel();
+		built.addAll(Arrays.asList(line(1), circle(2), filledCircle(3)));
+
+		DocumentModel added = new DocumentModel();
+		added.add(filledCircle(3));
+		added.add(line(1));
+		added.add(circle(2));
+		assertFalse(built.getDigest() == added.getDigest());
+
+		added.bringToFront(added.getObject(0));
+		assertEquals(built.getDigest(), added.getDigest());
+
+		added.clear();
+		assertEquals(new DocumentModel().getDigest(), added.getDigest());
+	}
+
+	/**
+	 * Tests that recoloring changes the palette only: listeners receive a
+	 * single palette change instead of changed objects, snapshots taken before
+	 * keep the old colors, and the used colors are known without the removed
+	 * objects.
+	 */
+	@Test
+	public void testRecolor() {
+		DocumentModel model = new DocumentModel();
+		model.addAll(Arrays.asList(line(1), filledCircle(2), new Line(new Point(0, 0), new Point(3, 3), Color.BLUE)));
+		model.getHistory().clear();
+		model.markSaved();
+
+		List<String> events = new ArrayList<>();
+		model.addDrawingModelListener(new SynchronousDrawingModelListener() {
+
+			@Override
+			public void objectsAdded(DrawingModel source, int index0, int index1) {
+				events.add("added");
+			}
+
+			@Override
+			public void objectsRemoved(DrawingModel source, int index0, int index1) {
+				events.add("removed");
+			}
+
+			@Override
+			public void objectsChanged(DrawingModel source, int index0, int index1) {
+				events.add("changed");
+			}
+
+			@Override
+			public void paletteChanged(DrawingModel source) {
+				events.add("palette");
+			}
+		});
+
+		DocumentSnapshot before = model.snapshot();
+		assertEquals(Arrays.asList(Color.BLACK, Color.WHITE, Color.BLUE), model.getColors());
+
+		model.recolor(Color.BLACK, Color.RED);
+		DocumentSnapshot after = model.snapshot();
+		assertEquals(Collections.singletonList("palette"), events);
+		assertEquals(Arrays.asList(Color.RED, Color.WHITE, Color.BLUE), model.getColors());
+		assertEquals(Color.RED, after.get(1).getFgColor());
+		assertEquals(Color.RED, model.getObject(1).getFgColor());
+		assertEquals(Color.BLACK, before.get(1).getFgColor());
+		assertEquals(Color.WHITE, ((FilledCircle) before.get(1)).getBgColor());
+		assertTrue(model.isModified());
+
+		model.getHistory().undo();
+		assertEquals(Color.BLACK, model.snapshot().get(0).getFgColor());
+		assertEquals(Color.RED, after.get(0).getFgColor());
+		assertFalse(model.isModified());
+
+		model.remove(model.getObject(2));
+		assertEquals(Arrays.asList(Color.BLACK, Color.WHITE), model.getColors());
+		model.getHistory().undo();
+		assertEquals(Arrays.asList(Color.BLACK, Color.WHITE, Color.BLUE), model.getColors());
+		assertFalse(model.isModified());
+	}
+
+	/**
+	 * Tests that a snapshot keeps describing the objects as they were when it
+	 * was taken.
+	 */
+	@Test
+	public void testSnapshot() {
+		DocumentModel model = new DocumentModel();
+		List<GeometricalObject> objects = lines(3);
+		model.addAll(objects);
+		DocumentSnapshot snapshot = model.snapshot();
+
+		GeometricalObject line = objects.get(1);
+		line.setEndPoint(new Point(-7, 7));
+		line.notifyListeners();
+		model.remove(objects.get(0));
+
+		assertEquals(3, snapshot.size());
+		assertEquals(new Point(1, 2), snapshot.get(1).getEndPoint());
+		assertEquals(new Point(-7, 7), model.snapshot().get(0).getEndPoint());
+	}
+
+	/**
+	 * Checks that the model holds the given objects in the given order.
+	 *
+	 * @param model
+	 *            the model
+	 * @param objects
+	 *            the objects
+	 * @param order
+	 *            the indices of the objects, in the expected drawing order
+	 */
+	private static void assertOrder(DocumentModel model, List<GeometricalObject> objects, int... order) {
+		List<GeometricalObject> expected = new ArrayList<>();
+		for (int index : order) {
+			expected.add(objects.get(index));
+		}
+
+		assertEquals(expected, model.getObjects());
+		for (int i = 0; i < order.length; i++) {
+			assertEquals(i, model.indexOf(expected.get(i)));
+		}
+	}
+
+	/**
+	 * Creates the given number of distinct black lines.
+	 *
+	 * @param n
+	 *            the number of lines
+	 * @return the lines
+	 */
+	private static List<GeometricalObject> lines(int n) {
+		List<GeometricalObject> lines = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			lines.add(line(i));
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Creates a black line ending at a point given by the given number.
+	 *
+	 * @param i
+	 *            the number
+	 * @return the line
+	 */
+	private static GeometricalObject line(int i) {
+		return new Line(new Point(0, 0), new Point(i, 2 * i), Color.BLACK);
+	}
+
+	/**
+	 * Creates a black circle with the radius given by the given number.
+	 *
+	 * @param i
+	 *            the number
+	 * @return the circle
+	 */
+	private static GeometricalObject circle(int i) {
+		return new Circle(new Point(0, 0), new Point(0, i), Color.BLACK);
+	}
+
+	/**
+	 * Creates a black filled circle with the radius given by the given number.
+	 *
+	 * @param i
+	 *            the number
+	 * @return the filled circle
+	 */
+	private static GeometricalObject filledCircle(int i) {
+		return new FilledCircle(new Point(0, 0), new Point(0, i), Color.BLACK, Color.WHITE);
+	}
+
+	/**
+	 * The listener recording the ranges of the events it receives as strings.
+	 */
+	private static class RangeRecorder implements SynchronousDrawingModelListener {
+
+		/** The list the events are recorded into. */
+		private final List<String> events;
+
+		/**
+		 * Instantiates a new recorder.
+		 *
+		 * @param events
+		 *            the list the events are recorded into
+		 */
+		private RangeRecorder(List<String> events) {
+			this.events = events;
+		}
+
+		@Override
+		public void objectsAdded(DrawingModel source, int index0, int index1) {
+			events.add("added " + index0 + " " + index1);
+		}
+
+		@Override
+		public void objectsRemoved(DrawingModel source, int index0, int index1) {
+			events.add("removed " + index0 + " " + index1);
+		}
+
+		@Override
+		public void objectsChanged(DrawingModel source, int index0, int index1) {
+			events.add("changed " + index0 + " " + index1);
+		}
+	}
+}
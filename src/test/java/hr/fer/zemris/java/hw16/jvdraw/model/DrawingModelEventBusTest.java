@@ -0,0 +1,396 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.function.Function;
+
+import javax.swing.SwingUtilities;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The tests of DrawingModelEventBus: the batched listeners must receive the
+ * events merged by the documented rules, each with the state its range refers
+ * to, while the synchronous listeners receive every event immediately.
+ *
+ * @author Damjan Vučina
+ */
+public class DrawingModelEventBusTest {
+
+	/** The model whose changes are delivered. */
+	private DocumentModel source;
+
+	/** The states handed out by the bus, in the order they were captured. */
+	private List<DrawingModel> states;
+
+	/** The events received by the batched listener. */
+	private List<String> batched;
+
+	/** The events received by the synchronous listener. */
+	private List<String> synchronous;
+
+	/** The tested bus. */
+	private DrawingModelEventBus bus;
+
+	/**
+	 * Creates the bus with a batched and a synchronous listener, and a supplier
+	 * of states that are told apart by the order they were captured in.
+	 */
+	@Before
+	public void setUp() {
+		source = new DocumentModel();
+		states = new ArrayList<>();
+		batched = new ArrayList<>();
+		synchronous = new ArrayList<>();
+
+		//@formatter:off
+		List<DrawingModelListener> listeners = Arrays.asList(
+				new Recorder(batched, state -> "s" + indexOf(state)),
+				new SynchronousRecorder(synchronous, state -> state == source ? "source" : "s" + indexOf(state)));
+		//@formatter:on
+		bus = new DrawingModelEventBus(source, listeners, () -> {
+			DocumentModel state = new DocumentModel();
+			states.add(state);
+			return state;
+		});
+	}
+
+	/**
+	 * Tests that additions extending or falling inside the added range are
+	 * merged, keeping the last state.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testAddedMerged() throws Exception {
+		onEventThread(() -> {
+			bus.fireObjectsAdded(0, 0);
+			bus.fireObjectsAdded(1, 1);
+			bus.fireObjectsAdded(2, 3);
+			bus.fireObjectsAdded(0, 0);
+			bus.fireObjectsAdded(10, 10);
+			bus.flush();
+		});
+
+		assertEquals(Arrays.asList("added 0 4 s3", "added 10 10 s4"), batched);
+	}
+
+	/**
+	 * Tests that removals of the objects just before or just after the removed
+	 * range are merged, keeping the first state.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testRemovedMerged() throws Exception {
+		onEventThread(() -> {
+			bus.fireObjectsRemoved(5, 5);
+			bus.fireObjectsRemoved(4, 4);
+			bus.fireObjectsRemoved(4, 5);
+			bus.fireObjectsRemoved(0, 0);
+			bus.flush();
+		});
+
+		assertEquals(Arrays.asList("removed 4 7 s0", "removed 0 0 s3"), batched);
+	}
+
+	/**
+	 * Tests that changed ranges overlapping or touching any of the trailing
+	 * changed ranges are merged with them, keeping the last state.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testChangedMerged() throws Exception {
+		onEventThread(() -> {
+			bus.fireObjectsChanged(1, 2);
+			bus.fireObjectsChanged(3, 3);
+			bus.fireObjectsChanged(10, 10);
+			bus.fireObjectsChanged(0, 0);
+			bus.flush();
+		});
+
+		assertEquals(Arrays.asList("changed 10 10 s2", "changed 0 3 s3"), batched);
+	}
+
+	/**
+	 * Tests that changes are not merged across additions or removals, and that
+	 * additions and removals are not merged with each other.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testNotMergedAcrossStructuralChanges() throws Exception {
+		onEventThread(() -> {
+			bus.fireObjectsChanged(1, 1);
+			bus.fireObjectsAdded(5, 5);
+			bus.fireObjectsChanged(1, 1);
+			bus.fireObjectsRemoved(5, 5);
+			bus.fireObjectsAdded(5, 5);
+			bus.flush();
+		});
+
+		//@formatter:off
+		assertEquals(Arrays.asList(
+				"changed 1 1 s0",
+				"added 5 5 s1",
+				"changed 1 1 s2",
+				"removed 5 5 s3",
+				"added 5 5 s4"), batched);
+		//@formatter:on
+	}
+
+	/**
+	 * Tests that consecutive palette changes are merged, keeping the last
+	 * state, and that changed ranges are not merged across them.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testPaletteMerged() throws Exception {
+		onEventThread(() -> {
+			bus.fireObjectsChanged(1, 1);
+			bus.firePaletteChanged();
+			bus.firePaletteChanged();
+			bus.fireObjectsChanged(1, 1);
+			bus.firePaletteChanged();
+			bus.flush();
+		});
+
+		//@formatter:off
+		assertEquals(Arrays.asList(
+				"changed 1 1 s0",
+				"palette -1 -1 s2",
+				"changed 1 1 s3",
+				"palette -1 -1 s4"), batched);
+		//@formatter:on
+		assertEquals(5, synchronous.size());
+	}
+
+	/**
+	 * Tests that the synchronous listener receives every event immediately,
+	 * with the model itself as the source, while the batched listener receives
+	 * nothing before the flush and nothing twice.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testSynchronous() throws Exception {
+		onEventThread(() -> {
+			bus.fireObjectsAdded(0, 0);
+			bus.fireObjectsAdded(1, 1);
+			assertEquals(Arrays.asList("added 0 0 source", "added 1 1 source"), synchronous);
+			assertTrue(batched.isEmpty());
+
+			bus.flush();
+			bus.flush();
+		});
+		onEventThread(() -> {
+		});
+
+		assertEquals(Collections.singletonList("added 0 1 s1"), batched);
+		assertEquals(2, synchronous.size());
+	}
+
+	/**
+	 * Tests that the batched listeners of a document model receive the states
+	 * of the document at the time of the events: the state after additions and
+	 * the state before removals.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be fired on the event dispatch thread
+	 */
+	@Test
+	public void testDocumentStates() throws Exception {
+		DocumentModel model = new DocumentModel();
+		List<String> received = new ArrayList<>();
+		model.addDrawingModelListener(new Recorder(received, state -> "size " + state.getSize()));
+
+		onEventThread(() -> {
+			List<GeometricalObject> lines = new ArrayList<>();
+			for (int i = 0; i < 3; i++) {
+				lines.add(new Line(new Point(0, 0), new Point(i, i), Color.BLACK));
+				model.add(lines.get(i));
+			}
+			model.remove(lines.get(1));
+			model.flushEvents();
+		});
+
+		assertEquals(Arrays.asList("added 0 2 size 3", "removed 1 1 size 3"), received);
+	}
+
+	/**
+	 * Tests that events fired concurrently on several threads, while the event
+	 * dispatch thread delivers batches, are all delivered exactly once.
+	 *
+	 * @throws Exception
+	 *             if the events cannot be delivered on the event dispatch
+	 *             thread
+	 */
+	@Test
+	public void testConcurrentFiring() throws Exception {
+		int threadCount = 4;
+		int eventCount = 2000;
+		List<String> received = Collections.synchronizedList(new ArrayList<>());
+		DrawingModelEventBus concurrent = new DrawingModelEventBus(source,
+				Collections.singletonList(new Recorder(received, state -> "")), () -> source);
+
+		List<Thread> threads = new ArrayList<>();
+		for (int t = 0; t < threadCount; t++) {
+			int first = t * 10 * eventCount;
+			threads.add(new Thread(() -> {
+				for (int i = 0; i < eventCount; i++) {
+					concurrent.fireObjectsChanged(first + 2 * i, first + 2 * i);
+					if (i % 100 == 0) {
+						concurrent.flush();
+					}
+				}
+			}));
+		}
+		for (Thread thread : threads) {
+			thread.start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		onEventThread(concurrent::flush);
+
+		assertEquals(threadCount * eventCount, received.size());
+		assertEquals(received.size(), new HashSet<>(received).size());
+	}
+
+	/**
+	 * Gets the position of the given state among the captured ones.
+	 *
+	 * @param state
+	 *            the state
+	 * @return the position, or -1 if the state was not captured by the bus
+	 */
+	private int indexOf(DrawingModel state) {
+		for (int i = 0; i < states.size(); i++) {
+			if (states.get(i) == state) {
+				return i;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * Runs the given action on the event dispatch thread and waits for it, so
+	 * it does not race with the delivery the bus schedules there.
+	 *
+	 * @param action
+	 *            the action
+	 * @throws Exception
+	 *             if the action fails or the thread is interrupted
+	 */
+	private static void onEventThread(Runnable action) throws Exception {
+		try {
+			SwingUtilities.invokeAndWait(action);
+		} catch (InvocationTargetException e) {
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+	}
+
+	/**
+	 * The listener recording the events it receives as strings.
+	 */
+	private static class Recorder implements DrawingModelListener {
+
+		/** The list the events are recorded into. */
+		private final List<String> events;
+
+		/** The function describing the source of an event. */
+		private final Function<DrawingModel, String> describer;
+
+		/**
+		 * Instantiates a new recorder.
+		 *
+		 * @param events
+		 *            the list the events are recorded into
+		 * @param describer
+		 *            the function describing the source of an event
+		 */
+		private Recorder(List<String> events, Function<DrawingModel, String> describer) {
+			this.events = events;
+			this.describer = describer;
+		}
+
+		@Override
+		public void objectsAdded(DrawingModel source, int index0, int index1) {
+			record("added", source, index0, index1);
+		}
+
+		@Override
+		public void objectsRemoved(DrawingModel source, int index0, int index1) {
+			record("removed", source, index0, index1);
+		}
+
+		@Override
+		public void objectsChanged(DrawingModel source, int index0, int index1) {
+			record("changed", source, index0, index1);
+		}
+
+		@Override
+		public void paletteChanged(DrawingModel source) {
+			record("palette", source, -1, -1);
+		}
+
+		/**
+		 * Records an event.
+		 *
+		 * @param kind
+		 *            the kind of the event
+		 * @param source
+		 *            the source of the event
+		 * @param index0
+		 *            the starting index of the range
+		 * @param index1
+		 *            the ending index of the range
+		 */
+		private void record(String kind, DrawingModel source, int index0, int index1) {
+			events.add(kind + " " + index0 + " " + index1 + " " + describer.apply(source));
+		}
+	}
+
+	/**
+	 * The recorder receiving the events immediately.
+	 */
+	private static class SynchronousRecorder extends Recorder implements SynchronousDrawingModelListener {
+
+		/**
+		 * Instantiates a new synchronous recorder.
+		 *
+		 * @param events
+		 *            the list the events are recorded into
+		 * @param describer
+		 *            the function describing the source of an event
+		 */
+		private SynchronousRecorder(List<String> events, Function<DrawingModel, String> describer) {
+			super(events, describer);
+		}
+	}
+}
@@ -0,0 +1,55 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The tests of LongLongMap: a long random sequence of insertions and removals,
+ * which makes the map grow and shift keys back over removed ones, must keep
+ * it equal to a HashMap.
+ *
+ * @author Damjan Vučina
+ */
+public class LongLongMapTest {
+
+	/**
+	 * Tests random operations against a HashMap.
+	 */
+	@Test
+	public void testRandomOperations() {
+		Random random = new Random(42);
+		LongLongMap map = new LongLongMap();
+		Map<Long, Long> expected = new HashMap<>();
+
+		for (int step = 0; step < 100_000; step++) {
+			long key = 1 + random.nextInt(2000);
+			if (random.nextInt(3) == 0) {
+				assertEquals(valueOf(expected.remove(key)), map.remove(key));
+			} else {
+				assertEquals(valueOf(expected.put(key, (long) step)), map.put(key, step));
+			}
+			assertEquals(expected.size(), map.size());
+		}
+
+		for (long key = 1; key <= 2000; key++) {
+			assertEquals(valueOf(expected.get(key)), map.get(key));
+		}
+	}
+
+	/**
+	 * Converts the given value returned by a HashMap to the one LongLongMap
+	 * returns.
+	 *
+	 * @param value
+	 *            the value, may be null
+	 * @return the value, or MISSING if it is null
+	 */
+	private static long valueOf(Long value) {
+		return value == null ? LongLongMap.MISSING : value;
+	}
+}
@@ -0,0 +1,388 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The tests of ObjectTree: splitting, merging, ranking and replacing must keep
+ * the treap of chunks ordered by labels, with valid subtree sizes and heap
+ * priorities, and must never change a tree captured before.
+ *
+ * @author Damjan Vučina
+ */
+public class ObjectTreeTest {
+
+	/** The number of objects in the tested trees. */
+	private static final int SIZE = 1000;
+
+	/** The distance between the labels of neighbouring objects. */
+	private static final long GAP = 100;
+
+	/** The palette holding the colors of the tested objects. */
+	private static final ColorPalette PALETTE = new ColorPalette();
+
+	/**
+	 * Tests that a built tree is a valid treap that finds every object by its
+	 * position and label, and that only colors held by palette entries are
+	 * stored.
+	 */
+	@Test
+	public void testBuild() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+
+		assertValid(root);
+		assertEquals(SIZE, ObjectTree.size(root));
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(objects.get(i), ObjectTree.valueAt(root, i, PALETTE));
+			assertEquals(objects.get(i), ObjectTree.findShape(root, label(i)));
+			assertEquals(objects.get(i).getId(), ObjectTree.idAt(root, i));
+			assertEquals(label(i), ObjectTree.labelAt(root, i));
+		}
+		assertEquals(label(0), ObjectTree.firstLabel(root));
+		assertEquals(label(SIZE - 1), ObjectTree.lastLabel(root));
+		assertNull(ObjectTree.findShape(root, label(3) + 1));
+
+		List<GeometricalObject> detached = new ArrayList<>();
+		detached.add(new Line(new Point(0, 0), new Point(1, 1), Color.RED));
+		try {
+			ObjectTree.build(detached, labels(1));
+			fail("Detached colors must be rejected.");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	/**
+	 * Tests that the rank of a label is the number of smaller labels, whether
+	 * the label is present or not.
+	 */
+	@Test
+	public void testRank() {
+		ObjectTree.Node root = ObjectTree.build(lines(SIZE), labels(SIZE));
+
+		for (int i = 0; i < SIZE; i++) {
+			assertEquals(i, ObjectTree.rank(root, label(i)));
+			assertEquals(i + 1, ObjectTree.rank(root, label(i) + 1));
+		}
+		assertEquals(0, ObjectTree.rank(root, Long.MIN_VALUE));
+		assertEquals(SIZE, ObjectTree.rank(root, Long.MAX_VALUE));
+		assertEquals(0, ObjectTree.rank(null, 42));
+	}
+
+	/**
+	 * Tests that splitting at every label yields the smaller and the remaining
+	 * labels, that merging the parts restores the order, and that the split
+	 * tree is left unchanged.
+	 */
+	@Test
+	public void testSplitAndMerge() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+		long digest = ObjectTree.digest(root);
+
+		for (int i = 0; i <= SIZE; i += 37) {
+			ObjectTree.Node[] parts = ObjectTree.split(root, label(i));
+			assertValid(parts[0]);
+			assertValid(parts[1]);
+			assertEquals(objects.subList(0, i), objectsOf(parts[0]));
+			assertEquals(objects.subList(i, SIZE), objectsOf(parts[1]));
+
+			ObjectTree.Node merged = ObjectTree.merge(parts[0], parts[1]);
+			assertValid(merged);
+			assertEquals(objects, objectsOf(merged));
+			assertEquals(digest, ObjectTree.digest(merged));
+		}
+
+		assertValid(root);
+		assertEquals(objects, objectsOf(root));
+	}
+
+	/**
+	 * Tests that inserting and deleting keep the treap valid and leave earlier
+	 * roots unchanged.
+	 */
+	@Test
+	public void testInsertAndDelete() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+
+		GeometricalObject inserted = line(-1);
+		ObjectTree.Node withInserted = ObjectTree.insert(root, label(500) + 1, inserted);
+		assertValid(withInserted);
+		assertEquals(SIZE + 1, ObjectTree.size(withInserted));
+		assertEquals(inserted, ObjectTree.valueAt(withInserted, 501, PALETTE));
+
+		ObjectTree.Node withoutInserted = ObjectTree.delete(withInserted, label(500) + 1);
+		assertValid(withoutInserted);
+		assertEquals(objects, objectsOf(withoutInserted));
+		assertEquals(ObjectTree.digest(root), ObjectTree.digest(withoutInserted));
+
+		assertEquals(objects, objectsOf(root));
+		assertEquals(SIZE + 1, ObjectTree.size(withInserted));
+	}
+
+	/**
+	 * Tests that replacing an object stores its new state in the new tree,
+	 * changing the digest, while the earlier tree keeps the old state.
+	 */
+	@Test
+	public void testReplace() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+		long digest = ObjectTree.digest(root);
+
+		GeometricalObject edited = objects.get(123);
+		Point oldEnd = edited.getEndPoint();
+		edited.setEndPoint(new Point(-5, -5));
+		ObjectTree.Node replaced = ObjectTree.replace(root, label(123), edited);
+
+		assertValid(replaced);
+		assertEquals(new Point(-5, -5), ObjectTree.valueAt(replaced, 123, PALETTE).getEndPoint());
+		assertEquals(oldEnd, ObjectTree.valueAt(root, 123, PALETTE).getEndPoint());
+		assertNotSame(ObjectTree.valueAt(root, 123, PALETTE), ObjectTree.valueAt(root, 123, PALETTE));
+		assertNotEquals(digest, ObjectTree.digest(replaced));
+
+		edited.setEndPoint(oldEnd);
+		ObjectTree.Node restored = ObjectTree.replace(replaced, label(123), edited);
+		assertEquals(digest, ObjectTree.digest(restored));
+	}
+
+	/**
+	 * Tests that the digest depends on the content and order only, not on how
+	 * the tree was built.
+	 */
+	@Test
+	public void testDigest() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node built = ObjectTree.build(objects, labels(SIZE));
+
+		ObjectTree.Node inserted = null;
+		for (int i = SIZE - 1; i >= 0; i--) {
+			inserted = ObjectTree.insert(inserted, label(i), objects.get(i));
+		}
+		assertValid(inserted);
+		assertEquals(ObjectTree.digest(built), ObjectTree.digest(inserted));
+
+		ObjectTree.Node swapped = ObjectTree.replace(built, label(0), objects.get(1));
+		swapped = ObjectTree.replace(swapped, label(1), objects.get(0));
+		assertNotEquals(ObjectTree.digest(built), ObjectTree.digest(swapped));
+	}
+
+	/**
+	 * Tests that the values stored under sorted labels are collected in one
+	 * pass, in the order of the labels.
+	 */
+	@Test
+	public void testValues() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+
+		long[] labels = { label(0), label(1), label(17), label(500), label(SIZE - 1) };
+		List<GeometricalObject> found = new ArrayList<>();
+		ObjectTree.values(root, labels, 0, labels.length, PALETTE.colors(), found);
+
+		assertEquals(labels.length, found.size());
+		for (int i = 0; i < labels.length; i++) {
+			GeometricalObject expected = objects.get((int) (labels[i] / GAP));
+			assertEquals(expected.getEndPoint(), found.get(i).getEndPoint());
+		}
+	}
+
+	/**
+	 * Tests that splitting a tree into single objects and merging them back one
+	 * by one joins them into full chunks again, instead of leaving a chunk per
+	 * object.
+	 */
+	@Test
+	public void testMergeJoinsChunks() {
+		List<GeometricalObject> objects = lines(SIZE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+
+		ObjectTree.Node merged = null;
+		ObjectTree.Node rest = root;
+		for (int i = 1; i <= SIZE; i++) {
+			ObjectTree.Node[] parts = ObjectTree.split(rest, label(i));
+			merged = ObjectTree.merge(merged, parts[0]);
+			rest = parts[1];
+		}
+
+		assertValid(merged);
+		assertEquals(objects, objectsOf(merged));
+		assertEquals(ObjectTree.digest(root), ObjectTree.digest(merged));
+		assertTrue(chunksOf(merged) <= (SIZE + ObjectChunk.CAPACITY - 1) / ObjectChunk.CAPACITY);
+	}
+
+	/**
+	 * Tests that relabeling keeps the objects and their order, and that the
+	 * values created from the rows keep the ids and the alpha of the colors.
+	 */
+	@Test
+	public void testRelabelKeepsRows() {
+		List<GeometricalObject> objects = lines(SIZE);
+		objects.set(7, new Line(new Point(1, 2), new Point(3, 4), new Color(0x80FF0000, true)));
+		objects.get(7).setPalette(PALETTE);
+		ObjectTree.Node root = ObjectTree.build(objects, labels(SIZE));
+
+		long[] newLabels = new long[SIZE];
+		for (int i = 0; i < SIZE; i++) {
+			newLabels[i] = 3 * i + 1;
+		}
+		ObjectTree.Node relabeled = ObjectTree.relabel(root, newLabels);
+
+		assertValid(relabeled);
+		assertEquals(chunksOf(root), chunksOf(relabeled));
+		assertEquals(objects, objectsOf(relabeled));
+		assertEquals(ObjectTree.digest(root), ObjectTree.digest(relabeled));
+		assertEquals(newLabels[SIZE - 1], ObjectTree.lastLabel(relabeled));
+
+		GeometricalObject value = ObjectTree.valueAt(relabeled, 7, PALETTE);
+		assertEquals(objects.get(7).getId(), value.getId());
+		assertEquals(0x80FF0000, value.getFgColor().getRGB());
+	}
+
+	/**
+	 * Checks that the given tree is ordered by labels, that the priorities form
+	 * a heap, that the chunks are neither empty nor overfull and that the
+	 * subtree sizes are right.
+	 *
+	 * @param root
+	 *            the root, may be null
+	 */
+	private static void assertValid(ObjectTree.Node root) {
+		assertValid(root, Long.MIN_VALUE, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Checks the given subtree, whose labels must lie between the given bounds.
+	 *
+	 * @param node
+	 *            the root of the subtree, may be null
+	 * @param min
+	 *            the smallest allowed label
+	 * @param max
+	 *            the greatest allowed label
+	 * @return the size of the subtree
+	 */
+	private static int assertValid(ObjectTree.Node node, long min, long max) {
+		if (node == null) {
+			return 0;
+		}
+
+		ObjectChunk chunk = node.chunk;
+		assertTrue(chunk.size() > 0 && chunk.size() <= ObjectChunk.CAPACITY);
+		assertTrue(chunk.first() >= min && chunk.last() <= max);
+		for (int i = 1; i < chunk.size(); i++) {
+			assertTrue(chunk.label(i - 1) < chunk.label(i));
+		}
+		if (node.left != null) {
+			assertTrue(node.left.priority <= node.priority);
+		}
+		if (node.right != null) {
+			assertTrue(node.right.priority <= node.priority);
+		}
+
+		int size = assertValid(node.left, min, chunk.first() - 1) + chunk.size()
+				+ assertValid(node.right, chunk.last() + 1, max);
+		assertEquals(size, node.size);
+		return size;
+	}
+
+	/**
+	 * Counts the chunks of the given tree.
+	 *
+	 * @param node
+	 *            the root, may be null
+	 * @return the number of chunks
+	 */
+	private static int chunksOf(ObjectTree.Node node) {
+		return node == null ? 0 : chunksOf(node.left) + 1 + chunksOf(node.right);
+	}
+
+	/**
+	 * Gets the stored objects of the given tree, in drawing order.
+	 *
+	 * @param root
+	 *            the root, may be null
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> objectsOf(ObjectTree.Node root) {
+		List<GeometricalObject> objects = new ArrayList<>();
+		Iterator<GeometricalObject> it = ObjectTree.values(root, 0, PALETTE);
+		while (it.hasNext()) {
+			objects.add(it.next());
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Gets the label of the object at the given position.
+	 *
+	 * @param index
+	 *            the position
+	 * @return the label
+	 */
+	private static long label(int index) {
+		return index * GAP;
+	}
+
+	/**
+	 * Gets the labels of the given number of objects.
+	 *
+	 * @param n
+	 *            the number of objects
+	 * @return the labels
+	 */
+	private static long[] labels(int n) {
+		long[] labels = new long[n];
+		for (int i = 0; i < n; i++) {
+			labels[i] = label(i);
+		}
+
+		return labels;
+	}
+
+	/**
+	 * Creates the given number of distinct lines.
+	 *
+	 * @param n
+	 *            the number of lines
+	 * @return the lines
+	 */
+	private static List<GeometricalObject> lines(int n) {
+		List<GeometricalObject> lines = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			lines.add(line(i));
+		}
+
+		return lines;
+	}
+
+	/**
+	 * Creates a line ending at a point given by the given number.
+	 *
+	 * @param i
+	 *            the number
+	 * @return the line
+	 */
+	private static GeometricalObject line(int i) {
+		GeometricalObject line = new Line(new Point(0, 0), new Point(i, 2 * i), Color.BLACK);
+		line.setPalette(PALETTE);
+		return line;
+	}
+}
@@ -0,0 +1,333 @@
+package hr.fer.zemris.java.hw16.jvdraw.model;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.geom.Line2D;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectBBCalculator;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+
+/**
+ * The tests of SpatialTree, through the queries of DocumentSnapshot: the
+ * objects found in an area or under a point must be exactly the ones a search
+ * over all objects finds, in drawing order, also after objects have been
+ * edited, moved and removed, and the difference of two snapshots must cover
+ * exactly the objects changed between them.
+ *
+ * @author Damjan Vučina
+ */
+public class SpatialTreeTest {
+
+	/** The number of objects in the tested documents. */
+	private static final int SIZE = 2000;
+
+	/** The number of queries per check. */
+	private static final int QUERIES = 300;
+
+	/** The seed used for generating random objects and queries. */
+	private static final long SEED = 7;
+
+	/**
+	 * Tests that area queries find the same objects as a search over all
+	 * objects, including objects with negative coordinates and objects larger
+	 * than any cell of the lowest levels.
+	 */
+	@Test
+	public void testAreaQuery() {
+		Random random = new Random(SEED);
+		DocumentModel model = new DocumentModel();
+		model.addAll(randomObjects(random, SIZE));
+
+		assertAreaQueries(model.snapshot(), random);
+	}
+
+	/**
+	 * Tests that the index follows edits, moves and removals, while a snapshot
+	 * taken before keeps finding the objects as they were.
+	 */
+	@Test
+	public void testQueryAfterChanges() {
+		Random random = new Random(SEED);
+		DocumentModel model = new DocumentModel();
+		model.addAll(randomObjects(random, SIZE));
+		DocumentSnapshot before = model.snapshot();
+
+		for (int i = 0; i < SIZE / 10; i++) {
+			GeometricalObject object = model.getObject(random.nextInt(model.getSize()));
+			switch (random.nextInt(3)) {
+			case 0:
+				object.setEndPoint(randomPoint(random));
+				object.notifyListeners();
+				break;
+			case 1:
+				model.moveTo(object, random.nextInt(model.getSize()));
+				break;
+			default:
+				model.remove(object);
+				break;
+			}
+		}
+
+		assertAreaQueries(model.snapshot(), random);
+		assertAreaQueries(before, random);
+	}
+
+	/**
+	 * Tests that point queries find the same objects as testing all objects,
+	 * and that the topmost one is the last of them.
+	 */
+	@Test
+	public void testPointQuery() {
+		Random random = new Random(SEED);
+		DocumentModel model = new DocumentModel();
+		model.addAll(randomObjects(random, SIZE));
+		DocumentSnapshot snapshot = model.snapshot();
+
+		for (int i = 0; i < QUERIES; i++) {
+			Point point = randomPoint(random);
+			int tolerance = random.nextInt(6);
+
+			List<GeometricalObject> expected = new ArrayList<>();
+			for (GeometricalObject object : snapshot) {
+				if (hits(object, point, tolerance)) {
+					expected.add(object);
+				}
+			}
+
+			assertEquals(expected, snapshot.query(point, tolerance));
+			GeometricalObject topmost = snapshot.topmostAt(point, tolerance);
+			if (expected.isEmpty()) {
+				assertNull(topmost);
+			} else {
+				assertEquals(expected.get(expected.size() - 1), topmost);
+			}
+		}
+	}
+
+	/**
+	 * Tests that the difference of two snapshots is the union of the bounding
+	 * boxes of the added and removed objects and of both states of the edited
+	 * ones, including edits of the color only, and that it is empty for
+	 * snapshots of the same state.
+	 */
+	@Test
+	public void testDifference() {
+		Random random = new Random(SEED);
+		DocumentModel model = new DocumentModel();
+		model.addAll(randomObjects(random, SIZE));
+		Rectangle limit = new Rectangle(-10_000, -10_000, 20_000, 20_000);
+
+		for (int round = 0; round < 20; round++) {
+			DocumentSnapshot before = model.snapshot();
+			assertNull(model.snapshot().differenceFrom(before, limit));
+
+			Rectangle expected = null;
+			for (int i = 0; i < 1 + random.nextInt(5); i++) {
+				GeometricalObject object = model.getObject(random.nextInt(model.getSize()));
+				switch (random.nextInt(4)) {
+				case 0:
+					expected = union(expected, boundsOf(object));
+					object.setEndPoint(randomPoint(random));
+					object.notifyListeners();
+					expected = union(expected, boundsOf(object));
+					break;
+				case 1:
+					expected = union(expected, boundsOf(object));
+					object.setFgColor(new Color(random.nextInt(0x1000000)));
+					object.notifyListeners();
+					break;
+				case 2:
+					expected = union(expected, boundsOf(object));
+					model.remove(object);
+					break;
+				default:
+					GeometricalObject added = randomObjects(random, 1).get(0);
+					model.add(added);
+					expected = union(expected, boundsOf(added));
+					break;
+				}
+			}
+
+			assertEquals(expected, model.snapshot().differenceFrom(before, limit));
+		}
+	}
+
+	/**
+	 * Tests that the difference covers the objects moved in the drawing order,
+	 * and that the search stops once the difference contains the limit.
+	 */
+	@Test
+	public void testDifferenceAfterMoves() {
+		Random random = new Random(SEED);
+		DocumentModel model = new DocumentModel();
+		model.addAll(randomObjects(random, SIZE));
+		DocumentSnapshot before = model.snapshot();
+
+		GeometricalObject object = model.getObject(random.nextInt(model.getSize()));
+		model.moveTo(object, random.nextInt(model.getSize()));
+		Rectangle limit = new Rectangle(-10_000, -10_000, 20_000, 20_000);
+		Rectangle difference = model.snapshot().differenceFrom(before, limit);
+		assertTrue(difference.contains(boundsOf(object)));
+
+		Rectangle small = new Rectangle(0, 0, 10, 10);
+		assertTrue(model.snapshot().differenceFrom(null, small).contains(small));
+		assertNull(new DocumentModel().snapshot().differenceFrom(null, small));
+	}
+
+	/**
+	 * Calculates the union of the given rectangles.
+	 *
+	 * @param union
+	 *            the union so far, may be null
+	 * @param bounds
+	 *            the rectangle to be added
+	 * @return the union
+	 */
+	private static Rectangle union(Rectangle union, Rectangle bounds) {
+		return union == null ? new Rectangle(bounds) : union.union(bounds);
+	}
+
+	/**
+	 * Checks random area queries of the given snapshot against a search over
+	 * all of its objects.
+	 *
+	 * @param snapshot
+	 *            the snapshot
+	 * @param random
+	 *            the source of random areas
+	 */
+	private static void assertAreaQueries(DocumentSnapshot snapshot, Random random) {
+		for (int i = 0; i < QUERIES; i++) {
+			Point origin = randomPoint(random);
+			Rectangle area = new Rectangle(origin.x, origin.y, 1 + random.nextInt(300), 1 + random.nextInt(300));
+
+			List<GeometricalObject> expected = new ArrayList<>();
+			for (GeometricalObject object : snapshot) {
+				if (touches(boundsOf(object), area)) {
+					expected.add(object);
+				}
+			}
+
+			assertEquals(expected, snapshot.query(area));
+		}
+	}
+
+	/**
+	 * Checks whether the given bounding box, which covers the pixels from its
+	 * origin up to and including its origin plus its size, shares a pixel with
+	 * the given area.
+	 *
+	 * @param bounds
+	 *            the bounding box
+	 * @param area
+	 *            the area
+	 * @return true, if they share a pixel
+	 */
+	private static boolean touches(Rectangle bounds, Rectangle area) {
+		//@formatter:off
+		return bounds.x < area.x + area.width
+			&& bounds.x + bounds.width >= area.x
+			&& bounds.y < area.y + area.height
+			&& bounds.y + bounds.height >= area.y;
+		//@formatter:on
+	}
+
+	/**
+	 * Checks whether the given object lies under the given point.
+	 *
+	 * @param object
+	 *            the object
+	 * @param point
+	 *            the point
+	 * @param tolerance
+	 *            the tolerance in pixels
+	 * @return true, if the object lies under the point
+	 */
+	private static boolean hits(GeometricalObject object, Point point, int tolerance) {
+		if (object instanceof Line) {
+			Point s = object.getStartPoint();
+			Point e = object.getEndPoint();
+			return Line2D.ptSegDist(s.x, s.y, e.x, e.y, point.x, point.y) <= tolerance;
+		}
+
+		Circle circle = (Circle) object;
+		double distance = point.distance(circle.getCenter());
+		if (object instanceof FilledCircle) {
+			return distance <= circle.calculateRadius() + tolerance;
+		}
+		return Math.abs(distance - circle.calculateRadius()) <= tolerance;
+	}
+
+	/**
+	 * Calculates the bounding box of the given object.
+	 *
+	 * @param object
+	 *            the object
+	 * @return the bounding box
+	 */
+	private static Rectangle boundsOf(GeometricalObject object) {
+		GeometricalObjectBBCalculator bbCalculator = new GeometricalObjectBBCalculator();
+		object.accept(bbCalculator);
+
+		return bbCalculator.getBoundingBox();
+	}
+
+	/**
+	 * Creates the given number of random lines, circles and filled circles,
+	 * mostly small ones, but some as large as the whole drawing.
+	 *
+	 * @param random
+	 *            the source of random numbers
+	 * @param n
+	 *            the number of objects
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> randomObjects(Random random, int n) {
+		List<GeometricalObject> objects = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			Point start = randomPoint(random);
+			int extent = random.nextInt(10) == 0 ? 2000 : 40;
+			Point end = new Point(start.x + random.nextInt(extent) - extent / 2,
+					start.y + random.nextInt(extent) - extent / 2);
+
+			switch (random.nextInt(3)) {
+			case 0:
+				objects.add(new Line(start, end, Color.BLACK));
+				break;
+			case 1:
+				objects.add(new Circle(start, end, Color.RED));
+				break;
+			default:
+				objects.add(new FilledCircle(start, end, Color.BLUE, Color.GREEN));
+				break;
+			}
+		}
+
+		return objects;
+	}
+
+	/**
+	 * Creates a random point of the drawing, which reaches into negative
+	 * coordinates.
+	 *
+	 * @param random
+	 *            the source of random numbers
+	 * @return the point
+	 */
+	private static Point randomPoint(Random random) {
+		return new Point(random.nextInt(1200) - 200, random.nextInt(1200) - 200);
+	}
+}
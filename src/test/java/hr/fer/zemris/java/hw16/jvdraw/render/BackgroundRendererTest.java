@@ -0,0 +1,201 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Dimension;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
+
+/**
+ * The tests of BackgroundRenderer: every published frame must report the area
+ * that differs from the previous one to the frame listener, frames must be
+ * rendered at the scale of the screen, objects outside the view must be
+ * culled, and disposing the renderer must stop its thread.
+ *
+ * @author Damjan Vučina
+ */
+public class BackgroundRendererTest {
+
+	/** The time to wait for a frame, in seconds. */
+	private static final long TIMEOUT = 10;
+
+	/**
+	 * Tests that the first frame and frames of a resized view report the whole
+	 * view, while frames following damage report only the damaged area.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a frame
+	 */
+	@Test
+	public void testFrameDamage() throws InterruptedException {
+		DocumentModel model = new DocumentModel();
+		model.add(new Line(new Point(10, 10), new Point(90, 90), Color.BLACK));
+
+		BlockingQueue<Rectangle> frames = new LinkedBlockingQueue<>();
+		BackgroundRenderer renderer = new BackgroundRenderer(new TileRasterizer(Color.WHITE), frames::add);
+		try {
+			renderer.request(model.snapshot(), new Dimension(300, 200));
+			assertEquals(new Rectangle(0, 0, 300, 200), frames.poll(TIMEOUT, TimeUnit.SECONDS));
+
+			model.add(new Line(new Point(40, 50), new Point(60, 70), Color.RED));
+			Rectangle damage = new Rectangle(37, 47, 26, 26);
+			renderer.invalidate(damage);
+			renderer.request(model.snapshot(), new Dimension(300, 200));
+			assertEquals(damage, frames.poll(TIMEOUT, TimeUnit.SECONDS));
+
+			renderer.request(model.snapshot(), new Dimension(400, 200));
+			assertEquals(new Rectangle(0, 0, 400, 200), frames.poll(TIMEOUT, TimeUnit.SECONDS));
+
+			renderer.invalidateAll();
+			renderer.request(model.snapshot(), new Dimension(400, 200));
+			assertEquals(new Rectangle(0, 0, 400, 200), frames.poll(TIMEOUT, TimeUnit.SECONDS));
+			assertNull(frames.poll());
+		} finally {
+			renderer.dispose();
+		}
+	}
+
+	/**
+	 * Tests that frames requested at the scale of a HiDPI screen are rendered
+	 * in device pixels, so that painting them through a transform of that
+	 * scale gives the same pixels as rasterizing the objects as a single tile
+	 * at that scale. Only lines are drawn, since the antialiasing of curves
+	 * crossing the tiles' clips may differ slightly.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a frame
+	 */
+	@Test
+	public void testScaledFrame() throws InterruptedException {
+		DocumentModel model = new DocumentModel();
+		for (int i = 0; i < 40; i++) {
+			model.add(new Line(new Point(7 * i, 3 * i), new Point(290 - 5 * i, 190 - 4 * i), new Color(6 * i, 0, 255)));
+		}
+		DocumentSnapshot snapshot = model.snapshot();
+		Dimension size = new Dimension(300, 200);
+
+		TileRasterizer rasterizer = new TileRasterizer(Color.WHITE);
+		BlockingQueue<Rectangle> frames = new LinkedBlockingQueue<>();
+		BackgroundRenderer renderer = new BackgroundRenderer(rasterizer, frames::add);
+		try {
+			for (double scale : new double[] { 1, 1.5, 2 }) {
+				renderer.request(snapshot, size, scale);
+				assertNotNull(frames.poll(TIMEOUT, TimeUnit.SECONDS));
+
+				int width = (int) Math.ceil(size.width * scale);
+				int height = (int) Math.ceil(size.height * scale);
+				BufferedImage screen = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				Graphics2D g2d = screen.createGraphics();
+				g2d.scale(scale, scale);
+				renderer.paintFrame(g2d, new Rectangle(size));
+				g2d.dispose();
+
+				BufferedImage expected = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+				List<GeometricalObject> objects = snapshot.query(new Rectangle(size));
+				rasterizer.rasterize(Collections.singletonList(
+						new TileRasterizer.Job(expected, new Rectangle(width, height), objects, scale)));
+
+				assertArrayEquals("Scale " + scale, pixels(expected), pixels(screen));
+			}
+		} finally {
+			renderer.dispose();
+		}
+	}
+
+	/**
+	 * Tests that only the objects near the rendered tiles are drawn, and that
+	 * the others, including the ones of cached tiles, are counted as culled
+	 * once per frame.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a frame
+	 */
+	@Test
+	public void testCulling() throws InterruptedException {
+		DocumentModel model = new DocumentModel();
+		for (int i = 0; i < 10; i++) {
+			model.add(new Line(new Point(20 * i + 5, 20), new Point(20 * i + 10, 30), Color.BLACK));
+		}
+		for (int i = 0; i < 30; i++) {
+			model.add(new Line(new Point(1050 + 5 * i, 20), new Point(1050 + 5 * i, 30), Color.RED));
+		}
+
+		BlockingQueue<Rectangle> frames = new LinkedBlockingQueue<>();
+		BackgroundRenderer renderer = new BackgroundRenderer(new TileRasterizer(Color.WHITE), frames::add);
+		try {
+			renderer.request(model.snapshot(), new Dimension(300, 200));
+			assertNotNull(frames.poll(TIMEOUT, TimeUnit.SECONDS));
+			assertEquals(30, renderer.getCulledCount());
+			long drawn = renderer.getDrawnCount();
+			assertTrue("Every object in the view should have been drawn, was: " + drawn, drawn >= 10 && drawn < 30);
+
+			// the tiles of the smaller view are cached, so only the objects
+			// of the new tiles are drawn and the ones of the cached are culled
+			renderer.request(model.snapshot(), new Dimension(1200, 200));
+			assertNotNull(frames.poll(TIMEOUT, TimeUnit.SECONDS));
+			assertEquals(30 + 10, renderer.getCulledCount());
+			assertEquals(drawn + 30, renderer.getDrawnCount());
+		} finally {
+			renderer.dispose();
+		}
+	}
+
+	/**
+	 * Tests that disposing the renderer stops its thread, and that no frames
+	 * are published afterwards.
+	 *
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for a frame
+	 */
+	@Test
+	public void testDispose() throws InterruptedException {
+		DocumentModel model = new DocumentModel();
+		model.add(new Line(new Point(10, 10), new Point(90, 90), Color.BLACK));
+
+		BlockingQueue<Rectangle> frames = new LinkedBlockingQueue<>();
+		BackgroundRenderer renderer = new BackgroundRenderer(new TileRasterizer(Color.WHITE), frames::add);
+		renderer.request(model.snapshot(), new Dimension(100, 100));
+		assertNotNull(frames.poll(TIMEOUT, TimeUnit.SECONDS));
+
+		assertFalse(renderer.isDisposed());
+		renderer.dispose();
+		renderer.dispose();
+		assertTrue(renderer.isDisposed());
+		assertTrue(renderer.awaitTermination(TimeUnit.SECONDS.toMillis(TIMEOUT)));
+
+		renderer.request(model.snapshot(), new Dimension(200, 100));
+		assertNull(frames.poll(200, TimeUnit.MILLISECONDS));
+	}
+
+	/**
+	 * Gets the pixels of the given image.
+	 *
+	 * @param image
+	 *            the image, of an integer type
+	 * @return the pixels
+	 */
+	private static int[] pixels(BufferedImage image) {
+		return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+	}
+}
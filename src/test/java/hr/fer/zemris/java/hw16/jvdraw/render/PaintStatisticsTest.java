@@ -0,0 +1,178 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.Attribute;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+/**
+ * The tests of PaintStatistics: nothing must be recorded while collecting is
+ * off, the recorded durations and shape counts must be reported in
+ * milliseconds and sums, resetting must clear them, and the statistics must be
+ * readable and switchable through the platform MBean server.
+ *
+ * @author Damjan Vučina
+ */
+public class PaintStatisticsTest {
+
+	/** The number of nanoseconds in a millisecond. */
+	private static final long MILLISECOND = TimeUnit.MILLISECONDS.toNanos(1);
+
+	/** The allowed error of the reported durations, in milliseconds. */
+	private static final double DELTA = 1e-9;
+
+	/**
+	 * Tests that none of the record methods has an effect while collecting is
+	 * off.
+	 */
+	@Test
+	public void testDisabled() {
+		PaintStatistics statistics = new PaintStatistics();
+		statistics.setEnabled(false);
+
+		statistics.recordPaint(MILLISECOND);
+		statistics.recordFrame(MILLISECOND, 10, 5, 3);
+		statistics.recordExport(MILLISECOND, 10, 5);
+		statistics.recordRepaintRequest();
+
+		assertEquals(0, statistics.getPaintCount());
+		assertEquals(0, statistics.getFrameCount());
+		assertEquals(0, statistics.getExportCount());
+		assertEquals(0, statistics.getShapesVisited());
+		assertEquals(0, statistics.getLastFrameShapesVisited());
+		assertEquals(0, statistics.getRepaintRequests());
+	}
+
+	/**
+	 * Tests that the recorded paints, frames and exports are reported as
+	 * counts and durations in milliseconds, that the shapes of frames and
+	 * exports are summed while the last frame's are kept apart, and that
+	 * resetting clears everything.
+	 */
+	@Test
+	public void testRecording() {
+		PaintStatistics statistics = new PaintStatistics();
+		statistics.setEnabled(true);
+
+		for (int i = 0; i < 99; i++) {
+			statistics.recordPaint(MILLISECOND);
+		}
+		statistics.recordPaint(100 * MILLISECOND);
+		assertEquals(100, statistics.getPaintCount());
+		assertEquals(1.99, statistics.getPaintTimeMean(), DELTA);
+		assertEquals(100, statistics.getPaintTimeMax(), DELTA);
+		double p50 = statistics.getPaintTimeP50();
+		double p99 = statistics.getPaintTimeP99();
+		assertTrue("The median should be about a millisecond, was: " + p50, p50 >= 1 && p50 <= 2);
+		assertTrue("The 99th percentile should leave out the longest paint, was: " + p99, p99 >= p50 && p99 <= 2);
+
+		statistics.recordFrame(2 * MILLISECOND, 10, 6, 4);
+		statistics.recordFrame(4 * MILLISECOND, 20, 15, 5);
+		statistics.recordExport(6 * MILLISECOND, 30, 25);
+		assertEquals(2, statistics.getFrameCount());
+		assertEquals(3, statistics.getFrameTimeMean(), DELTA);
+		assertEquals(4, statistics.getFrameTimeMax(), DELTA);
+		assertEquals(1, statistics.getExportCount());
+		assertEquals(6, statistics.getExportTimeMean(), DELTA);
+		assertEquals(10 + 20 + 30, statistics.getShapesVisited());
+		assertEquals(6 + 15 + 25, statistics.getShapesDrawn());
+		assertEquals(4 + 5, statistics.getShapesCulled());
+		assertEquals(20, statistics.getLastFrameShapesVisited());
+		assertEquals(15, statistics.getLastFrameShapesDrawn());
+		assertEquals(5, statistics.getLastFrameShapesCulled());
+
+		statistics.recordRepaintRequest();
+		statistics.recordRepaintRequest();
+		assertEquals(2, statistics.getRepaintRequests());
+		assertTrue(statistics.getRepaintRequestRate() > 0);
+
+		statistics.reset();
+		assertEquals(0, statistics.getPaintCount());
+		assertEquals(0, statistics.getPaintTimeMax(), DELTA);
+		assertEquals(0, statistics.getPaintTimeP99(), DELTA);
+		assertEquals(0, statistics.getFrameCount());
+		assertEquals(0, statistics.getExportCount());
+		assertEquals(0, statistics.getShapesVisited());
+		assertEquals(0, statistics.getShapesDrawn());
+		assertEquals(0, statistics.getShapesCulled());
+		assertEquals(0, statistics.getLastFrameShapesDrawn());
+		assertEquals(0, statistics.getRepaintRequests());
+		assertTrue(statistics.isEnabled());
+	}
+
+	/**
+	 * Tests that the percentiles of a histogram are ordered and bounded by the
+	 * longest duration, and that negative durations and fractions out of range
+	 * are rejected.
+	 */
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getPercentile(0.5));
+
+		for (long nanos = 1; nanos <= 10_000_000; nanos *= 3) {
+			histogram.record(nanos);
+		}
+		long p50 = histogram.getPercentile(0.5);
+		long p99 = histogram.getPercentile(0.99);
+		assertTrue(histogram.getPercentile(0) <= p50);
+		assertTrue(p50 <= p99);
+		assertTrue(p99 <= histogram.getMax());
+		assertEquals(histogram.getMax(), histogram.getPercentile(1));
+
+		try {
+			histogram.record(-1);
+			throw new AssertionError("A negative duration should have been rejected.");
+		} catch (IllegalArgumentException expected) {
+		}
+		try {
+			histogram.getPercentile(1.5);
+			throw new AssertionError("A fraction above 1 should have been rejected.");
+		} catch (IllegalArgumentException expected) {
+		}
+	}
+
+	/**
+	 * Tests that the registered statistics can be read and turned on through
+	 * the platform MBean server, and that registering again replaces them.
+	 *
+	 * @throws JMException
+	 *             if the MBean cannot be accessed
+	 */
+	@Test
+	public void testMBean() throws JMException {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		ObjectName name = new ObjectName(PaintStatistics.OBJECT_NAME);
+
+		PaintStatistics replaced = new PaintStatistics();
+		replaced.setEnabled(false);
+		replaced.register();
+		PaintStatistics statistics = new PaintStatistics();
+		statistics.setEnabled(false);
+		statistics.register();
+		try {
+			server.setAttribute(name, new Attribute("Enabled", true));
+			assertTrue(statistics.isEnabled());
+			assertFalse(replaced.isEnabled());
+
+			statistics.recordFrame(2 * MILLISECOND, 10, 6, 4);
+			assertEquals(1L, server.getAttribute(name, "FrameCount"));
+			assertEquals(10L, server.getAttribute(name, "LastFrameShapesVisited"));
+			assertEquals(2.0, (Double) server.getAttribute(name, "FrameTimeMax"), DELTA);
+
+			server.invoke(name, "reset", null, null);
+			assertEquals(0, statistics.getFrameCount());
+		} finally {
+			server.unregisterMBean(name);
+		}
+	}
+}
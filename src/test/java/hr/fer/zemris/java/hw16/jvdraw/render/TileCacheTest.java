@@ -0,0 +1,204 @@
+package hr.fer.zemris.java.hw16.jvdraw.render;
+
+import static hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObjectPainter.DEFAULT_STROKE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Circle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.FilledCircle;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.GeometricalObject;
+import hr.fer.zemris.java.hw16.jvdraw.geometry.Line;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentModel;
+import hr.fer.zemris.java.hw16.jvdraw.model.DocumentSnapshot;
+
+/**
+ * The tests of TileCache: rendering a view in slices of a time budget must
+ * produce the same image as rendering it at once, the number of cached tiles
+ * must stay within the tiles of the painted area plus the allowed others, and
+ * reused tile images must never show the contents of other tiles.
+ *
+ * @author Damjan Vučina
+ */
+public class TileCacheTest {
+
+	/** The width and height of the painted view. */
+	private static final int VIEW_SIZE = 600;
+
+	/** The number of objects in the document. */
+	private static final int OBJECTS = 4000;
+
+	/**
+	 * Tests that the image painted progressively, with a budget of a single
+	 * millisecond, is identical to the one painted with an unbounded budget.
+	 */
+	@Test
+	public void testProgressiveImage() {
+		DocumentModel model = new DocumentModel();
+		model.addAll(randomObjects(new Random(42)));
+		DocumentSnapshot snapshot = model.snapshot();
+		TileRasterizer rasterizer = new TileRasterizer(Color.WHITE);
+
+		int[] expected = render(snapshot, rasterizer, 0, new int[1]);
+		int[] paints = new int[1];
+		int[] actual = render(snapshot, rasterizer, 1, paints);
+
+		assertTrue("The budget should have run out.", paints[0] > 1);
+		assertArrayEquals(expected, actual);
+	}
+
+	/**
+	 * Tests that the cache grows with the painted area, whatever its size, and
+	 * shrinks to the tiles of a smaller area plus the allowed others.
+	 */
+	@Test
+	public void testBoundFollowsArea() {
+		TileCache tileCache = new TileCache(area -> new ArrayList<>(), new TileRasterizer(Color.WHITE), 64, 2);
+		BufferedImage view = new BufferedImage(2048, 2048, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = view.createGraphics();
+
+		assertTrue(tileCache.paint(g2d, new Rectangle(0, 0, 1024, 1024)));
+		assertEquals(256, tileCache.size());
+		assertEquals(0, tileCache.getEvictionCount());
+
+		assertTrue(tileCache.paint(g2d, new Rectangle(1024, 1024, 128, 128)));
+		assertEquals(6, tileCache.size());
+		assertTrue(tileCache.paint(g2d, new Rectangle(1024, 1024, 128, 128)));
+		assertEquals(4, tileCache.getHitCount());
+		assertEquals(256 - 2, tileCache.getEvictionCount());
+
+		tileCache.setMaxTiles(0);
+		assertEquals(4, tileCache.size());
+		g2d.dispose();
+	}
+
+	/**
+	 * Tests that the images taken over from evicted tiles are cleared before
+	 * they are painted, even if the tiles they are given to are not rendered
+	 * within the time budget.
+	 */
+	@Test
+	public void testReusedImagesCleared() {
+		Rectangle drawn = new Rectangle(0, 0, 256, 256);
+		List<GeometricalObject> cover = new ArrayList<>();
+		cover.add(new FilledCircle(new Point(128, 128), new Point(128, 0), Color.BLACK, Color.BLACK));
+
+		TileCache tileCache = new TileCache(area -> {
+			if (area.intersects(drawn)) {
+				return cover;
+			}
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return new ArrayList<>();
+		}, new TileRasterizer(Color.WHITE), 64, 0);
+
+		BufferedImage view = new BufferedImage(1280, 256, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g2d = view.createGraphics();
+		assertTrue(tileCache.paint(g2d, drawn));
+
+		tileCache.setTimeBudget(1);
+		assertFalse("The budget should have run out.", tileCache.paint(g2d, new Rectangle(1024, 0, 256, 256)));
+		g2d.dispose();
+
+		assertEquals(16, tileCache.size());
+		for (int y = 0; y < 256; y++) {
+			for (int x = 1024; x < 1280; x++) {
+				assertEquals(Color.WHITE.getRGB(), view.getRGB(x, y));
+			}
+		}
+	}
+
+	/**
+	 * Renders the whole view from scratch with the given budget, painting it
+	 * until all tiles are complete.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the objects
+	 * @param rasterizer
+	 *            the rasterizer
+	 * @param timeBudget
+	 *            the time budget of a paint, in milliseconds, or 0 if unbounded
+	 * @param paints
+	 *            the array the number of paints is stored into
+	 * @return the pixels of the view
+	 */
+	private static int[] render(DocumentSnapshot snapshot, TileRasterizer rasterizer, long timeBudget,
+			int[] paints) {
+		TileCache tileCache = new TileCache(area -> find(snapshot, area), rasterizer, 128, TileCache.DEFAULT_MAX_TILES);
+		tileCache.setTimeBudget(timeBudget);
+
+		BufferedImage view = new BufferedImage(VIEW_SIZE, VIEW_SIZE, BufferedImage.TYPE_INT_RGB);
+		Rectangle area = new Rectangle(0, 0, VIEW_SIZE, VIEW_SIZE);
+		boolean complete = false;
+		while (!complete) {
+			Graphics2D g2d = view.createGraphics();
+			complete = tileCache.paint(g2d, area);
+			g2d.dispose();
+			paints[0]++;
+		}
+
+		return ((DataBufferInt) view.getRaster().getDataBuffer()).getData();
+	}
+
+	/**
+	 * Finds the objects to be drawn into the given area.
+	 *
+	 * @param snapshot
+	 *            the snapshot of the objects
+	 * @param area
+	 *            the area
+	 * @return the objects, in drawing order
+	 */
+	private static List<GeometricalObject> find(DocumentSnapshot snapshot, Rectangle area) {
+		Rectangle widened = new Rectangle(area);
+		widened.grow(DEFAULT_STROKE + 1, DEFAULT_STROKE + 1);
+		return snapshot.query(widened);
+	}
+
+	/**
+	 * Creates random objects in and around the view.
+	 *
+	 * @param random
+	 *            the random generator
+	 * @return the objects
+	 */
+	private static List<GeometricalObject> randomObjects(Random random) {
+		List<GeometricalObject> objects = new ArrayList<>(OBJECTS);
+		for (int i = 0; i < OBJECTS; i++) {
+			Point start = new Point(random.nextInt(VIEW_SIZE + 100) - 50, random.nextInt(VIEW_SIZE + 100) - 50);
+			Point end = new Point(start.x + random.nextInt(100) - 50, start.y + random.nextInt(100) - 50);
+			Color fg = new Color(random.nextInt(0x1000000));
+
+			switch (random.nextInt(3)) {
+			case 0:
+				objects.add(new Line(start, end, fg));
+				break;
+
+			case 1:
+				objects.add(new Circle(start, end, fg));
+				break;
+
+			default:
+				objects.add(new FilledCircle(start, end, fg, new Color(random.nextInt(0x1000000))));
+			}
+		}
+
+		return objects;
+	}
+}